@@ -0,0 +1,461 @@
+import java.math.BigInteger;
+
+import ByteUtils.Operator;
+
+/**
+ * The arithmetic semantics of PyLite operators.
+ * These methods are shared by every component that evaluates operators, so that all of them agree on the results.
+ *
+ * Integers are unbounded, as in Python. They are held as a primitive long while they fit, and as a BigInteger only
+ * once they do not; a BigInteger that fits in a long is always turned back into a Long, so each integer has exactly
+ * one representation. The long methods detect overflow and division by zero by throwing ArithmeticException, and
+ * callers retry such an operation through the boxed methods, which either promote to BigInteger or raise the error.
+ * Floor division and modulo round towards negative infinity, as Python's operators do.
+ *
+ * Floats are Java doubles and follow Python's numeric tower: an operation with a float operand converts the other
+ * operand to a float and gives a float, / always gives a float, and an integer raised to a negative integer power
+ * is a float. Errors Python reports as ZeroDivisionError or OverflowError are raised as ArithmeticException.
+ */
+class Arithmetic {
+
+    private static final int LONG_BITS = 63; // The largest BigInteger.bitLength() of a value that fits in a long
+    private static final long MAX_EXACT_DOUBLE = 1L << 53; // Every long up to this magnitude is exactly a double
+    private static final int DOUBLE_PRECISION = 53; // The significant bits of a normal double
+    private static final int MIN_DOUBLE_EXPONENT = -1074; // The exponent of the lowest bit of the smallest subnormal double
+    private static final ArithmeticException NOT_A_LONG = new ArithmeticException("result is not a long"); // Thrown by powExact; always caught by a caller that retries
+
+    private Arithmetic() {}
+
+    /**
+     * Applies a binary operator to two integers held as longs.
+     *
+     * @param op The binary operator to apply, other than DIV, whose result is a float.
+     * @param a The left operand.
+     * @param b The right operand.
+     * @return The result of the operation.
+     * @throws ArithmeticException if the result is not a long, as on overflow or for a negative exponent, or the
+     *         operation divides by zero. Retrying with binary() gives the correct result or error.
+     * @throws RuntimeException if the operator is not a binary operator with an integer result.
+     */
+    static long binaryLong(Operator op, long a, long b) {
+        switch (op) {
+            case POW:
+                return powExact(a, b);
+            case MOD:
+                return Math.floorMod(a, b);
+            case FLOORDIV:
+                return floorDivExact(a, b);
+            case MUL:
+                return Math.multiplyExact(a, b);
+            case ADD:
+                return Math.addExact(a, b);
+            case SUB:
+                return Math.subtractExact(a, b);
+            default:
+                throw new RuntimeException("Unknown operator " + op + ".");
+        }
+    }
+
+    /**
+     * Applies a unary arithmetic operator to an integer held as a long.
+     *
+     * @param op The unary operator to apply, either POS or NEG.
+     * @param a The operand.
+     * @return The result of the operation.
+     * @throws ArithmeticException if the result does not fit in a long.
+     * @throws RuntimeException if the operator is not an arithmetic unary operator.
+     */
+    static long unaryLong(Operator op, long a) {
+        switch (op) {
+            case POS:
+                return a;
+            case NEG:
+                return Math.negateExact(a);
+            default:
+                throw new RuntimeException("Unknown operator " + op + ".");
+        }
+    }
+
+    /**
+     * Divides two longs, rounding towards negative infinity.
+     *
+     * @throws ArithmeticException if the divisor is zero or the result does not fit in a long.
+     */
+    static long floorDivExact(long a, long b) {
+        if (a == Long.MIN_VALUE && b == -1) {
+            throw new ArithmeticException("long overflow");
+        }
+        return Math.floorDiv(a, b);
+    }
+
+    /**
+     * Raises a long to a non-negative power by repeated squaring.
+     * Overflow is detected without Math.multiplyExact: powers are where small integers most often outgrow a long, and
+     * a fresh exception, or the deoptimization the intrinsic takes on overflow, costs far more than the power itself.
+     *
+     * @throws ArithmeticException if the exponent is negative, which gives a float, or the result does not fit in a
+     *         long.
+     */
+    static long powExact(long base, long exponent) {
+        if (exponent < 0) {
+            throw NOT_A_LONG;
+        }
+        long result = 1;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result = multiplyOrOverflow(result, base);
+            }
+            exponent >>= 1;
+            if (exponent > 0) {
+                base = multiplyOrOverflow(base, base);
+            }
+        }
+        return result;
+    }
+
+    private static long multiplyOrOverflow(long a, long b) {
+        long product = a * b;
+        if (Math.multiplyHigh(a, b) != product >> 63) {
+            throw NOT_A_LONG;
+        }
+        return product;
+    }
+
+    /**
+     * Divides two integers held as longs, giving the float nearest to the exact quotient.
+     *
+     * @throws ArithmeticException if the divisor is zero.
+     */
+    static double divideLong(long a, long b) {
+        if (Math.abs(a) <= MAX_EXACT_DOUBLE && Math.abs(b) <= MAX_EXACT_DOUBLE) {
+            if (b == 0) {
+                throw new ArithmeticException("division by zero");
+            }
+            return (double) a / (double) b; // Both operands are exact, so the quotient is rounded once.
+        }
+        return divideBig(BigInteger.valueOf(a), BigInteger.valueOf(b));
+    }
+
+    /**
+     * Divides two integers, giving the float nearest to the exact quotient, ties to even, as Python does.
+     *
+     * The quotient is taken on BigIntegers with two bits more than a double holds, the remainder is folded into the
+     * lowest of them as a sticky bit, and the result is rounded once, to fewer bits where it is subnormal.
+     *
+     * @throws ArithmeticException if the divisor is zero or the quotient is too large for a float.
+     */
+    private static double divideBig(BigInteger a, BigInteger b) {
+        if (b.signum() == 0) {
+            throw new ArithmeticException("division by zero");
+        }
+        boolean negative = (a.signum() < 0) != (b.signum() < 0); // 0 / -b is -0.0, as in Python
+        BigInteger dividend = a.abs();
+        BigInteger divisor = b.abs();
+        int lengths = dividend.bitLength() - divisor.bitLength(); // The quotient is in [2^(lengths-1), 2^(lengths+1))
+        double magnitude;
+        if (dividend.signum() == 0 || lengths < MIN_DOUBLE_EXPONENT - 2) {
+            magnitude = 0.0; // Below half the smallest subnormal
+        } else if (lengths > Double.MAX_EXPONENT + 1) {
+            magnitude = Double.POSITIVE_INFINITY;
+        } else {
+            int shift = DOUBLE_PRECISION + 2 - lengths; // Scales the quotient to 55 or 56 bits
+            BigInteger[] division = shift >= 0 ? dividend.shiftLeft(shift).divideAndRemainder(divisor)
+                    : dividend.divideAndRemainder(divisor.shiftLeft(-shift));
+            long quotient = division[0].longValue() | (division[1].signum() != 0 ? 1 : 0);
+            int length = 64 - Long.numberOfLeadingZeros(quotient);
+            int exponent = length - 1 - shift; // The exponent of the highest bit of the quotient
+            int dropped = length - Math.min(DOUBLE_PRECISION, exponent - MIN_DOUBLE_EXPONENT + 1);
+            long mantissa = quotient >> dropped;
+            long rest = quotient & ((1L << dropped) - 1);
+            long half = 1L << (dropped - 1);
+            if (rest > half || rest == half && (mantissa & 1) == 1) {
+                mantissa++;
+            }
+            magnitude = Math.scalb((double) mantissa, dropped - shift); // Exact, but for overflow to infinity
+        }
+        if (Double.isInfinite(magnitude)) {
+            throw new ArithmeticException("integer division result too large for a float");
+        }
+        return Math.copySign(magnitude, negative ? -1.0 : 1.0);
+    }
+
+    /**
+     * Applies a binary operator to two floats.
+     *
+     * @param op The binary operator to apply.
+     * @param a The left operand.
+     * @param b The right operand.
+     * @return The result of the operation.
+     * @throws ArithmeticException if the operation divides by zero, raises zero to a negative power, raises a
+     *         negative number to a fractional power, or overflows a power.
+     */
+    static double binaryDouble(Operator op, double a, double b) {
+        switch (op) {
+            case POW:
+                return powDouble(a, b);
+            case MOD:
+                return modDouble(a, b);
+            case DIV:
+                return divideDouble(a, b);
+            case FLOORDIV:
+                return floorDivDouble(a, b);
+            case MUL:
+                return a * b;
+            case ADD:
+                return a + b;
+            case SUB:
+                return a - b;
+            default:
+                throw new RuntimeException("Unknown operator " + op + ".");
+        }
+    }
+
+    /**
+     * Divides two floats, raising an error on division by zero as Python does instead of giving an infinity.
+     */
+    static double divideDouble(double a, double b) {
+        if (b == 0) {
+            throw new ArithmeticException("float division by zero");
+        }
+        return a / b;
+    }
+
+    /**
+     * Takes the remainder of two floats, with the sign of the divisor as in Python.
+     */
+    static double modDouble(double a, double b) {
+        if (b == 0) {
+            throw new ArithmeticException("float modulo");
+        }
+        double mod = a % b; // Java's % on doubles is C's fmod
+        if (mod != 0) {
+            if ((b < 0) != (mod < 0)) {
+                mod += b;
+            }
+        } else {
+            mod = Math.copySign(0.0, b);
+        }
+        return mod;
+    }
+
+    /**
+     * Divides two floats, rounding towards negative infinity, computed the way CPython does.
+     */
+    static double floorDivDouble(double a, double b) {
+        if (b == 0) {
+            throw new ArithmeticException("float floor division by zero");
+        }
+        double mod = a % b;
+        double div = (a - mod) / b;
+        if (mod != 0 && (b < 0) != (mod < 0)) {
+            div -= 1.0;
+        }
+        if (div == 0) {
+            return Math.copySign(0.0, a / b);
+        }
+        double floorDiv = Math.floor(div);
+        if (div - floorDiv > 0.5) {
+            floorDiv += 1.0;
+        }
+        return floorDiv;
+    }
+
+    /**
+     * Raises a float to a float power, raising the errors Python raises where Math.pow gives NaN or an infinity.
+     */
+    static double powDouble(double a, double b) {
+        if (a == 0 && b < 0) {
+            throw new ArithmeticException("0.0 cannot be raised to a negative power");
+        } else if (a < 0 && Double.isFinite(a) && Double.isFinite(b) && b != Math.rint(b)) {
+            throw new ArithmeticException("Negative numbers cannot be raised to a fractional power.");
+        }
+        double result = Math.pow(a, b);
+        if (Double.isInfinite(result) && Double.isFinite(a) && Double.isFinite(b)) {
+            throw new ArithmeticException("Numerical result out of range");
+        }
+        return result;
+    }
+
+    /**
+     * Applies a binary operator to two integers of any size.
+     *
+     * @param op The binary operator to apply.
+     * @param a The left operand.
+     * @param b The right operand.
+     * @return The result, as a Long if it fits in one and a BigInteger otherwise, or a Double for true division and
+     *         negative powers.
+     * @throws ArithmeticException if the operation divides by zero, or the exponent is too large.
+     */
+    static Object binaryBig(Operator op, BigInteger a, BigInteger b) {
+        switch (op) {
+            case POW:
+                if (b.signum() < 0) {
+                    return powDouble(toDouble(a), toDouble(b));
+                } else if (a.abs().compareTo(BigInteger.ONE) <= 0) {
+                    // 0, 1 and -1 stay small whatever the exponent.
+                    return normalize(b.signum() == 0 || (a.signum() < 0 && !b.testBit(0)) ? BigInteger.ONE : a);
+                } else if (b.bitLength() > 31) {
+                    throw new ArithmeticException("Exponent too large.");
+                }
+                return normalize(a.pow(b.intValue()));
+            case MOD: {
+                checkDivisor(b);
+                BigInteger remainder = a.remainder(b);
+                return normalize(remainder.signum() != 0 && remainder.signum() != b.signum() ? remainder.add(b) : remainder);
+            }
+            case DIV:
+                return divideBig(a, b);
+            case FLOORDIV: {
+                checkDivisor(b);
+                BigInteger[] quotientAndRemainder = a.divideAndRemainder(b);
+                BigInteger quotient = quotientAndRemainder[0];
+                if (quotientAndRemainder[1].signum() != 0 && quotientAndRemainder[1].signum() != b.signum()) {
+                    quotient = quotient.subtract(BigInteger.ONE);
+                }
+                return normalize(quotient);
+            }
+            case MUL:
+                return normalize(a.multiply(b));
+            case ADD:
+                return normalize(a.add(b));
+            case SUB:
+                return normalize(a.subtract(b));
+            default:
+                throw new RuntimeException("Unknown operator " + op + ".");
+        }
+    }
+
+    private static void checkDivisor(BigInteger b) {
+        if (b.signum() == 0) {
+            throw new ArithmeticException("integer division or modulo by zero");
+        }
+    }
+
+    /**
+     * Returns the canonical boxed form of an integer: a Long if it fits in one, the BigInteger otherwise.
+     *
+     * @param value The integer.
+     * @return The canonical boxed integer.
+     */
+    static Object normalize(BigInteger value) {
+        return value.bitLength() <= LONG_BITS ? (Object) value.longValue() : value;
+    }
+
+    /**
+     * Applies a binary operator to two boxed values, with the same results the interpreter produces.
+     * Booleans take part in arithmetic as 1 and 0. The long fast path is tried first.
+     *
+     * @param op The binary operator to apply.
+     * @param a The left operand.
+     * @param b The right operand.
+     * @return The boxed result of the operation.
+     * @throws ArithmeticException if the operation divides by zero, overflows a float, or the exponent is too large.
+     * @throws RuntimeException if either operand is not a number.
+     */
+    static Object binary(Operator op, Object a, Object b) {
+        if (!isNumber(a) || !isNumber(b)) {
+            throw new RuntimeException("Unsupported operand types for " + op + ".");
+        }
+        if (a instanceof Double || b instanceof Double) {
+            return binaryDouble(op, toDouble(a), toDouble(b));
+        } else if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            long left = Interpreter.valueOf(a);
+            long right = Interpreter.valueOf(b);
+            if (op == Operator.DIV) {
+                return divideLong(left, right);
+            }
+            try {
+                return binaryLong(op, left, right);
+            } catch (ArithmeticException e) {
+                return binaryBig(op, BigInteger.valueOf(left), BigInteger.valueOf(right));
+            }
+        }
+        return binaryBig(op, bigValue(a), bigValue(b));
+    }
+
+    /**
+     * Applies a unary operator to a boxed value, with the same result the interpreter produces.
+     *
+     * @param op The unary operator to apply.
+     * @param a The operand.
+     * @return The boxed result of the operation.
+     * @throws RuntimeException if the operator needs a number and the operand is not one.
+     *         Unary plus leaves any operand untouched.
+     */
+    static Object unary(Operator op, Object a) {
+        if (op == Operator.NOT) {
+            return !isTruthy(a);
+        } else if (op == Operator.POS) {
+            return a;
+        } else if (a instanceof Double) {
+            return -(Double) a;
+        } else if (!isInteger(a)) {
+            throw new RuntimeException("Unsupported operand type for " + op + ".");
+        } else if (a instanceof BigInteger) {
+            return normalize(((BigInteger) a).negate());
+        }
+        long value = Interpreter.valueOf(a);
+        try {
+            return unaryLong(op, value);
+        } catch (ArithmeticException e) {
+            return normalize(BigInteger.valueOf(value).negate());
+        }
+    }
+
+    /**
+     * Returns whether a boxed value is truthy, following Python: zero, False and None are false.
+     *
+     * @param a The value to test.
+     * @return true if the value is truthy, false otherwise.
+     */
+    static boolean isTruthy(Object a) {
+        if (a instanceof BigInteger) {
+            return ((BigInteger) a).signum() != 0;
+        }
+        return Interpreter.isTruthy(Interpreter.tagOf(a), Interpreter.valueOf(a), a);
+    }
+
+    /**
+     * Returns whether a boxed value takes part in integer arithmetic.
+     *
+     * @param a The value to test.
+     * @return true for integers of any size and for booleans.
+     */
+    static boolean isInteger(Object a) {
+        return a instanceof Long || a instanceof Integer || a instanceof BigInteger || a instanceof Boolean;
+    }
+
+    /**
+     * Returns whether a boxed value takes part in arithmetic.
+     *
+     * @param a The value to test.
+     * @return true for integers, booleans and floats.
+     */
+    static boolean isNumber(Object a) {
+        return isInteger(a) || a instanceof Double;
+    }
+
+    /**
+     * Converts a number to a float, as Python does when the other operand of an operation is a float.
+     *
+     * @param a The number, which must satisfy isNumber.
+     * @return The nearest float.
+     * @throws ArithmeticException if an integer is too large for a float.
+     */
+    static double toDouble(Object a) {
+        if (a instanceof Double) {
+            return (Double) a;
+        } else if (a instanceof BigInteger) {
+            double value = ((BigInteger) a).doubleValue();
+            if (Double.isInfinite(value)) {
+                throw new ArithmeticException("int too large to convert to float");
+            }
+            return value;
+        }
+        return Interpreter.valueOf(a);
+    }
+
+    private static BigInteger bigValue(Object a) {
+        return a instanceof BigInteger ? (BigInteger) a : BigInteger.valueOf(Interpreter.valueOf(a));
+    }
+}
@@ -0,0 +1,1008 @@
+import ast.AST.*;
+import ast.FlatAST;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ByteUtils.Operator;
+
+/**
+ * An execution tier that runs a syntax tree directly, without compiling it to bytecode.
+ *
+ * The ast.AST tree produced by the Parser is turned into a tree of executable nodes. Operation nodes start out
+ * uninitialized; the first time they run they look at the types of their operands and replace themselves with a
+ * node specialized for those types, such as IntAdd, FloatMul or BoolNot, whose execution is plain Java arithmetic on
+ * primitives. If a specialized node later sees an operand of another type, it replaces itself with a generic node
+ * that handles any value. Specializations are kept across runs, so a tree gets faster the more it is executed.
+ *
+ * Variables live in a frame of tagged primitive slots, like the operand stack of the Interpreter.
+ */
+class AstInterpreter {
+
+    /**
+     * Thrown by a typed execute method when the value produced is not of the requested type.
+     * Carries the value so that the caller can finish the operation generically without running anything twice.
+     */
+    static class UnexpectedResultException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final transient Object result; // The value that was actually produced
+
+        UnexpectedResultException(Object result) {
+            super(null, null, false, false);
+            this.result = result;
+        }
+    }
+
+    /**
+     * The variables of one execution, stored as tagged primitive slots.
+     */
+    static class Frame {
+        final byte[] tags; // Interpreter.INT, BOOL, FLOAT, OBJECT or UNBOUND
+        final long[] values; // The payload of INT, BOOL and FLOAT slots
+        final Object[] refs; // The payload of OBJECT slots
+        Object result; // The value of the last expression statement
+
+        Frame(int size) {
+            this.tags = new byte[size];
+            this.values = new long[size];
+            this.refs = new Object[size];
+            Arrays.fill(this.tags, Interpreter.UNBOUND);
+        }
+    }
+
+    /**
+     * An executable node. A node knows its parent so that it can replace itself in the tree.
+     */
+    abstract static class Node {
+        Node parent;
+
+        /**
+         * Replaces this node with another one in its parent.
+         */
+        <T extends Node> T replace(T replacement) {
+            replacement.parent = this.parent;
+            this.parent.replaceChild(this, replacement);
+            return replacement;
+        }
+
+        /**
+         * Swaps a child node for its replacement. Only nodes with children override this.
+         */
+        void replaceChild(Node child, Node replacement) {
+            throw new IllegalStateException(getClass().getSimpleName() + " has no children.");
+        }
+
+        <T extends Node> T adopt(T child) {
+            child.parent = this;
+            return child;
+        }
+    }
+
+    /**
+     * A node that produces a value.
+     */
+    abstract static class ExpressionNode extends Node {
+        /**
+         * Executes the node and returns its value boxed.
+         */
+        abstract Object executeGeneric(Frame frame);
+
+        /**
+         * Executes the node expecting an integer that fits in a long.
+         *
+         * @throws UnexpectedResultException carrying the value if it is not such an integer.
+         */
+        long executeLong(Frame frame) throws UnexpectedResultException {
+            Object value = executeGeneric(frame);
+            if (value instanceof Long) {
+                return (Long) value;
+            }
+            throw new UnexpectedResultException(value);
+        }
+
+        /**
+         * Executes the node expecting a float.
+         *
+         * @throws UnexpectedResultException carrying the value if it is not a float.
+         */
+        double executeDouble(Frame frame) throws UnexpectedResultException {
+            Object value = executeGeneric(frame);
+            if (value instanceof Double) {
+                return (Double) value;
+            }
+            throw new UnexpectedResultException(value);
+        }
+
+        /**
+         * Executes the node expecting a boolean.
+         *
+         * @throws UnexpectedResultException carrying the value if it is not a boolean.
+         */
+        boolean executeBool(Frame frame) throws UnexpectedResultException {
+            Object value = executeGeneric(frame);
+            if (value instanceof Boolean) {
+                return (Boolean) value;
+            }
+            throw new UnexpectedResultException(value);
+        }
+
+        /**
+         * Executes the node and returns whether its value is truthy.
+         */
+        boolean executeTruthy(Frame frame) {
+            return Arithmetic.isTruthy(executeGeneric(frame));
+        }
+    }
+
+    /**
+     * A node that is run for its effect.
+     */
+    abstract static class StatementNode extends Node {
+        abstract void execute(Frame frame);
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Statements
+
+    static class BlockNode extends StatementNode {
+        private final StatementNode[] statements;
+
+        BlockNode(List<StatementNode> statements) {
+            this.statements = statements.toArray(new StatementNode[0]);
+            for (StatementNode statement : this.statements) {
+                adopt(statement);
+            }
+        }
+
+        @Override
+        void execute(Frame frame) {
+            for (StatementNode statement : this.statements) {
+                statement.execute(frame);
+            }
+        }
+    }
+
+    static class AssignNode extends StatementNode {
+        private ExpressionNode value;
+        private final int[] slots; // The targets, in assignment order
+        private byte expected = Interpreter.INT; // The primitive kind the value had last time, INT or FLOAT
+
+        AssignNode(ExpressionNode value, int[] slots) {
+            this.value = adopt(value);
+            this.slots = slots;
+        }
+
+        @Override
+        void execute(Frame frame) {
+            byte tag = this.expected;
+            long primitive = 0;
+            Object ref = null;
+            // Ask for the kind of value that can be stored without boxing that was seen last.
+            try {
+                if (tag == Interpreter.FLOAT) {
+                    primitive = Double.doubleToRawLongBits(this.value.executeDouble(frame));
+                } else {
+                    primitive = this.value.executeLong(frame);
+                }
+            } catch (UnexpectedResultException e) {
+                tag = Interpreter.tagOf(e.result);
+                primitive = Interpreter.valueOf(e.result);
+                ref = tag == Interpreter.OBJECT ? e.result : null;
+                if (tag == Interpreter.INT || tag == Interpreter.FLOAT) {
+                    this.expected = tag;
+                }
+            }
+            for (int slot : this.slots) {
+                frame.tags[slot] = tag;
+                frame.values[slot] = primitive;
+                frame.refs[slot] = ref;
+            }
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            this.value = (ExpressionNode) replacement;
+        }
+    }
+
+    static class ExpressionStatementNode extends StatementNode {
+        private ExpressionNode expression;
+
+        ExpressionStatementNode(ExpressionNode expression) {
+            this.expression = adopt(expression);
+        }
+
+        @Override
+        void execute(Frame frame) {
+            frame.result = this.expression.executeGeneric(frame);
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            this.expression = (ExpressionNode) replacement;
+        }
+    }
+
+    static class IfNode extends StatementNode {
+        private ExpressionNode condition;
+        private final BlockNode body;
+
+        IfNode(ExpressionNode condition, BlockNode body) {
+            this.condition = adopt(condition);
+            this.body = adopt(body);
+        }
+
+        @Override
+        void execute(Frame frame) {
+            if (this.condition.executeTruthy(frame)) {
+                this.body.execute(frame);
+            }
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            this.condition = (ExpressionNode) replacement;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Leaves
+
+    static class ConstantNode extends ExpressionNode {
+        private final Object value;
+
+        ConstantNode(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            return this.value;
+        }
+    }
+
+    static class IntConstantNode extends ExpressionNode {
+        private final long value;
+
+        IntConstantNode(long value) {
+            this.value = value;
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            return this.value;
+        }
+
+        @Override
+        long executeLong(Frame frame) {
+            return this.value;
+        }
+
+        @Override
+        boolean executeTruthy(Frame frame) {
+            return this.value != 0;
+        }
+    }
+
+    static class FloatConstantNode extends ExpressionNode {
+        private final double value;
+
+        FloatConstantNode(double value) {
+            this.value = value;
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            return this.value;
+        }
+
+        @Override
+        double executeDouble(Frame frame) {
+            return this.value;
+        }
+
+        @Override
+        boolean executeTruthy(Frame frame) {
+            return this.value != 0;
+        }
+    }
+
+    static class BoolConstantNode extends ExpressionNode {
+        private final boolean value;
+
+        BoolConstantNode(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            return this.value;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return this.value;
+        }
+
+        @Override
+        boolean executeTruthy(Frame frame) {
+            return this.value;
+        }
+    }
+
+    /**
+     * Reads a variable from its frame slot. The slot tag is checked on every read, so this node never needs rewriting.
+     */
+    static class ReadNode extends ExpressionNode {
+        private final int slot;
+        private final Object name;
+
+        ReadNode(int slot, Object name) {
+            this.slot = slot;
+            this.name = name;
+        }
+
+        private byte tag(Frame frame) {
+            byte tag = frame.tags[this.slot];
+            if (tag == Interpreter.UNBOUND) {
+                throw new RuntimeException("Name '" + this.name + "' is not defined.");
+            }
+            return tag;
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            return Interpreter.box(tag(frame), frame.values[this.slot], frame.refs[this.slot]);
+        }
+
+        @Override
+        long executeLong(Frame frame) throws UnexpectedResultException {
+            if (tag(frame) == Interpreter.INT) {
+                return frame.values[this.slot];
+            }
+            throw new UnexpectedResultException(executeGeneric(frame));
+        }
+
+        @Override
+        double executeDouble(Frame frame) throws UnexpectedResultException {
+            if (tag(frame) == Interpreter.FLOAT) {
+                return Double.longBitsToDouble(frame.values[this.slot]);
+            }
+            throw new UnexpectedResultException(executeGeneric(frame));
+        }
+
+        @Override
+        boolean executeBool(Frame frame) throws UnexpectedResultException {
+            if (tag(frame) == Interpreter.BOOL) {
+                return frame.values[this.slot] != 0;
+            }
+            throw new UnexpectedResultException(executeGeneric(frame));
+        }
+
+        @Override
+        boolean executeTruthy(Frame frame) {
+            return Interpreter.isTruthy(tag(frame), frame.values[this.slot], frame.refs[this.slot]);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Binary operations
+
+    /**
+     * A binary operation that has not run yet. On its first run it specializes on the operand types it sees.
+     */
+    static class UninitializedBinaryNode extends ExpressionNode {
+        final Operator op;
+        ExpressionNode left;
+        ExpressionNode right;
+
+        UninitializedBinaryNode(Operator op, ExpressionNode left, ExpressionNode right) {
+            this.op = op;
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            Object leftValue = this.left.executeGeneric(frame);
+            Object rightValue = this.right.executeGeneric(frame);
+            if (leftValue instanceof Long && rightValue instanceof Long && this.op == Operator.DIV) {
+                replace(new FloatDiv(this.left, this.right, true, true)); // True division of integers gives a float
+            } else if (leftValue instanceof Long && rightValue instanceof Long) {
+                replace(IntBinaryNode.create(this.op, this.left, this.right));
+            } else if (FloatBinaryNode.accepts(leftValue, rightValue)) {
+                replace(FloatBinaryNode.create(this.op, this.left, this.right, leftValue instanceof Long, rightValue instanceof Long));
+            } else {
+                replace(new GenericBinaryNode(this.op, this.left, this.right));
+            }
+            return Arithmetic.binary(this.op, leftValue, rightValue);
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            if (child == this.left) {
+                this.left = (ExpressionNode) replacement;
+            } else {
+                this.right = (ExpressionNode) replacement;
+            }
+        }
+    }
+
+    /**
+     * A binary operation specialized for two integer operands.
+     */
+    abstract static class IntBinaryNode extends UninitializedBinaryNode {
+        IntBinaryNode(Operator op, ExpressionNode left, ExpressionNode right) {
+            super(op, left, right);
+        }
+
+        static IntBinaryNode create(Operator op, ExpressionNode left, ExpressionNode right) {
+            switch (op) {
+                case ADD: return new IntAdd(left, right);
+                case SUB: return new IntSub(left, right);
+                case MUL: return new IntMul(left, right);
+                case FLOORDIV: return new IntFloorDiv(left, right);
+                case MOD: return new IntMod(left, right);
+                case POW: return new IntPow(left, right);
+                default: throw new RuntimeException("Unknown operator " + op + ".");
+            }
+        }
+
+        /**
+         * Computes the operation on two longs.
+         *
+         * @throws ArithmeticException if the result does not fit in a long or the operation divides by zero.
+         */
+        abstract long compute(long left, long right);
+
+        @Override
+        long executeLong(Frame frame) throws UnexpectedResultException {
+            long leftValue;
+            try {
+                leftValue = this.left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(despecialize(e.result, this.right.executeGeneric(frame)));
+            }
+            long rightValue;
+            try {
+                rightValue = this.right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(despecialize(leftValue, e.result));
+            }
+            try {
+                return compute(leftValue, rightValue);
+            } catch (ArithmeticException e) {
+                // The operands still have the expected types, so the node stays specialized; the boxed operation
+                // promotes the result to a BigInteger or raises the error.
+                throw new UnexpectedResultException(Arithmetic.binary(this.op, leftValue, rightValue));
+            }
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            try {
+                return executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        boolean executeTruthy(Frame frame) {
+            try {
+                return executeLong(frame) != 0;
+            } catch (UnexpectedResultException e) {
+                return Arithmetic.isTruthy(e.result);
+            }
+        }
+
+        /**
+         * Replaces this node with a generic one and finishes the current operation on the given operands.
+         */
+        private Object despecialize(Object leftValue, Object rightValue) {
+            replace(new GenericBinaryNode(this.op, this.left, this.right));
+            return Arithmetic.binary(this.op, leftValue, rightValue);
+        }
+    }
+
+    static class IntAdd extends IntBinaryNode {
+        IntAdd(ExpressionNode left, ExpressionNode right) {
+            super(Operator.ADD, left, right);
+        }
+
+        @Override
+        long compute(long left, long right) {
+            return Math.addExact(left, right);
+        }
+    }
+
+    static class IntSub extends IntBinaryNode {
+        IntSub(ExpressionNode left, ExpressionNode right) {
+            super(Operator.SUB, left, right);
+        }
+
+        @Override
+        long compute(long left, long right) {
+            return Math.subtractExact(left, right);
+        }
+    }
+
+    static class IntMul extends IntBinaryNode {
+        IntMul(ExpressionNode left, ExpressionNode right) {
+            super(Operator.MUL, left, right);
+        }
+
+        @Override
+        long compute(long left, long right) {
+            return Math.multiplyExact(left, right);
+        }
+    }
+
+    static class IntFloorDiv extends IntBinaryNode {
+        IntFloorDiv(ExpressionNode left, ExpressionNode right) {
+            super(Operator.FLOORDIV, left, right);
+        }
+
+        @Override
+        long compute(long left, long right) {
+            return Arithmetic.floorDivExact(left, right);
+        }
+    }
+
+    static class IntMod extends IntBinaryNode {
+        IntMod(ExpressionNode left, ExpressionNode right) {
+            super(Operator.MOD, left, right);
+        }
+
+        @Override
+        long compute(long left, long right) {
+            return Math.floorMod(left, right);
+        }
+    }
+
+    static class IntPow extends IntBinaryNode {
+        IntPow(ExpressionNode left, ExpressionNode right) {
+            super(Operator.POW, left, right);
+        }
+
+        @Override
+        long compute(long left, long right) {
+            return Arithmetic.powExact(left, right);
+        }
+    }
+
+    /**
+     * A binary operation specialized for float operands, either of which may instead be an integer that is converted
+     * to a float. Each operand is read unboxed as the kind it had when the node specialized.
+     */
+    abstract static class FloatBinaryNode extends UninitializedBinaryNode {
+        private final boolean leftInt; // Whether the left operand is an integer rather than a float
+        private final boolean rightInt; // Whether the right operand is an integer rather than a float
+
+        FloatBinaryNode(Operator op, ExpressionNode left, ExpressionNode right, boolean leftInt, boolean rightInt) {
+            super(op, left, right);
+            this.leftInt = leftInt;
+            this.rightInt = rightInt;
+        }
+
+        /**
+         * Returns whether a float node can take the given operands: floats, or a float and an integer.
+         */
+        static boolean accepts(Object leftValue, Object rightValue) {
+            return (leftValue instanceof Double && (rightValue instanceof Double || rightValue instanceof Long))
+                    || (leftValue instanceof Long && rightValue instanceof Double);
+        }
+
+        static FloatBinaryNode create(Operator op, ExpressionNode left, ExpressionNode right, boolean leftInt, boolean rightInt) {
+            switch (op) {
+                case ADD: return new FloatAdd(left, right, leftInt, rightInt);
+                case SUB: return new FloatSub(left, right, leftInt, rightInt);
+                case MUL: return new FloatMul(left, right, leftInt, rightInt);
+                case DIV: return new FloatDiv(left, right, leftInt, rightInt);
+                default: return new FloatOp(op, left, right, leftInt, rightInt);
+            }
+        }
+
+        /**
+         * Computes the operation on two floats.
+         *
+         * @throws ArithmeticException if the operation divides by zero or overflows a power.
+         */
+        abstract double compute(double left, double right);
+
+        @Override
+        double executeDouble(Frame frame) throws UnexpectedResultException {
+            long leftLong = 0;
+            double leftValue;
+            try {
+                if (this.leftInt) {
+                    leftLong = this.left.executeLong(frame);
+                    leftValue = leftLong;
+                } else {
+                    leftValue = this.left.executeDouble(frame);
+                }
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(despecialize(e.result, this.right.executeGeneric(frame)));
+            }
+            if (this.rightInt) {
+                long rightLong;
+                try {
+                    rightLong = this.right.executeLong(frame);
+                } catch (UnexpectedResultException e) {
+                    throw new UnexpectedResultException(despecialize(this.leftInt ? (Object) leftLong : (Object) leftValue, e.result));
+                }
+                // Two integers are only divided, and their quotient is computed exactly before rounding.
+                return this.leftInt ? Arithmetic.divideLong(leftLong, rightLong) : compute(leftValue, rightLong);
+            }
+            double rightValue;
+            try {
+                rightValue = this.right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(despecialize(this.leftInt ? (Object) leftLong : (Object) leftValue, e.result));
+            }
+            return compute(leftValue, rightValue);
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        boolean executeTruthy(Frame frame) {
+            try {
+                return executeDouble(frame) != 0;
+            } catch (UnexpectedResultException e) {
+                return Arithmetic.isTruthy(e.result);
+            }
+        }
+
+        /**
+         * Replaces this node with a generic one and finishes the current operation on the given operands.
+         */
+        private Object despecialize(Object leftValue, Object rightValue) {
+            replace(new GenericBinaryNode(this.op, this.left, this.right));
+            return Arithmetic.binary(this.op, leftValue, rightValue);
+        }
+    }
+
+    static class FloatAdd extends FloatBinaryNode {
+        FloatAdd(ExpressionNode left, ExpressionNode right, boolean leftInt, boolean rightInt) {
+            super(Operator.ADD, left, right, leftInt, rightInt);
+        }
+
+        @Override
+        double compute(double left, double right) {
+            return left + right;
+        }
+    }
+
+    static class FloatSub extends FloatBinaryNode {
+        FloatSub(ExpressionNode left, ExpressionNode right, boolean leftInt, boolean rightInt) {
+            super(Operator.SUB, left, right, leftInt, rightInt);
+        }
+
+        @Override
+        double compute(double left, double right) {
+            return left - right;
+        }
+    }
+
+    static class FloatMul extends FloatBinaryNode {
+        FloatMul(ExpressionNode left, ExpressionNode right, boolean leftInt, boolean rightInt) {
+            super(Operator.MUL, left, right, leftInt, rightInt);
+        }
+
+        @Override
+        double compute(double left, double right) {
+            return left * right;
+        }
+    }
+
+    static class FloatDiv extends FloatBinaryNode {
+        FloatDiv(ExpressionNode left, ExpressionNode right, boolean leftInt, boolean rightInt) {
+            super(Operator.DIV, left, right, leftInt, rightInt);
+        }
+
+        @Override
+        double compute(double left, double right) {
+            return Arithmetic.divideDouble(left, right);
+        }
+    }
+
+    /**
+     * Floor division, modulo and power on floats, which are rare enough to share one node.
+     */
+    static class FloatOp extends FloatBinaryNode {
+        FloatOp(Operator op, ExpressionNode left, ExpressionNode right, boolean leftInt, boolean rightInt) {
+            super(op, left, right, leftInt, rightInt);
+        }
+
+        @Override
+        double compute(double left, double right) {
+            return Arithmetic.binaryDouble(this.op, left, right);
+        }
+    }
+
+    /**
+     * A binary operation on operands of any type.
+     */
+    static class GenericBinaryNode extends UninitializedBinaryNode {
+        GenericBinaryNode(Operator op, ExpressionNode left, ExpressionNode right) {
+            super(op, left, right);
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            return Arithmetic.binary(this.op, this.left.executeGeneric(frame), this.right.executeGeneric(frame));
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Unary operations
+
+    /**
+     * A unary operation that has not run yet. On its first run it specializes on the operand type it sees.
+     */
+    static class UninitializedUnaryNode extends ExpressionNode {
+        final Operator op;
+        ExpressionNode value;
+
+        UninitializedUnaryNode(Operator op, ExpressionNode value) {
+            this.op = op;
+            this.value = adopt(value);
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            Object operand = this.value.executeGeneric(frame);
+            if (this.op == Operator.NEG && operand instanceof Long) {
+                replace(new IntNeg(this.value));
+            } else if (this.op == Operator.NEG && operand instanceof Double) {
+                replace(new FloatNeg(this.value));
+            } else if (this.op == Operator.NOT && operand instanceof Boolean) {
+                replace(new BoolNot(this.value));
+            } else {
+                replace(new GenericUnaryNode(this.op, this.value));
+            }
+            return Arithmetic.unary(this.op, operand);
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            this.value = (ExpressionNode) replacement;
+        }
+
+        /**
+         * Replaces this node with a generic one and finishes the current operation on the given operand.
+         */
+        Object despecialize(Object operand) {
+            replace(new GenericUnaryNode(this.op, this.value));
+            return Arithmetic.unary(this.op, operand);
+        }
+    }
+
+    static class IntNeg extends UninitializedUnaryNode {
+        IntNeg(ExpressionNode value) {
+            super(Operator.NEG, value);
+        }
+
+        @Override
+        long executeLong(Frame frame) throws UnexpectedResultException {
+            long operand;
+            try {
+                operand = this.value.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(despecialize(e.result));
+            }
+            if (operand == Long.MIN_VALUE) {
+                throw new UnexpectedResultException(Arithmetic.unary(Operator.NEG, operand)); // Needs a BigInteger
+            }
+            return -operand;
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            try {
+                return executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+    }
+
+    static class FloatNeg extends UninitializedUnaryNode {
+        FloatNeg(ExpressionNode value) {
+            super(Operator.NEG, value);
+        }
+
+        @Override
+        double executeDouble(Frame frame) throws UnexpectedResultException {
+            try {
+                return -this.value.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(despecialize(e.result));
+            }
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+    }
+
+    static class BoolNot extends UninitializedUnaryNode {
+        BoolNot(ExpressionNode value) {
+            super(Operator.NOT, value);
+        }
+
+        @Override
+        boolean executeBool(Frame frame) throws UnexpectedResultException {
+            try {
+                return !this.value.executeBool(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(despecialize(e.result));
+            }
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            try {
+                return executeBool(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        boolean executeTruthy(Frame frame) {
+            try {
+                return executeBool(frame);
+            } catch (UnexpectedResultException e) {
+                return Arithmetic.isTruthy(e.result);
+            }
+        }
+    }
+
+    /**
+     * A unary operation on an operand of any type.
+     */
+    static class GenericUnaryNode extends UninitializedUnaryNode {
+        GenericUnaryNode(Operator op, ExpressionNode value) {
+            super(op, value);
+        }
+
+        @Override
+        Object executeGeneric(Frame frame) {
+            return Arithmetic.unary(this.op, this.value.executeGeneric(frame));
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+
+    private static final int MAX_DEPTH = 1000; // The deepest folded tree run, as the nodes recurse on their children
+
+    private final Map<Object, Integer> slots; // The frame slot of each variable, in order of first use
+    private final BlockNode root;
+    private Frame lastFrame;
+
+    /**
+     * Builds the executable node tree for a syntax tree. The tree is first simplified by the ConstantFolder, and a
+     * folded tree nested more than MAX_DEPTH deep is rejected before the nodes, which build and execute their
+     * children recursively, are built.
+     *
+     * @param tree The Program to execute.
+     * @throws RuntimeException if the program is nested too deeply.
+     */
+    public AstInterpreter(TreeNode tree) {
+        FlatAST folded = new ConstantFolder().fold(FlatAST.of(tree));
+        int depth = folded.depth(folded.root());
+        if (depth > MAX_DEPTH) {
+            throw new RuntimeException("Program is nested " + depth + " deep, more than the " + MAX_DEPTH + " the AST interpreter runs.");
+        }
+        this.slots = new LinkedHashMap<>();
+        this.root = buildBlock(((Program) folded.toTree()).getStatements());
+    }
+
+    /**
+     * Runs the program once, with all variables unassigned.
+     *
+     * @return The value of the last expression statement executed, or null.
+     */
+    public Object execute() {
+        Frame frame = new Frame(this.slots.size());
+        this.root.execute(frame);
+        this.lastFrame = frame;
+        return frame.result;
+    }
+
+    /**
+     * Returns the variables assigned by the most recent run, in slot order.
+     *
+     * @return A map from variable name to value.
+     */
+    public Map<Object, Object> getScope() {
+        Map<Object, Object> scope = new LinkedHashMap<>();
+        List<Object> names = new ArrayList<>(this.slots.keySet());
+        for (int slot = 0; this.lastFrame != null && slot < names.size(); slot++) {
+            if (this.lastFrame.tags[slot] != Interpreter.UNBOUND) {
+                scope.put(names.get(slot), Interpreter.box(this.lastFrame.tags[slot], this.lastFrame.values[slot], this.lastFrame.refs[slot]));
+            }
+        }
+        return scope;
+    }
+
+    private int slotOf(Object name) {
+        Integer slot = this.slots.get(name);
+        if (slot == null) {
+            slot = this.slots.size();
+            this.slots.put(name, slot);
+        }
+        return slot;
+    }
+
+    private BlockNode buildBlock(List<Statement> statements) {
+        List<StatementNode> nodes = new ArrayList<>();
+        for (Statement statement : statements) {
+            nodes.add(buildStatement(statement));
+        }
+        return new BlockNode(nodes);
+    }
+
+    private StatementNode buildStatement(Statement statement) {
+        if (statement instanceof Assignment) {
+            Assignment assignment = (Assignment) statement;
+            ExpressionNode value = buildExpression(assignment.getValue());
+            int[] targets = new int[assignment.getTargets().size()];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = slotOf(assignment.getTargets().get(i).getName());
+            }
+            return new AssignNode(value, targets);
+        } else if (statement instanceof ExprStatement) {
+            return new ExpressionStatementNode(buildExpression(((ExprStatement) statement).getExpr()));
+        } else if (statement instanceof Conditional) {
+            Conditional conditional = (Conditional) statement;
+            ExpressionNode condition = buildExpression(conditional.getCondition());
+            return new IfNode(condition, buildBlock(((Body) conditional.getBody()).getStatements()));
+        }
+        throw new RuntimeException("Can't execute " + statement.getClass().getSimpleName());
+    }
+
+    private ExpressionNode buildExpression(TreeNode expression) {
+        if (expression instanceof Constant) {
+            Object value = ((Constant) expression).getValue();
+            if (value instanceof Long) {
+                return new IntConstantNode((Long) value);
+            } else if (value instanceof Double) {
+                return new FloatConstantNode((Double) value);
+            } else if (value instanceof Boolean) {
+                return new BoolConstantNode((Boolean) value);
+            }
+            return new ConstantNode(value);
+        } else if (expression instanceof Variable) {
+            Object name = ((Variable) expression).getName();
+            return new ReadNode(slotOf(name), name);
+        } else if (expression instanceof UnaryOp) {
+            UnaryOp unary = (UnaryOp) expression;
+            return new UninitializedUnaryNode(Operator.unaryFromSymbol(unary.getOp()), buildExpression(unary.getValue()));
+        } else if (expression instanceof BinaryOp) {
+            BinaryOp binary = (BinaryOp) expression;
+            ExpressionNode left = buildExpression(binary.getLeft());
+            ExpressionNode right = buildExpression(binary.getRight());
+            return new UninitializedBinaryNode(Operator.binaryFromSymbol(binary.getOp()), left, right);
+        }
+        throw new RuntimeException("Can't execute " + expression.getClass().getSimpleName());
+    }
+}
@@ -11,7 +11,24 @@ public enum BytecodeType {
     SAVE, // Represents saving a value to a variable
     LOAD, // Represents loading a value from a variable
     COPY, // Represents copying a value
-    POP_JUMP_IF_FALSE; // Represents popping the top of the stack and jumping if it is false
+    POP_JUMP_IF_FALSE, // Represents popping the top of the stack and jumping if it is false
+    LOAD_FAST, // Represents loading a value from a variable slot in the frame
+    STORE_FAST, // Represents saving a value to a variable slot in the frame
+    LOAD_CONST_BINOP, // Represents LOAD_FAST, PUSH and BINARYOP fused into one instruction
+    LOAD_LOAD_BINOP, // Represents LOAD_FAST, LOAD_FAST and BINARYOP fused into one instruction
+    BINOP_STORE_FAST, // Represents BINARYOP and STORE_FAST fused into one instruction
+    BINARYOP_ADD_INT, // Represents a BINARYOP + quickened for two integer operands
+    BINARYOP_SUB_INT, // Represents a BINARYOP - quickened for two integer operands
+    BINARYOP_MUL_INT, // Represents a BINARYOP * quickened for two integer operands
+    BINARYOP_FLOORDIV_INT, // Represents a BINARYOP // quickened for two integer operands
+    BINARYOP_MOD_INT, // Represents a BINARYOP % quickened for two integer operands
+    BINARYOP_ADD_FLOAT, // Represents a BINARYOP + quickened for float operands, one of which may be an integer
+    BINARYOP_SUB_FLOAT, // Represents a BINARYOP - quickened for float operands, one of which may be an integer
+    BINARYOP_MUL_FLOAT, // Represents a BINARYOP * quickened for float operands, one of which may be an integer
+    BINARYOP_DIV_FLOAT, // Represents a BINARYOP / quickened for integer or float operands
+    UNARYOP_NEG_INT, // Represents a UNARYOP - quickened for an integer operand
+    UNARYOP_NEG_FLOAT, // Represents a UNARYOP - quickened for a float operand
+    UNARYOP_NOT_BOOL; // Represents a UNARYOP not quickened for a boolean operand
 
     /**
      * Returns a string representation of the bytecode type.
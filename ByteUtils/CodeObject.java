@@ -0,0 +1,325 @@
+package ByteUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled program in packed form, ready to be run by the interpreter.
+ *
+ * Every instruction starts with an int whose low 8 bits hold the ordinal of its BytecodeType and whose
+ * remaining 24 bits hold its operand. Operands index into a deduplicated constant pool (PUSH),
+ * a name table (SAVE, LOAD), the variable slots of the frame (LOAD_FAST, STORE_FAST), the Operator
+ * enum (BINARYOP, UNARYOP), or give a relative jump distance in words (POP_JUMP_IF_FALSE).
+ * Fused superinstructions carry their operator in the first word and are followed by extra operand
+ * words: LOAD_CONST_BINOP by a slot and a constant index, LOAD_LOAD_BINOP by two slots and
+ * BINOP_STORE_FAST by a slot.
+ * The variable names table maps each slot back to its name so the final scope can be reported.
+ * Each interpreter quickens its own copy of the code array: a BINARYOP or UNARYOP word may be replaced by a typed
+ * variant such as BINARYOP_ADD_INT, keeping its operand, and back again. The CodeObject itself is never written
+ * after assembly, so interpreters on several threads share it without writing to the same memory.
+ * The list-of-Bytecode form is kept as a disassembly view.
+ */
+public class CodeObject {
+    public static final int OPCODE_BITS = 8; // Number of low bits holding the opcode
+    public static final int OPCODE_MASK = (1 << OPCODE_BITS) - 1; // Mask selecting the opcode
+    public static final int MAX_OPERAND = (1 << (32 - OPCODE_BITS - 1)) - 1; // Largest operand that fits a word
+
+    private static final BytecodeType[] OPCODES = BytecodeType.values();
+
+    private final int[] code; // The packed instructions
+    private final Object[] constants; // The constant pool referenced by PUSH
+    private final Object[] names; // The name table referenced by SAVE and LOAD
+    private final Object[] variableNames; // The name of each slot referenced by LOAD_FAST and STORE_FAST
+
+    /**
+     * Constructs a new CodeObject from its packed parts.
+     *
+     * @param code The packed instructions.
+     * @param constants The constant pool.
+     * @param names The name table.
+     * @param variableNames The name of each variable slot.
+     */
+    public CodeObject(int[] code, Object[] constants, Object[] names, Object[] variableNames) {
+        this.code = code;
+        this.constants = constants;
+        this.names = names;
+        this.variableNames = variableNames;
+    }
+
+    /**
+     * Packs a sequence of bytecodes that uses no variable slots into a CodeObject.
+     *
+     * @param bytecodes The bytecodes to pack.
+     * @return The packed CodeObject.
+     * @throws RuntimeException if an operand does not fit in an instruction word.
+     */
+    public static CodeObject assemble(List<Bytecode> bytecodes) {
+        return assemble(bytecodes, new ArrayList<>());
+    }
+
+    /**
+     * Packs a sequence of bytecodes into a CodeObject, deduplicating constants and names.
+     *
+     * @param bytecodes The bytecodes to pack.
+     * @param variableNames The name of each variable slot referenced by LOAD_FAST and STORE_FAST.
+     * @return The packed CodeObject.
+     * @throws RuntimeException if an operand does not fit in an instruction word.
+     */
+    public static CodeObject assemble(List<Bytecode> bytecodes, List<Object> variableNames) {
+        // Jumps count instructions in the Bytecode form but words in the packed form.
+        int[] wordOffsets = new int[bytecodes.size() + 1];
+        for (int i = 0; i < bytecodes.size(); i++) {
+            wordOffsets[i + 1] = wordOffsets[i] + width(bytecodes.get(i).getType());
+        }
+        int[] code = new int[wordOffsets[bytecodes.size()]];
+        List<Object> constants = new ArrayList<>();
+        Map<Object, Integer> constantIndexes = new HashMap<>();
+        List<Object> names = new ArrayList<>();
+        Map<Object, Integer> nameIndexes = new HashMap<>();
+
+        for (int i = 0; i < bytecodes.size(); i++) {
+            Bytecode bc = bytecodes.get(i);
+            int at = wordOffsets[i];
+            int operand;
+            switch (bc.getType()) {
+                case PUSH:
+                    operand = intern(bc.getValue(), constants, constantIndexes);
+                    break;
+                case SAVE:
+                case LOAD:
+                    operand = intern(bc.getValue(), names, nameIndexes);
+                    break;
+                case BINARYOP:
+                case BINARYOP_ADD_INT:
+                case BINARYOP_SUB_INT:
+                case BINARYOP_MUL_INT:
+                case BINARYOP_FLOORDIV_INT:
+                case BINARYOP_MOD_INT:
+                case BINARYOP_ADD_FLOAT:
+                case BINARYOP_SUB_FLOAT:
+                case BINARYOP_MUL_FLOAT:
+                case BINARYOP_DIV_FLOAT:
+                    operand = Operator.binaryFromSymbol((String) bc.getValue()).ordinal();
+                    break;
+                case UNARYOP:
+                case UNARYOP_NEG_INT:
+                case UNARYOP_NEG_FLOAT:
+                case UNARYOP_NOT_BOOL:
+                    operand = Operator.unaryFromSymbol((String) bc.getValue()).ordinal();
+                    break;
+                case POP_JUMP_IF_FALSE:
+                    operand = wordOffsets[i + (Integer) bc.getValue()] - at;
+                    break;
+                case LOAD_FAST:
+                case STORE_FAST:
+                    operand = (Integer) bc.getValue();
+                    break;
+                case LOAD_CONST_BINOP: {
+                    List<?> operands = (List<?>) bc.getValue();
+                    operand = Operator.binaryFromSymbol((String) operands.get(2)).ordinal();
+                    code[at + 1] = (Integer) operands.get(0);
+                    code[at + 2] = intern(operands.get(1), constants, constantIndexes);
+                    break;
+                }
+                case LOAD_LOAD_BINOP: {
+                    List<?> operands = (List<?>) bc.getValue();
+                    operand = Operator.binaryFromSymbol((String) operands.get(2)).ordinal();
+                    code[at + 1] = (Integer) operands.get(0);
+                    code[at + 2] = (Integer) operands.get(1);
+                    break;
+                }
+                case BINOP_STORE_FAST: {
+                    List<?> operands = (List<?>) bc.getValue();
+                    operand = Operator.binaryFromSymbol((String) operands.get(0)).ordinal();
+                    code[at + 1] = (Integer) operands.get(1);
+                    break;
+                }
+                default:
+                    operand = 0;
+            }
+            code[at] = encode(bc.getType(), operand);
+        }
+        return new CodeObject(code, constants.toArray(), names.toArray(), variableNames.toArray());
+    }
+
+    /**
+     * Returns the index of a value in a pool, appending it if it is not there yet.
+     */
+    private static int intern(Object value, List<Object> pool, Map<Object, Integer> indexes) {
+        Integer index = indexes.get(value);
+        if (index == null) {
+            index = pool.size();
+            pool.add(value);
+            indexes.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of words an instruction of the given type occupies.
+     *
+     * @param type The type of the instruction.
+     * @return The width of the instruction in words.
+     */
+    public static int width(BytecodeType type) {
+        switch (type) {
+            case LOAD_CONST_BINOP:
+            case LOAD_LOAD_BINOP:
+                return 3;
+            case BINOP_STORE_FAST:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Packs an opcode and its operand into an instruction word.
+     *
+     * @param type The type of the instruction.
+     * @param operand The operand of the instruction.
+     * @return The packed instruction word.
+     * @throws RuntimeException if the operand does not fit in an instruction word.
+     */
+    public static int encode(BytecodeType type, int operand) {
+        if (operand > MAX_OPERAND || operand < -MAX_OPERAND - 1) {
+            throw new RuntimeException("Operand " + operand + " of " + type + " does not fit in an instruction.");
+        }
+        return type.ordinal() | (operand << OPCODE_BITS);
+    }
+
+    /**
+     * Returns the type of a packed instruction word.
+     *
+     * @param word The instruction word.
+     * @return The BytecodeType of the instruction.
+     */
+    public static BytecodeType opcode(int word) {
+        return OPCODES[word & OPCODE_MASK];
+    }
+
+    /**
+     * Returns the (signed) operand of a packed instruction word.
+     *
+     * @param word The instruction word.
+     * @return The operand of the instruction.
+     */
+    public static int operand(int word) {
+        return word >> OPCODE_BITS;
+    }
+
+    /**
+     * Unpacks the instructions back into Bytecode objects, for printing and debugging.
+     *
+     * @return The list of bytecodes this CodeObject was assembled from.
+     */
+    public List<Bytecode> disassemble() {
+        // Map word offsets back to instruction indexes so jumps can be translated.
+        int[] instructionIndexes = new int[code.length + 1];
+        int count = 0;
+        for (int at = 0; at < code.length; at += width(opcode(code[at]))) {
+            instructionIndexes[at] = count++;
+        }
+        instructionIndexes[code.length] = count;
+
+        List<Bytecode> bytecodes = new ArrayList<>(count);
+        for (int at = 0; at < code.length; at += width(opcode(code[at]))) {
+            int word = code[at];
+            BytecodeType type = opcode(word);
+            int operand = operand(word);
+            switch (type) {
+                case PUSH:
+                    bytecodes.add(new Bytecode(type, constants[operand]));
+                    break;
+                case SAVE:
+                case LOAD:
+                    bytecodes.add(new Bytecode(type, names[operand]));
+                    break;
+                case BINARYOP:
+                case UNARYOP:
+                case BINARYOP_ADD_INT:
+                case BINARYOP_SUB_INT:
+                case BINARYOP_MUL_INT:
+                case BINARYOP_FLOORDIV_INT:
+                case BINARYOP_MOD_INT:
+                case BINARYOP_ADD_FLOAT:
+                case BINARYOP_SUB_FLOAT:
+                case BINARYOP_MUL_FLOAT:
+                case BINARYOP_DIV_FLOAT:
+                case UNARYOP_NEG_INT:
+                case UNARYOP_NEG_FLOAT:
+                case UNARYOP_NOT_BOOL:
+                    bytecodes.add(new Bytecode(type, Operator.fromOrdinal(operand).getSymbol()));
+                    break;
+                case POP_JUMP_IF_FALSE:
+                    bytecodes.add(new Bytecode(type, instructionIndexes[at + operand] - instructionIndexes[at]));
+                    break;
+                case LOAD_FAST:
+                case STORE_FAST:
+                    bytecodes.add(new Bytecode(type, operand));
+                    break;
+                case LOAD_CONST_BINOP:
+                    bytecodes.add(new Bytecode(type, List.of(code[at + 1], constants[code[at + 2]], Operator.fromOrdinal(operand).getSymbol())));
+                    break;
+                case LOAD_LOAD_BINOP:
+                    bytecodes.add(new Bytecode(type, List.of(code[at + 1], code[at + 2], Operator.fromOrdinal(operand).getSymbol())));
+                    break;
+                case BINOP_STORE_FAST:
+                    bytecodes.add(new Bytecode(type, List.of(Operator.fromOrdinal(operand).getSymbol(), code[at + 1])));
+                    break;
+                default:
+                    bytecodes.add(new Bytecode(type));
+            }
+        }
+        return bytecodes;
+    }
+
+    /**
+     * Returns the packed instructions, as a sequence of words.
+     *
+     * @return The packed instructions.
+     */
+    public int[] getCode() {
+        return code;
+    }
+
+    /**
+     * Returns the constant pool.
+     *
+     * @return The constant pool.
+     */
+    public Object[] getConstants() {
+        return constants;
+    }
+
+    /**
+     * Returns the name table.
+     *
+     * @return The name table.
+     */
+    public Object[] getNames() {
+        return names;
+    }
+
+    /**
+     * Returns the variable names table, indexed by slot.
+     *
+     * @return The name of each variable slot.
+     */
+    public Object[] getVariableNames() {
+        return variableNames;
+    }
+
+    /**
+     * Returns a string representation of the code object.
+     *
+     * @return A string representation of the code object.
+     */
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "(" + code.length + " words, " + constants.length
+                + " constants, " + names.length + " names, " + variableNames.length + " variables)";
+    }
+}
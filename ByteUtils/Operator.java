@@ -0,0 +1,91 @@
+package ByteUtils;
+
+/**
+ * Enum representing the operators that BINARYOP and UNARYOP bytecodes can carry.
+ * In the packed instruction format of a CodeObject an operator is stored as its ordinal.
+ */
+public enum Operator {
+    POW("**"), // Exponentiation
+    MOD("%"), // Modulo
+    DIV("/"), // True division, always giving a float
+    FLOORDIV("//"), // Floor division
+    MUL("*"), // Multiplication
+    ADD("+"), // Addition
+    SUB("-"), // Subtraction
+    POS("+"), // Unary plus
+    NEG("-"), // Unary minus
+    NOT("not"); // Boolean negation
+
+    private static final Operator[] VALUES = values();
+
+    private final String symbol; // The source-level spelling of the operator
+
+    Operator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Returns the source-level spelling of the operator, e.g. "+" or "not".
+     * 
+     * @return The symbol of the operator.
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Returns the operator with the given ordinal.
+     * 
+     * @param ordinal The ordinal of the operator, as stored in a packed instruction.
+     * @return The operator with that ordinal.
+     */
+    public static Operator fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Returns the binary operator spelled by the given symbol.
+     * 
+     * @param symbol The symbol of the operator, e.g. "**".
+     * @return The matching binary operator.
+     * @throws RuntimeException if the symbol is not a binary operator.
+     */
+    public static Operator binaryFromSymbol(String symbol) {
+        switch (symbol) {
+            case "**": return POW;
+            case "%": return MOD;
+            case "/": return DIV;
+            case "//": return FLOORDIV;
+            case "*": return MUL;
+            case "+": return ADD;
+            case "-": return SUB;
+            default: throw new RuntimeException("Unknown operator " + symbol + ".");
+        }
+    }
+
+    /**
+     * Returns the unary operator spelled by the given symbol.
+     * 
+     * @param symbol The symbol of the operator, e.g. "not".
+     * @return The matching unary operator.
+     * @throws RuntimeException if the symbol is not a unary operator.
+     */
+    public static Operator unaryFromSymbol(String symbol) {
+        switch (symbol) {
+            case "+": return POS;
+            case "-": return NEG;
+            case "not": return NOT;
+            default: throw new RuntimeException("Unknown operator " + symbol + ".");
+        }
+    }
+
+    /**
+     * Returns the symbol of the operator.
+     * 
+     * @return The symbol of the operator.
+     */
+    @Override
+    public String toString() {
+        return symbol;
+    }
+}
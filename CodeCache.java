@@ -0,0 +1,251 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import ByteUtils.BytecodeType;
+import ByteUtils.CodeObject;
+import ByteUtils.Operator;
+import ast.Symbol;
+
+/**
+ * Caches the compiled CodeObject of a source file on disk, so that running an unchanged file again skips lexing,
+ * parsing and compiling.
+ *
+ * The code of program.py is kept in __pycache__/program.py.plc next to it, in a compact binary form: a header with
+ * the format version, a fingerprint of the instruction set, the compile options and the SHA-256 of the source,
+ * followed by the packed instructions, the constant pool, the name table and the variable names. The cached code is
+ * used only if the whole header matches, so an edited source, other options or a build with different opcodes
+ * compile afresh and replace it.
+ *
+ * A cached file is memory-mapped and its instructions copied out in bulk. A cache that cannot be read or written is
+ * ignored, and a cache file is replaced atomically, so runs sharing a source never see a partly written one.
+ */
+class CodeCache {
+    private static final int MAGIC = 0x50594c43; // "PYLC"
+    private static final int FORMAT_VERSION = 1; // Changed whenever the layout of the file changes
+    private static final int INSTRUCTION_SET = instructionSetFingerprint(); // Changes when opcodes or operators do
+    private static final int HEADER_SIZE = 4 * 4 + 32;
+
+    // Tags of the values in the constant pool and name tables
+    private static final byte LONG = 0;
+    private static final byte BIG_INTEGER = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte SYMBOL = 4;
+
+    private final Path cacheFile;
+    private final int options; // The compile options the code depends on, as bits
+    private final byte[] sourceHash;
+
+    /**
+     * Constructs a CodeCache for a source file, hashing its current content.
+     *
+     * @param source The source file.
+     * @param superinstructions Whether the code is compiled with superinstructions.
+     * @throws IOException If the source can't be read.
+     */
+    public CodeCache(Path source, boolean superinstructions) throws IOException {
+        Path absolute = source.toAbsolutePath();
+        this.cacheFile = absolute.resolveSibling("__pycache__").resolve(absolute.getFileName() + ".plc");
+        this.options = superinstructions ? 1 : 0;
+        this.sourceHash = hash(absolute);
+    }
+
+    /**
+     * Returns the fingerprint of the instruction set, which changes if an opcode or operator is added, removed or
+     * reordered, since their ordinals are what the packed instructions hold.
+     */
+    private static int instructionSetFingerprint() {
+        return 31 * Arrays.toString(BytecodeType.values()).hashCode() + Arrays.toString(Operator.values()).hashCode();
+    }
+
+    private static byte[] hash(Path source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Integer.MAX_VALUE, size - position)));
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Returns the cached code of the source, if the cache holds code compiled from the same source with the same options.
+     *
+     * @return The cached CodeObject, or null on a miss.
+     */
+    public CodeObject load() {
+        if (!Files.isRegularFile(this.cacheFile)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(this.cacheFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getInt() != INSTRUCTION_SET
+                    || buffer.getInt() != this.options) {
+                return null;
+            }
+            byte[] hash = new byte[this.sourceHash.length];
+            buffer.get(hash);
+            if (!Arrays.equals(hash, this.sourceHash)) {
+                return null;
+            }
+            int[] code = new int[readLength(buffer, 4)];
+            buffer.asIntBuffer().get(code);
+            buffer.position(buffer.position() + 4 * code.length);
+            Object[] constants = readValues(buffer);
+            Object[] names = readValues(buffer);
+            Object[] variableNames = readValues(buffer);
+            return new CodeObject(code, constants, names, variableNames);
+        } catch (IOException | RuntimeException e) {
+            return null; // A cache that can't be read is a miss.
+        }
+    }
+
+    /**
+     * Writes the code compiled from the source to the cache, replacing what it held.
+     * Must be called before the code is run, as running it quickens its instructions.
+     *
+     * @param codeObject The code compiled from the source with the cache's options.
+     */
+    public void store(CodeObject codeObject) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(this.cacheFile.getParent());
+            temporary = this.cacheFile.resolveSibling(this.cacheFile.getFileName() + "." + ProcessHandle.current().pid() + "." + Thread.currentThread().getId() + ".tmp");
+            try (OutputStream file = Files.newOutputStream(temporary);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(INSTRUCTION_SET);
+                out.writeInt(this.options);
+                out.write(this.sourceHash);
+                int[] code = codeObject.getCode();
+                out.writeInt(code.length);
+                for (int word : code) {
+                    out.writeInt(word);
+                }
+                writeValues(out, codeObject.getConstants());
+                writeValues(out, codeObject.getNames());
+                writeValues(out, codeObject.getVariableNames());
+            }
+            Files.move(temporary, this.cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // The cache is only an optimization, so a cache that can't be written is left alone.
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // Nothing more can be done.
+                }
+            }
+        }
+    }
+
+    private static void writeValues(DataOutputStream out, Object[] values) throws IOException {
+        out.writeInt(values.length);
+        for (Object value : values) {
+            if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof BigInteger) {
+                byte[] bytes = ((BigInteger) value).toByteArray();
+                out.writeByte(BIG_INTEGER);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Symbol || value instanceof String) {
+                byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeByte(SYMBOL);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else {
+                throw new RuntimeException("Can't cache a " + value.getClass().getSimpleName());
+            }
+        }
+    }
+
+    private static Object[] readValues(ByteBuffer buffer) {
+        Object[] values = new Object[readLength(buffer, 2)]; // A tag and at least one byte each
+        for (int i = 0; i < values.length; i++) {
+            byte tag = buffer.get();
+            switch (tag) {
+                case LONG:
+                    values[i] = buffer.getLong();
+                    break;
+                case BIG_INTEGER: {
+                    byte[] bytes = new byte[readLength(buffer, 1)];
+                    buffer.get(bytes);
+                    values[i] = new BigInteger(bytes);
+                    break;
+                }
+                case DOUBLE:
+                    values[i] = buffer.getDouble();
+                    break;
+                case BOOLEAN:
+                    values[i] = buffer.get() != 0;
+                    break;
+                case SYMBOL: {
+                    byte[] bytes = new byte[readLength(buffer, 1)];
+                    buffer.get(bytes);
+                    values[i] = Symbol.intern(new String(bytes, StandardCharsets.UTF_8));
+                    break;
+                }
+                default:
+                    throw new RuntimeException("Unknown value tag " + tag + " in a cached code object.");
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Reads the length of an array, checking it against the bytes left before anything is allocated, so that a
+     * truncated or corrupt file is a miss rather than an OutOfMemoryError.
+     *
+     * @param width The least number of bytes an element of the array takes in the file.
+     * @return The length.
+     * @throws RuntimeException If the length is negative or its elements can't fit in the rest of the file.
+     */
+    private static int readLength(ByteBuffer buffer, int width) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() / width) {
+            throw new RuntimeException("Length " + length + " in a cached code object runs past the end of the file.");
+        }
+        return length;
+    }
+
+    /**
+     * Returns the file the code of the source is cached in.
+     *
+     * @return The cache file.
+     */
+    public Path getCacheFile() {
+        return this.cacheFile;
+    }
+}
@@ -0,0 +1,904 @@
+import java.util.Arrays;
+
+import ByteUtils.BytecodeType;
+import ByteUtils.CodeObject;
+import ByteUtils.Operator;
+
+/**
+ * Evaluates a compiled program over columns of inputs, giving a column with the value of the program for each row.
+ *
+ * A plan is made for the program and the types of its columns: the stack and variables of the bytecode are followed
+ * once, each value becoming a register whose type is known ahead, so that every instruction turns into one operation
+ * on whole registers. A register holds a block of rows, integers and booleans as longs and floats as doubles, and
+ * each operation is a plain loop over a block, which the JIT compiles to vector instructions where it can. Columns are
+ * copied into their registers a block at a time, widening ints and booleans, so that every loop indexes its arrays
+ * alike: C2 leaves a loop scalar if its arrays are read at offsets it cannot compare.
+ *
+ * The operations give the interpreter's results for the rows they can handle with primitives, and notice the rows
+ * they cannot: an integer overflow, which Python promotes to a big integer, a division by zero or any other error.
+ * Overflow is checked with bit tricks that keep the loops free of branches, at the price of sometimes firing on rows
+ * that would not overflow. A block where a check fires is evaluated again a row at a time by the interpreter, which
+ * gives the exact result or error. Programs a plan does not cover, such as those with conditionals or big integer
+ * constants, are evaluated a row at a time throughout. Either way a row's values go into the frame as primitives and
+ * its result comes back as one, so no row is ever boxed unless it fails.
+ *
+ * Columns are arrays on the heap or mapped column files, which are copied a block at a time like arrays, so a file
+ * streams through the registers without ever being loaded whole.
+ */
+final class ColumnEvaluator {
+    static final int BLOCK_SIZE = 1024; // The number of rows an operation works on at a time, so registers stay in cache
+    private static final int PARALLEL_BLOCKS = 16; // The largest number of blocks in a part of a parallel evaluation
+
+    private static final long HALF_LONG = 1L << 31; // Products of longs below this magnitude fit in a long
+    private static final long MAX_EXACT_DOUBLE = 1L << 53; // Every long up to this magnitude is exactly a double
+
+    // The types of values, those the interpreter tags its slots with
+    private static final byte INT = Interpreter.INT;
+    private static final byte BOOL = Interpreter.BOOL;
+    private static final byte FLOAT = Interpreter.FLOAT;
+
+    /**
+     * The operations of a plan. Those on integers take longs and give longs, except DIV_INT, which gives doubles;
+     * those on floats take doubles and give doubles, except NOT_FLOAT, which gives longs.
+     */
+    private enum Operation {
+        ADD_INT, SUB_INT, MUL_INT, FLOORDIV_INT, MOD_INT, POW_INT, DIV_INT, NEG_INT, NOT_INT,
+        ADD_FLOAT, SUB_FLOAT, MUL_FLOAT, DIV_FLOAT, FLOORDIV_FLOAT, MOD_FLOAT, POW_FLOAT, NEG_FLOAT, NOT_FLOAT,
+        TO_FLOAT // Converts an integer to a float
+    }
+
+    private final String signature; // The type of each column, as its letter in a JVM descriptor
+    private final boolean planned; // Whether the program is covered by a plan, or evaluated a row at a time
+    private final int[] inputSlots; // The frame slot of each column's variable, or -1
+    private final ThreadLocal<Interpreter> interpreters; // The interpreter of each thread, for rows evaluated one at a time
+
+    // The registers, each holding a value of the program for a block of rows
+    private byte[] types = new byte[16]; // The type of each register
+    private Object[] constants = new Object[16]; // The value of each register holding a constant, or null
+    private int registerCount;
+    private final int[] inputRegisters; // The register of each column, or -1 for a column the program never reads
+    private int result = -1; // The register holding the value of the program
+    private int[] blocks; // The block each register is held in
+    private final int[] blockCounts = new int[2]; // The number of blocks of longs and of doubles
+    private final ThreadLocal<Registers> registers; // The blocks of each thread, reused for all of its rows
+
+    // The operations, in order, with the registers they write and read; right is -1 for unary operations
+    private Operation[] operations = new Operation[16];
+    private int[] targets = new int[16];
+    private int[] lefts = new int[16];
+    private int[] rights = new int[16];
+    private int operationCount;
+
+    /**
+     * Constructs the ColumnEvaluator of a program for columns of given types.
+     *
+     * @param code The program.
+     * @param inputSlots The frame slot of each column's variable, or -1 for a variable the program does not use.
+     * @param signature The types of the columns, as returned by signature.
+     * @param interpreters The interpreter of each thread for the program, which rows evaluated one at a time are run on.
+     */
+    ColumnEvaluator(CodeObject code, int[] inputSlots, String signature, ThreadLocal<Interpreter> interpreters) {
+        this.signature = signature;
+        this.inputSlots = inputSlots;
+        this.interpreters = interpreters;
+        this.inputRegisters = new int[inputSlots.length];
+        this.planned = plan(code, inputSlots);
+        if (this.planned) {
+            assignBlocks();
+        }
+        this.registers = ThreadLocal.withInitial(this::newRegisters);
+    }
+
+    /**
+     * The blocks of the registers of a plan for one thread, by register: longs for integers and booleans, doubles for
+     * floats. Registers that are never live at once may share a block.
+     */
+    private static final class Registers {
+        final long[][] longs;
+        final double[][] doubles;
+
+        Registers(int count) {
+            this.longs = new long[count][];
+            this.doubles = new double[count][];
+        }
+    }
+
+    /**
+     * Checks that columns can be evaluated together and returns their types.
+     *
+     * @param columns The columns: int[], long[], double[], boolean[] or mapped column files, all of the same length.
+     * @return The letter the JVM uses for the element type of each column, such as "JD" for a long[] and a double[].
+     * @throws RuntimeException If there is no column, a column is of another type, or the lengths differ.
+     */
+    static String signature(Object[] columns) {
+        if (columns.length == 0) {
+            throw new RuntimeException("Can't evaluate columns without an input column.");
+        }
+        char[] letters = new char[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Object column = columns[i];
+            if (column instanceof int[]) {
+                letters[i] = 'I';
+            } else if (column instanceof long[]) {
+                letters[i] = 'J';
+            } else if (column instanceof double[]) {
+                letters[i] = 'D';
+            } else if (column instanceof boolean[]) {
+                letters[i] = 'Z';
+            } else if (column instanceof ColumnFile.Mapping) {
+                switch (((ColumnFile.Mapping) column).type) {
+                    case INT: letters[i] = 'I'; break;
+                    case LONG: letters[i] = 'J'; break;
+                    case DOUBLE: letters[i] = 'D'; break;
+                    default: letters[i] = 'Z';
+                }
+            } else {
+                throw new RuntimeException(String.format("Column %d is a %s, not an int[], long[], double[] or boolean[].",
+                        i, column == null ? "null" : column.getClass().getSimpleName()));
+            }
+            if (length(column) != length(columns[0])) {
+                throw new RuntimeException(String.format("Column %d has %d rows, but column 0 has %d.", i, length(column), length(columns[0])));
+            }
+        }
+        return new String(letters);
+    }
+
+    /**
+     * Returns the number of rows of a column.
+     */
+    static long length(Object column) {
+        if (column instanceof ColumnFile.Mapping) {
+            return ((ColumnFile.Mapping) column).rows;
+        } else if (column instanceof int[]) {
+            return ((int[]) column).length;
+        } else if (column instanceof long[]) {
+            return ((long[]) column).length;
+        } else if (column instanceof double[]) {
+            return ((double[]) column).length;
+        }
+        return ((boolean[]) column).length;
+    }
+
+    /**
+     * Follows the bytecode with a stack of registers, turning each instruction into operations.
+     *
+     * @return Whether the whole program is covered, which needs straight-line code over ints, bools and floats that
+     *         reads only variables it has assigned and ends up with a value.
+     */
+    private boolean plan(CodeObject code, int[] inputSlots) {
+        int[] slots = new int[code.getVariableNames().length]; // The register each variable holds, or -1
+        Arrays.fill(slots, -1);
+        Arrays.fill(this.inputRegisters, -1);
+        for (int i = 0; i < inputSlots.length; i++) {
+            if (inputSlots[i] >= 0) {
+                char letter = this.signature.charAt(i);
+                this.inputRegisters[i] = register(letter == 'D' ? FLOAT : letter == 'Z' ? BOOL : INT, null);
+                slots[inputSlots[i]] = this.inputRegisters[i];
+            }
+        }
+        int[] words = code.getCode();
+        Object[] pool = code.getConstants();
+        int[] stack = new int[words.length];
+        int top = 0;
+        for (int at = 0; at < words.length; at += CodeObject.width(CodeObject.opcode(words[at]))) {
+            int word = words[at];
+            int operand = CodeObject.operand(word);
+            BytecodeType type = CodeObject.opcode(word);
+            switch (type) {
+                case PUSH:
+                    stack[top] = constant(pool[operand]);
+                    if (stack[top++] < 0) {
+                        return false;
+                    }
+                    break;
+                case POP:
+                    this.result = stack[--top];
+                    break;
+                case COPY:
+                    stack[top] = stack[top - 1];
+                    top++;
+                    break;
+                case LOAD_FAST:
+                    if (slots[operand] < 0) {
+                        return false;
+                    }
+                    stack[top++] = slots[operand];
+                    break;
+                case STORE_FAST:
+                    slots[operand] = stack[--top];
+                    break;
+                case BINARYOP:
+                case BINARYOP_ADD_INT:
+                case BINARYOP_SUB_INT:
+                case BINARYOP_MUL_INT:
+                case BINARYOP_FLOORDIV_INT:
+                case BINARYOP_MOD_INT:
+                case BINARYOP_ADD_FLOAT:
+                case BINARYOP_SUB_FLOAT:
+                case BINARYOP_MUL_FLOAT:
+                case BINARYOP_DIV_FLOAT: {
+                    int right = stack[--top];
+                    int left = stack[--top];
+                    stack[top] = binary(Operator.fromOrdinal(operand), left, right);
+                    if (stack[top++] < 0) {
+                        return false;
+                    }
+                    break;
+                }
+                case UNARYOP:
+                case UNARYOP_NEG_INT:
+                case UNARYOP_NEG_FLOAT:
+                case UNARYOP_NOT_BOOL:
+                    stack[top - 1] = unary(Operator.fromOrdinal(operand), stack[top - 1]);
+                    break;
+                case LOAD_CONST_BINOP: {
+                    int constant = constant(pool[words[at + 2]]);
+                    if (slots[words[at + 1]] < 0 || constant < 0) {
+                        return false;
+                    }
+                    stack[top] = binary(Operator.fromOrdinal(operand), slots[words[at + 1]], constant);
+                    if (stack[top++] < 0) {
+                        return false;
+                    }
+                    break;
+                }
+                case LOAD_LOAD_BINOP:
+                    if (slots[words[at + 1]] < 0 || slots[words[at + 2]] < 0) {
+                        return false;
+                    }
+                    stack[top] = binary(Operator.fromOrdinal(operand), slots[words[at + 1]], slots[words[at + 2]]);
+                    if (stack[top++] < 0) {
+                        return false;
+                    }
+                    break;
+                case BINOP_STORE_FAST: {
+                    int right = stack[--top];
+                    int left = stack[--top];
+                    slots[words[at + 1]] = binary(Operator.fromOrdinal(operand), left, right);
+                    if (slots[words[at + 1]] < 0) {
+                        return false;
+                    }
+                    break;
+                }
+                default:
+                    return false; // Jumps, and the name-based SAVE and LOAD
+            }
+        }
+        return this.result >= 0;
+    }
+
+    /**
+     * Gives each register written by an operation a block that no register still to be read holds, so the blocks a
+     * plan needs, and so the cache it takes, follow the values live at once rather than the length of the program.
+     * Constants and columns keep a block of their own.
+     */
+    private void assignBlocks() {
+        int[] lastReads = new int[this.registerCount]; // The last operation reading each register, or -1
+        Arrays.fill(lastReads, -1);
+        boolean[] temporaries = new boolean[this.registerCount];
+        for (int i = 0; i < this.operationCount; i++) {
+            lastReads[this.lefts[i]] = i;
+            if (this.rights[i] >= 0) {
+                lastReads[this.rights[i]] = i;
+            }
+            temporaries[this.targets[i]] = true;
+        }
+        lastReads[this.result] = this.operationCount; // Read once every operation is done, into the output column
+
+        this.blocks = new int[this.registerCount];
+        Arrays.fill(this.blocks, -1);
+        for (int register = 0; register < this.registerCount; register++) {
+            if (!temporaries[register]) {
+                this.blocks[register] = this.blockCounts[kind(register)]++;
+            }
+        }
+
+        int[][] free = new int[2][this.registerCount]; // The blocks of each kind no register holds any more
+        int[] freeCounts = new int[2];
+        boolean[] released = new boolean[this.registerCount];
+        for (int i = 0; i < this.operationCount; i++) {
+            int target = this.targets[i];
+            int kind = kind(target);
+            this.blocks[target] = freeCounts[kind] > 0 ? free[kind][--freeCounts[kind]] : this.blockCounts[kind]++;
+            // The target is given its block first, so no operation writes a block it reads.
+            for (int register : new int[] {this.lefts[i], this.rights[i], target}) {
+                if (register >= 0 && temporaries[register] && !released[register] && lastReads[register] <= i) {
+                    released[register] = true;
+                    free[kind(register)][freeCounts[kind(register)]++] = this.blocks[register];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns 0 for a register held in longs and 1 for one held in doubles.
+     */
+    private int kind(int register) {
+        return this.types[register] == FLOAT ? 1 : 0;
+    }
+
+    /**
+     * Makes the blocks of a thread and fills those of constants.
+     */
+    private Registers newRegisters() {
+        Registers registers = new Registers(this.registerCount);
+        if (!this.planned) {
+            return registers;
+        }
+        long[][] longBlocks = new long[this.blockCounts[0]][BLOCK_SIZE];
+        double[][] doubleBlocks = new double[this.blockCounts[1]][BLOCK_SIZE];
+        for (int register = 0; register < this.registerCount; register++) {
+            if (this.types[register] == FLOAT) {
+                registers.doubles[register] = doubleBlocks[this.blocks[register]];
+                if (this.constants[register] != null) {
+                    Arrays.fill(registers.doubles[register], (Double) this.constants[register]);
+                }
+            } else {
+                registers.longs[register] = longBlocks[this.blocks[register]];
+                if (this.constants[register] != null) {
+                    Arrays.fill(registers.longs[register], (Long) this.constants[register]);
+                }
+            }
+        }
+        return registers;
+    }
+
+    /**
+     * Adds a register.
+     *
+     * @return The index of the register.
+     */
+    private int register(byte type, Object constant) {
+        if (this.registerCount == this.types.length) {
+            this.types = Arrays.copyOf(this.types, this.registerCount * 2);
+            this.constants = Arrays.copyOf(this.constants, this.registerCount * 2);
+        }
+        this.types[this.registerCount] = type;
+        this.constants[this.registerCount] = constant;
+        return this.registerCount++;
+    }
+
+    /**
+     * Adds a register holding a constant.
+     *
+     * @return The index of the register, or -1 for a big integer, which no register can hold.
+     */
+    private int constant(Object value) {
+        if (value instanceof Long) {
+            return register(INT, value);
+        } else if (value instanceof Boolean) {
+            return register(BOOL, (Boolean) value ? 1L : 0L);
+        } else if (value instanceof Double) {
+            return register(FLOAT, value);
+        }
+        return -1;
+    }
+
+    /**
+     * Appends an operation writing a new register.
+     *
+     * @return The register the operation writes.
+     */
+    private int emit(Operation operation, byte type, int left, int right) {
+        if (this.operationCount == this.operations.length) {
+            this.operations = Arrays.copyOf(this.operations, this.operationCount * 2);
+            this.targets = Arrays.copyOf(this.targets, this.operationCount * 2);
+            this.lefts = Arrays.copyOf(this.lefts, this.operationCount * 2);
+            this.rights = Arrays.copyOf(this.rights, this.operationCount * 2);
+        }
+        int target = register(type, null);
+        this.operations[this.operationCount] = operation;
+        this.targets[this.operationCount] = target;
+        this.lefts[this.operationCount] = left;
+        this.rights[this.operationCount] = right;
+        this.operationCount++;
+        return target;
+    }
+
+    /**
+     * Plans a binary operator, following Arithmetic.binary: an operation with a float operand is done on floats, / of
+     * integers gives a float, and every other operation of integers or booleans gives an integer.
+     *
+     * @return The register of the result, or -1 for a power of integers whose exponent may be negative: its result is
+     *         an integer or a float depending on the row, so it has no type ahead.
+     */
+    private int binary(Operator op, int left, int right) {
+        if (this.types[left] == FLOAT || this.types[right] == FLOAT) {
+            Operation operation;
+            switch (op) {
+                case POW: operation = Operation.POW_FLOAT; break;
+                case MOD: operation = Operation.MOD_FLOAT; break;
+                case DIV: operation = Operation.DIV_FLOAT; break;
+                case FLOORDIV: operation = Operation.FLOORDIV_FLOAT; break;
+                case MUL: operation = Operation.MUL_FLOAT; break;
+                case ADD: operation = Operation.ADD_FLOAT; break;
+                case SUB: operation = Operation.SUB_FLOAT; break;
+                default: throw new RuntimeException("Unknown operator " + op + ".");
+            }
+            return emit(operation, FLOAT, toFloat(left), toFloat(right));
+        }
+        switch (op) {
+            case POW:
+                if (!(this.constants[right] instanceof Long) || (Long) this.constants[right] < 0) {
+                    return -1;
+                }
+                return emit(Operation.POW_INT, INT, left, right);
+            case MOD: return emit(Operation.MOD_INT, INT, left, right);
+            case DIV: return emit(Operation.DIV_INT, FLOAT, left, right);
+            case FLOORDIV: return emit(Operation.FLOORDIV_INT, INT, left, right);
+            case MUL: return emit(Operation.MUL_INT, INT, left, right);
+            case ADD: return emit(Operation.ADD_INT, INT, left, right);
+            case SUB: return emit(Operation.SUB_INT, INT, left, right);
+            default: throw new RuntimeException("Unknown operator " + op + ".");
+        }
+    }
+
+    /**
+     * Plans a unary operator, following Arithmetic.unary: unary plus leaves its operand as it is, even a boolean.
+     */
+    private int unary(Operator op, int operand) {
+        boolean isFloat = this.types[operand] == FLOAT;
+        switch (op) {
+            case POS:
+                return operand;
+            case NEG:
+                return isFloat ? emit(Operation.NEG_FLOAT, FLOAT, operand, -1) : emit(Operation.NEG_INT, INT, operand, -1);
+            case NOT:
+                return emit(isFloat ? Operation.NOT_FLOAT : Operation.NOT_INT, BOOL, operand, -1);
+            default:
+                throw new RuntimeException("Unknown operator " + op + ".");
+        }
+    }
+
+    /**
+     * Returns a register holding an operand as a float, converting constants as the plan is made.
+     */
+    private int toFloat(int register) {
+        if (this.types[register] == FLOAT) {
+            return register;
+        } else if (this.constants[register] != null) {
+            return register(FLOAT, (double) (Long) this.constants[register]);
+        }
+        return emit(Operation.TO_FLOAT, FLOAT, register, -1);
+    }
+
+    /**
+     * Returns the type of the values the program gives for the columns: that of the plan, or without one that of the
+     * value of the first row.
+     *
+     * @param columns The columns the signature was taken of.
+     * @return INT, FLOAT or BOOL; INT if there are no rows, or the first row gives some other value.
+     * @throws RuntimeException If the program fails for the first row of a program without a plan.
+     */
+    byte resultType(Object[] columns) {
+        if (this.planned) {
+            return this.types[this.result];
+        } else if (length(columns[0]) == 0) {
+            return INT;
+        }
+        Interpreter interpreter = this.interpreters.get();
+        run(columns, 0, interpreter);
+        byte type = interpreter.getLastTag();
+        return type == FLOAT || type == BOOL ? type : INT;
+    }
+
+    /**
+     * Evaluates the program for every row of the columns into a new array.
+     *
+     * @param columns The columns the signature was taken of.
+     * @param parallel Whether to split the rows into parts evaluated on every core, each thread with its own frame and
+     *                 registers, rather than evaluating them all on the calling thread.
+     * @return The value of the program for each row: a long[] for integers, a double[] for floats or a boolean[] for
+     *         booleans.
+     * @throws RuntimeException If a row fails, or the rows give values that do not fit in one such column; when
+     *                          several rows fail, the error is that of the first.
+     */
+    Object evaluate(Object[] columns, boolean parallel) {
+        byte type = resultType(columns);
+        int rows = (int) length(columns[0]);
+        Object output = type == FLOAT ? new double[rows] : type == BOOL ? new boolean[rows] : new long[rows];
+        evaluate(columns, output, parallel);
+        return output;
+    }
+
+    /**
+     * Evaluates the program for every row of the columns into an output column.
+     *
+     * @param columns The columns the signature was taken of.
+     * @param output A long[], double[] or boolean[], or a mapped column file of longs, doubles or booleans, with a row
+     *               for each row of the columns.
+     * @param parallel Whether to split the rows into parts evaluated on every core, each thread with its own frame and
+     *                 registers, rather than evaluating them all on the calling thread.
+     * @throws RuntimeException If a row fails, or gives a value that does not fit in the output; when several rows
+     *                          fail, the error is that of the first.
+     */
+    void evaluate(Object[] columns, Object output, boolean parallel) {
+        long rows = length(columns[0]);
+        if (parallel) {
+            // A part of planned rows should take far longer than forking it, as a part run a row at a time does.
+            RowPartitions.run(0, rows, this.planned ? PARALLEL_BLOCKS * BLOCK_SIZE : BLOCK_SIZE,
+                    (from, to) -> evaluate(columns, from, to, output));
+        } else {
+            evaluate(columns, 0, rows, output);
+        }
+    }
+
+    /**
+     * Evaluates the program for a range of rows into the output column, with the registers of the calling thread.
+     */
+    private void evaluate(Object[] columns, long from, long to, Object output) {
+        if (!this.planned) {
+            Interpreter interpreter = this.interpreters.get();
+            for (long row = from; row < to; row++) {
+                run(columns, row, interpreter);
+                storeRow(output, row, interpreter);
+            }
+            return;
+        }
+        Registers registers = this.registers.get();
+        long[][] longs = registers.longs;
+        double[][] doubles = registers.doubles;
+
+        for (long start = from; start < to; start += BLOCK_SIZE) {
+            int n = (int) Math.min(BLOCK_SIZE, to - start);
+            for (int i = 0; i < columns.length; i++) {
+                int register = this.inputRegisters[i];
+                if (register >= 0) {
+                    load(columns[i], start, n, longs[register], doubles[register]);
+                }
+            }
+            boolean exact = true;
+            for (int i = 0; exact && i < this.operationCount; i++) {
+                exact = execute(i, n, longs, doubles);
+            }
+            if (exact) {
+                store(output, start, n, longs[this.result], doubles[this.result]);
+            } else {
+                Interpreter interpreter = this.interpreters.get();
+                for (long row = start; row < start + n; row++) {
+                    run(columns, row, interpreter);
+                    storeRow(output, row, interpreter);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a block of rows of a column into the block of its register, which is longs or doubles.
+     */
+    private static void load(Object column, long start, int n, long[] longs, double[] doubles) {
+        if (column instanceof ColumnFile.Mapping) {
+            ((ColumnFile.Mapping) column).load(start, n, longs, doubles);
+        } else if (column instanceof long[]) {
+            System.arraycopy(column, (int) start, longs, 0, n);
+        } else if (column instanceof double[]) {
+            System.arraycopy(column, (int) start, doubles, 0, n);
+        } else if (column instanceof int[]) {
+            int[] ints = (int[]) column;
+            int first = (int) start;
+            for (int i = 0; i < n; i++) {
+                longs[i] = ints[first + i];
+            }
+        } else {
+            boolean[] booleans = (boolean[]) column;
+            int first = (int) start;
+            for (int i = 0; i < n; i++) {
+                longs[i] = booleans[first + i] ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * Copies the block of the result register into a block of rows of the output column.
+     */
+    private static void store(Object output, long start, int n, long[] longs, double[] doubles) {
+        if (output instanceof ColumnFile.Mapping) {
+            ((ColumnFile.Mapping) output).store(start, n, longs, doubles);
+        } else if (output instanceof double[]) {
+            System.arraycopy(doubles, 0, output, (int) start, n);
+        } else if (output instanceof long[]) {
+            System.arraycopy(longs, 0, output, (int) start, n);
+        } else {
+            boolean[] booleans = (boolean[]) output;
+            int first = (int) start;
+            for (int i = 0; i < n; i++) {
+                booleans[first + i] = longs[i] != 0;
+            }
+        }
+    }
+
+    /**
+     * Runs an operation over a block.
+     *
+     * @return Whether the operation was exact for every row, or the block must be evaluated a row at a time.
+     */
+    private boolean execute(int i, int n, long[][] longs, double[][] doubles) {
+        int target = this.targets[i];
+        int left = this.lefts[i];
+        int right = this.rights[i];
+        switch (this.operations[i]) {
+            case ADD_INT: return addInt(longs[left], longs[right], longs[target], n);
+            case SUB_INT: return subInt(longs[left], longs[right], longs[target], n);
+            case MUL_INT: return mulInt(longs[left], longs[right], longs[target], n);
+            case FLOORDIV_INT: return floorDivInt(longs[left], longs[right], longs[target], n);
+            case MOD_INT: return modInt(longs[left], longs[right], longs[target], n);
+            case POW_INT: return powInt(longs[left], longs[right], longs[target], n);
+            case DIV_INT: return divInt(longs[left], longs[right], doubles[target], n);
+            case NEG_INT: return negInt(longs[left], longs[target], n);
+            case NOT_INT: return notInt(longs[left], longs[target], n);
+            case ADD_FLOAT: return addFloat(doubles[left], doubles[right], doubles[target], n);
+            case SUB_FLOAT: return subFloat(doubles[left], doubles[right], doubles[target], n);
+            case MUL_FLOAT: return mulFloat(doubles[left], doubles[right], doubles[target], n);
+            case DIV_FLOAT: return divFloat(doubles[left], doubles[right], doubles[target], n);
+            case FLOORDIV_FLOAT: return floorDivFloat(doubles[left], doubles[right], doubles[target], n);
+            case MOD_FLOAT: return modFloat(doubles[left], doubles[right], doubles[target], n);
+            case POW_FLOAT: return powFloat(doubles[left], doubles[right], doubles[target], n);
+            case NEG_FLOAT: return negFloat(doubles[left], doubles[target], n);
+            case NOT_FLOAT: return notFloat(doubles[left], longs[target], n);
+            case TO_FLOAT: return toFloat(longs[left], doubles[target], n);
+            default: throw new RuntimeException("Unknown operation " + this.operations[i] + ".");
+        }
+    }
+
+    // The operations over a block of n rows, reading a and b and writing t.
+
+    private static boolean addInt(long[] a, long[] b, long[] t, int n) {
+        long overflow = 0;
+        for (int i = 0; i < n; i++) {
+            long x = a[i];
+            long y = b[i];
+            long sum = x + y;
+            t[i] = sum;
+            overflow |= (x ^ sum) & (y ^ sum); // Negative if the sum has a sign neither operand has
+        }
+        return overflow >= 0;
+    }
+
+    private static boolean subInt(long[] a, long[] b, long[] t, int n) {
+        long overflow = 0;
+        for (int i = 0; i < n; i++) {
+            long x = a[i];
+            long y = b[i];
+            long difference = x - y;
+            t[i] = difference;
+            overflow |= (x ^ y) & (x ^ difference); // Negative if the signs differ and the difference lost x's sign
+        }
+        return overflow >= 0;
+    }
+
+    private static boolean mulInt(long[] a, long[] b, long[] t, int n) {
+        long wide = 0;
+        for (int i = 0; i < n; i++) {
+            long x = a[i];
+            long y = b[i];
+            t[i] = x * y;
+            wide |= (x + HALF_LONG) | (y + HALF_LONG); // Has high bits set if an operand is outside the int range
+        }
+        if (wide >>> 32 == 0) {
+            return true;
+        }
+        // Some operand is too large for the quick check, so check every product exactly.
+        for (int i = 0; i < n; i++) {
+            if (Math.multiplyHigh(a[i], b[i]) != t[i] >> 63) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean floorDivInt(long[] a, long[] b, long[] t, int n) {
+        for (int i = 0; i < n; i++) {
+            long x = a[i];
+            long y = b[i];
+            if (y == 0 || (y == -1 && x == Long.MIN_VALUE)) {
+                return false;
+            }
+            t[i] = Math.floorDiv(x, y);
+        }
+        return true;
+    }
+
+    private static boolean modInt(long[] a, long[] b, long[] t, int n) {
+        for (int i = 0; i < n; i++) {
+            long y = b[i];
+            if (y == 0) {
+                return false;
+            }
+            t[i] = Math.floorMod(a[i], y);
+        }
+        return true;
+    }
+
+    private static boolean powInt(long[] a, long[] b, long[] t, int n) {
+        try {
+            for (int i = 0; i < n; i++) {
+                t[i] = Arithmetic.powExact(a[i], b[i]);
+            }
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private static boolean divInt(long[] a, long[] b, double[] t, int n) {
+        long inexact = 0;
+        for (int i = 0; i < n; i++) {
+            long x = a[i];
+            long y = b[i];
+            t[i] = (double) x / (double) y;
+            // Set if an operand may not be exactly a double, or the divisor is zero
+            inexact |= ((x + MAX_EXACT_DOUBLE) | (y + MAX_EXACT_DOUBLE)) >>> 54 | ~(y | -y) >>> 63;
+        }
+        return inexact == 0;
+    }
+
+    private static boolean negInt(long[] a, long[] t, int n) {
+        long overflow = 0;
+        for (int i = 0; i < n; i++) {
+            long x = a[i];
+            t[i] = -x;
+            overflow |= x & -x; // Negative only for Long.MIN_VALUE, which is its own negation
+        }
+        return overflow >= 0;
+    }
+
+    private static boolean notInt(long[] a, long[] t, int n) {
+        for (int i = 0; i < n; i++) {
+            long x = a[i];
+            t[i] = ~(x | -x) >>> 63; // 1 for zero, which is the only value whose sign neither it nor its negation has
+        }
+        return true;
+    }
+
+    private static boolean addFloat(double[] a, double[] b, double[] t, int n) {
+        for (int i = 0; i < n; i++) {
+            t[i] = a[i] + b[i];
+        }
+        return true;
+    }
+
+    private static boolean subFloat(double[] a, double[] b, double[] t, int n) {
+        for (int i = 0; i < n; i++) {
+            t[i] = a[i] - b[i];
+        }
+        return true;
+    }
+
+    private static boolean mulFloat(double[] a, double[] b, double[] t, int n) {
+        for (int i = 0; i < n; i++) {
+            t[i] = a[i] * b[i];
+        }
+        return true;
+    }
+
+    private static boolean divFloat(double[] a, double[] b, double[] t, int n) {
+        int zeros = 0;
+        for (int i = 0; i < n; i++) {
+            double y = b[i];
+            t[i] = a[i] / y;
+            zeros += y == 0 ? 1 : 0;
+        }
+        return zeros == 0;
+    }
+
+    private static boolean floorDivFloat(double[] a, double[] b, double[] t, int n) {
+        try {
+            for (int i = 0; i < n; i++) {
+                t[i] = Arithmetic.floorDivDouble(a[i], b[i]);
+            }
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private static boolean modFloat(double[] a, double[] b, double[] t, int n) {
+        try {
+            for (int i = 0; i < n; i++) {
+                t[i] = Arithmetic.modDouble(a[i], b[i]);
+            }
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private static boolean powFloat(double[] a, double[] b, double[] t, int n) {
+        try {
+            for (int i = 0; i < n; i++) {
+                t[i] = Arithmetic.powDouble(a[i], b[i]);
+            }
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private static boolean negFloat(double[] a, double[] t, int n) {
+        for (int i = 0; i < n; i++) {
+            t[i] = -a[i];
+        }
+        return true;
+    }
+
+    private static boolean notFloat(double[] a, long[] t, int n) {
+        for (int i = 0; i < n; i++) {
+            t[i] = a[i] == 0 ? 1 : 0;
+        }
+        return true;
+    }
+
+    private static boolean toFloat(long[] a, double[] t, int n) {
+        for (int i = 0; i < n; i++) {
+            t[i] = a[i];
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates the program for one row with an interpreter, binding the values of the row to its frame unboxed.
+     */
+    private void run(Object[] columns, long row, Interpreter interpreter) {
+        interpreter.reset();
+        for (int i = 0; i < columns.length; i++) {
+            if (this.inputSlots[i] >= 0) {
+                interpreter.bind(this.inputSlots[i], typeOf(columns[i]), rawValue(columns[i], row));
+            }
+        }
+        try {
+            interpreter.run();
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Row " + row + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the type of the values of a column: FLOAT for doubles, BOOL for booleans and INT for ints and longs.
+     */
+    private static byte typeOf(Object column) {
+        if (column instanceof ColumnFile.Mapping) {
+            ColumnFile.Type type = ((ColumnFile.Mapping) column).type;
+            return type == ColumnFile.Type.DOUBLE ? FLOAT : type == ColumnFile.Type.BOOLEAN ? BOOL : INT;
+        }
+        return column instanceof double[] ? FLOAT : column instanceof boolean[] ? BOOL : INT;
+    }
+
+    /**
+     * Returns the value of a row of a column as the payload of an interpreter slot.
+     */
+    private static long rawValue(Object column, long row) {
+        if (column instanceof ColumnFile.Mapping) {
+            return ((ColumnFile.Mapping) column).rawValue(row);
+        } else if (column instanceof int[]) {
+            return ((int[]) column)[(int) row];
+        } else if (column instanceof long[]) {
+            return ((long[]) column)[(int) row];
+        } else if (column instanceof double[]) {
+            return Double.doubleToRawLongBits(((double[]) column)[(int) row]);
+        }
+        return ((boolean[]) column)[(int) row] ? 1 : 0;
+    }
+
+    /**
+     * Writes the last value an interpreter popped into a row of the output column.
+     *
+     * @throws RuntimeException If the value does not fit in the column.
+     */
+    private static void storeRow(Object output, long row, Interpreter interpreter) {
+        byte type = interpreter.getLastTag();
+        long value = interpreter.getLastValue();
+        if (type != typeOf(output)) {
+            throw new RuntimeException(String.format("Row %d evaluates to %s, which does not fit in a %s column.", row,
+                    interpreter.getLastValuePopped(), output instanceof ColumnFile.Mapping ? ((ColumnFile.Mapping) output).type
+                            : output.getClass().getSimpleName()));
+        } else if (output instanceof ColumnFile.Mapping) {
+            ((ColumnFile.Mapping) output).storeValue(row, value);
+        } else if (output instanceof long[]) {
+            ((long[]) output)[(int) row] = value;
+        } else if (output instanceof double[]) {
+            ((double[]) output)[(int) row] = Double.longBitsToDouble(value);
+        } else {
+            ((boolean[]) output)[(int) row] = value != 0;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary column file: the values of one column, one per row, packed back to back with no header. Ints, longs and
+ * doubles are little-endian, the order numpy's tofile writes on x86 and ARM, and booleans take a byte each, 0 for
+ * False and anything else for True.
+ *
+ * Column files are read and written through memory mappings, so a column of any size streams through the page cache
+ * without being copied onto the heap. A mapping can't exceed 2 GiB, so a file is mapped in windows of 1 GiB.
+ */
+public final class ColumnFile {
+    private static final int WINDOW_BYTES = 1 << 30; // The size of a mapped window, a multiple of every type's width
+
+    /**
+     * The types of value a column file can hold.
+     */
+    public enum Type {
+        INT(4), // A 32-bit integer
+        LONG(8), // A 64-bit integer
+        DOUBLE(8), // A 64-bit float
+        BOOLEAN(1); // A byte, 0 for False
+
+        private final int width; // The number of bytes a value takes
+
+        Type(int width) {
+            this.width = width;
+        }
+
+        /**
+         * Returns the number of bytes a value of the type takes in a file.
+         *
+         * @return The width of a value.
+         */
+        public int getWidth() {
+            return this.width;
+        }
+    }
+
+    private final Path path;
+    private final Type type;
+
+    /**
+     * Constructs a ColumnFile for a file holding values of a type.
+     *
+     * @param path The file.
+     * @param type The type of its values.
+     */
+    public ColumnFile(Path path, Type type) {
+        this.path = path;
+        this.type = type;
+    }
+
+    /**
+     * Returns the file holding the column.
+     *
+     * @return The path of the file.
+     */
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Returns the type of the values of the column.
+     *
+     * @return The type.
+     */
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns the number of values in the file.
+     *
+     * @return The number of rows.
+     * @throws IOException If the file can't be read.
+     * @throws RuntimeException If the size of the file is not a whole number of values.
+     */
+    public long getRows() throws IOException {
+        long size = Files.size(this.path);
+        if (size % this.type.width != 0) {
+            throw new RuntimeException(String.format("%s holds %d bytes, which is not a whole number of %s values.", this.path, size, this.type));
+        }
+        return size / this.type.width;
+    }
+
+    /**
+     * Maps the file for reading.
+     *
+     * @return The mapping.
+     * @throws IOException If the file can't be read.
+     */
+    Mapping map() throws IOException {
+        long rows = getRows();
+        try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            return new Mapping(this.type, rows, channel, FileChannel.MapMode.READ_ONLY);
+        }
+    }
+
+    /**
+     * Creates the file, replacing what it held, with room for a number of values, and maps it for writing.
+     *
+     * @param rows The number of values the file will hold.
+     * @return The mapping.
+     * @throws IOException If the file can't be written.
+     */
+    Mapping create(long rows) throws IOException {
+        try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Mapping(this.type, rows, channel, FileChannel.MapMode.READ_WRITE);
+        }
+    }
+
+    /**
+     * Returns a string representation of the column file.
+     *
+     * @return A string representation of the column file.
+     */
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "(" + this.path + ", " + this.type + ")";
+    }
+
+    /**
+     * A column file mapped into memory, read and written a block of rows at a time with bulk copies. Every access is
+     * by absolute index, so threads can read and write disjoint rows of one mapping at once.
+     */
+    static final class Mapping {
+        final Type type;
+        final long rows;
+        private final long windowRows; // The number of values in each window but the last
+        private final Buffer[] windows; // A view of each window by the type of its values, or its bytes for booleans
+        private final MappedByteBuffer[] mapped; // The mapping of each window
+
+        private Mapping(Type type, long rows, FileChannel channel, FileChannel.MapMode mode) throws IOException {
+            this.type = type;
+            this.rows = rows;
+            this.windowRows = WINDOW_BYTES / type.width;
+            this.windows = new Buffer[(int) ((rows + this.windowRows - 1) / this.windowRows)];
+            this.mapped = new MappedByteBuffer[this.windows.length];
+            for (int i = 0; i < this.windows.length; i++) {
+                long first = i * this.windowRows;
+                this.mapped[i] = channel.map(mode, first * type.width, Math.min(this.windowRows, rows - first) * type.width);
+                ByteBuffer bytes = this.mapped[i].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                switch (type) {
+                    case INT:
+                        this.windows[i] = bytes.asIntBuffer();
+                        break;
+                    case LONG:
+                        this.windows[i] = bytes.asLongBuffer();
+                        break;
+                    case DOUBLE:
+                        this.windows[i] = bytes.asDoubleBuffer();
+                        break;
+                    default:
+                        this.windows[i] = bytes;
+                }
+            }
+        }
+
+        /**
+         * Writes what has been stored through a mapping for writing out to the file on disk.
+         */
+        void force() {
+            for (MappedByteBuffer window : this.mapped) {
+                window.force();
+            }
+        }
+
+        /**
+         * Copies values into a block, widening ints and booleans to longs.
+         *
+         * @param start The first row to copy.
+         * @param n The number of rows to copy.
+         * @param longs The block for an integer or boolean column.
+         * @param doubles The block for a float column.
+         */
+        void load(long start, int n, long[] longs, double[] doubles) {
+            for (int done = 0; done < n; ) {
+                long row = start + done;
+                Buffer window = this.windows[(int) (row / this.windowRows)];
+                int index = (int) (row % this.windowRows);
+                int count = (int) Math.min(n - done, this.windowRows - index);
+                switch (this.type) {
+                    case LONG:
+                        ((LongBuffer) window).get(index, longs, done, count);
+                        break;
+                    case DOUBLE:
+                        ((DoubleBuffer) window).get(index, doubles, done, count);
+                        break;
+                    case INT: {
+                        IntBuffer ints = (IntBuffer) window;
+                        for (int i = 0; i < count; i++) {
+                            longs[done + i] = ints.get(index + i);
+                        }
+                        break;
+                    }
+                    default: {
+                        ByteBuffer bytes = (ByteBuffer) window;
+                        for (int i = 0; i < count; i++) {
+                            longs[done + i] = bytes.get(index + i) != 0 ? 1 : 0;
+                        }
+                    }
+                }
+                done += count;
+            }
+        }
+
+        /**
+         * Copies values out of a block, narrowing booleans held as longs to bytes.
+         *
+         * @param start The first row to write.
+         * @param n The number of rows to write.
+         * @param longs The block of an integer or boolean result.
+         * @param doubles The block of a float result.
+         * @throws RuntimeException If the column holds ints, which no result is written as.
+         */
+        void store(long start, int n, long[] longs, double[] doubles) {
+            for (int done = 0; done < n; ) {
+                long row = start + done;
+                Buffer window = this.windows[(int) (row / this.windowRows)];
+                int index = (int) (row % this.windowRows);
+                int count = (int) Math.min(n - done, this.windowRows - index);
+                switch (this.type) {
+                    case LONG:
+                        ((LongBuffer) window).put(index, longs, done, count);
+                        break;
+                    case DOUBLE:
+                        ((DoubleBuffer) window).put(index, doubles, done, count);
+                        break;
+                    case BOOLEAN: {
+                        ByteBuffer bytes = (ByteBuffer) window;
+                        for (int i = 0; i < count; i++) {
+                            bytes.put(index + i, (byte) (longs[done + i] != 0 ? 1 : 0));
+                        }
+                        break;
+                    }
+                    default:
+                        throw new RuntimeException("Can't write results to a column of " + this.type + ".");
+                }
+                done += count;
+            }
+        }
+
+        /**
+         * Writes the value of a row, given as the payload of an interpreter slot of the column's type.
+         */
+        void storeValue(long row, long value) {
+            Buffer window = this.windows[(int) (row / this.windowRows)];
+            int index = (int) (row % this.windowRows);
+            switch (this.type) {
+                case LONG:
+                    ((LongBuffer) window).put(index, value);
+                    break;
+                case DOUBLE:
+                    ((DoubleBuffer) window).put(index, Double.longBitsToDouble(value));
+                    break;
+                case BOOLEAN:
+                    ((ByteBuffer) window).put(index, (byte) value);
+                    break;
+                default:
+                    throw new RuntimeException("Can't write results to a column of " + this.type + ".");
+            }
+        }
+
+        /**
+         * Returns the value of a row as the payload of an interpreter slot: an integer or 1 or 0 for a boolean, or the
+         * bits of a double.
+         */
+        long rawValue(long row) {
+            Buffer window = this.windows[(int) (row / this.windowRows)];
+            int index = (int) (row % this.windowRows);
+            switch (this.type) {
+                case INT:
+                    return ((IntBuffer) window).get(index);
+                case LONG:
+                    return ((LongBuffer) window).get(index);
+                case DOUBLE:
+                    return Double.doubleToRawLongBits(((DoubleBuffer) window).get(index));
+                default:
+                    return ((ByteBuffer) window).get(index) != 0 ? 1 : 0;
+            }
+        }
+    }
+}
@@ -1,7 +1,10 @@
 import ast.AST.*;
+import ast.FlatAST;
+import ast.Symbol;
 
-import java.lang.annotation.Target;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Consumer;
@@ -13,203 +16,254 @@ import ByteUtils.BytecodeType;
 interface BytecodeGenerator extends Iterator<Bytecode> {}
 
 
+/**
+ * Compiles a syntax tree into bytecode in a single pass.
+ *
+ * Every node appends its instructions to one growable code buffer, so the cost of compiling is linear in the size of
+ * the program. Forward jumps are emitted with a placeholder distance and patched in place once their target is
+ * reached. The tree may be given either as AST objects or as a FlatAST; AST objects are converted to a FlatAST first,
+ * so every pass over the tree is a loop and any depth of nesting compiles.
+ */
 class Compiler {
-    private final TreeNode tree;
+    private final Object tree; // A TreeNode or a FlatAST
+    private int[] slotTable; // Open-addressing table of the variables, by symbol id, holding slot + 1, or 0 for a free entry
+    private final List<Object> variableNames; // The symbol of each frame slot, slots being assigned in order of first use
+    private List<Bytecode> code; // The code buffer instructions are appended to
 
     /**
      * Constructs a Compiler instance with a given syntax tree.
      * 
-     * @param tree2 The root of the syntax tree to be compiled.
+     * @param tree2 The root of the syntax tree to be compiled, or the tree as a FlatAST, or null for a Compiler only
+     *              used to compile parts of a program with compilePart.
      */
     public Compiler(Object tree2) {
-        this.tree = (TreeNode) tree2;
+        this.tree = tree2;
+        this.slotTable = new int[16];
+        this.variableNames = new ArrayList<>();
     }
 
     /**
      * Compiles the syntax tree into a sequence of bytecodes.
+     * The tree is first simplified by the ConstantFolder, so constant sub-expressions are computed once here
+     * rather than on every run.
      * 
      * @return A BytecodeGenerator capable of iterating over the generated bytecodes.
      */
     public BytecodeGenerator compile() {
-        return new BytecodeGeneratorImpl(this._compile(tree));
+        this.code = new ArrayList<>();
+        if (tree instanceof FlatAST) {
+            compileFlat(new ConstantFolder().fold((FlatAST) tree));
+        } else {
+            compileFlat(new ConstantFolder().fold(FlatAST.of((TreeNode) tree)));
+        }
+        return new BytecodeGeneratorImpl(this.code);
     }
 
     /**
-     * Recursively compiles a TreeNode into an iterable collection of Bytecodes.
-     * This method dynamically invokes the appropriate compile method for the type of TreeNode.
-     * 
-     * @param tree The TreeNode to compile.
-     * @return An Iterable collection of Bytecode objects generated from the TreeNode.
+     * Compiles one part of a program, such as a single top-level statement, into its own list of instructions.
+     * Variables keep the frame slots earlier calls gave them, so the code of parts compiled separately, and recompiled
+     * separately when they change, can be joined into one program. Each part is folded on its own, without the types
+     * earlier parts give variables, so its code does not depend on them.
+     *
+     * @param part The part to compile.
+     * @return The instructions of the part.
      */
-    private Iterable<Bytecode> _compile(TreeNode tree) {
-        String nodeName = tree.getClass().getSimpleName();
-        try {
-            String capitalizedNodeName = Character.toUpperCase(nodeName.charAt(0)) + nodeName.substring(1);
-            // Dynamically invokes the compile method for the specific type of TreeNode
-            return (Iterable<Bytecode>) this.getClass().getDeclaredMethod("compile" + capitalizedNodeName, tree.getClass()).invoke(this, tree);
-        } catch (Exception e) {
-            String capitalizedNodeName = Character.toUpperCase(nodeName.charAt(0)) + nodeName.substring(1);
-            System.out.println("compile" + capitalizedNodeName);
-            throw new RuntimeException("Can't compile " + nodeName, e);
-        }
+    public List<Bytecode> compilePart(FlatAST part) {
+        this.code = new ArrayList<>();
+        compileFlat(new ConstantFolder().fold(part));
+        return this.code;
     }
 
     /**
-     * Compiles a Program node into a list of Bytecodes.
+     * Returns the names of the variables the compiled code refers to, indexed by their frame slot.
+     * This is the table LOAD_FAST and STORE_FAST operands index into.
      * 
-     * @param program The Program node to compile.
-     * @return A list of Bytecodes representing the compiled program.
+     * @return The variable names, in slot order.
      */
-    private Iterable<Bytecode> compileProgram(Program program) {
-        List<Bytecode> bytecodes = new ArrayList<>();
-        for (TreeNode statement : program.getStatements()) {
-            // Compiles each statement in the program into Bytecodes and adds them to the list
-            for (Bytecode bc : _compile(statement)) {
-                bytecodes.add(bc);
-            }
-        }
-        return bytecodes;
+    public List<Object> getVariableNames() {
+        return new ArrayList<>(this.variableNames);
     }
 
     /**
-     * Compiles a Conditional node into a list of Bytecodes.
-     * This method handles the compilation of conditional statements, including if-else structures.
+     * Returns the frame slot of a variable, assigning the next free slot on first use.
      * 
-     * @param conditional The Conditional node to compile.
-     * @return A list of Bytecodes representing the compiled conditional statement.
+     * @param symbol The symbol id of the variable.
+     * @return The slot index of the variable.
      */
-    private Iterable<Bytecode> compileConditional(Conditional conditional) {
-        List<Bytecode> bytecodes = new ArrayList<>();
-        // Compile the condition part of the conditional statement
-        for (Bytecode bc : _compile(conditional.getCondition())) {
-            bytecodes.add(bc);
-        }
-        // Compile the body of the conditional statement
-        List<Bytecode> bodyBytecode = new ArrayList<>();
-        for (Bytecode bc : _compile(conditional.getBody())) {
-            bodyBytecode.add(bc);
+    private int slotOf(int symbol) {
+        int mask = this.slotTable.length - 1;
+        for (int entry = Symbol.hashId(symbol) & mask; ; entry = (entry + 1) & mask) {
+            int slot = this.slotTable[entry] - 1;
+            if (slot < 0) {
+                this.variableNames.add(Symbol.of(symbol));
+                this.slotTable[entry] = this.variableNames.size();
+                if (this.variableNames.size() * 2 > this.slotTable.length) {
+                    rehashSlotTable(this.slotTable.length * 2);
+                }
+                return this.variableNames.size() - 1;
+            }
+            if (((Symbol) this.variableNames.get(slot)).id() == symbol) {
+                return slot;
+            }
         }
-        // Add a jump instruction based on the condition evaluation
-        bytecodes.add(new Bytecode(BytecodeType.POP_JUMP_IF_FALSE, bodyBytecode.size() + 1));
-        bytecodes.addAll(bodyBytecode);
-        return bytecodes;
     }
 
     /**
-     * Compiles a Body node into a list of Bytecodes.
-     * This method handles the compilation of a block of statements, typically found within loops or conditionals.
-     * 
-     * @param body The Body node to compile.
-     * @return A list of Bytecodes representing the compiled block of statements.
+     * Rebuilds the table of variables at a given size, reinserting every one. The table is sized by the variables of
+     * this compiler, not by the symbols interned so far.
      */
-    private Iterable<Bytecode> compileBody(Body body) {
-        List<Bytecode> bytecodes = new ArrayList<>();
-        // Compile each statement in the body
-        for (TreeNode statement : body.getStatements()) {
-            for (Bytecode bc : _compile(statement)) {
-                bytecodes.add(bc);
+    private void rehashSlotTable(int length) {
+        int[] table = new int[length];
+        int mask = length - 1;
+        for (int slot = 0; slot < this.variableNames.size(); slot++) {
+            int entry = Symbol.hashId(((Symbol) this.variableNames.get(slot)).id()) & mask;
+            while (table[entry] != 0) {
+                entry = (entry + 1) & mask;
             }
+            table[entry] = slot + 1;
         }
-        return bytecodes;
+        this.slotTable = table;
     }
 
     /**
-     * Compiles an Assignment node into a list of Bytecodes.
-     * This method handles the compilation of assignment statements, including those with multiple targets.
-     * 
-     * @param assignment The Assignment node to compile.
-     * @return A list of Bytecodes representing the compiled assignment statement.
+     * Takes back the frame slot of a variable that no code uses any more, for callers that compile parts of a program
+     * and drop some of them. The variable in the last slot moves into the freed one, so the slots stay dense, and the
+     * caller renumbers the code that uses it.
+     *
+     * @param slot The slot to take back.
      */
-    private Iterable<Bytecode> compileAssignemnt(Assignment assignment) {
-        List<Bytecode> bytecodes = new ArrayList<>();
-        // Compile the value to be assigned
-        for (Bytecode bc : _compile(assignment.getValue())) {
-            bytecodes.add(bc);
+    public void releaseSlot(int slot) {
+        Object last = this.variableNames.remove(this.variableNames.size() - 1);
+        if (slot < this.variableNames.size()) {
+            this.variableNames.set(slot, last);
         }
-        // Handle multiple assignment targets
-        for (int i = 0; i < assignment.getTargets().size() - 1; i++) {
-            bytecodes.add(new Bytecode(BytecodeType.COPY));
-            bytecodes.add(new Bytecode(BytecodeType.SAVE, assignment.getTargets().get(i).getName()));
-        }
-        bytecodes.add(new Bytecode(BytecodeType.SAVE, assignment.getTargets().get(assignment.getTargets().size() - 1).getName()));
-        return bytecodes;
+        rehashSlotTable(this.slotTable.length);
     }
 
     /**
-     * Compiles an expression statement into a list of Bytecodes.
-     * This method handles the compilation of expression statements, which are expressions that are executed for their side effects.
-     * 
-     * @param expression The ExprStatement node to compile.
-     * @return A list of Bytecodes representing the compiled expression statement.
+     * Returns the number of frame slots assigned so far.
+     *
+     * @return The number of variables.
      */
-    private Iterable<Bytecode> compileExprStatement(ExprStatement expression) {
-        List<Bytecode> bytecodes = new ArrayList<>();
-        for (Bytecode bc : _compile(expression.getExpr())) {
-            bytecodes.add(bc);
-        }
-        bytecodes.add(new Bytecode(BytecodeType.POP));
-        return bytecodes;
+    public int getVariableCount() {
+        return this.variableNames.size();
     }
 
     /**
-     * Compiles a unary operation into a list of Bytecodes.
-     * This method handles the compilation of unary operations, such as negation or logical not.
+     * Appends an instruction to the end of the code buffer.
      * 
-     * @param tree The UnaryOp node to compile.
-     * @return A list of Bytecodes representing the compiled unary operation.
+     * @param bytecode The instruction to append.
+     * @return The index of the instruction in the code buffer.
      */
-    private Iterable<Bytecode> compileUnaryOp(UnaryOp tree) {
-        List<Bytecode> bytecodes = new ArrayList<>();
-        for (Bytecode bc : _compile(tree.getValue())) {
-            bytecodes.add(bc);
-        }
-        bytecodes.add(new Bytecode(BytecodeType.UNARYOP, tree.getOp()));
-        return bytecodes;
+    private int emit(Bytecode bytecode) {
+        this.code.add(bytecode);
+        return this.code.size() - 1;
     }
 
     /**
-     * Compiles a binary operation into a list of Bytecodes.
-     * This method handles the compilation of binary operations, such as addition, subtraction, or comparison.
+     * Appends a forward jump whose distance is not known yet, to be filled in by bindLabel.
      * 
-     * @param tree The BinaryOp node to compile.
-     * @return A list of Bytecodes representing the compiled binary operation.
+     * @param type The type of the jump instruction.
+     * @return The label of the jump, the index of its instruction in the code buffer.
      */
-    private Iterable<Bytecode> compileBinaryOp(BinaryOp tree) {
-        List<Bytecode> bytecodes = new ArrayList<>();
-        for (Bytecode bc : _compile(tree.getLeft())) {
-            bytecodes.add(bc);
-        }
-        for (Bytecode bc : _compile(tree.getRight())) {
-            bytecodes.add(bc);
-        }
-        bytecodes.add(new Bytecode(BytecodeType.BINARYOP, tree.getOp()));
-        return bytecodes;
+    private int emitJump(BytecodeType type) {
+        return emit(new Bytecode(type, 0));
     }
 
     /**
-     * Compiles a constant value into a Bytecode.
-     * This method handles the compilation of constants, embedding them directly into the bytecode stream.
+     * Makes a forward jump land on the next instruction emitted, by patching its distance in place.
      * 
-     * @param constant The Constant node to compile.
-     * @return A list of Bytecodes representing the compiled constant.
+     * @param label The label returned by emitJump.
      */
-    private Iterable<Bytecode> compileConstant(Constant constant) {
-        List<Bytecode> bytecodes = new ArrayList<>();
-        bytecodes.add(new Bytecode(BytecodeType.PUSH, constant.getValue()));
-        return bytecodes;
+    private void bindLabel(int label) {
+        this.code.set(label, new Bytecode(this.code.get(label).getType(), this.code.size() - label));
     }
 
     /**
-     * Compiles a Variable node into a list of Bytecodes.
-     * This method handles the compilation of variable access, generating bytecode to load the variable's value.
-     * 
-     * @param var The Variable node representing the variable to be loaded.
-     * @return A list of Bytecodes representing the compiled variable access.
+     * Compiles a tree in compact form.
+     *
+     * Folding leaves nodes in the tree that nothing refers to any more, so a first loop, from the root down, marks the
+     * nodes reachable from the root. Since children come before their parents, the reachable nodes in index order are
+     * then the tree in post-order, which is the order their instructions are emitted in: operands before operations,
+     * the value of an assignment before its stores, and a condition before the jump over its body.
+     *
+     * @param tree The folded tree.
      */
-    private Iterable<Bytecode> compileVariable(Variable var) {
-        List<Bytecode> bytecodes = new ArrayList<>();
-        bytecodes.add(new Bytecode(BytecodeType.LOAD, var.getName()));
-        return bytecodes;
+    private void compileFlat(FlatAST tree) {
+        int root = tree.root();
+        boolean[] live = new boolean[root + 1];
+        boolean[] isCondition = new boolean[root + 1];
+        live[root] = true;
+        for (int n = root; n >= 0; n--) {
+            if (!live[n]) {
+                continue;
+            }
+            switch (tree.kind(n)) {
+                case PROGRAM:
+                case BODY:
+                    for (int i = 0; i < tree.listLength(n); i++) {
+                        live[tree.listElement(n, i)] = true;
+                    }
+                    break;
+                case CONDITIONAL:
+                    isCondition[tree.first(n)] = true;
+                    live[tree.second(n)] = true;
+                    live[tree.first(n)] = true;
+                    break;
+                case BINARY_OP:
+                    live[tree.second(n)] = true;
+                    live[tree.first(n)] = true;
+                    break;
+                case ASSIGNMENT: // The targets are stored to by the assignment itself.
+                case EXPR_STATEMENT:
+                case UNARY_OP:
+                    live[tree.first(n)] = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        Deque<Integer> skipBodies = new ArrayDeque<>(); // The jumps over the bodies being compiled, innermost first
+        for (int n = 0; n <= root; n++) {
+            if (!live[n]) {
+                continue;
+            }
+            switch (tree.kind(n)) {
+                case CONSTANT:
+                    emit(new Bytecode(BytecodeType.PUSH, tree.value(n)));
+                    break;
+                case VARIABLE:
+                    emit(new Bytecode(BytecodeType.LOAD_FAST, slotOf(tree.symbol(n))));
+                    break;
+                case UNARY_OP:
+                    emit(new Bytecode(BytecodeType.UNARYOP, tree.operator(n).getSymbol()));
+                    break;
+                case BINARY_OP:
+                    emit(new Bytecode(BytecodeType.BINARYOP, tree.operator(n).getSymbol()));
+                    break;
+                case ASSIGNMENT: {
+                    int targets = tree.listLength(n);
+                    for (int i = 0; i < targets - 1; i++) {
+                        emit(new Bytecode(BytecodeType.COPY));
+                        emit(new Bytecode(BytecodeType.STORE_FAST, slotOf(tree.symbol(tree.listElement(n, i)))));
+                    }
+                    emit(new Bytecode(BytecodeType.STORE_FAST, slotOf(tree.symbol(tree.listElement(n, targets - 1)))));
+                    break;
+                }
+                case EXPR_STATEMENT:
+                    emit(new Bytecode(BytecodeType.POP));
+                    break;
+                case CONDITIONAL:
+                    bindLabel(skipBodies.pop());
+                    break;
+                default:
+                    break;
+            }
+            if (isCondition[n]) {
+                skipBodies.push(emitJump(BytecodeType.POP_JUMP_IF_FALSE));
+            }
+        }
     }
 
     /**
@@ -0,0 +1,297 @@
+import ast.AST.*;
+import ast.FlatAST;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import ByteUtils.Operator;
+
+/**
+ * An optimization pass that simplifies a syntax tree before it is compiled.
+ *
+ * It folds unary and binary operations over constants into a single constant, using the operator semantics
+ * in Arithmetic so the folded value is exactly what the interpreter would compute. Operations that would fail at
+ * runtime, such as a division by zero, are left in place so that they still fail when the program runs.
+ * It also applies identities that cannot change the result: x*1, 1*x, x+0, 0+x, x-0, x//1 and x**1 become x when x is
+ * known to be an integer (x/1 is a float, so it is kept), and not not x becomes x where only its truthiness matters.
+ * The simplifications are made on the compact FlatAST form of a tree; a tree of AST objects is converted to it first.
+ */
+class ConstantFolder {
+    /**
+     * What is statically known about the value of an expression.
+     */
+    enum StaticType {
+        INT, // Always an integer
+        BOOL, // Always a boolean
+        FLOAT, // Always a float
+        UNKNOWN // Anything else, or not known
+    }
+
+    private static final long MAX_FOLDED_BITS = 4096; // The largest power, in bits, that is computed at compile time
+
+    private Map<Object, StaticType> variableTypes; // The types variables are known to hold at the current point
+
+    /**
+     * Constructs a ConstantFolder.
+     */
+    public ConstantFolder() {
+        this.variableTypes = new HashMap<>();
+    }
+
+    /**
+     * Folds a syntax tree, returning a simplified tree. The given tree is not modified.
+     * The tree is folded in its compact form, so any depth of nesting is handled.
+     *
+     * @param tree The root of the syntax tree, normally a Program.
+     * @return The simplified tree.
+     */
+    public TreeNode fold(TreeNode tree) {
+        return fold(FlatAST.of(tree)).toTree();
+    }
+
+    /**
+     * Keeps the known type of a variable after a body that may or may not have run only if the body agrees with it.
+     *
+     * @param before The known types before the body.
+     */
+    private void mergeBranch(Map<Object, StaticType> before) {
+        Map<Object, StaticType> merged = new HashMap<>();
+        for (Map.Entry<Object, StaticType> entry : before.entrySet()) {
+            if (this.variableTypes.get(entry.getKey()) == entry.getValue()) {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        this.variableTypes = merged;
+    }
+
+    /**
+     * Which operand, if any, a binary operation always equals.
+     */
+    private enum Identity {
+        NONE,
+        LEFT,
+        RIGHT
+    }
+
+    /**
+     * Returns the operand a binary operation always equals, given what is known about its operands.
+     *
+     * @param op The operator.
+     * @param leftType The static type of the left operand.
+     * @param leftValue The value of the left operand if it is a constant, or null.
+     * @param rightType The static type of the right operand.
+     * @param rightValue The value of the right operand if it is a constant, or null.
+     * @return The operand the operation can be replaced by, or NONE.
+     */
+    private static Identity identityOperand(Operator op, StaticType leftType, Object leftValue, StaticType rightType, Object rightValue) {
+        if (leftType == StaticType.INT && isIntConstant(rightValue, op == Operator.ADD || op == Operator.SUB ? 0 : 1)
+                && op != Operator.MOD && op != Operator.DIV) {
+            return Identity.LEFT;
+        }
+        if (rightType == StaticType.INT && isIntConstant(leftValue, op == Operator.ADD ? 0 : 1)
+                && (op == Operator.ADD || op == Operator.MUL)) {
+            return Identity.RIGHT;
+        }
+        return Identity.NONE;
+    }
+
+    private static boolean isIntConstant(Object value, long expected) {
+        return value instanceof Long && (Long) value == expected;
+    }
+
+    private static boolean isNonNegativeInteger(Object value) {
+        return value instanceof Boolean || value instanceof Long && (Long) value >= 0
+                || value instanceof BigInteger && ((BigInteger) value).signum() >= 0;
+    }
+
+    /**
+     * Returns the value of a unary operation on a constant, or null if it must be left to fail at runtime.
+     */
+    private static Object foldUnary(Operator op, Object value) {
+        try {
+            return Arithmetic.unary(op, value);
+        } catch (RuntimeException e) {
+            return null; // Leave the operation to fail at runtime.
+        }
+    }
+
+    /**
+     * Returns the value of a binary operation on constants, or null if it must be left to run, because it fails or
+     * because its result is too large.
+     */
+    private static Object foldBinary(Operator op, Object left, Object right) {
+        if (isTooLargeToFold(op, left, right)) {
+            return null;
+        }
+        try {
+            return Arithmetic.binary(op, left, right);
+        } catch (RuntimeException e) {
+            return null; // Leave the operation to fail at runtime.
+        }
+    }
+
+    /**
+     * Returns whether folding a power of two constants could produce an integer too large to be worth storing in the
+     * compiled program. Such operations are left to run, and use memory, only if the program actually reaches them.
+     */
+    private static boolean isTooLargeToFold(Operator op, Object base, Object exponent) {
+        if (op != Operator.POW || !Arithmetic.isInteger(base) || !Arithmetic.isInteger(exponent)) {
+            return false;
+        }
+        long baseBits = base instanceof BigInteger ? ((BigInteger) base).bitLength() : 64 - Long.numberOfLeadingZeros(Math.abs(Interpreter.valueOf(base)));
+        if (baseBits <= 1) {
+            return false; // 0, 1 and -1 stay small.
+        }
+        return exponent instanceof BigInteger || baseBits * Interpreter.valueOf(exponent) > MAX_FOLDED_BITS;
+    }
+
+    private static StaticType constantType(Object value) {
+        return value instanceof Long || value instanceof BigInteger ? StaticType.INT
+                : value instanceof Boolean ? StaticType.BOOL : value instanceof Double ? StaticType.FLOAT : StaticType.UNKNOWN;
+    }
+
+    private static StaticType unaryType(Operator op, StaticType operand) {
+        switch (op) {
+            case NOT:
+                return StaticType.BOOL;
+            case POS:
+                return operand;
+            default:
+                return operand == StaticType.UNKNOWN || operand == StaticType.FLOAT ? operand : StaticType.INT;
+        }
+    }
+
+    /**
+     * Returns the static type of a binary operation on operands of known types.
+     *
+     * @param rightValue The value of the right operand if it is a constant, or null.
+     */
+    private static StaticType binaryType(Operator op, StaticType left, StaticType right, Object rightValue) {
+        if (left == StaticType.UNKNOWN || right == StaticType.UNKNOWN) {
+            return StaticType.UNKNOWN;
+        } else if (left == StaticType.FLOAT || right == StaticType.FLOAT || op == Operator.DIV) {
+            return StaticType.FLOAT;
+        } else if (op == Operator.POW && !isNonNegativeInteger(rightValue)) {
+            return StaticType.UNKNOWN; // An integer to a negative power is a float.
+        }
+        return StaticType.INT;
+    }
+
+    /**
+     * Folds a tree in compact form, returning a simplified copy. The given tree is not modified.
+     *
+     * The nodes are simplified in place in a single loop: since children come before their parents, the operands of
+     * an operation have been simplified by the time it is reached. A simplified node is overwritten with a constant
+     * or with a copy of the operand it equals, and nodes no longer referred to are left in place. The bodies of
+     * conditionals, which start right after their condition, are found beforehand so that the types known before a
+     * body can be restored afterwards, and so are the nodes whose truthiness is all that matters.
+     *
+     * @param tree The tree to fold, whose root is normally a Program.
+     * @return The simplified copy.
+     */
+    public FlatAST fold(FlatAST tree) {
+        FlatAST folded = tree.copy();
+        int size = folded.size();
+        boolean[] booleanContext = new boolean[size];
+        boolean[] startsBody = new boolean[size + 1];
+        for (int n = 0; n < size; n++) {
+            if (folded.kind(n) == FlatAST.Kind.UNARY_OP && folded.operator(n) == Operator.NOT) {
+                booleanContext[folded.first(n)] = true;
+            } else if (folded.kind(n) == FlatAST.Kind.CONDITIONAL) {
+                booleanContext[folded.first(n)] = true;
+                startsBody[folded.first(n) + 1] = true;
+            }
+        }
+
+        StaticType[] types = new StaticType[size];
+        Deque<Map<Object, StaticType>> typesBeforeBodies = new ArrayDeque<>();
+        for (int n = 0; n < size; n++) {
+            if (startsBody[n]) {
+                typesBeforeBodies.push(new HashMap<>(this.variableTypes));
+            }
+            switch (folded.kind(n)) {
+                case CONSTANT:
+                    types[n] = constantType(folded.value(n));
+                    break;
+                case VARIABLE:
+                    types[n] = this.variableTypes.getOrDefault(folded.value(n), StaticType.UNKNOWN);
+                    break;
+                case UNARY_OP:
+                    types[n] = foldUnaryOp(folded, n, booleanContext[n], types);
+                    break;
+                case BINARY_OP:
+                    types[n] = foldBinaryOp(folded, n, types);
+                    break;
+                case ASSIGNMENT:
+                    for (int i = 0; i < folded.listLength(n); i++) {
+                        this.variableTypes.put(folded.value(folded.listElement(n, i)), types[folded.first(n)]);
+                    }
+                    break;
+                case CONDITIONAL:
+                    mergeBranch(typesBeforeBodies.pop());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return folded;
+    }
+
+    /**
+     * Folds a unary operation of a compact tree in place, whose operand has already been folded.
+     *
+     * @return The static type of the folded node.
+     */
+    private static StaticType foldUnaryOp(FlatAST tree, int node, boolean booleanContext, StaticType[] types) {
+        Operator op = tree.operator(node);
+        int operand = tree.first(node);
+        if (tree.kind(operand) == FlatAST.Kind.CONSTANT) {
+            Object folded = foldUnary(op, tree.value(operand));
+            if (folded != null) {
+                tree.replaceWithConstant(node, folded);
+                return constantType(folded);
+            }
+        }
+        if (op == Operator.NOT && tree.kind(operand) == FlatAST.Kind.UNARY_OP && tree.operator(operand) == Operator.NOT) {
+            int inner = tree.first(operand);
+            if (booleanContext || types[inner] == StaticType.BOOL) {
+                tree.replaceWith(node, inner);
+                return types[inner];
+            }
+        }
+        return unaryType(op, types[operand]);
+    }
+
+    /**
+     * Folds a binary operation of a compact tree in place, whose operands have already been folded.
+     *
+     * @return The static type of the folded node.
+     */
+    private static StaticType foldBinaryOp(FlatAST tree, int node, StaticType[] types) {
+        Operator op = tree.operator(node);
+        int left = tree.first(node);
+        int right = tree.second(node);
+        Object leftValue = tree.kind(left) == FlatAST.Kind.CONSTANT ? tree.value(left) : null;
+        Object rightValue = tree.kind(right) == FlatAST.Kind.CONSTANT ? tree.value(right) : null;
+        if (leftValue != null && rightValue != null) {
+            Object folded = foldBinary(op, leftValue, rightValue);
+            if (folded != null) {
+                tree.replaceWithConstant(node, folded);
+                return constantType(folded);
+            }
+        }
+        switch (identityOperand(op, types[left], leftValue, types[right], rightValue)) {
+            case LEFT:
+                tree.replaceWith(node, left);
+                return types[left];
+            case RIGHT:
+                tree.replaceWith(node, right);
+                return types[right];
+            default:
+                return binaryType(op, types[left], types[right], rightValue);
+        }
+    }
+}
@@ -0,0 +1,486 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ByteUtils.Bytecode;
+import ByteUtils.BytecodeType;
+import ast.AST.*;
+import ast.FlatAST;
+
+/**
+ * Keeps a source file compiled as it is edited, redoing only the work an edit affects.
+ *
+ * The source is split into chunks, one per top-level statement: a chunk starts at a line that begins with neither a
+ * space nor a newline, where the indentation is back to zero, and runs up to the next such line, taking in the
+ * blank lines after its statement. The lexer is in the same state at the start of every chunk, so each chunk is
+ * lexed, parsed and compiled on its own, and keeps its syntax tree and bytecode until an edit reaches it.
+ *
+ * An edit damages the chunks from the one before it to the one holding its end. Only their text, in new coordinates,
+ * is split into chunks again and re-lexed: the line after them starts a top-level statement that the edit did not
+ * touch, so lexing resynchronises there.
+ *
+ * Nothing else is redone in proportion to the size of the file. The source is kept in a gap buffer whose gap follows
+ * the edits, so an edit moves only the text between it and the one before. The chunks keep their lengths, in
+ * characters and in instructions, in two Fenwick trees, so the chunk at an offset and the offsets of a chunk take
+ * logarithmic time and the chunks after an edit are not touched; an edit that changes the number of top-level
+ * statements rebuilds the trees, one pass over an int per chunk. The code of every chunk is kept joined, and an edit
+ * splices the code of the chunks it recompiled into it.
+ *
+ * Each chunk records the frame slots its code uses, and each slot how many chunks use it. A slot no chunk uses any
+ * more is taken back, and the variable in the last slot moves into it, its uses renumbered, so the variable names hold
+ * only the variables of the current source.
+ *
+ * Errors are kept per chunk, so the source may be invalid between edits; getBytecode reports the first of them.
+ */
+class IncrementalCompiler {
+    private final GapBuffer source;
+    private final List<Chunk> chunks; // The chunks, in source order, together covering the whole source
+    private Fenwick textLengths; // The number of characters of each chunk
+    private Fenwick codeLengths; // The number of instructions of each chunk, 0 for a chunk that failed
+    private final List<Bytecode> bytecode; // The code of every chunk, joined in source order
+    private final Compiler compiler; // Compiles every chunk, so that all of them share the same frame slots
+    private int[] slotUses; // The number of chunks whose code uses each frame slot
+    private int errors; // The number of chunks that failed to lex, parse or compile
+    private int lastRecompiled; // The number of chunks the last edit recompiled
+
+    /**
+     * A top-level statement with the blank lines after it, and what was made of it.
+     */
+    private static final class Chunk {
+        final int length; // The number of characters of the chunk
+        final Statement statement; // The statement, or null if the chunk has none or failed to parse
+        final List<Bytecode> code; // The instructions of the statement, or null if it failed to lex, parse or compile
+        final RuntimeException error; // The error lexing, parsing or compiling the chunk, or null
+        final int[] slots; // The frame slots the code uses, each once
+
+        Chunk(int length, Statement statement, List<Bytecode> code, RuntimeException error, int[] slots) {
+            this.length = length;
+            this.statement = statement;
+            this.code = code;
+            this.error = error;
+            this.slots = slots;
+        }
+
+        int codeLength() {
+            return this.code == null ? 0 : this.code.size();
+        }
+    }
+
+    /**
+     * Text with a gap at the last place it was edited, so that edits near one another move few characters.
+     */
+    private static final class GapBuffer {
+        private char[] chars;
+        private int gapStart; // The index of the first character of the gap, and the offset of the text after it
+        private int gapEnd; // The index of the first character after the gap
+
+        GapBuffer(String text) {
+            this.chars = new char[Math.max(64, text.length() * 2)];
+            text.getChars(0, text.length(), this.chars, 0);
+            this.gapStart = text.length();
+            this.gapEnd = this.chars.length;
+        }
+
+        int length() {
+            return this.chars.length - (this.gapEnd - this.gapStart);
+        }
+
+        char charAt(int offset) {
+            return offset < this.gapStart ? this.chars[offset] : this.chars[offset + this.gapEnd - this.gapStart];
+        }
+
+        /**
+         * Copies the text from start to end into an array.
+         */
+        void getChars(int start, int end, char[] destination, int destinationStart) {
+            if (start < this.gapStart) {
+                int before = Math.min(end, this.gapStart) - start;
+                System.arraycopy(this.chars, start, destination, destinationStart, before);
+                start += before;
+                destinationStart += before;
+            }
+            if (start < end) {
+                System.arraycopy(this.chars, start + this.gapEnd - this.gapStart, destination, destinationStart, end - start);
+            }
+        }
+
+        void replace(int offset, int removedLength, String insertedText) {
+            moveGap(offset);
+            this.gapEnd += removedLength;
+            if (insertedText.length() > this.gapEnd - this.gapStart) {
+                grow(insertedText.length());
+            }
+            insertedText.getChars(0, insertedText.length(), this.chars, this.gapStart);
+            this.gapStart += insertedText.length();
+        }
+
+        private void moveGap(int offset) {
+            if (offset < this.gapStart) {
+                int moved = this.gapStart - offset;
+                System.arraycopy(this.chars, offset, this.chars, this.gapEnd - moved, moved);
+                this.gapStart = offset;
+                this.gapEnd -= moved;
+            } else if (offset > this.gapStart) {
+                int moved = offset - this.gapStart;
+                System.arraycopy(this.chars, this.gapEnd, this.chars, this.gapStart, moved);
+                this.gapStart = offset;
+                this.gapEnd += moved;
+            }
+        }
+
+        /**
+         * Widens the gap to hold at least a number of characters.
+         */
+        private void grow(int needed) {
+            char[] grown = new char[Math.max(this.chars.length * 2, length() + needed + 64)];
+            int after = this.chars.length - this.gapEnd;
+            System.arraycopy(this.chars, 0, grown, 0, this.gapStart);
+            System.arraycopy(this.chars, this.gapEnd, grown, grown.length - after, after);
+            this.gapEnd = grown.length - after;
+            this.chars = grown;
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(length()).append(this.chars, 0, this.gapStart)
+                    .append(this.chars, this.gapEnd, this.chars.length - this.gapEnd).toString();
+        }
+    }
+
+    /**
+     * A Fenwick tree of non-negative ints, giving the sum of the first values, and the number of first values whose
+     * sum is within a total, in logarithmic time.
+     */
+    private static final class Fenwick {
+        private final int[] tree; // tree[i] is the sum of the values from i - (i & -i) to i - 1
+
+        /**
+         * Builds the tree of some values in one pass.
+         */
+        Fenwick(int[] values, int count) {
+            this.tree = new int[count + 1];
+            for (int i = 1; i <= count; i++) {
+                this.tree[i] += values[i - 1];
+                int parent = i + (i & -i);
+                if (parent <= count) {
+                    this.tree[parent] += this.tree[i];
+                }
+            }
+        }
+
+        void add(int index, int delta) {
+            for (int i = index + 1; i < this.tree.length; i += i & -i) {
+                this.tree[i] += delta;
+            }
+        }
+
+        /**
+         * Returns the sum of the first count values.
+         */
+        int prefix(int count) {
+            int sum = 0;
+            for (int i = count; i > 0; i -= i & -i) {
+                sum += this.tree[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Returns the largest number of first values whose sum is at most a total.
+         */
+        int countWithin(int total) {
+            int count = 0;
+            for (int step = Integer.highestOneBit(Math.max(this.tree.length - 1, 1)); step > 0; step >>= 1) {
+                if (count + step < this.tree.length && this.tree[count + step] <= total) {
+                    count += step;
+                    total -= this.tree[count];
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Constructs an IncrementalCompiler and compiles the whole source.
+     *
+     * @param source The source code.
+     */
+    public IncrementalCompiler(String source) {
+        this.source = new GapBuffer(source);
+        this.chunks = new ArrayList<>();
+        this.bytecode = new ArrayList<>();
+        this.compiler = new Compiler(null);
+        this.slotUses = new int[16];
+        this.chunks.addAll(compileChunks(0, source.length()));
+        for (Chunk chunk : this.chunks) {
+            if (chunk.code != null) {
+                this.bytecode.addAll(chunk.code);
+            }
+        }
+        rebuildLengths();
+        releaseUnusedSlots();
+        this.lastRecompiled = this.chunks.size();
+    }
+
+    /**
+     * Replaces part of the source and recompiles the chunks the change reaches.
+     *
+     * @param offset The offset of the text to replace.
+     * @param removedLength The length of the text to replace.
+     * @param insertedText The text to put in its place.
+     * @throws RuntimeException If the range to replace is not within the source.
+     */
+    public void edit(int offset, int removedLength, String insertedText) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > this.source.length()) {
+            throw new RuntimeException(String.format("Can't replace %d characters at %d in a source of %d.", removedLength, offset, this.source.length()));
+        }
+        // The character before the edit may end a line the edit indents into the chunk before, so that chunk is damaged too.
+        int first = chunkAt(Math.max(offset - 1, 0));
+        int last = chunkAt(offset + removedLength);
+        int delta = insertedText.length() - removedLength;
+
+        this.source.replace(offset, removedLength, insertedText);
+        int start = this.textLengths.prefix(first);
+        int end = this.textLengths.prefix(last + 1) + delta;
+        // The new chunks take their slots before the old ones let theirs go, so variables they share keep their slots.
+        List<Chunk> recompiled = compileChunks(start, end);
+
+        List<Bytecode> code = new ArrayList<>();
+        for (Chunk chunk : recompiled) {
+            if (chunk.code != null) {
+                code.addAll(chunk.code);
+            }
+        }
+        List<Bytecode> replacedCode = this.bytecode.subList(this.codeLengths.prefix(first), this.codeLengths.prefix(last + 1));
+        replacedCode.clear();
+        replacedCode.addAll(code);
+
+        List<Chunk> damaged = this.chunks.subList(first, last + 1);
+        boolean sameCount = damaged.size() == recompiled.size();
+        for (int i = 0; i < damaged.size(); i++) {
+            Chunk old = damaged.get(i);
+            forget(old);
+            if (sameCount) {
+                this.textLengths.add(first + i, recompiled.get(i).length - old.length);
+                this.codeLengths.add(first + i, recompiled.get(i).codeLength() - old.codeLength());
+            }
+        }
+        damaged.clear();
+        damaged.addAll(recompiled);
+        if (!sameCount) {
+            rebuildLengths();
+        }
+        releaseUnusedSlots();
+        this.lastRecompiled = recompiled.size();
+    }
+
+    /**
+     * Returns the index of the chunk holding a source offset, or the last chunk for the end of the source.
+     */
+    private int chunkAt(int offset) {
+        return Math.min(this.textLengths.countWithin(offset), this.chunks.size() - 1);
+    }
+
+    /**
+     * Rebuilds the trees of chunk lengths from the chunks.
+     */
+    private void rebuildLengths() {
+        int[] text = new int[this.chunks.size()];
+        int[] code = new int[this.chunks.size()];
+        for (int i = 0; i < this.chunks.size(); i++) {
+            text[i] = this.chunks.get(i).length;
+            code[i] = this.chunks.get(i).codeLength();
+        }
+        this.textLengths = new Fenwick(text, text.length);
+        this.codeLengths = new Fenwick(code, code.length);
+    }
+
+    /**
+     * Splits a range of the source that starts a chunk and ends the source or starts another into chunks, and compiles
+     * each of them.
+     */
+    private List<Chunk> compileChunks(int start, int end) {
+        List<Chunk> compiled = new ArrayList<>();
+        int chunkStart = start;
+        for (int i = start + 1; i <= end; i++) {
+            if (i == end || (this.source.charAt(i - 1) == '\n' && this.source.charAt(i) != ' ' && this.source.charAt(i) != '\n')) {
+                compiled.add(compileChunk(chunkStart, i));
+                chunkStart = i;
+            }
+        }
+        if (compiled.isEmpty()) {
+            compiled.add(compileChunk(start, end)); // An empty source is one empty chunk.
+        }
+        return compiled;
+    }
+
+    /**
+     * Lexes, parses and compiles one chunk on its own, counting it as a user of the slots its code uses.
+     */
+    private Chunk compileChunk(int start, int end) {
+        char[] text = new char[end - start];
+        this.source.getChars(start, end, text, 0);
+        Chunk chunk;
+        try {
+            FlatAST tree = new Parser(new Lexer(text, text.length).tokenizeToStream()).parseFlat();
+            List<Statement> statements = ((Program) tree.toTree()).getStatements();
+            List<Bytecode> code = this.compiler.compilePart(tree);
+            chunk = new Chunk(text.length, statements.isEmpty() ? null : statements.get(0), code, null, slotsOf(code));
+        } catch (RuntimeException e) {
+            chunk = new Chunk(text.length, null, null, e, new int[0]);
+        }
+        for (int slot : chunk.slots) {
+            if (slot >= this.slotUses.length) {
+                this.slotUses = Arrays.copyOf(this.slotUses, Math.max(slot + 1, this.slotUses.length * 2));
+            }
+            this.slotUses[slot]++;
+        }
+        this.errors += chunk.error == null ? 0 : 1;
+        return chunk;
+    }
+
+    /**
+     * Stops counting a chunk an edit replaced.
+     */
+    private void forget(Chunk chunk) {
+        for (int slot : chunk.slots) {
+            this.slotUses[slot]--;
+        }
+        this.errors -= chunk.error == null ? 0 : 1;
+    }
+
+    private static boolean usesSlot(Bytecode instruction) {
+        return instruction.getType() == BytecodeType.LOAD_FAST || instruction.getType() == BytecodeType.STORE_FAST;
+    }
+
+    /**
+     * Returns the frame slots a chunk's code uses, each once.
+     */
+    private static int[] slotsOf(List<Bytecode> code) {
+        int[] slots = new int[code.size()];
+        int count = 0;
+        for (Bytecode instruction : code) {
+            if (usesSlot(instruction)) {
+                slots[count++] = (Integer) instruction.getValue();
+            }
+        }
+        Arrays.sort(slots, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || slots[i] != slots[i - 1]) {
+                slots[distinct++] = slots[i];
+            }
+        }
+        return Arrays.copyOf(slots, distinct);
+    }
+
+    /**
+     * Takes back every slot no chunk uses any more, from the last down, moving the variable in the last slot into each.
+     */
+    private void releaseUnusedSlots() {
+        // A chunk that failed to compile may have been given slots for variables it does not use.
+        if (this.slotUses.length < this.compiler.getVariableCount()) {
+            this.slotUses = Arrays.copyOf(this.slotUses, this.compiler.getVariableCount());
+        }
+        for (int slot = this.compiler.getVariableCount() - 1; slot >= 0; slot--) {
+            if (this.slotUses[slot] == 0) {
+                int lastSlot = this.compiler.getVariableCount() - 1;
+                if (slot != lastSlot) {
+                    renumber(lastSlot, slot);
+                    this.slotUses[slot] = this.slotUses[lastSlot];
+                    this.slotUses[lastSlot] = 0;
+                }
+                this.compiler.releaseSlot(slot);
+            }
+        }
+    }
+
+    /**
+     * Moves every use of a variable to another slot, in the code of its chunks and in the joined code. Since a chunk
+     * does not know its position, this walks the chunks, which happens only when an edit removes a variable.
+     */
+    private void renumber(int from, int to) {
+        int offset = 0;
+        for (Chunk chunk : this.chunks) {
+            int index = Arrays.binarySearch(chunk.slots, from);
+            if (index >= 0) {
+                for (int i = 0; i < chunk.code.size(); i++) {
+                    Bytecode instruction = chunk.code.get(i);
+                    if (usesSlot(instruction) && (Integer) instruction.getValue() == from) {
+                        Bytecode renumbered = new Bytecode(instruction.getType(), to);
+                        chunk.code.set(i, renumbered);
+                        this.bytecode.set(offset + i, renumbered);
+                    }
+                }
+                chunk.slots[index] = to;
+                Arrays.sort(chunk.slots);
+            }
+            offset += chunk.codeLength();
+        }
+    }
+
+    /**
+     * Returns the current source.
+     *
+     * @return The source code, with every edit applied.
+     */
+    public String getSource() {
+        return this.source.toString();
+    }
+
+    /**
+     * Returns the syntax tree of the current source, made of the statements of every chunk.
+     *
+     * @return The Program.
+     * @throws RuntimeException The error of the first chunk that failed to lex or parse, if any.
+     */
+    public Program getProgram() {
+        List<Statement> statements = new ArrayList<>();
+        for (Chunk chunk : this.chunks) {
+            if (chunk.error != null) {
+                throw chunk.error;
+            } else if (chunk.statement != null) {
+                statements.add(chunk.statement);
+            }
+        }
+        return new Program(statements);
+    }
+
+    /**
+     * Returns the bytecode of the current source, the code of every chunk joined.
+     *
+     * @return The instructions of the whole program, as a read-only view that the next edit changes.
+     * @throws RuntimeException The error of the first chunk that failed to lex, parse or compile, if any.
+     */
+    public List<Bytecode> getBytecode() {
+        if (this.errors > 0) {
+            for (Chunk chunk : this.chunks) {
+                if (chunk.error != null) {
+                    throw chunk.error;
+                }
+            }
+        }
+        return Collections.unmodifiableList(this.bytecode);
+    }
+
+    /**
+     * Returns the names of the variables the bytecode refers to, indexed by their frame slot.
+     * A variable no statement refers to any more has its slot taken back, so only the variables of the current source
+     * are named.
+     *
+     * @return The variable names, in slot order.
+     */
+    public List<Object> getVariableNames() {
+        return this.compiler.getVariableNames();
+    }
+
+    /**
+     * Returns the number of chunks, at most one per top-level statement, the last edit lexed, parsed and compiled.
+     *
+     * @return The number of chunks recompiled, or the number of chunks if there has been no edit.
+     */
+    public int getLastRecompiledCount() {
+        return this.lastRecompiled;
+    }
+}
@@ -1,63 +1,278 @@
+import java.math.BigInteger;
 import java.util.*;
-import java.util.function.BiFunction;
 
 import ByteUtils.Bytecode;
+import ByteUtils.BytecodeType;
+import ByteUtils.CodeObject;
+import ByteUtils.Operator;
 
+/**
+ * Runs a CodeObject. An Interpreter is the state of one execution of the code: its frame of variable slots, its
+ * stack, its instruction pointer, the last value it popped, and its own copy of the instructions, which it quickens
+ * for the types it meets. The CodeObject holds none of that state and is never written, so one compiled program can
+ * be run by any number of interpreters at once, one per thread, each reset and reused for every run on its thread,
+ * without the threads writing to the same instructions.
+ */
 public class Interpreter {
-    /**
-     * A map that associates binary operation strings with their corresponding Java implementations.
-     * Each binary operation is represented as a string (e.g., "+", "-", "*", "/", "%", "**") and is mapped to a BiFunction
-     * that takes two Integer arguments and returns an Integer result. This map is used to interpret and execute the binary operations.
-     */
-    private static final Map<String, BiFunction<Integer, Integer, Integer>> BINOPS_TO_OPERATOR = new HashMap<>();
-    static {
-        BINOPS_TO_OPERATOR.put("**", (a, b) -> (int) Math.pow(a, b));
-        BINOPS_TO_OPERATOR.put("%", (a, b) -> a % b);
-        BINOPS_TO_OPERATOR.put("/", (a, b) -> a / b);
-        BINOPS_TO_OPERATOR.put("*", (a, b) -> a * b);
-        BINOPS_TO_OPERATOR.put("+", (a, b) -> a + b);
-        BINOPS_TO_OPERATOR.put("-", (a, b) -> a - b);
-    }
+    public static final byte INT = 0; // Tag of an integer slot that fits in a long, value held in the long; larger integers are OBJECT slots holding a BigInteger
+    public static final byte BOOL = 1; // Tag of a boolean slot, 1 or 0 held in the long
+    public static final byte FLOAT = 2; // Tag of a float slot, the bits of the double held in the long
+    public static final byte OBJECT = 3; // Tag of any other value, held as a reference
+    public static final byte UNBOUND = 4; // Tag of a frame slot whose variable has not been assigned yet
 
     /**
-     * A simple stack implementation that uses a List<Object> to store elements.
-     * This class provides basic stack operations: push, pop, and peek. It is used to manage the runtime stack of the interpreter.
+     * An operand stack with tagged primitive slots.
+     * Each slot is stored across parallel arrays: a tag saying what kind of value it is, a long holding
+     * integers, booleans and the bits of floats, and a reference used only for OBJECT slots. Pushing and popping primitives
+     * therefore never allocates; values are only boxed when they leave the stack through push(Object) or pop().
      */
     public static class Stack {
-        private List<Object> stack; // The underlying list that stores the stack elements
+        private byte[] tags; // The tag of each slot
+        private long[] values; // The primitive payload of INT, BOOL and FLOAT slots
+        private Object[] refs; // The payload of OBJECT slots
+        private int size; // The number of slots in use
 
         /**
-         * Constructs an empty Stack.
+         * Constructs an empty Stack with a default capacity.
          */
         public Stack() {
-            this.stack = new ArrayList<>();
+            this(32);
+        }
+
+        /**
+         * Constructs an empty Stack preallocated to hold the given number of slots.
+         * 
+         * @param capacity The initial number of slots.
+         */
+        public Stack(int capacity) {
+            this.tags = new byte[capacity];
+            this.values = new long[capacity];
+            this.refs = new Object[capacity];
+            this.size = 0;
+        }
+
+        /**
+         * Pushes a tagged slot onto the top of the stack.
+         * 
+         * @param tag The tag of the slot.
+         * @param value The primitive payload of the slot.
+         * @param ref The reference payload of the slot, null unless the tag is OBJECT.
+         */
+        public void push(byte tag, long value, Object ref) {
+            if (this.size == this.tags.length) {
+                grow();
+            }
+            this.tags[this.size] = tag;
+            this.values[this.size] = value;
+            this.refs[this.size] = ref;
+            this.size++;
+        }
+
+        /**
+         * Pushes an integer onto the top of the stack without boxing it.
+         * 
+         * @param value The integer to push.
+         */
+        public void pushInt(long value) {
+            push(INT, value, null);
+        }
+
+        /**
+         * Pushes a boolean onto the top of the stack without boxing it.
+         * 
+         * @param value The boolean to push.
+         */
+        public void pushBool(boolean value) {
+            push(BOOL, value ? 1 : 0, null);
         }
 
         /**
-         * Pushes an object onto the top of the stack.
+         * Pushes a float onto the top of the stack without boxing it.
+         * 
+         * @param value The float to push.
+         */
+        public void pushFloat(double value) {
+            push(FLOAT, Double.doubleToRawLongBits(value), null);
+        }
+
+        /**
+         * Pushes a boxed object onto the top of the stack, unboxing it into a primitive slot where possible.
          * 
          * @param object The object to be pushed onto the stack.
          */
         public void push(Object object) {
-            this.stack.add(object);
+            byte tag = tagOf(object);
+            push(tag, valueOf(object), tag == OBJECT ? object : null);
         }
 
         /**
-         * Removes and returns the object at the top of the stack.
+         * Removes and returns the object at the top of the stack, boxing it if it is a primitive.
          * 
          * @return The object at the top of the stack.
          */
         public Object pop() {
-            return this.stack.remove(this.stack.size() - 1);
+            Object object = peek();
+            drop();
+            return object;
         }
 
         /**
-         * Returns (but does not remove) the object at the top of the stack.
+         * Returns (but does not remove) the object at the top of the stack, boxing it if it is a primitive.
          * 
          * @return The object at the top of the stack.
          */
         public Object peek() {
-            return this.stack.get(this.stack.size() - 1);
+            int top = this.size - 1;
+            return box(this.tags[top], this.values[top], this.refs[top]);
+        }
+
+        /**
+         * Removes the top slot of the stack without boxing it.
+         */
+        public void drop() {
+            this.size--;
+            this.refs[this.size] = null;
+        }
+
+        /**
+         * Removes every slot, keeping the arrays for reuse.
+         */
+        public void clear() {
+            Arrays.fill(this.refs, 0, this.size, null);
+            this.size = 0;
+        }
+
+        /**
+         * Returns the tag of the top slot of the stack.
+         * 
+         * @return The tag of the top slot.
+         */
+        public byte peekTag() {
+            return this.tags[this.size - 1];
+        }
+
+        /**
+         * Returns the primitive payload of the top slot of the stack.
+         * 
+         * @return The primitive payload of the top slot.
+         */
+        public long peekValue() {
+            return this.values[this.size - 1];
+        }
+
+        /**
+         * Returns the tag of a slot below the top of the stack.
+         * 
+         * @param depth How far below the top the slot is, 0 being the top.
+         * @return The tag of the slot.
+         */
+        public byte peekTag(int depth) {
+            return this.tags[this.size - 1 - depth];
+        }
+
+        /**
+         * Returns the primitive payload of a slot below the top of the stack.
+         * 
+         * @param depth How far below the top the slot is, 0 being the top.
+         * @return The primitive payload of the slot.
+         */
+        public long peekValue(int depth) {
+            return this.values[this.size - 1 - depth];
+        }
+
+        /**
+         * Replaces the top two slots of the stack with an integer, as a binary operation on them does.
+         * 
+         * @param value The integer result.
+         */
+        public void replaceTopTwoInt(long value) {
+            drop();
+            int top = this.size - 1;
+            this.tags[top] = INT;
+            this.values[top] = value;
+            this.refs[top] = null;
+        }
+
+        /**
+         * Replaces the top two slots of the stack with a float, as a binary operation on them does.
+         * 
+         * @param value The float result.
+         */
+        public void replaceTopTwoFloat(double value) {
+            drop();
+            int top = this.size - 1;
+            this.tags[top] = FLOAT;
+            this.values[top] = Double.doubleToRawLongBits(value);
+            this.refs[top] = null;
+        }
+
+        /**
+         * Replaces the top slot of the stack with a float.
+         * 
+         * @param value The float to store.
+         */
+        public void replaceTopFloat(double value) {
+            int top = this.size - 1;
+            this.tags[top] = FLOAT;
+            this.values[top] = Double.doubleToRawLongBits(value);
+            this.refs[top] = null;
+        }
+
+        /**
+         * Replaces the top slot of the stack with an integer.
+         * 
+         * @param value The integer to store.
+         */
+        public void replaceTopInt(long value) {
+            int top = this.size - 1;
+            this.tags[top] = INT;
+            this.values[top] = value;
+            this.refs[top] = null;
+        }
+
+        /**
+         * Replaces the top slot of the stack with a boolean.
+         * 
+         * @param value The boolean to store.
+         */
+        public void replaceTopBool(boolean value) {
+            int top = this.size - 1;
+            this.tags[top] = BOOL;
+            this.values[top] = value ? 1 : 0;
+            this.refs[top] = null;
+        }
+
+        /**
+         * Returns the reference payload of the top slot of the stack.
+         * 
+         * @return The reference payload of the top slot.
+         */
+        public Object peekRef() {
+            return this.refs[this.size - 1];
+        }
+
+        /**
+         * Duplicates the top slot of the stack without boxing it.
+         */
+        public void copy() {
+            int top = this.size - 1;
+            push(this.tags[top], this.values[top], this.refs[top]);
+        }
+
+        /**
+         * Returns the number of slots on the stack.
+         * 
+         * @return The number of slots on the stack.
+         */
+        public int size() {
+            return this.size;
+        }
+
+        private void grow() {
+            int capacity = Math.max(1, this.tags.length * 2);
+            this.tags = Arrays.copyOf(this.tags, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.refs = Arrays.copyOf(this.refs, capacity);
         }
 
         /**
@@ -67,61 +282,367 @@ public class Interpreter {
          */
         @Override
         public String toString() {
-            return "Stack(" + this.stack + ")";
+            List<Object> elements = new ArrayList<>();
+            for (int i = 0; i < this.size; i++) {
+                elements.add(box(this.tags[i], this.values[i], this.refs[i]));
+            }
+            return "Stack(" + elements + ")";
+        }
+    }
+
+    /**
+     * Returns the tag a boxed value is stored under.
+     * 
+     * @param object The boxed value.
+     * @return INT for integers that fit in a long, BOOL for booleans, FLOAT for floats and OBJECT for anything else.
+     */
+    static byte tagOf(Object object) {
+        if (object instanceof Long || object instanceof Integer) {
+            return INT;
+        } else if (object instanceof Boolean) {
+            return BOOL;
+        } else if (object instanceof Double) {
+            return FLOAT;
+        }
+        return OBJECT;
+    }
+
+    /**
+     * Returns the primitive payload a boxed value is stored as.
+     * 
+     * @param object The boxed value.
+     * @return The integer value, 1 or 0 for booleans, the bits of a float, and 0 for anything else.
+     */
+    static long valueOf(Object object) {
+        if (object instanceof Long || object instanceof Integer) {
+            return ((Number) object).longValue();
+        } else if (object instanceof Boolean) {
+            return (Boolean) object ? 1 : 0;
+        } else if (object instanceof Double) {
+            return Double.doubleToRawLongBits((Double) object);
+        }
+        return 0;
+    }
+
+    /**
+     * Boxes a tagged slot into the Java object it represents.
+     * 
+     * @param tag The tag of the slot.
+     * @param value The primitive payload of the slot.
+     * @param ref The reference payload of the slot.
+     * @return The boxed value.
+     */
+    static Object box(byte tag, long value, Object ref) {
+        switch (tag) {
+            case INT:
+                return value;
+            case BOOL:
+                return value != 0;
+            case FLOAT:
+                return Double.longBitsToDouble(value);
+            default:
+                return ref;
+        }
+    }
+
+    /**
+     * Returns the value of an INT, BOOL or FLOAT slot as a float, as arithmetic with a float operand needs.
+     * 
+     * @param tag The tag of the slot.
+     * @param value The primitive payload of the slot.
+     * @return The value as a double.
+     */
+    static double asDouble(byte tag, long value) {
+        return tag == FLOAT ? Double.longBitsToDouble(value) : value;
+    }
+
+    /**
+     * Returns whether a tagged slot is truthy, following Python: zero, False and None are false.
+     * 
+     * @param tag The tag of the slot.
+     * @param value The primitive payload of the slot.
+     * @param ref The reference payload of the slot.
+     * @return true if the value is truthy, false otherwise.
+     */
+    static boolean isTruthy(byte tag, long value, Object ref) {
+        if (tag == FLOAT) {
+            return Double.longBitsToDouble(value) != 0; // -0.0 has non-zero bits but is falsy
         }
+        return tag == OBJECT ? ref != null : value != 0;
+    }
+
+    private static final BytecodeType[] OPCODES = BytecodeType.values();
+    private static final BytecodeType[] QUICKENED_INT_BINARYOPS = new BytecodeType[Operator.values().length]; // The typed variant of BINARYOP for two integers, by operator, if any
+    private static final BytecodeType[] QUICKENED_FLOAT_BINARYOPS = new BytecodeType[Operator.values().length]; // The typed variant of BINARYOP for floats, by operator, if any
+
+    static {
+        QUICKENED_INT_BINARYOPS[Operator.ADD.ordinal()] = BytecodeType.BINARYOP_ADD_INT;
+        QUICKENED_INT_BINARYOPS[Operator.SUB.ordinal()] = BytecodeType.BINARYOP_SUB_INT;
+        QUICKENED_INT_BINARYOPS[Operator.MUL.ordinal()] = BytecodeType.BINARYOP_MUL_INT;
+        QUICKENED_INT_BINARYOPS[Operator.DIV.ordinal()] = BytecodeType.BINARYOP_DIV_FLOAT; // True division gives a float
+        QUICKENED_INT_BINARYOPS[Operator.FLOORDIV.ordinal()] = BytecodeType.BINARYOP_FLOORDIV_INT;
+        QUICKENED_INT_BINARYOPS[Operator.MOD.ordinal()] = BytecodeType.BINARYOP_MOD_INT;
+        QUICKENED_FLOAT_BINARYOPS[Operator.ADD.ordinal()] = BytecodeType.BINARYOP_ADD_FLOAT;
+        QUICKENED_FLOAT_BINARYOPS[Operator.SUB.ordinal()] = BytecodeType.BINARYOP_SUB_FLOAT;
+        QUICKENED_FLOAT_BINARYOPS[Operator.MUL.ordinal()] = BytecodeType.BINARYOP_MUL_FLOAT;
+        QUICKENED_FLOAT_BINARYOPS[Operator.DIV.ordinal()] = BytecodeType.BINARYOP_DIV_FLOAT;
     }
 
     private Stack stack;
     private Map<Object, Object> scope;
-    private List<Bytecode> bytecode;
+    private int[] code;
+    private Object[] constants;
+    private byte[] constantTags;
+    private long[] constantValues;
+    private Object[] names;
+    private Object[] variableNames;
+    private byte[] localTags;
+    private long[] localValues;
+    private Object[] localRefs;
     private int ptr;
-    private Object lastValuePopped;
+    private byte lastTag;
+    private long lastValue;
+    private Object lastRef;
 
     /**
-     * Constructs an Interpreter with a given list of Bytecodes.
-     * Initializes the stack, scope, bytecode sequence, and pointer for bytecode execution.
+     * Constructs an Interpreter that runs a packed CodeObject.
+     * Initializes the stack, scope, instruction array, and pointer for bytecode execution,
+     * and unboxes the constant pool once so that PUSH does not allocate.
      * 
-     * @param bytecode The list of Bytecodes to be interpreted.
+     * @param codeObject The CodeObject to be interpreted.
      */
-    public Interpreter(List<Bytecode> bytecode) {
+    public Interpreter(CodeObject codeObject) {
         this.stack = new Stack();
         this.scope = new HashMap<>();
-        this.bytecode = bytecode;
+        this.code = codeObject.getCode().clone(); // Quickened in place, so each interpreter rewrites only its own words
+        this.constants = codeObject.getConstants();
+        this.constantTags = new byte[this.constants.length];
+        this.constantValues = new long[this.constants.length];
+        for (int i = 0; i < this.constants.length; i++) {
+            this.constantTags[i] = tagOf(this.constants[i]);
+            this.constantValues[i] = valueOf(this.constants[i]);
+        }
+        this.names = codeObject.getNames();
+        this.variableNames = codeObject.getVariableNames();
+        this.localTags = new byte[this.variableNames.length];
+        this.localValues = new long[this.variableNames.length];
+        this.localRefs = new Object[this.variableNames.length];
+        Arrays.fill(this.localTags, UNBOUND);
         this.ptr = 0;
-        this.lastValuePopped = null;
+        this.lastTag = OBJECT;
+        this.lastValue = 0;
+        this.lastRef = null;
+    }
+
+    /**
+     * Constructs an Interpreter with a given list of Bytecodes, packing them into a CodeObject first.
+     * 
+     * @param bytecode The list of Bytecodes to be interpreted.
+     */
+    public Interpreter(List<Bytecode> bytecode) {
+        this(CodeObject.assemble(bytecode));
     }
 
     /**
-     * Interprets the bytecode sequence provided to the interpreter.
-     * This method iterates through the bytecode list, dynamically invoking the corresponding interpret method for each bytecode.
-     * It handles exceptions by throwing a RuntimeException with details of the failed bytecode.
+     * Interprets the instructions of the CodeObject provided to the interpreter, then prints the variables and the
+     * last value popped.
      */
     public void interpret() {
-        while (this.ptr < this.bytecode.size()) {
-            Bytecode bc = this.bytecode.get(this.ptr);
-            String bcName = bc.getType().fromString();
-            try {
-                String methodName = "interpret" + bcName.substring(0, 1).toUpperCase() + bcName.substring(1).toLowerCase();
-                java.lang.reflect.Method method = this.getClass().getDeclaredMethod(methodName, Bytecode.class);
-                method.invoke(this, bc);
-            } catch (Exception e) {
-                throw new RuntimeException("Can't interpret " + bcName + ".", e);
+        run();
+        System.out.println(getScope());
+        System.out.println("Result: "+ getLastValuePopped());
+        System.out.println("Program Fully Interpreted.");
+    }
+
+    /**
+     * Makes the interpreter ready to run its code again from the start: every variable is unassigned again, and the
+     * stack and the last value popped are cleared. The frame and stack arrays are kept, so nothing is allocated.
+     */
+    public void reset() {
+        this.stack.clear();
+        this.scope.clear();
+        Arrays.fill(this.localTags, UNBOUND);
+        Arrays.fill(this.localRefs, null);
+        this.ptr = 0;
+        this.lastTag = OBJECT;
+        this.lastValue = 0;
+        this.lastRef = null;
+    }
+
+    /**
+     * Assigns a variable slot before the code runs, as if the program had stored the value there.
+     *
+     * @param slot The variable slot.
+     * @param value An integer, boolean or float.
+     * @throws RuntimeException If the value is not of a type the language has.
+     */
+    public void bind(int slot, Object value) {
+        if (value instanceof BigInteger) {
+            value = Arithmetic.normalize((BigInteger) value);
+        } else if (!(value instanceof Long || value instanceof Integer || value instanceof Boolean || value instanceof Double)) {
+            throw new RuntimeException("Can't bind a " + (value == null ? "null" : value.getClass().getSimpleName()) + " to a variable.");
+        }
+        this.localTags[slot] = tagOf(value);
+        this.localValues[slot] = valueOf(value);
+        this.localRefs[slot] = this.localTags[slot] == OBJECT ? value : null;
+    }
+
+    /**
+     * Assigns a variable slot an integer, boolean or float given as its tag and payload, without boxing it.
+     *
+     * @param slot The variable slot.
+     * @param tag INT, BOOL or FLOAT.
+     * @param value The payload: the integer, 1 or 0, or the bits of the double.
+     */
+    void bind(int slot, byte tag, long value) {
+        this.localTags[slot] = tag;
+        this.localValues[slot] = value;
+        this.localRefs[slot] = null;
+    }
+
+    /**
+     * Interprets the instructions of the CodeObject provided to the interpreter, from where it stopped.
+     * This method fetches each packed instruction word, splits it into opcode and operand, and dispatches
+     * to the matching interpret method through a switch, so no reflection or string building happens per instruction.
+     */
+    public void run() {
+        int[] code = this.code;
+        while (this.ptr < code.length) {
+            int word = code[this.ptr];
+            int operand = CodeObject.operand(word);
+            switch (OPCODES[word & CodeObject.OPCODE_MASK]) {
+                case PUSH:
+                    interpretPush(operand);
+                    break;
+                case POP:
+                    interpretPop(operand);
+                    break;
+                case BINARYOP:
+                    interpretBinaryop(operand);
+                    break;
+                case UNARYOP:
+                    interpretUnaryop(operand);
+                    break;
+                case SAVE:
+                    interpretSave(operand);
+                    break;
+                case LOAD:
+                    interpretLoad(operand);
+                    break;
+                case COPY:
+                    interpretCopy(operand);
+                    break;
+                case POP_JUMP_IF_FALSE:
+                    interpretPopJumpIfFalse(operand);
+                    break;
+                case LOAD_FAST:
+                    interpretLoadFast(operand);
+                    break;
+                case STORE_FAST:
+                    interpretStoreFast(operand);
+                    break;
+                case LOAD_CONST_BINOP:
+                    interpretLoadConstBinop(operand);
+                    break;
+                case LOAD_LOAD_BINOP:
+                    interpretLoadLoadBinop(operand);
+                    break;
+                case BINOP_STORE_FAST:
+                    interpretBinopStoreFast(operand);
+                    break;
+                case BINARYOP_ADD_INT:
+                    interpretBinaryopAddInt(operand);
+                    break;
+                case BINARYOP_SUB_INT:
+                    interpretBinaryopSubInt(operand);
+                    break;
+                case BINARYOP_MUL_INT:
+                    interpretBinaryopMulInt(operand);
+                    break;
+                case BINARYOP_FLOORDIV_INT:
+                    interpretBinaryopFloordivInt(operand);
+                    break;
+                case BINARYOP_MOD_INT:
+                    interpretBinaryopModInt(operand);
+                    break;
+                case BINARYOP_ADD_FLOAT:
+                    interpretBinaryopAddFloat(operand);
+                    break;
+                case BINARYOP_SUB_FLOAT:
+                    interpretBinaryopSubFloat(operand);
+                    break;
+                case BINARYOP_MUL_FLOAT:
+                    interpretBinaryopMulFloat(operand);
+                    break;
+                case BINARYOP_DIV_FLOAT:
+                    interpretBinaryopDivFloat(operand);
+                    break;
+                case UNARYOP_NEG_INT:
+                    interpretUnaryopNegInt(operand);
+                    break;
+                case UNARYOP_NEG_FLOAT:
+                    interpretUnaryopNegFloat(operand);
+                    break;
+                case UNARYOP_NOT_BOOL:
+                    interpretUnaryopNotBool(operand);
+                    break;
+                default:
+                    throw new RuntimeException("Can't interpret " + CodeObject.opcode(word).fromString() + ".");
             }
         }
+    }
 
-        System.out.println(this.scope);
-        System.out.println("Result: "+ this.lastValuePopped);
-        System.out.println("Program Fully Interpreted.");
+    /**
+     * Returns the variables the program has assigned, boxed, including those held in frame slots.
+     * 
+     * @return A map from variable name to value.
+     */
+    public Map<Object, Object> getScope() {
+        Map<Object, Object> scope = new LinkedHashMap<>(this.scope);
+        for (int slot = 0; slot < this.variableNames.length; slot++) {
+            if (this.localTags[slot] != UNBOUND) {
+                scope.put(this.variableNames[slot], box(this.localTags[slot], this.localValues[slot], this.localRefs[slot]));
+            }
+        }
+        return scope;
+    }
+
+    /**
+     * Returns the value most recently popped by a POP bytecode, boxed.
+     * 
+     * @return The last popped value, or null if nothing was popped.
+     */
+    public Object getLastValuePopped() {
+        return box(this.lastTag, this.lastValue, this.lastRef);
+    }
+
+    /**
+     * Returns the tag of the last value popped, so that callers reading primitives need not box it.
+     *
+     * @return The tag: INT, BOOL, FLOAT, or OBJECT for any other value or if nothing was popped.
+     */
+    byte getLastTag() {
+        return this.lastTag;
+    }
+
+    /**
+     * Returns the payload of the last value popped, meaningful if its tag is INT, BOOL or FLOAT.
+     *
+     * @return The integer, 1 or 0, or the bits of the double.
+     */
+    long getLastValue() {
+        return this.lastValue;
     }
 
     /**
      * Interprets a PUSH bytecode, pushing its value onto the stack.
      * Increments the bytecode pointer after execution.
      * 
-     * @param bc The PUSH bytecode to interpret.
+     * @param constant The constant pool index of the value to push.
      */
-    private void interpretPush(Bytecode bc) {
-        this.stack.push(bc.getValue());
+    private void interpretPush(int constant) {
+        byte tag = this.constantTags[constant];
+        this.stack.push(tag, this.constantValues[constant], tag == OBJECT ? this.constants[constant] : null);
         this.ptr += 1;
     }
 
@@ -129,54 +650,438 @@ public class Interpreter {
      * Interprets a POP bytecode, popping the top value from the stack and storing it.
      * Increments the bytecode pointer after execution.
      * 
-     * @param bc The POP bytecode to interpret.
+     * @param operand Unused.
      */
-    private void interpretPop(Bytecode bc) {
-        this.lastValuePopped = this.stack.pop();
+    private void interpretPop(int operand) {
+        Stack stack = this.stack;
+        this.lastTag = stack.peekTag();
+        this.lastValue = stack.peekValue();
+        this.lastRef = stack.peekRef();
+        stack.drop();
         this.ptr += 1;
     }
 
     /**
      * Interprets a BINARYOP bytecode, performing the specified binary operation on the two topmost stack values.
-     * Pushes the result back onto the stack. Increments the bytecode pointer after execution.
+     * Integer, boolean and float operands are combined as primitives, so the result is pushed without boxing.
+     * When both operands are integers, or they are floats and integers, the instruction quickens itself into the
+     * typed variant for its operator, so later executions skip the operator dispatch.
+     * Increments the bytecode pointer after execution.
      * 
-     * @param bc The BINARYOP bytecode to interpret.
+     * @param operator The ordinal of the Operator to apply.
      */
-    private void interpretBinaryop(Bytecode bc) {
-        Object right = this.stack.pop();
-        Object left = this.stack.pop();
-        BiFunction<Integer, Integer, Integer> op = BINOPS_TO_OPERATOR.get(bc.getValue());
-        if (op != null) {
-            int result = op.apply((Integer) left, (Integer) right);
-            this.stack.push(result);
-        } else {
-            throw new RuntimeException("Unknown operator " + bc.getValue() + ".");
+    private void interpretBinaryop(int operator) {
+        byte rightTag = this.stack.peekTag(0);
+        byte leftTag = this.stack.peekTag(1);
+        BytecodeType quickened = null;
+        if (leftTag == INT && rightTag == INT) {
+            quickened = QUICKENED_INT_BINARYOPS[operator];
+        } else if (isFloatOperands(leftTag, rightTag)) {
+            quickened = QUICKENED_FLOAT_BINARYOPS[operator];
+        }
+        if (quickened != null) {
+            this.code[this.ptr] = CodeObject.encode(quickened, operator);
+        }
+        binaryFromStack(operator);
+        this.ptr += 1;
+    }
+
+    /**
+     * Pops the two topmost stack values and pushes the result of applying a binary operator to them.
+     * 
+     * @param operator The ordinal of the Operator to apply.
+     */
+    private void binaryFromStack(int operator) {
+        Stack stack = this.stack;
+        byte rightTag = stack.peekTag();
+        long right = stack.peekValue();
+        Object rightRef = stack.peekRef();
+        stack.drop();
+        byte leftTag = stack.peekTag();
+        long left = stack.peekValue();
+        Object leftRef = stack.peekRef();
+        stack.drop();
+        pushBinary(operator, leftTag, left, leftRef, rightTag, right, rightRef);
+    }
+
+    /**
+     * Returns whether the two topmost stack values are integers, as a quickened integer BINARYOP expects.
+     * On a miss the instruction is turned back into a generic BINARYOP and executed as one.
+     * 
+     * @param operator The ordinal of the Operator of the instruction.
+     * @return true if the quickened instruction may proceed, false if it was executed generically.
+     */
+    private boolean guardIntOperands(int operator) {
+        if (this.stack.peekTag(0) == INT && this.stack.peekTag(1) == INT) {
+            return true;
+        }
+        this.code[this.ptr] = CodeObject.encode(BytecodeType.BINARYOP, operator);
+        binaryFromStack(operator);
+        this.ptr += 1;
+        return false;
+    }
+
+    /**
+     * Returns whether two operand tags are a float and a float or integer, as a quickened float BINARYOP expects.
+     */
+    private static boolean isFloatOperands(byte leftTag, byte rightTag) {
+        return (leftTag == FLOAT && (rightTag == FLOAT || rightTag == INT)) || (leftTag == INT && rightTag == FLOAT);
+    }
+
+    /**
+     * Returns whether the two topmost stack values are floats, or a float and an integer, as a quickened float
+     * BINARYOP expects. On a miss the instruction is turned back into a generic BINARYOP and executed as one.
+     * 
+     * @param operator The ordinal of the Operator of the instruction.
+     * @return true if the quickened instruction may proceed, false if it was executed generically.
+     */
+    private boolean guardFloatOperands(int operator) {
+        if (isFloatOperands(this.stack.peekTag(1), this.stack.peekTag(0))) {
+            return true;
         }
+        this.code[this.ptr] = CodeObject.encode(BytecodeType.BINARYOP, operator);
+        binaryFromStack(operator);
         this.ptr += 1;
+        return false;
+    }
+
+    /**
+     * Interprets a BINARYOP_ADD_INT bytecode, adding the two topmost stack values when both are integers.
+     * Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.ADD, used if the instruction falls back to a generic BINARYOP.
+     */
+    private void interpretBinaryopAddInt(int operator) {
+        if (guardIntOperands(operator)) {
+            Stack stack = this.stack;
+            try {
+                stack.replaceTopTwoInt(Math.addExact(stack.peekValue(1), stack.peekValue(0)));
+            } catch (ArithmeticException e) {
+                binaryFromStack(operator);
+            }
+            this.ptr += 1;
+        }
+    }
+
+    /**
+     * Interprets a BINARYOP_SUB_INT bytecode, subtracting the two topmost stack values when both are integers.
+     * Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.SUB, used if the instruction falls back to a generic BINARYOP.
+     */
+    private void interpretBinaryopSubInt(int operator) {
+        if (guardIntOperands(operator)) {
+            Stack stack = this.stack;
+            try {
+                stack.replaceTopTwoInt(Math.subtractExact(stack.peekValue(1), stack.peekValue(0)));
+            } catch (ArithmeticException e) {
+                binaryFromStack(operator);
+            }
+            this.ptr += 1;
+        }
+    }
+
+    /**
+     * Interprets a BINARYOP_MUL_INT bytecode, multiplying the two topmost stack values when both are integers.
+     * Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.MUL, used if the instruction falls back to a generic BINARYOP.
+     */
+    private void interpretBinaryopMulInt(int operator) {
+        if (guardIntOperands(operator)) {
+            Stack stack = this.stack;
+            try {
+                stack.replaceTopTwoInt(Math.multiplyExact(stack.peekValue(1), stack.peekValue(0)));
+            } catch (ArithmeticException e) {
+                binaryFromStack(operator);
+            }
+            this.ptr += 1;
+        }
+    }
+
+    /**
+     * Interprets a BINARYOP_FLOORDIV_INT bytecode, floor dividing the two topmost stack values when both are
+     * integers. Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.FLOORDIV, used if the instruction falls back to a generic BINARYOP.
+     * @throws ArithmeticException if the divisor is zero.
+     */
+    private void interpretBinaryopFloordivInt(int operator) {
+        if (guardIntOperands(operator)) {
+            Stack stack = this.stack;
+            try {
+                stack.replaceTopTwoInt(Arithmetic.floorDivExact(stack.peekValue(1), stack.peekValue(0)));
+            } catch (ArithmeticException e) {
+                binaryFromStack(operator);
+            }
+            this.ptr += 1;
+        }
+    }
+
+    /**
+     * Interprets a BINARYOP_MOD_INT bytecode, taking the remainder of the two topmost stack values when both are
+     * integers. Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.MOD, used if the instruction falls back to a generic BINARYOP.
+     * @throws ArithmeticException if the divisor is zero.
+     */
+    private void interpretBinaryopModInt(int operator) {
+        if (guardIntOperands(operator)) {
+            Stack stack = this.stack;
+            try {
+                stack.replaceTopTwoInt(Math.floorMod(stack.peekValue(1), stack.peekValue(0)));
+            } catch (ArithmeticException e) {
+                binaryFromStack(operator);
+            }
+            this.ptr += 1;
+        }
+    }
+
+    /**
+     * Interprets a BINARYOP_ADD_FLOAT bytecode, adding the two topmost stack values when they are floats, or a float
+     * and an integer. Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.ADD, used if the instruction falls back to a generic BINARYOP.
+     */
+    private void interpretBinaryopAddFloat(int operator) {
+        if (guardFloatOperands(operator)) {
+            Stack stack = this.stack;
+            stack.replaceTopTwoFloat(asDouble(stack.peekTag(1), stack.peekValue(1)) + asDouble(stack.peekTag(0), stack.peekValue(0)));
+            this.ptr += 1;
+        }
+    }
+
+    /**
+     * Interprets a BINARYOP_SUB_FLOAT bytecode, subtracting the two topmost stack values when they are floats, or a
+     * float and an integer. Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.SUB, used if the instruction falls back to a generic BINARYOP.
+     */
+    private void interpretBinaryopSubFloat(int operator) {
+        if (guardFloatOperands(operator)) {
+            Stack stack = this.stack;
+            stack.replaceTopTwoFloat(asDouble(stack.peekTag(1), stack.peekValue(1)) - asDouble(stack.peekTag(0), stack.peekValue(0)));
+            this.ptr += 1;
+        }
+    }
+
+    /**
+     * Interprets a BINARYOP_MUL_FLOAT bytecode, multiplying the two topmost stack values when they are floats, or a
+     * float and an integer. Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.MUL, used if the instruction falls back to a generic BINARYOP.
+     */
+    private void interpretBinaryopMulFloat(int operator) {
+        if (guardFloatOperands(operator)) {
+            Stack stack = this.stack;
+            stack.replaceTopTwoFloat(asDouble(stack.peekTag(1), stack.peekValue(1)) * asDouble(stack.peekTag(0), stack.peekValue(0)));
+            this.ptr += 1;
+        }
+    }
+
+    /**
+     * Interprets a BINARYOP_DIV_FLOAT bytecode, the true division of the two topmost stack values when they are
+     * integers or floats. Unlike the other float variants it also takes two integers, since their quotient is a
+     * float too. Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.DIV, used if the instruction falls back to a generic BINARYOP.
+     * @throws ArithmeticException if the divisor is zero.
+     */
+    private void interpretBinaryopDivFloat(int operator) {
+        Stack stack = this.stack;
+        byte rightTag = stack.peekTag(0);
+        byte leftTag = stack.peekTag(1);
+        if (leftTag == INT && rightTag == INT) {
+            stack.replaceTopTwoFloat(Arithmetic.divideLong(stack.peekValue(1), stack.peekValue(0)));
+            this.ptr += 1;
+        } else if (guardFloatOperands(operator)) {
+            stack.replaceTopTwoFloat(Arithmetic.binaryDouble(Operator.DIV, asDouble(leftTag, stack.peekValue(1)), asDouble(rightTag, stack.peekValue(0))));
+            this.ptr += 1;
+        }
+    }
+
+    /**
+     * Applies a binary operator to two tagged operands and pushes the result onto the stack.
+     * Integers and booleans are combined as longs, and with a float as doubles; an integer operation that overflows
+     * or divides by zero is redone on BigIntegers, which promotes or reports the error, and one with an OBJECT
+     * operand goes to the boxed Arithmetic.binary.
+     * 
+     * @param operator The ordinal of the Operator to apply.
+     * @param leftTag The tag of the left operand.
+     * @param left The primitive payload of the left operand.
+     * @param leftRef The reference payload of the left operand.
+     * @param rightTag The tag of the right operand.
+     * @param right The primitive payload of the right operand.
+     * @param rightRef The reference payload of the right operand.
+     */
+    private void pushBinary(int operator, byte leftTag, long left, Object leftRef, byte rightTag, long right, Object rightRef) {
+        Operator op = Operator.fromOrdinal(operator);
+        if (leftTag == FLOAT && rightTag != OBJECT || rightTag == FLOAT && leftTag != OBJECT) {
+            this.stack.pushFloat(Arithmetic.binaryDouble(op, asDouble(leftTag, left), asDouble(rightTag, right)));
+            return;
+        } else if (leftTag != OBJECT && rightTag != OBJECT && op == Operator.DIV) {
+            this.stack.pushFloat(Arithmetic.divideLong(left, right));
+            return;
+        } else if (leftTag != OBJECT && rightTag != OBJECT) {
+            try {
+                this.stack.pushInt(Arithmetic.binaryLong(op, left, right));
+            } catch (ArithmeticException e) {
+                // Promote to BigInteger, or raise the error.
+                this.stack.push(Arithmetic.binaryBig(op, BigInteger.valueOf(left), BigInteger.valueOf(right)));
+            }
+            return;
+        }
+        this.stack.push(Arithmetic.binary(op, box(leftTag, left, leftRef), box(rightTag, right, rightRef)));
+    }
+
+    /**
+     * Interprets a LOAD_CONST_BINOP superinstruction: LOAD_FAST of a variable, PUSH of a constant and BINARYOP,
+     * without the intermediate stack traffic. The slot and constant index follow in the next two words.
+     * Moves the bytecode pointer past the instruction.
+     * 
+     * @param operator The ordinal of the Operator to apply.
+     */
+    private void interpretLoadConstBinop(int operator) {
+        int slot = this.code[this.ptr + 1];
+        int constant = this.code[this.ptr + 2];
+        byte leftTag = this.localTags[slot];
+        if (leftTag == UNBOUND) {
+            throw new RuntimeException("Name '" + this.variableNames[slot] + "' is not defined.");
+        }
+        pushBinary(operator, leftTag, this.localValues[slot], this.localRefs[slot],
+                this.constantTags[constant], this.constantValues[constant], this.constants[constant]);
+        this.ptr += 3;
+    }
+
+    /**
+     * Interprets a LOAD_LOAD_BINOP superinstruction: two LOAD_FASTs and a BINARYOP, without the intermediate
+     * stack traffic. The two slots follow in the next two words. Moves the bytecode pointer past the instruction.
+     * 
+     * @param operator The ordinal of the Operator to apply.
+     */
+    private void interpretLoadLoadBinop(int operator) {
+        int leftSlot = this.code[this.ptr + 1];
+        int rightSlot = this.code[this.ptr + 2];
+        byte leftTag = this.localTags[leftSlot];
+        byte rightTag = this.localTags[rightSlot];
+        if (leftTag == UNBOUND || rightTag == UNBOUND) {
+            Object name = this.variableNames[leftTag == UNBOUND ? leftSlot : rightSlot];
+            throw new RuntimeException("Name '" + name + "' is not defined.");
+        }
+        pushBinary(operator, leftTag, this.localValues[leftSlot], this.localRefs[leftSlot],
+                rightTag, this.localValues[rightSlot], this.localRefs[rightSlot]);
+        this.ptr += 3;
+    }
+
+    /**
+     * Interprets a BINOP_STORE_FAST superinstruction: a BINARYOP whose result goes straight into a frame slot.
+     * The slot follows in the next word. Moves the bytecode pointer past the instruction.
+     * 
+     * @param operator The ordinal of the Operator to apply.
+     */
+    private void interpretBinopStoreFast(int operator) {
+        int slot = this.code[this.ptr + 1];
+        binaryFromStack(operator);
+        this.ptr += 1;
+        interpretStoreFast(slot);
     }
 
     /**
      * Interprets a UNARYOP bytecode, performing the specified unary operation on the top stack value.
      * Supports unary operations like negation (-) and logical NOT (not). Updates the stack with the result.
+     * Negating an integer or a float, or negating a boolean, quickens the instruction into UNARYOP_NEG_INT,
+     * UNARYOP_NEG_FLOAT or UNARYOP_NOT_BOOL.
      * Increments the bytecode pointer after execution.
      * 
-     * @param bc The UNARYOP bytecode to interpret.
-     */
-    private void interpretUnaryop(Bytecode bc) {
-        Object result = this.stack.pop();
-        switch ((String) bc.getValue()) {
-            case "+":
-                break;
-            case "-":
-                result = -(int)result;
-                break;
-            case "not":
-                result = !(Boolean)result;
-                break;
-            default:
-                throw new RuntimeException("Unknown operator " + bc.getValue() + ".");
+     * @param operator The ordinal of the Operator to apply.
+     */
+    private void interpretUnaryop(int operator) {
+        Stack stack = this.stack;
+        byte tag = stack.peekTag();
+        long value = stack.peekValue();
+        Operator op = Operator.fromOrdinal(operator);
+        if (op == Operator.NEG && tag == INT) {
+            this.code[this.ptr] = CodeObject.encode(BytecodeType.UNARYOP_NEG_INT, operator);
+        } else if (op == Operator.NEG && tag == FLOAT) {
+            this.code[this.ptr] = CodeObject.encode(BytecodeType.UNARYOP_NEG_FLOAT, operator);
+        } else if (op == Operator.NOT && tag == BOOL) {
+            this.code[this.ptr] = CodeObject.encode(BytecodeType.UNARYOP_NOT_BOOL, operator);
+        }
+        if (op == Operator.NOT) {
+            boolean truthy = isTruthy(tag, value, stack.peekRef());
+            stack.drop();
+            stack.pushBool(!truthy);
+        } else if (op == Operator.POS) {
+            // Unary plus leaves the value untouched.
+        } else if (tag == FLOAT) {
+            stack.replaceTopFloat(-Double.longBitsToDouble(value));
+        } else if (tag != OBJECT && value != Long.MIN_VALUE) {
+            stack.drop();
+            stack.pushInt(Arithmetic.unaryLong(op, value));
+        } else {
+            // A BigInteger operand, or a negation that needs one: the boxed operation promotes, or rejects a non-number.
+            Object ref = stack.peekRef();
+            stack.drop();
+            stack.push(Arithmetic.unary(op, box(tag, value, ref)));
+        }
+        this.ptr += 1;
+    }
+
+    /**
+     * Interprets a UNARYOP_NEG_INT bytecode, negating the top stack value when it is an integer.
+     * On a miss the instruction is turned back into a generic UNARYOP and executed as one.
+     * Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.NEG.
+     */
+    private void interpretUnaryopNegInt(int operator) {
+        Stack stack = this.stack;
+        if (stack.peekTag() != INT) {
+            this.code[this.ptr] = CodeObject.encode(BytecodeType.UNARYOP, operator);
+            interpretUnaryop(operator);
+            return;
         }
-        this.stack.push(result);
+        if (stack.peekValue() == Long.MIN_VALUE) {
+            interpretUnaryop(operator); // The result needs a BigInteger.
+            return;
+        }
+        stack.replaceTopInt(-stack.peekValue());
+        this.ptr += 1;
+    }
+
+    /**
+     * Interprets a UNARYOP_NEG_FLOAT bytecode, negating the top stack value when it is a float.
+     * On a miss the instruction is turned back into a generic UNARYOP and executed as one.
+     * Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.NEG.
+     */
+    private void interpretUnaryopNegFloat(int operator) {
+        Stack stack = this.stack;
+        if (stack.peekTag() != FLOAT) {
+            this.code[this.ptr] = CodeObject.encode(BytecodeType.UNARYOP, operator);
+            interpretUnaryop(operator);
+            return;
+        }
+        stack.replaceTopFloat(-Double.longBitsToDouble(stack.peekValue()));
+        this.ptr += 1;
+    }
+
+    /**
+     * Interprets a UNARYOP_NOT_BOOL bytecode, negating the top stack value when it is a boolean.
+     * On a miss the instruction is turned back into a generic UNARYOP and executed as one.
+     * Increments the bytecode pointer after execution.
+     * 
+     * @param operator The ordinal of Operator.NOT.
+     */
+    private void interpretUnaryopNotBool(int operator) {
+        Stack stack = this.stack;
+        if (stack.peekTag() != BOOL) {
+            this.code[this.ptr] = CodeObject.encode(BytecodeType.UNARYOP, operator);
+            interpretUnaryop(operator);
+            return;
+        }
+        stack.replaceTopBool(stack.peekValue() == 0);
         this.ptr += 1;
     }
 
@@ -184,10 +1089,10 @@ public class Interpreter {
      * Interprets a SAVE bytecode, storing the top stack value into the scope map with the given identifier.
      * Removes the value from the stack. Increments the bytecode pointer after execution.
      * 
-     * @param bc The SAVE bytecode to interpret.
+     * @param name The name table index of the identifier.
      */
-    private void interpretSave(Bytecode bc) {
-        this.scope.put(bc.getValue(), this.stack.pop());
+    private void interpretSave(int name) {
+        this.scope.put(this.names[name], this.stack.pop());
         this.ptr += 1;
     }
 
@@ -195,10 +1100,41 @@ public class Interpreter {
      * Interprets a LOAD bytecode, pushing the value associated with the given identifier from the scope map onto the stack.
      * Increments the bytecode pointer after execution.
      * 
-     * @param bc The LOAD bytecode to interpret.
+     * @param name The name table index of the identifier.
      */
-    private void interpretLoad(Bytecode bc) {
-        this.stack.push(this.scope.get(bc.getValue()));
+    private void interpretLoad(int name) {
+        this.stack.push(this.scope.get(this.names[name]));
+        this.ptr += 1;
+    }
+
+    /**
+     * Interprets a STORE_FAST bytecode, moving the top stack slot into the given frame slot without boxing it.
+     * Increments the bytecode pointer after execution.
+     * 
+     * @param slot The frame slot of the variable.
+     */
+    private void interpretStoreFast(int slot) {
+        Stack stack = this.stack;
+        this.localTags[slot] = stack.peekTag();
+        this.localValues[slot] = stack.peekValue();
+        this.localRefs[slot] = stack.peekRef();
+        stack.drop();
+        this.ptr += 1;
+    }
+
+    /**
+     * Interprets a LOAD_FAST bytecode, pushing the value held in the given frame slot onto the stack.
+     * Increments the bytecode pointer after execution.
+     * 
+     * @param slot The frame slot of the variable.
+     * @throws RuntimeException if the variable has not been assigned yet.
+     */
+    private void interpretLoadFast(int slot) {
+        byte tag = this.localTags[slot];
+        if (tag == UNBOUND) {
+            throw new RuntimeException("Name '" + this.variableNames[slot] + "' is not defined.");
+        }
+        this.stack.push(tag, this.localValues[slot], this.localRefs[slot]);
         this.ptr += 1;
     }
 
@@ -206,23 +1142,25 @@ public class Interpreter {
      * Interprets a COPY bytecode, duplicating the top value of the stack.
      * Increments the bytecode pointer after execution.
      * 
-     * @param bc The COPY bytecode to interpret.
+     * @param operand Unused.
      */
-    private void interpretCopy(Bytecode bc) {
-        this.stack.push(this.stack.peek());
+    private void interpretCopy(int operand) {
+        this.stack.copy();
         this.ptr += 1;
     }
 
     /**
-     * Interprets a POPJUMPIFFALSE bytecode, popping the top stack value and jumping to the bytecode index specified if the value is false.
-     * If the value is true or non-null, moves to the next bytecode. Adjusts the bytecode pointer based on the condition.
+     * Interprets a POPJUMPIFFALSE bytecode, popping the top stack value and jumping forward by the given offset if the value is falsy.
+     * If the value is truthy, moves to the next bytecode. Adjusts the bytecode pointer based on the condition.
      * 
-     * @param bc The POPJUMPIFFALSE bytecode to interpret.
+     * @param offset The number of instructions to jump forward by.
      */
-    private void interpretPopJumpIfFalse(Bytecode bc) {
-        Object value = this.stack.pop();
-        if (value == null) {
-            this.ptr += (Integer) bc.getValue();
+    private void interpretPopJumpIfFalse(int offset) {
+        Stack stack = this.stack;
+        boolean truthy = isTruthy(stack.peekTag(), stack.peekValue(), stack.peekRef());
+        stack.drop();
+        if (!truthy) {
+            this.ptr += offset;
         } else {
             this.ptr += 1; // Default behaviour is to move to the next bytecode.
         }
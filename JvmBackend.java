@@ -0,0 +1,848 @@
+import ast.AST.*;
+import ast.FlatAST;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ByteUtils.Operator;
+
+/**
+ * A backend that translates a syntax tree into JVM bytecode and loads it as a hidden class, so that HotSpot
+ * compiles PyLite programs like any other Java code instead of running them through the Interpreter.
+ *
+ * The program becomes one static method, run(Object[] frame). Every variable lives in a JVM local. A variable that
+ * only ever holds integers (or only booleans), and is always assigned before it is read, gets a long (or int) local
+ * and its arithmetic is emitted as calls to Math.addExact, Math.multiplyExact and so on, which HotSpot compiles to
+ * plain arithmetic with an overflow check. A variable that only ever holds floats gets a double local, and its
+ * arithmetic is emitted as dadd, dsub, dmul and dneg, with integer operands converted by l2d; the operations whose
+ * Python semantics differ from Java's, such as / by zero or %, call Arithmetic. Everything else is kept boxed in an
+ * Object local and goes through the generic helpers at the bottom of this class, which share their semantics with
+ * the Interpreter through Arithmetic. On return, the final value of each variable is boxed into the frame array
+ * (null when unassigned) and the last value popped by an expression statement is returned.
+ *
+ * Integers are unbounded, so a typed long can overflow. The exact operations then throw ArithmeticException, and
+ * the program is run again from the start as a second class in which every integer is boxed. This is safe because
+ * a program has no effect before its epilogue fills the frame.
+ *
+ * The class file is written as version 49, which does not need StackMapTable frames.
+ */
+class JvmBackend {
+    /**
+     * The kind of value an expression leaves on the JVM operand stack.
+     */
+    enum Kind {
+        INT, // A long
+        BOOL, // An int holding 1 or 0
+        FLOAT, // A double
+        OBJECT // A boxed value
+    }
+
+    private static final String RUNTIME = "JvmBackend"; // Internal name of the class holding the helpers
+    private static final String OBJECT_DESCRIPTOR = "Ljava/lang/Object;";
+    private static final int MAX_DEPTH = 1000; // The deepest folded tree compiled, as the passes here recurse on it
+
+    /**
+     * A PyLite program loaded as a hidden class.
+     */
+    static class CompiledProgram {
+        private final MethodHandle run; // The generated run(Object[]) method
+        private final Program program; // The folded program, kept to build the boxed version on demand
+        private final List<Object> variableNames; // The name of each frame slot
+        private volatile MethodHandle boxedRun; // The version in which every integer is boxed, once needed
+        private volatile boolean overflows; // Whether a run has needed integers larger than a long
+
+        CompiledProgram(MethodHandle run, Program program, List<Object> variableNames) {
+            this.run = run;
+            this.program = program;
+            this.variableNames = variableNames;
+        }
+
+        /**
+         * Runs the program.
+         *
+         * @param frame One entry per variable slot. Entries are read as the initial value of variables that are kept
+         *              boxed, and on return hold the final value of every variable, or null if it was never assigned.
+         * @return The value most recently popped by an expression statement, or null.
+         */
+        public Object run(Object[] frame) {
+            if (this.overflows) {
+                return invoke(this.boxedRun, frame); // Don't pay for the exception on every run
+            }
+            try {
+                return invoke(this.run, frame);
+            } catch (ArithmeticException e) {
+                // A long overflowed, or an operation failed. The frame is untouched, so run the boxed version, which
+                // promotes to BigInteger or fails the same way.
+                MethodHandle boxedRun = this.boxedRun;
+                if (boxedRun == null) {
+                    boxedRun = new JvmBackend(this.program, true).load();
+                    this.boxedRun = boxedRun;
+                }
+                Object result = invoke(boxedRun, frame);
+                this.overflows = true;
+                return result;
+            }
+        }
+
+        private static Object invoke(MethodHandle run, Object[] frame) {
+            try {
+                return (Object) run.invokeExact(frame);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+
+        /**
+         * Returns the names of the variables, indexed by frame slot.
+         *
+         * @return The variable names, in slot order.
+         */
+        public List<Object> getVariableNames() {
+            return this.variableNames;
+        }
+
+        /**
+         * Returns the variables that a frame filled by run() holds, in slot order.
+         *
+         * @param frame A frame that was passed to run().
+         * @return A map from variable name to value, leaving out unassigned variables.
+         */
+        public Map<Object, Object> getScope(Object[] frame) {
+            Map<Object, Object> scope = new LinkedHashMap<>();
+            for (int slot = 0; slot < frame.length; slot++) {
+                if (frame[slot] != null) {
+                    scope.put(this.variableNames.get(slot), frame[slot]);
+                }
+            }
+            return scope;
+        }
+    }
+
+    private final Program program;
+    private final boolean boxed; // Whether every integer is kept boxed, so that none can overflow
+    private final Map<Object, Integer> slots; // The frame slot of each variable, in order of first use
+    private final Map<Object, Kind> slotKinds; // The local type chosen for each variable
+    private final Map<Object, Integer> locals; // The JVM local of each variable; a long takes two
+
+    private JvmBackend(Program program, boolean boxed) {
+        this.program = program;
+        this.boxed = boxed;
+        this.slots = new LinkedHashMap<>();
+        this.slotKinds = new HashMap<>();
+        this.locals = new HashMap<>();
+    }
+
+    /**
+     * Compiles a syntax tree into a hidden class. The tree is first simplified by the ConstantFolder, and a folded
+     * tree nested more than MAX_DEPTH deep is rejected before anything recurses on it.
+     *
+     * @param tree The Program to compile.
+     * @return The loaded program.
+     * @throws RuntimeException if the program is nested too deeply, or too large for a single JVM method.
+     */
+    public static CompiledProgram compile(TreeNode tree) {
+        FlatAST folded = new ConstantFolder().fold(FlatAST.of(tree));
+        int depth = folded.depth(folded.root());
+        if (depth > MAX_DEPTH) {
+            throw new RuntimeException("Program is nested " + depth + " deep, more than the " + MAX_DEPTH + " the JVM backend compiles.");
+        }
+        JvmBackend backend = new JvmBackend((Program) folded.toTree(), false);
+        MethodHandle run = backend.load();
+        return new CompiledProgram(run, backend.program, new ArrayList<>(backend.slots.keySet()));
+    }
+
+    /**
+     * Generates the class for the program and returns its run method.
+     */
+    private MethodHandle load() {
+        assignSlots(this.program.getStatements());
+        inferSlotKinds();
+        assignLocals();
+        byte[] classFile = writeClass();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return lookup.findStatic(lookup.lookupClass(), "run", MethodType.methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Can't load compiled program.", e);
+        }
+    }
+
+    /**
+     * Numbers the variables in the same order as the Compiler does, so frames and scopes line up.
+     */
+    private void assignSlots(List<Statement> statements) {
+        for (Statement statement : statements) {
+            if (statement instanceof Assignment) {
+                assignSlots(((Assignment) statement).getValue());
+                for (Variable target : ((Assignment) statement).getTargets()) {
+                    this.slots.putIfAbsent(target.getName(), this.slots.size());
+                }
+            } else if (statement instanceof ExprStatement) {
+                assignSlots(((ExprStatement) statement).getExpr());
+            } else if (statement instanceof Conditional) {
+                assignSlots(((Conditional) statement).getCondition());
+                assignSlots(((Body) ((Conditional) statement).getBody()).getStatements());
+            }
+        }
+    }
+
+    private void assignSlots(TreeNode expression) {
+        if (expression instanceof Variable) {
+            this.slots.putIfAbsent(((Variable) expression).getName(), this.slots.size());
+        } else if (expression instanceof UnaryOp) {
+            assignSlots(((UnaryOp) expression).getValue());
+        } else if (expression instanceof BinaryOp) {
+            assignSlots(((BinaryOp) expression).getLeft());
+            assignSlots(((BinaryOp) expression).getRight());
+        }
+    }
+
+    /**
+     * Chooses the local type of each variable. A variable starts undecided, takes the kind of the first value stored
+     * into it, and falls back to OBJECT as soon as a store of another kind is seen, it is read before it is surely
+     * assigned, or it is not surely assigned at the end of the program. Since kinds only ever move towards OBJECT,
+     * repeating the walk until nothing changes terminates.
+     */
+    private void inferSlotKinds() {
+        boolean changed = true;
+        while (changed) {
+            Map<Object, Kind> before = new HashMap<>(this.slotKinds);
+            Set<Object> assigned = new HashSet<>();
+            inferSlotKinds(this.program.getStatements(), assigned);
+            for (Object name : this.slots.keySet()) {
+                if (!assigned.contains(name)) {
+                    this.slotKinds.put(name, Kind.OBJECT);
+                }
+            }
+            changed = !before.equals(this.slotKinds);
+        }
+    }
+
+    /**
+     * Gives each variable its JVM local, after the ones holding the frame and the result.
+     */
+    private void assignLocals() {
+        int local = FIRST_SLOT_LOCAL;
+        for (Object name : this.slots.keySet()) {
+            this.locals.put(name, local);
+            Kind kind = this.slotKinds.get(name);
+            local += kind == Kind.INT || kind == Kind.FLOAT ? 2 : 1;
+        }
+        this.maxLocals = local;
+    }
+
+    private void inferSlotKinds(List<Statement> statements, Set<Object> assigned) {
+        for (Statement statement : statements) {
+            if (statement instanceof Assignment) {
+                Assignment assignment = (Assignment) statement;
+                Kind kind = inferKind(assignment.getValue(), assigned);
+                for (Variable target : assignment.getTargets()) {
+                    Kind current = this.slotKinds.get(target.getName());
+                    this.slotKinds.put(target.getName(), current == null || current == kind ? kind : Kind.OBJECT);
+                    assigned.add(target.getName());
+                }
+            } else if (statement instanceof ExprStatement) {
+                inferKind(((ExprStatement) statement).getExpr(), assigned);
+            } else if (statement instanceof Conditional) {
+                inferKind(((Conditional) statement).getCondition(), assigned);
+                // Assignments in the body do not count as sure once the body is left.
+                inferSlotKinds(((Body) ((Conditional) statement).getBody()).getStatements(), new HashSet<>(assigned));
+            }
+        }
+    }
+
+    private Kind inferKind(TreeNode expression, Set<Object> assigned) {
+        if (expression instanceof Variable) {
+            Object name = ((Variable) expression).getName();
+            if (!assigned.contains(name)) {
+                this.slotKinds.put(name, Kind.OBJECT);
+            }
+        } else if (expression instanceof UnaryOp) {
+            inferKind(((UnaryOp) expression).getValue(), assigned);
+        } else if (expression instanceof BinaryOp) {
+            inferKind(((BinaryOp) expression).getLeft(), assigned);
+            inferKind(((BinaryOp) expression).getRight(), assigned);
+        }
+        return kindOf(expression);
+    }
+
+    /**
+     * Returns the kind of value the code for an expression leaves on the stack, given the current slot kinds.
+     */
+    private Kind kindOf(TreeNode expression) {
+        Kind kind = typedKindOf(expression);
+        return this.boxed && kind == Kind.INT ? Kind.OBJECT : kind;
+    }
+
+    private Kind typedKindOf(TreeNode expression) {
+        if (expression instanceof Constant) {
+            Object value = ((Constant) expression).getValue();
+            return value instanceof Long ? Kind.INT : value instanceof Boolean ? Kind.BOOL
+                    : value instanceof Double ? Kind.FLOAT : Kind.OBJECT;
+        } else if (expression instanceof Variable) {
+            Kind kind = this.slotKinds.get(((Variable) expression).getName());
+            return kind == null ? Kind.OBJECT : kind;
+        } else if (expression instanceof UnaryOp) {
+            UnaryOp unary = (UnaryOp) expression;
+            Kind operand = kindOf(unary.getValue());
+            switch (Operator.unaryFromSymbol(unary.getOp())) {
+                case NOT:
+                    return Kind.BOOL;
+                case POS:
+                    return operand;
+                default:
+                    return operand == Kind.OBJECT || operand == Kind.FLOAT ? operand : Kind.INT;
+            }
+        } else if (expression instanceof BinaryOp) {
+            BinaryOp binary = (BinaryOp) expression;
+            Kind left = kindOf(binary.getLeft());
+            Kind right = kindOf(binary.getRight());
+            if (left == Kind.OBJECT || right == Kind.OBJECT) {
+                return Kind.OBJECT;
+            } else if (left == Kind.FLOAT || right == Kind.FLOAT || Operator.binaryFromSymbol(binary.getOp()) == Operator.DIV) {
+                return Kind.FLOAT;
+            }
+            return Kind.INT;
+        }
+        throw new RuntimeException("Can't compile " + expression.getClass().getSimpleName());
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Code generation
+
+    private static final int FRAME_LOCAL = 0; // Local holding the frame argument
+    private static final int RESULT_LOCAL = 1; // Local holding the last value popped
+    private static final int FIRST_SLOT_LOCAL = 2; // Local of variable slot 0
+
+    private ConstantPool pool;
+    private Code code;
+    private int maxLocals;
+
+    /**
+     * Writes the class file holding run(Object[]).
+     */
+    private byte[] writeClass() {
+        this.pool = new ConstantPool();
+        this.code = new Code();
+        String className = "PyLiteProgram"; // The JVM makes the name of each hidden class unique
+        int thisClass = this.pool.classRef(className);
+        int superClass = this.pool.classRef("java/lang/Object");
+        int methodName = this.pool.utf8("run");
+        int methodDescriptor = this.pool.utf8("([Ljava/lang/Object;)Ljava/lang/Object;");
+        int codeAttribute = this.pool.utf8("Code");
+
+        emitPrologue();
+        emitStatements(this.program.getStatements());
+        emitEpilogue();
+        byte[] bytecode = this.code.toByteArray();
+        if (bytecode.length > 65535) {
+            throw new RuntimeException("Program is too large for the JVM backend.");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0); // minor version
+            out.writeShort(49); // major version: Java 5, verified without stack map frames
+            this.pool.write(out);
+            out.writeShort(0x0010 | 0x0020); // ACC_FINAL | ACC_SUPER
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(1); // methods
+            out.writeShort(0x0001 | 0x0008); // ACC_PUBLIC | ACC_STATIC
+            out.writeShort(methodName);
+            out.writeShort(methodDescriptor);
+            out.writeShort(1); // attributes
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + bytecode.length);
+            out.writeShort(this.code.maxStack);
+            out.writeShort(this.maxLocals);
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // code attributes
+            out.writeShort(0); // class attributes
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Initializes every local: boxed variables from the frame, typed ones to zero, and the result to null.
+     */
+    private void emitPrologue() {
+        for (Map.Entry<Object, Integer> entry : this.slots.entrySet()) {
+            Kind kind = this.slotKinds.get(entry.getKey());
+            if (kind == Kind.OBJECT) {
+                this.code.load(FRAME_LOCAL, Kind.OBJECT);
+                this.code.pushInt(entry.getValue());
+                this.code.op(0x32, -1); // aaload
+            } else if (kind == Kind.INT) {
+                this.code.pushLong(this.pool, 0);
+            } else if (kind == Kind.FLOAT) {
+                this.code.op(0x0e, 2); // dconst_0
+            } else {
+                this.code.pushInt(0);
+            }
+            this.code.store(this.locals.get(entry.getKey()), kind);
+        }
+        this.code.op(0x01, 1); // aconst_null
+        this.code.store(RESULT_LOCAL, Kind.OBJECT);
+    }
+
+    /**
+     * Boxes every variable into the frame and returns the last value popped.
+     */
+    private void emitEpilogue() {
+        for (Map.Entry<Object, Integer> entry : this.slots.entrySet()) {
+            Kind kind = this.slotKinds.get(entry.getKey());
+            this.code.load(FRAME_LOCAL, Kind.OBJECT);
+            this.code.pushInt(entry.getValue());
+            this.code.load(this.locals.get(entry.getKey()), kind);
+            emitBox(kind);
+            this.code.op(0x53, -3); // aastore
+        }
+        this.code.load(RESULT_LOCAL, Kind.OBJECT);
+        this.code.op(0xb0, -1); // areturn
+    }
+
+    private void emitStatements(List<Statement> statements) {
+        for (Statement statement : statements) {
+            if (statement instanceof Assignment) {
+                Assignment assignment = (Assignment) statement;
+                Kind kind = emitExpression(assignment.getValue());
+                List<Variable> targets = assignment.getTargets();
+                for (int i = 0; i < targets.size(); i++) {
+                    if (i < targets.size() - 1 && (kind == Kind.INT || kind == Kind.FLOAT)) {
+                        this.code.op(0x5c, 2); // dup2
+                    } else if (i < targets.size() - 1) {
+                        this.code.op(0x59, 1); // dup
+                    }
+                    emitStore(targets.get(i).getName(), kind);
+                }
+            } else if (statement instanceof ExprStatement) {
+                emitBox(emitExpression(((ExprStatement) statement).getExpr()));
+                this.code.store(RESULT_LOCAL, Kind.OBJECT);
+            } else if (statement instanceof Conditional) {
+                Conditional conditional = (Conditional) statement;
+                emitTruthiness(emitExpression(conditional.getCondition()));
+                int skip = this.code.branch(0x99, -1); // ifeq
+                emitStatements(((Body) conditional.getBody()).getStatements());
+                this.code.patch(skip);
+            } else {
+                throw new RuntimeException("Can't compile " + statement.getClass().getSimpleName());
+            }
+        }
+    }
+
+    private void emitStore(Object name, Kind kind) {
+        Kind slotKind = this.slotKinds.get(name);
+        if (slotKind == Kind.OBJECT) {
+            emitBox(kind);
+        }
+        this.code.store(this.locals.get(name), slotKind);
+    }
+
+    /**
+     * Emits the code for an expression and returns the kind of value it leaves on the stack.
+     */
+    private Kind emitExpression(TreeNode expression) {
+        Kind kind = kindOf(expression);
+        if (expression instanceof Constant) {
+            Object value = ((Constant) expression).getValue();
+            if (value instanceof Long) {
+                this.code.pushLong(this.pool, (Long) value);
+                if (kind == Kind.OBJECT) {
+                    emitBox(Kind.INT);
+                }
+            } else if (value instanceof BigInteger) {
+                this.code.ldc(this.pool.string(value.toString()));
+                this.code.invokeStatic(this.pool, RUNTIME, "bigInteger", "(Ljava/lang/String;)" + OBJECT_DESCRIPTOR, 0);
+            } else if (value instanceof Boolean) {
+                this.code.pushInt((Boolean) value ? 1 : 0);
+            } else if (value instanceof Double) {
+                this.code.pushDouble(this.pool, (Double) value);
+            } else {
+                throw new RuntimeException("Can't compile constant " + value);
+            }
+        } else if (expression instanceof Variable) {
+            Object name = ((Variable) expression).getName();
+            this.code.load(this.locals.get(name), kind);
+            if (kind == Kind.OBJECT) {
+                this.code.ldc(this.pool.string(String.valueOf(name)));
+                this.code.invokeStatic(this.pool, RUNTIME, "checkBound", "(" + OBJECT_DESCRIPTOR + "Ljava/lang/String;)" + OBJECT_DESCRIPTOR, -1);
+            }
+        } else if (expression instanceof UnaryOp) {
+            emitUnaryOp((UnaryOp) expression, kind);
+        } else if (expression instanceof BinaryOp) {
+            emitBinaryOp((BinaryOp) expression, kind);
+        }
+        return kind;
+    }
+
+    private void emitUnaryOp(UnaryOp unary, Kind kind) {
+        Operator op = Operator.unaryFromSymbol(unary.getOp());
+        Kind operand = emitExpression(unary.getValue());
+        if (op == Operator.NOT) {
+            emitTruthiness(operand);
+            // x == 0 ? 1 : 0
+            int isZero = this.code.branch(0x99, -1); // ifeq
+            this.code.pushInt(0);
+            int end = this.code.branch(0xa7, 0); // goto
+            this.code.patch(isZero);
+            this.code.depth--; // The two arms each push one int
+            this.code.pushInt(1);
+            this.code.patch(end);
+        } else if (kind == Kind.FLOAT) {
+            if (op == Operator.NEG) {
+                this.code.op(0x77, 0); // dneg
+            }
+        } else if (kind != Kind.OBJECT) {
+            if (op == Operator.NEG) {
+                emitWiden(operand);
+                this.code.invokeStatic(this.pool, "java/lang/Math", "negateExact", "(J)J", 0);
+            }
+        } else {
+            emitBox(operand);
+            this.code.pushInt(op.ordinal());
+            this.code.invokeStatic(this.pool, RUNTIME, "unary", "(" + OBJECT_DESCRIPTOR + "I)" + OBJECT_DESCRIPTOR, -1);
+        }
+    }
+
+    private void emitBinaryOp(BinaryOp binary, Kind kind) {
+        Operator op = Operator.binaryFromSymbol(binary.getOp());
+        if (kind == Kind.INT) {
+            emitWiden(emitExpression(binary.getLeft()));
+            emitWiden(emitExpression(binary.getRight()));
+            switch (op) {
+                case ADD: this.code.invokeStatic(this.pool, "java/lang/Math", "addExact", "(JJ)J", -2); break;
+                case SUB: this.code.invokeStatic(this.pool, "java/lang/Math", "subtractExact", "(JJ)J", -2); break;
+                case MUL: this.code.invokeStatic(this.pool, "java/lang/Math", "multiplyExact", "(JJ)J", -2); break;
+                case FLOORDIV: this.code.invokeStatic(this.pool, "Arithmetic", "floorDivExact", "(JJ)J", -2); break;
+                case MOD: this.code.invokeStatic(this.pool, "java/lang/Math", "floorMod", "(JJ)J", -2); break;
+                case POW: this.code.invokeStatic(this.pool, "Arithmetic", "powExact", "(JJ)J", -2); break;
+                default: throw new RuntimeException("Unknown operator " + op + ".");
+            }
+        } else if (kind == Kind.FLOAT && op == Operator.DIV && kindOf(binary.getLeft()) != Kind.FLOAT
+                && kindOf(binary.getRight()) != Kind.FLOAT) {
+            // Two integers are divided exactly before rounding, not converted first.
+            emitWiden(emitExpression(binary.getLeft()));
+            emitWiden(emitExpression(binary.getRight()));
+            this.code.invokeStatic(this.pool, "Arithmetic", "divideLong", "(JJ)D", -2);
+        } else if (kind == Kind.FLOAT) {
+            emitToDouble(emitExpression(binary.getLeft()));
+            emitToDouble(emitExpression(binary.getRight()));
+            switch (op) {
+                case ADD: this.code.op(0x63, -2); break; // dadd
+                case SUB: this.code.op(0x67, -2); break; // dsub
+                case MUL: this.code.op(0x6b, -2); break; // dmul
+                case DIV: this.code.invokeStatic(this.pool, "Arithmetic", "divideDouble", "(DD)D", -2); break;
+                case FLOORDIV: this.code.invokeStatic(this.pool, "Arithmetic", "floorDivDouble", "(DD)D", -2); break;
+                case MOD: this.code.invokeStatic(this.pool, "Arithmetic", "modDouble", "(DD)D", -2); break;
+                case POW: this.code.invokeStatic(this.pool, "Arithmetic", "powDouble", "(DD)D", -2); break;
+                default: throw new RuntimeException("Unknown operator " + op + ".");
+            }
+        } else {
+            emitBox(emitExpression(binary.getLeft()));
+            emitBox(emitExpression(binary.getRight()));
+            this.code.pushInt(op.ordinal());
+            this.code.invokeStatic(this.pool, RUNTIME, "binary", "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + "I)" + OBJECT_DESCRIPTOR, -2);
+        }
+    }
+
+    /**
+     * Turns the value on the stack into an int that is non-zero exactly when the value is truthy.
+     */
+    private void emitTruthiness(Kind kind) {
+        if (kind == Kind.INT) {
+            this.code.pushLong(this.pool, 0);
+            this.code.op(0x94, -3); // lcmp
+        } else if (kind == Kind.FLOAT) {
+            this.code.op(0x0e, 2); // dconst_0
+            this.code.op(0x97, -3); // dcmpl, non-zero for NaN, which is truthy
+        } else if (kind == Kind.OBJECT) {
+            this.code.invokeStatic(this.pool, RUNTIME, "isTruthy", "(" + OBJECT_DESCRIPTOR + ")Z", 0);
+        }
+    }
+
+    /**
+     * Turns a boolean on the stack into a long, as arithmetic on it needs.
+     */
+    private void emitWiden(Kind kind) {
+        if (kind == Kind.BOOL) {
+            this.code.op(0x85, 1); // i2l
+        }
+    }
+
+    /**
+     * Turns an integer or boolean on the stack into a double, as arithmetic with a float needs.
+     */
+    private void emitToDouble(Kind kind) {
+        if (kind == Kind.INT) {
+            this.code.op(0x8a, 0); // l2d
+        } else if (kind == Kind.BOOL) {
+            this.code.op(0x87, 1); // i2d
+        }
+    }
+
+    private void emitBox(Kind kind) {
+        if (kind == Kind.FLOAT) {
+            this.code.invokeStatic(this.pool, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", -1);
+        } else if (kind == Kind.INT) {
+            this.code.invokeStatic(this.pool, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;", -1);
+        } else if (kind == Kind.BOOL) {
+            this.code.invokeStatic(this.pool, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", 0);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Class file building blocks
+
+    /**
+     * The constant pool of the generated class, deduplicating its entries.
+     */
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        private int entry(String key, int tag, Writer writer) {
+            return entry(key, tag, 1, writer);
+        }
+
+        private int entry(String key, int tag, int size, Writer writer) {
+            Integer index = this.entries.get(key);
+            if (index == null) {
+                try {
+                    this.out.writeByte(tag);
+                    writer.write(this.out);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                index = this.count;
+                this.count += size;
+                this.entries.put(key, index);
+            }
+            return index;
+        }
+
+        int utf8(String value) {
+            return entry("U" + value, 1, out -> out.writeUTF(value));
+        }
+
+        int longConstant(long value) {
+            return entry("J" + value, 5, 2, out -> out.writeLong(value)); // A long takes two pool entries
+        }
+
+        int doubleConstant(double value) {
+            return entry("D" + Double.doubleToRawLongBits(value), 6, 2, out -> out.writeDouble(value)); // Takes two entries
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return entry("C" + internalName, 7, out -> out.writeShort(name));
+        }
+
+        int string(String value) {
+            int utf8 = utf8(value);
+            return entry("S" + value, 8, out -> out.writeShort(utf8));
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            int ownerClass = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("N" + name + descriptor, 12, out -> {
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return entry("M" + owner + "." + name + descriptor, 10, out -> {
+                out.writeShort(ownerClass);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        void write(DataOutputStream target) throws IOException {
+            target.writeShort(this.count);
+            this.out.flush();
+            this.bytes.writeTo(target);
+        }
+
+        private interface Writer {
+            void write(DataOutputStream out) throws IOException;
+        }
+    }
+
+    /**
+     * The body of the generated method, tracking the operand stack depth to compute max_stack.
+     */
+    private static class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int depth = 0;
+        private int maxStack = 0;
+        private final Map<Integer, Integer> branches = new HashMap<>(); // Branch position to target position
+
+        void op(int opcode, int stackEffect) {
+            this.bytes.write(opcode);
+            adjust(stackEffect);
+        }
+
+        private void adjust(int stackEffect) {
+            this.depth += stackEffect;
+            this.maxStack = Math.max(this.maxStack, this.depth);
+        }
+
+        private void u2(int value) {
+            this.bytes.write(value >> 8);
+            this.bytes.write(value);
+        }
+
+        void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(0x03 + value, 1); // iconst_<n>
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(0x10, 1); // bipush
+                this.bytes.write(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(0x11, 1); // sipush
+                u2(value);
+            } else {
+                throw new IllegalStateException("Use ldc for " + value);
+            }
+        }
+
+        void pushLong(ConstantPool pool, long value) {
+            if (value == 0 || value == 1) {
+                op(0x09 + (int) value, 2); // lconst_<n>
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                pushInt((int) value);
+                op(0x85, 1); // i2l
+            } else {
+                op(0x14, 2); // ldc2_w
+                u2(pool.longConstant(value));
+            }
+        }
+
+        void pushDouble(ConstantPool pool, double value) {
+            if (Double.doubleToRawLongBits(value) == 0 || value == 1) {
+                op(0x0e + (int) value, 2); // dconst_<n>
+            } else {
+                op(0x14, 2); // ldc2_w
+                u2(pool.doubleConstant(value));
+            }
+        }
+
+        void ldc(int index) {
+            op(0x13, 1); // ldc_w
+            u2(index);
+        }
+
+        void load(int local, Kind kind) {
+            switch (kind) {
+                case INT: localOp(0x16, local, 2); break; // lload
+                case FLOAT: localOp(0x18, local, 2); break; // dload
+                case BOOL: localOp(0x15, local, 1); break; // iload
+                default: localOp(0x19, local, 1); break; // aload
+            }
+        }
+
+        void store(int local, Kind kind) {
+            switch (kind) {
+                case INT: localOp(0x37, local, -2); break; // lstore
+                case FLOAT: localOp(0x39, local, -2); break; // dstore
+                case BOOL: localOp(0x36, local, -1); break; // istore
+                default: localOp(0x3a, local, -1); break; // astore
+            }
+        }
+
+        private void localOp(int opcode, int local, int stackEffect) {
+            if (local > 255) {
+                this.bytes.write(0xc4); // wide
+                op(opcode, stackEffect);
+                u2(local);
+            } else {
+                op(opcode, stackEffect);
+                this.bytes.write(local);
+            }
+        }
+
+        void invokeStatic(ConstantPool pool, String owner, String name, String descriptor, int stackEffect) {
+            op(0xb8, stackEffect);
+            u2(pool.methodRef(owner, name, descriptor));
+        }
+
+        /**
+         * Emits a forward branch whose target is set later by patch(), returning its position.
+         */
+        int branch(int opcode, int stackEffect) {
+            int position = this.bytes.size();
+            op(opcode, stackEffect);
+            u2(0);
+            return position;
+        }
+
+        /**
+         * Makes the branch at the given position land on the current end of the code.
+         */
+        void patch(int branch) {
+            this.branches.put(branch, this.bytes.size());
+        }
+
+        byte[] toByteArray() {
+            byte[] code = this.bytes.toByteArray();
+            for (Map.Entry<Integer, Integer> branch : this.branches.entrySet()) {
+                int offset = branch.getValue() - branch.getKey();
+                if (offset > Short.MAX_VALUE) {
+                    throw new RuntimeException("Program is too large for the JVM backend.");
+                }
+                code[branch.getKey() + 1] = (byte) (offset >> 8);
+                code[branch.getKey() + 2] = (byte) offset;
+            }
+            return code;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Helpers called from generated code
+
+    static Object checkBound(Object value, String name) {
+        if (value == null) {
+            throw new RuntimeException("Name '" + name + "' is not defined.");
+        }
+        return value;
+    }
+
+    static Object binary(Object left, Object right, int operator) {
+        return Arithmetic.binary(Operator.fromOrdinal(operator), left, right);
+    }
+
+    static Object bigInteger(String digits) {
+        return new BigInteger(digits);
+    }
+
+    static Object unary(Object value, int operator) {
+        return Arithmetic.unary(Operator.fromOrdinal(operator), value);
+    }
+
+    static boolean isTruthy(Object value) {
+        return Arithmetic.isTruthy(value);
+    }
+}
@@ -1,5 +1,19 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
+import ast.Symbol;
+
 enum TokenType {
     INT,  // integers
     FLOAT,  // floats
@@ -10,6 +24,7 @@ enum TokenType {
     RPAREN,  // )
     MUL,  // *
     DIV,  // /
+    FLOORDIV,  // //
     MOD,  // %
     EXP,  // **
     NEWLINE,  // newline character
@@ -60,210 +75,363 @@ class Token {
     }
 }
 
+/**
+ * Splits source code into tokens.
+ *
+ * The source is scanned as a char array, classifying characters with lookup tables, and without creating any
+ * object until a token's value is needed. Tokens can be read one at a time as Token objects, with nextToken, or all at
+ * once into a TokenStream, which stores them in primitive arrays and interns their values, with tokenizeToStream.
+ * A parser can also pull them one at a time without creating any Token, with next and tokenValue.
+ * The value of a NAME is its Symbol, interned straight from the source characters; a keyword is recognised by the
+ * id of the symbol its characters spell.
+ *
+ * The code is either all in memory, or read from a Reader into a bounded buffer that slides along the source. The
+ * buffer only has to hold the token being scanned, so when it runs out, everything before that token is dropped
+ * and more code is read in after it; it grows only for a token longer than itself. A source file can be
+ * memory-mapped and decoded straight into the buffer, so it is never held on the heap as a whole.
+ */
 class Lexer implements Iterable<Token> {
-    private static final Map<Character, TokenType> CHARS_AS_TOKENS = new HashMap<>();
-    private static final Map<String, TokenType> KEYWORDS_AS_TOKENS = new HashMap<>();
-    private static final String LEGAL_NAME_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_";
-    private static final String LEGAL_NAME_START_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ_";
-    private String code;
+    private static final TokenType[] CHARS_AS_TOKENS = new TokenType[128]; // The token of each single-character operator
+    private static final boolean[] NAME_CHARACTERS = new boolean[128]; // Characters that may appear in a name
+    private static final boolean[] NAME_START_CHARACTERS = new boolean[128]; // Characters that may start a name
+    private static final Symbol[] KEYWORDS = { Symbol.intern("if"), Symbol.intern("True"), Symbol.intern("False"), Symbol.intern("not") };
+    private static final TokenType[] KEYWORDS_AS_TOKENS = { TokenType.IF, TokenType.TRUE, TokenType.FALSE, TokenType.NOT };
+    private static final TokenType[] KEYWORDS_BY_SYMBOL; // The keyword each symbol id up to the largest keyword's spells, or null
+    private static final int BUFFER_SIZE = 1 << 16; // The initial size of the buffer when reading code from a Reader
+
+    private char[] code; // The code, or the window of it currently in the buffer
+    private int length; // The number of characters of code in the buffer
+    private long offset; // The source offset of the first character in the buffer
+    private Reader reader; // Where more code is read from, or null once all of it is in the buffer
     private int ptr;
     private boolean beginningOfLine;
     private int currentIndentationLevel;
-    private Deque<Token> nextTokens;
+    private int pendingIndentation; // INDENT tokens (if positive) or DEDENT tokens (if negative) still to be returned
+    private int tokenStart; // The offset of the token scan last returned; the token ends at ptr
+    private TokenType tokenType; // The type of the token next last returned
+    private Symbol tokenSymbol; // The symbol of the last NAME or keyword scanned
 
     static {
-        CHARS_AS_TOKENS.put('+', TokenType.PLUS);
-        CHARS_AS_TOKENS.put('-', TokenType.MINUS);
-        CHARS_AS_TOKENS.put('(', TokenType.LPAREN);
-        CHARS_AS_TOKENS.put(')', TokenType.RPAREN);
-        CHARS_AS_TOKENS.put('*', TokenType.MUL);
-        CHARS_AS_TOKENS.put('/', TokenType.DIV);
-        CHARS_AS_TOKENS.put('%', TokenType.MOD);
-        CHARS_AS_TOKENS.put('=', TokenType.ASSIGN);
-        CHARS_AS_TOKENS.put(':', TokenType.COLON);
-
-        KEYWORDS_AS_TOKENS.put("if", TokenType.IF);
-        KEYWORDS_AS_TOKENS.put("True", TokenType.TRUE);
-        KEYWORDS_AS_TOKENS.put("False", TokenType.FALSE);
-        KEYWORDS_AS_TOKENS.put("not", TokenType.NOT);
+        CHARS_AS_TOKENS['+'] = TokenType.PLUS;
+        CHARS_AS_TOKENS['-'] = TokenType.MINUS;
+        CHARS_AS_TOKENS['('] = TokenType.LPAREN;
+        CHARS_AS_TOKENS[')'] = TokenType.RPAREN;
+        CHARS_AS_TOKENS['*'] = TokenType.MUL;
+        CHARS_AS_TOKENS['/'] = TokenType.DIV;
+        CHARS_AS_TOKENS['%'] = TokenType.MOD;
+        CHARS_AS_TOKENS['='] = TokenType.ASSIGN;
+        CHARS_AS_TOKENS[':'] = TokenType.COLON;
+
+        for (char c = 0; c < 128; c++) {
+            NAME_START_CHARACTERS[c] = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+            NAME_CHARACTERS[c] = NAME_START_CHARACTERS[c] || isDigit(c);
+        }
+
+        int largestKeyword = 0;
+        for (Symbol keyword : KEYWORDS) {
+            largestKeyword = Math.max(largestKeyword, keyword.id());
+        }
+        KEYWORDS_BY_SYMBOL = new TokenType[largestKeyword + 1];
+        for (int k = 0; k < KEYWORDS.length; k++) {
+            KEYWORDS_BY_SYMBOL[KEYWORDS[k].id()] = KEYWORDS_AS_TOKENS[k];
+        }
     }
 
     public Lexer(String code) {
-        this.code = code + "\n"; // Ensure the program ends with a newline.
+        this(code.toCharArray(), code.length());
+    }
+
+    /**
+     * Constructs a Lexer over the first length characters of an array, which is scanned in place.
+     * The end of the code ends the last line, whether or not it is a newline.
+     *
+     * @param code The characters of the source code.
+     * @param length The number of characters to scan.
+     */
+    public Lexer(char[] code, int length) {
+        this.code = code;
+        this.length = length;
         this.ptr = 0;
         this.beginningOfLine = true;
         this.currentIndentationLevel = 0;
-        this.nextTokens = new ArrayDeque<>();
+        this.pendingIndentation = 0;
     }
 
+    /**
+     * Constructs a Lexer that reads the code from a Reader as it goes, holding only a bounded window of it.
+     * The Reader is closed once all of it has been read.
+     *
+     * @param reader The source of the code.
+     */
+    public Lexer(Reader reader) {
+        this(new char[BUFFER_SIZE], 0);
+        this.reader = reader;
+    }
 
     /**
-     * This method is used to consume an integer from the code string.
-     * It starts from the current position (ptr) and continues until it encounters a non-digit character.
-     * The consumed integer is then returned.
+     * Constructs a Lexer over a UTF-8 source file, which is memory-mapped and decoded into the buffer as it goes.
      *
-     * @return The integer that was consumed from the code string.
+     * @param file The path of the source file.
+     * @return The Lexer.
+     * @throws IOException if the file cannot be mapped.
      */
-    private int consumeInt(){
-        int start = this.ptr;
-        while (this.ptr < code.length() && Character.isDigit(code.charAt(this.ptr))) {
-            this.ptr++;
-        }
-        return Integer.parseInt(code.substring(start, this.ptr));
+    public static Lexer ofFile(Path file) throws IOException {
+        return new Lexer(new MappedFileReader(file));
     }
+
     /**
-     * This method is used to consume a float from the code string.
-     * It starts from the current position (ptr) and continues until it encounters a non-digit character.
-     * The consumed float is then returned.
+     * Checks whether there is a character at an index of the buffer, reading more code if the buffer ends before it.
+     * Reading more code may move the contents of the buffer, so indexes must be re-read from the fields afterwards.
+     */
+    private boolean available(int index) {
+        return index < this.length || (this.reader != null && fill(index));
+    }
+
+    /**
+     * Reads more code into the buffer until it holds the character at an index, dropping the code before the token
+     * being scanned to make room.
      *
-     * @return The float that was consumed from the code string.
+     * @return true if the character exists, false if the code ends before it.
      */
+    private boolean fill(int index) {
+        int drop = this.tokenStart;
+        System.arraycopy(this.code, drop, this.code, 0, this.length - drop);
+        this.length -= drop;
+        this.ptr -= drop;
+        this.tokenStart = 0;
+        this.offset += drop;
+        index -= drop;
+        try {
+            while (index >= this.length) {
+                if (this.length == this.code.length) {
+                    this.code = Arrays.copyOf(this.code, this.code.length * 2); // A token longer than the buffer
+                }
+                int read = this.reader.read(this.code, this.length, this.code.length - this.length);
+                if (read < 0) {
+                    this.reader.close();
+                    this.reader = null;
+                    return false;
+                }
+                this.length += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
 
-    private float consumeDecimal() {
-        int start = this.ptr;
-        this.ptr++;
-        while (this.ptr < code.length() && Character.isDigit(code.charAt(this.ptr))) {
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * This method is used to consume the digits of a number from the code.
+     * It starts from the current position (ptr) and continues until it encounters a non-digit character.
+     */
+    private void consumeDigits() {
+        while (available(this.ptr) && isDigit(this.code[this.ptr])) {
             this.ptr++;
         }
-        String floatStr = ((this.ptr - start) > 1) ? code.substring(start, this.ptr) : ".0";
-        return Float.parseFloat(floatStr);
     }
 
     /**
-     * This method is used to consume a name from the code string.
-     * It starts from the current position (ptr) and continues until it encounters a non-alphanumeric character.
-     * The consumed name is then returned.
-     *
-     * @return The name that was consumed from the code string.
+     * This method is used to consume a name from the code.
+     * It starts from the current position (ptr) and continues until it encounters a character that cannot be part of a name.
      */
-    private String consumeName() {
-        int start = this.ptr;
+    private void consumeName() {
         this.ptr++;
-        while (this.ptr < code.length() && LEGAL_NAME_CHARACTERS.indexOf(code.charAt(this.ptr)) >= 0) {
+        while (available(this.ptr) && this.code[this.ptr] < 128 && NAME_CHARACTERS[this.code[this.ptr]]) {
             this.ptr++;
         }
-        return code.substring(start, this.ptr);
     }
 
-    private String consumeIndentation() {
-        int start = ptr;
-        while (this.ptr < code.length() && code.charAt(this.ptr) == ' ') {
+    private void consumeSpaces() {
+        while (available(this.ptr) && this.code[this.ptr] == ' ') {
             this.ptr++;
         }
-        return code.substring(start, this.ptr);
     }
 
     /**
-     * This method is used to consume the next token from the code string.
-     * It starts from the current position (ptr) and continues until it encounters a token.
-     * The consumed token is then returned.
-     *
-     * @return The token that was consumed from the code string.
+     * Interns the last token as a symbol and returns the keyword it spells, or NAME if it is not a keyword.
      */
-    private String peek(int length) {
-        return code.substring(this.ptr, Math.min(this.ptr + length, code.length()));
+    private TokenType keywordOrName() {
+        this.tokenSymbol = Symbol.intern(this.code, this.tokenStart, this.ptr - this.tokenStart);
+        int id = this.tokenSymbol.id();
+        TokenType keyword = id < KEYWORDS_BY_SYMBOL.length ? KEYWORDS_BY_SYMBOL[id] : null;
+        return keyword == null ? TokenType.NAME : keyword;
     }
 
-
+    /**
+     * Returns the value of the last token: the Symbol of a NAME, or the number of an INT or FLOAT.
+     * An integer is returned as a Long, or as a BigInteger if it does not fit in a long.
+     *
+     * @param type The type of the last token.
+     * @return The value of the token, or null if it has none.
+     */
+    private Object valueOf(TokenType type) {
+        int length = this.ptr - this.tokenStart;
+        switch (type) {
+            case NAME:
+                return this.tokenSymbol;
+            case INT:
+                if (length <= 18) { // Any 18 digits fit in a long.
+                    long value = 0;
+                    for (int i = this.tokenStart; i < this.ptr; i++) {
+                        value = value * 10 + (this.code[i] - '0');
+                    }
+                    return value;
+                }
+                return Arithmetic.normalize(new BigInteger(new String(this.code, this.tokenStart, length)));
+            case FLOAT:
+                // Parse the whole literal at once, so that it is rounded to the nearest double only once.
+                return Double.parseDouble(new String(this.code, this.tokenStart, length));
+            default:
+                return null;
+        }
+    }
 
     /**
-     * Processes and returns the next token from the source code.
-     * This method handles indentation, dedentation, and the generation of various token types based on the current character in the source code.
-     * It supports tokens for indentation, dedentation, end of file, new lines, operators, keywords, names, integers, floats, and unrecognized characters.
-     * 
-     * @return The next token from the source code.
+     * Scans the next token from the source code, without creating it.
+     * This method handles indentation, dedentation, and the recognition of the various token types based on the current character in the source code.
+     * Afterwards the text of the token runs from tokenStart to ptr.
+     *
+     * @return The type of the next token.
      * @throws RuntimeException If the indentation is not a multiple of 4 or if an unrecognized character is encountered.
      */
-    public Token nextToken() {
-        // Handle indentation at the beginning of a line
-        if (this.beginningOfLine) {
-            String indentation = consumeIndentation();
-            // Skip empty lines
-            if (peek(1).equals("\n")) {
+    private TokenType scan() {
+        while (true) {
+            // Return pending tokens from indentation adjustments
+            this.tokenStart = this.ptr;
+            if (this.pendingIndentation > 0) {
+                this.pendingIndentation--;
+                return TokenType.INDENT;
+            } else if (this.pendingIndentation < 0) {
+                this.pendingIndentation++;
+                return TokenType.DEDENT;
+            } else if (!this.beginningOfLine) {
+                break;
+            }
+
+            // Handle indentation at the beginning of a line
+            consumeSpaces();
+            if (!available(this.ptr)) {
+                // The end of the code closes every open block
+                if (this.currentIndentationLevel == 0) {
+                    break;
+                }
+                this.pendingIndentation = -this.currentIndentationLevel;
+                this.currentIndentationLevel = 0;
+                continue;
+            }
+            if (this.code[this.ptr] == '\n') {
+                // Skip empty lines
                 this.ptr++;
-                return nextToken();
+                continue;
             }
 
             // Check for correct indentation
-            if (indentation.length() % 4 != 0) {
+            int indentation = this.ptr - this.tokenStart;
+            if (indentation % 4 != 0) {
                 throw new RuntimeException("Indentation must be a multiple of 4.");
             }
 
             // Adjust indentation levels
-            int indentLevel = indentation.length() / 4;
-            while (indentLevel > this.currentIndentationLevel) {
-                nextTokens.add(new Token(TokenType.INDENT));
-                this.currentIndentationLevel++;
-            }
-            while (indentLevel < this.currentIndentationLevel) {
-                nextTokens.add(new Token(TokenType.DEDENT));
-                this.currentIndentationLevel--;
-            }
+            this.pendingIndentation = indentation / 4 - this.currentIndentationLevel;
+            this.currentIndentationLevel = indentation / 4;
             this.beginningOfLine = false;
         }
 
-        // Return pending tokens from adjustments
-        if (!nextTokens.isEmpty()) {
-            return nextTokens.poll();
-        }
-
-        // Skip spaces
-        while (this.ptr < code.length() && code.charAt(this.ptr) == ' ') {
-            this.ptr++;
+        // Skip spaces, moving the token start past each so that the buffer can drop them
+        while (available(this.ptr) && this.code[this.ptr] == ' ') {
+            this.tokenStart = ++this.ptr;
         }
+        this.tokenStart = this.ptr;
 
-        // Handle end of file
-        if (this.ptr == code.length()) {
-            return new Token(TokenType.EOF);
+        // Handle end of file, which also ends the last line if the code does not end with a newline
+        if (!available(this.ptr)) {
+            if (!this.beginningOfLine) {
+                this.beginningOfLine = true;
+                return TokenType.NEWLINE;
+            }
+            return TokenType.EOF;
         }
 
         // Handle new lines and reset beginning of line
-        char charAtPtr = code.charAt(this.ptr);
+        char charAtPtr = this.code[this.ptr];
         if (charAtPtr == '\n') {
             this.ptr++;
-            if (!this.beginningOfLine) {
-                this.beginningOfLine = true;
-                return new Token(TokenType.NEWLINE);
-            } else {
-                return nextToken();
-            }
+            this.beginningOfLine = true;
+            return TokenType.NEWLINE;
         }
 
-        this.beginningOfLine = false;
         // Handle specific characters or sequences
-        if (peek(2).equals("**")) {
+        char nextChar = available(this.ptr + 1) ? this.code[this.ptr + 1] : '\0';
+        if (charAtPtr == '*' && nextChar == '*') {
+            this.ptr += 2;
+            return TokenType.EXP;
+        } else if (charAtPtr == '/' && nextChar == '/') {
             this.ptr += 2;
-            return new Token(TokenType.EXP);
-        } else if (CHARS_AS_TOKENS.containsKey(charAtPtr)) {
+            return TokenType.FLOORDIV;
+        } else if (charAtPtr < 128 && CHARS_AS_TOKENS[charAtPtr] != null) {
             this.ptr++;
-            return new Token(CHARS_AS_TOKENS.get(charAtPtr));
-        } else if (LEGAL_NAME_START_CHARACTERS.indexOf(charAtPtr) >= 0) {
+            return CHARS_AS_TOKENS[charAtPtr];
+        } else if (charAtPtr < 128 && NAME_START_CHARACTERS[charAtPtr]) {
             // Handle names and keywords
-            String name = consumeName();
-            TokenType keywordTokenType = KEYWORDS_AS_TOKENS.get(name);
-            if (keywordTokenType != null) {
-                return new Token(keywordTokenType);
-            } else {
-                return new Token(TokenType.NAME, name);
-            }
-        } else if (Character.isDigit(charAtPtr)) {
+            consumeName();
+            return keywordOrName();
+        } else if (isDigit(charAtPtr)) {
             // Handle integers and floats
-            int integer = consumeInt();
-            if (this.ptr < code.length() && code.charAt(this.ptr) == '.') {
-                float decimal = consumeDecimal();
-                return new Token(TokenType.FLOAT, integer + decimal);
+            consumeDigits();
+            if (available(this.ptr) && this.code[this.ptr] == '.') {
+                this.ptr++;
+                consumeDigits();
+                return TokenType.FLOAT;
             }
-            return new Token(TokenType.INT, integer);
-        } else if (charAtPtr == '.' && this.ptr + 1 < code.length() && Character.isDigit(code.charAt(this.ptr + 1))) {
+            return TokenType.INT;
+        } else if (charAtPtr == '.' && isDigit(nextChar)) {
             // Handle floats starting with a dot
-            float decimal = consumeDecimal();
-            return new Token(TokenType.FLOAT, decimal);
+            this.ptr++;
+            consumeDigits();
+            return TokenType.FLOAT;
         } else {
             // Handle unrecognized characters
             throw new RuntimeException("Unable to tokenize the character '" + charAtPtr + "'. This character is not recognized as part of the expected language syntax.");
         }
     }
 
+    /**
+     * Processes and returns the next token from the source code.
+     * 
+     * @return The next token from the source code.
+     * @throws RuntimeException If the indentation is not a multiple of 4 or if an unrecognized character is encountered.
+     */
+    public Token nextToken() {
+        TokenType type = scan();
+        Object value = valueOf(type);
+        return value == null ? new Token(type) : new Token(type, value);
+    }
+
+    /**
+     * Scans the next token from the source code without creating it. Its value is then returned by tokenValue.
+     * After the end of the code, every call returns EOF.
+     *
+     * @return The type of the next token.
+     * @throws RuntimeException If the indentation is not a multiple of 4 or if an unrecognized character is encountered.
+     */
+    public TokenType next() {
+        this.tokenType = scan();
+        return this.tokenType;
+    }
+
+    /**
+     * Returns the value of the token last returned by next: the Symbol of a NAME, or the number of an INT or FLOAT.
+     *
+     * @return The value of the token, or null if it has none.
+     */
+    public Object tokenValue() {
+        return valueOf(this.tokenType);
+    }
+
     /**
      * Tokenizes the entire source code into a list of tokens.
      * This method iterates through the source code, generating tokens until the end of file (EOF) token is reached.
@@ -284,6 +452,31 @@ class Lexer implements Iterable<Token> {
     
     }
 
+    /**
+     * Tokenizes the entire source code into a TokenStream, including the EOF token at the end.
+     * No object is created per token: names are interned as symbols straight from the source characters, and each
+     * distinct number is boxed once.
+     *
+     * @return The tokens of the source code.
+     */
+    public TokenStream tokenizeToStream() {
+        TokenStream tokens = new TokenStream();
+        TokenType type;
+        do {
+            type = scan();
+            int valueIndex;
+            if (type == TokenType.NAME) {
+                valueIndex = tokens.internSymbol(this.tokenSymbol);
+            } else if (type == TokenType.INT || type == TokenType.FLOAT) {
+                valueIndex = tokens.internValue(valueOf(type));
+            } else {
+                valueIndex = TokenStream.NO_VALUE;
+            }
+            tokens.add(type, this.offset + this.tokenStart, this.ptr - this.tokenStart, valueIndex);
+        } while (type != TokenType.EOF);
+        return tokens;
+    }
+
 
     /**
      * Provides an iterator over the tokens generated by the lexer.
@@ -304,7 +497,7 @@ class Lexer implements Iterable<Token> {
                 //System.out.println(ptr + "" + code.length());
                 //System.out.println(nextToken.getType());
 
-                if (nextToken.getType() == TokenType.EOF && ptr == code.length() && !end){
+                if (nextToken.getType() == TokenType.EOF && !available(ptr) && !end){
                     end = true;
                     return true;
                 }
@@ -323,4 +516,55 @@ class Lexer implements Iterable<Token> {
 
     
 
+    /**
+     * A Reader that decodes a UTF-8 file through memory mappings of it.
+     * The file is mapped a region at a time, and is only open while a region is being mapped.
+     */
+    private static final class MappedFileReader extends Reader {
+        private static final long REGION_SIZE = 1L << 30; // The largest part of the file mapped at once
+
+        private final Path file;
+        private final long size; // The size of the file in bytes
+        private final CharsetDecoder decoder;
+        private long regionStart; // The file offset of the current region
+        private ByteBuffer region; // The current region of the file
+
+        MappedFileReader(Path file) throws IOException {
+            this.file = file;
+            this.decoder = StandardCharsets.UTF_8.newDecoder();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                this.size = channel.size();
+                this.region = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(REGION_SIZE, this.size));
+            }
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+            while (true) {
+                boolean lastRegion = this.regionStart + this.region.limit() == this.size;
+                CoderResult result = this.decoder.decode(this.region, out, lastRegion);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                if (out.position() > offset || length == 0) {
+                    return out.position() - offset;
+                }
+                if (lastRegion) {
+                    return -1;
+                }
+                // Map the next region, starting at the first byte not decoded yet, which may be part of a character.
+                this.regionStart += this.region.position();
+                try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+                    this.region = channel.map(FileChannel.MapMode.READ_ONLY, this.regionStart, Math.min(REGION_SIZE, this.size - this.regionStart));
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            this.region = null;
+        }
+    }
+
 }
\ No newline at end of file
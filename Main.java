@@ -1,37 +1,116 @@
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.w3c.dom.Node;
 
 import ByteUtils.Bytecode;
+import ByteUtils.CodeObject;
 
 public class Main {
-    public static void main(String[] args) {
-        if (args.length < 1) {
-            System.out.println("Usage: java Main <code>");
+    public static void main(String[] args) throws IOException {
+        boolean superinstructions = true;
+        boolean fromFile = false;
+        boolean useCache = true;
+        String mode = "interpreter";
+        int argIndex = 0;
+        while (argIndex < args.length && args[argIndex].startsWith("--")) {
+            switch (args[argIndex]) {
+                case "--no-superinstructions":
+                    superinstructions = false;
+                    break;
+                case "--file":
+                    fromFile = true;
+                    break;
+                case "--no-cache":
+                    useCache = false;
+                    break;
+                case "--mode=interpreter":
+                case "--mode=jvm":
+                case "--mode=ast":
+                    mode = args[argIndex].substring("--mode=".length());
+                    break;
+                default:
+                    System.out.println("Unknown option " + args[argIndex]);
+                    return;
+            }
+            argIndex++;
+        }
+        if (argIndex >= args.length) {
+            System.out.println("Usage: java Main [--no-superinstructions] [--mode=interpreter|jvm|ast] [--file] [--no-cache] <code | file, or - for standard input>");
             return;
         }
 
-        String code = args[0];
-        Lexer tokenizer = new Lexer(code);
-        List<Token> listOfTokens = new ArrayList<>();
-        for (Token token : tokenizer) {
-            System.out.println(token);
-            // add to listOfTokens
-            listOfTokens.add(token);
+        String code = args[argIndex];
+        // The bytecode of a source file is cached, so that running it again unchanged skips lexing, parsing and compiling.
+        CodeCache cache = null;
+        if (fromFile && useCache && !code.equals("-") && mode.equals("interpreter")) {
+            cache = new CodeCache(Path.of(code), superinstructions);
+            CodeObject cached = cache.load();
+            if (cached != null) {
+                System.out.println("Loaded bytecode from " + cache.getCacheFile());
+                System.out.println(cached);
+                System.out.println("----------------------------");
+                System.out.println("Interpreting Bytecode: ");
+                new Interpreter(cached).interpret();
+                return;
+            }
         }
-        List<Token> listOfTokensTwo = tokenizer.tokenize();
-
 
-        System.out.println("List of tokens: " + listOfTokens);
+        Lexer lexer;
+        if (!fromFile) {
+            lexer = new Lexer(code);
+        } else if (code.equals("-")) {
+            lexer = new Lexer(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        } else {
+            lexer = Lexer.ofFile(Path.of(code));
+        }
+        Parser parser;
+        if (fromFile) {
+            // A file may be large, so its tokens are pulled by the parser as it goes rather than all listed first.
+            parser = new Parser(lexer);
+        } else {
+            TokenStream tokens = lexer.tokenizeToStream();
+            for (int i = 0; i < tokens.size(); i++) {
+                System.out.println(tokens.token(i));
+            }
+            System.out.println("List of tokens: " + tokens);
+            parser = new Parser(tokens);
+        }
         System.out.println("----------------------------");
         System.out.println("Abstract Syntax Tree:");
         
-        Parser parser = new Parser(listOfTokens);
-        Object tree = parser.parse();
+        ast.FlatAST flatTree = parser.parseFlat();
+        Object tree = flatTree.toTree();
         parser.printAST(tree);
         
-        Compiler compiler = new Compiler(tree);
+        if (mode.equals("jvm")) {
+            System.out.println("----------------------------");
+            System.out.println("Running as JVM bytecode: ");
+            JvmBackend.CompiledProgram program = JvmBackend.compile((ast.AST.TreeNode) tree);
+            Object[] frame = new Object[program.getVariableNames().size()];
+            Object result = program.run(frame);
+            System.out.println(program.getScope(frame));
+            System.out.println("Result: " + result);
+            System.out.println("Program Fully Executed.");
+            return;
+        }
+        if (mode.equals("ast")) {
+            System.out.println("----------------------------");
+            System.out.println("Running as self-specializing AST: ");
+            AstInterpreter astInterpreter = new AstInterpreter((ast.AST.TreeNode) tree);
+            Object result = astInterpreter.execute();
+            System.out.println(astInterpreter.getScope());
+            System.out.println("Result: " + result);
+            System.out.println("Program Fully Executed.");
+            return;
+        }
+
+        // The bytecode compiler works on the compact form of the tree directly.
+        Compiler compiler = new Compiler(flatTree);
 
         BytecodeGenerator bytecodeGenerator = compiler.compile();
 
@@ -46,9 +125,22 @@ public class Main {
             bytecode.add(next);
         }
 
+        PeepholeOptimizer peephole = new PeepholeOptimizer();
+        if (superinstructions) {
+            PeepholeOptimizer.SUPERINSTRUCTION_RULES.forEach(peephole::addRule);
+        }
+        bytecode = peephole.optimize(bytecode);
+        System.out.println("Peephole optimizer removed " + peephole.getRemovedCount() + " instructions.");
+
+        CodeObject codeObject = CodeObject.assemble(bytecode, compiler.getVariableNames());
+        System.out.println(codeObject);
+        if (cache != null) {
+            cache.store(codeObject);
+        }
+
         System.out.println("----------------------------");
         System.out.println("Interpreting Bytecode: ");
-        new Interpreter(bytecode).interpret();
+        new Interpreter(codeObject).interpret();
 
         
         
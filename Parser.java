@@ -1,10 +1,16 @@
 import java.lang.reflect.Field;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import ByteUtils.Operator;
 import ast.AST.*;
+import ast.FlatAST;
+import ast.Symbol;
 
 public class Parser {
     /**
@@ -23,61 +29,154 @@ public class Parser {
      *     expr := negation
      *     negation := NOT negation | computation
      *     computation := term ( (PLUS | MINUS) term )*
-     *     term := unary ( (MUL | DIV | MOD) unary )*
+     *     term := unary ( (MUL | DIV | FLOORDIV | MOD) unary )*
      *     unary := PLUS unary | MINUS unary | exponentiation
      *     exponentiation := atom EXP unary | atom
      *     atom := LPAREN expr RPAREN | value
      *     value := NAME | INT | FLOAT | TRUE | FALSE
      * </pre>
+     * The expression rules, from negation to atom, are implemented by the precedence-climbing parser in parseExpr.
      */
 
-    public List<Token> tokens;
+    private static final int LOOKAHEAD = 2; // The most tokens the grammar looks at before consuming one; a power of two
+
+    // Binding powers of the operators, indexed by TokenType ordinal. -1 means the token is not such an operator.
+    private static final int[] INFIX_LEFT_BINDING_POWERS = new int[TokenType.values().length];
+    private static final int[] INFIX_RIGHT_BINDING_POWERS = new int[TokenType.values().length];
+    private static final Operator[] INFIX_OPERATORS = new Operator[TokenType.values().length];
+    private static final int[] PREFIX_BINDING_POWERS = new int[TokenType.values().length];
+    private static final Operator[] PREFIX_OPERATORS = new Operator[TokenType.values().length];
+
+    static {
+        Arrays.fill(INFIX_LEFT_BINDING_POWERS, -1);
+        Arrays.fill(PREFIX_BINDING_POWERS, -1);
+        infix(TokenType.PLUS, Operator.ADD, 10, 11);
+        infix(TokenType.MINUS, Operator.SUB, 10, 11);
+        infix(TokenType.MUL, Operator.MUL, 20, 21);
+        infix(TokenType.DIV, Operator.DIV, 20, 21);
+        infix(TokenType.FLOORDIV, Operator.FLOORDIV, 20, 21);
+        infix(TokenType.MOD, Operator.MOD, 20, 21);
+        infix(TokenType.EXP, Operator.POW, 40, 30);
+        // A prefix operator's binding power is both the least its operand binds at and the most it may appear under.
+        prefix(TokenType.NOT, Operator.NOT, 0);
+        prefix(TokenType.PLUS, Operator.POS, 30);
+        prefix(TokenType.MINUS, Operator.NEG, 30);
+    }
+
+    private static void infix(TokenType type, Operator operator, int leftBindingPower, int rightBindingPower) {
+        INFIX_LEFT_BINDING_POWERS[type.ordinal()] = leftBindingPower;
+        INFIX_RIGHT_BINDING_POWERS[type.ordinal()] = rightBindingPower;
+        INFIX_OPERATORS[type.ordinal()] = operator;
+    }
+
+    private static void prefix(TokenType type, Operator operator, int bindingPower) {
+        PREFIX_BINDING_POWERS[type.ordinal()] = bindingPower;
+        PREFIX_OPERATORS[type.ordinal()] = operator;
+    }
+
+    public TokenStream tokens; // The tokens, when they have all been lexed beforehand
     public int nextTokenIndex = 0;
+    private final Lexer lexer; // Where tokens are pulled from as they are needed, when they have not been lexed beforehand
+    private final TokenType[] lookaheadTypes; // Ring buffer of the tokens pulled from lexer but not consumed yet
+    private final Object[] lookaheadValues; // The values of the tokens in lookaheadTypes
+    private int lookaheadCount; // The number of tokens in the ring buffer, starting at slot nextTokenIndex
+    private FlatAST tree = new FlatAST(); // The tree the parse methods add their nodes to
 
     public Parser(List<Token> tokens) {
+        this(TokenStream.of(tokens));
+    }
+
+    /**
+     * Constructs a Parser that reads its tokens straight from the arrays of a TokenStream.
+     *
+     * @param tokens The tokens to parse, ending with EOF.
+     */
+    public Parser(TokenStream tokens) {
         this.tokens = tokens;
+        this.lexer = null;
+        this.lookaheadTypes = null;
+        this.lookaheadValues = null;
+    }
 
+    /**
+     * Constructs a Parser that pulls its tokens from a Lexer as it goes.
+     * At most LOOKAHEAD tokens are held at a time, so the memory used does not depend on the size of the code,
+     * and each statement can be parsed as soon as its tokens have been read.
+     *
+     * @param lexer The Lexer to pull tokens from.
+     */
+    public Parser(Lexer lexer) {
+        this.tokens = null;
+        this.lexer = lexer;
+        this.lookaheadTypes = new TokenType[LOOKAHEAD];
+        this.lookaheadValues = new Object[LOOKAHEAD];
     }
 
     public void printAST(Object obj) {
+        if (obj instanceof FlatAST) {
+            obj = ((FlatAST) obj).toTree();
+        }
         printAST(obj, 0, "");
     }
 
+    /**
+     * Prints a value of a syntax tree, indented to a depth and preceded by a prefix. The tree is walked with an explicit
+     * stack of what is left to print rather than by recursion, so any depth of nesting can be printed.
+     *
+     * @param obj The value to print: a TreeNode, a list of them, or a field of one.
+     * @param depth The depth of the value, which it is indented to.
+     * @param prefix The text printed before the value, such as the name of the field holding it.
+     */
     public void printAST(Object obj, int depth, String prefix) {
-        String indent = "    ".repeat(depth);
-        String objName = obj.getClass().getSimpleName();
-        if (obj instanceof TreeNode) {
-            Field[] fields = ((TreeNode) obj).getClass().getDeclaredFields();
-            Map<String, Object> items = new HashMap<>();
-            for (Field field : fields) {
-                field.setAccessible(true);
-                try {
-                    items.put(field.getName(), field.get(obj));
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                }
+        Deque<PrintTask> tasks = new ArrayDeque<>();
+        tasks.push(new PrintTask(obj, depth, prefix));
+        while (!tasks.isEmpty()) {
+            PrintTask task = tasks.pop();
+            if (task.text != null) {
+                System.out.print(task.text);
+                continue;
             }
-            if (items.isEmpty()) {
-                System.out.print(indent + prefix + objName + "()");
-            } else if (items.size() == 1 && !(items.values().iterator().next() instanceof TreeNode || items.values().iterator().next() instanceof List)) {
-                System.out.print(indent + prefix + objName + "(" + items.values().iterator().next() + ")");
-            } else {
-                System.out.println(indent + prefix + objName + "(");
-                for (Map.Entry<String, Object> entry : items.entrySet()) {
-                    printAST(entry.getValue(), depth + 1, entry.getKey() + "=");
-                    System.out.println(",");
+            String indent = "    ".repeat(task.depth);
+            Object value = task.value;
+            String objName = value.getClass().getSimpleName();
+            // The tasks for the parts of a node or list, pushed in reverse once it is complete so they print in order
+            List<PrintTask> parts = new ArrayList<>();
+            if (value instanceof TreeNode) {
+                Field[] fields = ((TreeNode) value).getClass().getDeclaredFields();
+                Map<String, Object> items = new HashMap<>();
+                for (Field field : fields) {
+                    field.setAccessible(true);
+                    try {
+                        items.put(field.getName(), field.get(value));
+                    } catch (IllegalAccessException e) {
+                        e.printStackTrace();
+                    }
                 }
-                System.out.print(indent + ")");
+                if (items.isEmpty()) {
+                    System.out.print(indent + task.prefix + objName + "()");
+                } else if (items.size() == 1 && !(items.values().iterator().next() instanceof TreeNode || items.values().iterator().next() instanceof List)) {
+                    System.out.print(indent + task.prefix + objName + "(" + items.values().iterator().next() + ")");
+                } else {
+                    System.out.println(indent + task.prefix + objName + "(");
+                    for (Map.Entry<String, Object> entry : items.entrySet()) {
+                        parts.add(new PrintTask(entry.getValue(), task.depth + 1, entry.getKey() + "="));
+                        parts.add(new PrintTask("," + System.lineSeparator()));
+                    }
+                    parts.add(new PrintTask(indent + ")"));
+                }
+            } else if (value instanceof List && !((List<?>) value).isEmpty() && ((List<?>) value).get(0) instanceof TreeNode) {
+                System.out.println(indent + task.prefix + "[");
+                for (Object element : (List<?>) value) {
+                    parts.add(new PrintTask(element, task.depth + 1, ""));
+                    parts.add(new PrintTask("," + System.lineSeparator()));
+                }
+                parts.add(new PrintTask(indent + "]"));
+            } else {
+                System.out.print(indent + task.prefix + value);
             }
-        } else if (obj instanceof List && !((List<?>) obj).isEmpty() && ((List<?>) obj).get(0) instanceof TreeNode) {
-            System.out.println(indent + prefix + "[");
-            for (Object value : (List<?>) obj) {
-                printAST(value, depth + 1, "");
-                System.out.println(",");
+            for (int i = parts.size() - 1; i >= 0; i--) {
+                tasks.push(parts.get(i));
             }
-            System.out.print(indent + "]");
-        } else {
-            System.out.print(indent + prefix + obj);
         }
 
         if (depth == 0) {
@@ -85,30 +184,53 @@ public class Parser {
         }
     }
 
+    /**
+     * A part of a syntax tree left to print: either a value with its depth and prefix, or plain text.
+     */
+    private static final class PrintTask {
+        private final Object value;
+        private final int depth;
+        private final String prefix;
+        private final String text;
+
+        PrintTask(Object value, int depth, String prefix) {
+            this.value = value;
+            this.depth = depth;
+            this.prefix = prefix;
+            this.text = null;
+        }
+
+        PrintTask(String text) {
+            this.value = null;
+            this.depth = 0;
+            this.prefix = null;
+            this.text = text;
+        }
+    }
+
     
     /**
-     * Consumes the next token from the token list and advances the token index.
+     * Consumes the next token from the token stream and advances the token index.
      * If the type of the next token does not match the expected token type, a RuntimeException is thrown.
      *
      * @param expectedTokenType The expected type of the next token.
-     * @return The next token from the token list.
+     * @return The value of the consumed token, or null if it has none.
      * @throws RuntimeException if the next token's type does not match the expected token type.
      */
-    public Token consume(TokenType expectedTokenType) {
-        //System.out.println("In consume");
-        Token nextToken = tokens.get(this.nextTokenIndex);
-        //System.out.println("Next token is: " + nextToken);
+    public Object consume(TokenType expectedTokenType) {
+        TokenType type = peek();
+        Object value;
+        if (this.lexer == null) {
+            value = tokens.value(this.nextTokenIndex);
+        } else {
+            value = this.lookaheadValues[this.nextTokenIndex & (LOOKAHEAD - 1)];
+            this.lookaheadCount--;
+        }
         this.nextTokenIndex++;
-        //System.out.println("Index moved fored");
-        //System.out.println("checking type" + nextToken.getType());
-        if (nextToken.getType() != expectedTokenType) {
-
-            throw new RuntimeException(String.format("Expected %s, ate %s.", expectedTokenType, nextToken));
+        if (type != expectedTokenType) {
+            throw new RuntimeException(String.format("Expected %s, ate %s.", expectedTokenType, value == null ? new Token(type) : new Token(type, value)));
         }
-        //System.out.println("next token is: " + nextToken);
-        //System.out.println("end of consume");
-        return nextToken;
-
+        return value;
     }
 
 
@@ -129,15 +251,26 @@ public class Parser {
      * Peeks ahead in the token stream by a specified number of steps.
      * This method allows looking ahead in the token stream to determine the type of upcoming tokens without consuming them.
      * It calculates the index of the token to peek at by adding the specified number of steps to the current token index.
-     * If the calculated index is within the bounds of the token list, it returns the type of the token at that index.
+     * If the calculated index is within the bounds of the token stream, it returns the type of the token at that index.
      * Otherwise, if the index is out of bounds (indicating the end of the token stream has been reached), it returns null.
+     * When pulling tokens from a Lexer, the tokens up to the one peeked at are pulled into the ring buffer, and the
+     * Lexer keeps returning EOF after the end.
      * 
-     * @param steps The number of steps to peek ahead in the token stream.
+     * @param steps The number of steps to peek ahead in the token stream, less than LOOKAHEAD.
      * @return The TokenType of the token at the specified number of steps ahead, or null if out of bounds.
      */
     public TokenType peek(int steps) {
-        int peekAt = nextTokenIndex + steps;
-        return peekAt < tokens.size() ? tokens.get(peekAt).getType() : null;
+        if (this.lexer == null) {
+            int peekAt = nextTokenIndex + steps;
+            return peekAt < tokens.size() ? tokens.type(peekAt) : null;
+        }
+        while (this.lookaheadCount <= steps) {
+            int slot = (this.nextTokenIndex + this.lookaheadCount) & (LOOKAHEAD - 1);
+            this.lookaheadTypes[slot] = this.lexer.next();
+            this.lookaheadValues[slot] = this.lexer.tokenValue();
+            this.lookaheadCount++;
+        }
+        return this.lookaheadTypes[(this.nextTokenIndex + steps) & (LOOKAHEAD - 1)];
     }
 
 
@@ -145,22 +278,22 @@ public class Parser {
     /**
      * Parses a value from the source code.
      * This method is responsible for parsing values, which can be variables, integers, floats, or boolean constants.
-     * It checks the type of the next token to determine the type of value to parse. For variables, it creates a Variable object
-     * with the token's value. For integers and floats, it creates a Constant object with the token's value. For boolean constants
-     * (true or false), it directly creates a Constant object with the boolean value. If the token type does not represent a valid
+     * It checks the type of the next token to determine the type of value to parse. For variables, it adds a Variable node
+     * with the token's value. For integers and floats, it adds a Constant node with the token's value. For boolean constants
+     * (true or false), it adds a Constant node with the boolean value. If the token type does not represent a valid
      * value, it throws a RuntimeException.
      * 
-     * @return An Object representing the parsed value, which can be a Variable or a Constant.
+     * @return The index of the Variable or Constant node in the tree.
      */
-    public Object parseValue() {
+    public int parseValue() {
         TokenType nextTokenType = peek();
         if (nextTokenType == TokenType.NAME) {
-            return new Variable(consume(TokenType.NAME).getValue());
+            return tree.variable((Symbol) consume(TokenType.NAME));
         } else if (nextTokenType == TokenType.INT || nextTokenType == TokenType.FLOAT) {
-            return new Constant(consume(nextTokenType).getValue());
+            return tree.constant(consume(nextTokenType));
         } else if (nextTokenType == TokenType.TRUE || nextTokenType == TokenType.FALSE) {
             consume(nextTokenType);
-            return new Constant(nextTokenType == TokenType.TRUE);
+            return tree.constant(nextTokenType == TokenType.TRUE);
         } else {
             throw new RuntimeException(String.format("Can't parse %s as a value.", nextTokenType));
         }
@@ -168,180 +301,90 @@ public class Parser {
 
 
     /**
-     * Parses an atomic expression from the source code.
-     * This method handles the parsing of atomic expressions, which can either be a parenthesized expression or a simple value (like a number).
-     * If the current token is a left parenthesis (LPAREN), it consumes this token, recursively calls parseExpr to parse the expression inside the parentheses,
-     * consumes the right parenthesis (RPAREN), and returns the parsed expression. If the current token is not a left parenthesis, it assumes the token represents
-     * a value and calls parseValue to parse and return it.
-     * 
-     * @return An Expression object representing the parsed atomic expression, which could be a parenthesized expression or a simple value.
+     * An operator whose operand is still being parsed, on the explicit stack of parseExpr.
      */
-    public Expression parseAtom() {
-        // Parses a parenthesised expression or a number
-        if (peek() == TokenType.LPAREN) {
-            consume(TokenType.LPAREN);
-            Expression result = parseExpr();
-            consume(TokenType.RPAREN);
-            return result;
-        } else {
-            return (Expression) parseValue();
+    private static final class PendingOperator {
+        final Operator op; // The operator, or null for an open parenthesis
+        final int left; // The left operand of a binary operator, or -1 for a prefix operator or parenthesis
+        final int minBindingPower; // The least binding power of an infix operator that continues the operand
+
+        PendingOperator(Operator op, int left, int minBindingPower) {
+            this.op = op;
+            this.left = left;
+            this.minBindingPower = minBindingPower;
         }
     }
 
 
     /**
-     * Parses an exponentiation expression from the source code.
-     * This method is responsible for parsing expressions that involve the exponentiation operator (**).
-     * It starts by parsing an atomic expression, which can be a number, a variable, or an expression enclosed in parentheses.
-     * If the next token is an exponentiation operator, it consumes the token and recursively parses the right-hand side
-     * of the exponentiation as a unary expression. This allows for right-associative parsing of chained exponentiation operations.
-     * The method constructs and returns a BinaryOp object representing the exponentiation operation.
-     * 
-     * @return An Expression object representing the parsed exponentiation expression.
-     */
-    public Expression parseExponentiation() {
-        // Parses an exponentiation operator.
-        Expression result = parseAtom();
-        if (peek() == TokenType.EXP) {
-            consume(TokenType.EXP);
-            result = new BinaryOp("**", result, parseUnary());
-        }
-        return result;
-    }
-    
-
-    /**
-     * Parses a unary expression from the source code.
-     * This method handles unary expressions, which include unary plus and minus operations.
-     * It checks the next token to determine if it is a PLUS or MINUS operator. If so, it consumes the token,
-     * recursively calls itself to parse the unary expression that follows the operator, and creates a UnaryOp object
-     * representing the unary operation applied to the expression. If the next token is not a PLUS or MINUS operator,
-     * it delegates to parseExponentiation to handle other types of expressions.
-     * 
-     * @return An Expression object representing either a unary operation applied to an expression or the result of parseExponentiation.
-     */
-    public Expression parseUnary() {
-        TokenType next_token_type = peek();
-        if (next_token_type == TokenType.PLUS || next_token_type == TokenType.MINUS) {
-            String op = next_token_type == TokenType.PLUS ? "+" : "-";
-            consume(next_token_type);
-            Expression value = parseUnary();
-            return new UnaryOp(op, value);
-        } else {
-            return parseExponentiation();
-        }
-    }
-
-
-    /**
-     * Parses a term from the source code.
-     * This method is responsible for parsing terms in expressions, specifically handling multiplication, division, and modulo operations.
-     * It starts by parsing a unary expression, which can be a simple number, a variable, or an expression enclosed in parentheses.
-     * After parsing the initial unary expression, it enters a loop to check for the presence of multiplication (*), division (/), or modulo (%) operators.
-     * If any of these operators are found, it consumes the operator token, parses another unary expression as the right operand, and constructs a BinaryOp object
-     * representing the operation. This process repeats for each multiplication, division, or modulo operator found, allowing for the parsing of expressions with multiple
-     * such operations in sequence.
+     * Parses a full expression from the source code.
+     * This method is a precedence-climbing (Pratt) parser driven by the binding-power tables: an infix operator continues
+     * an operand when its left binding power is at least the operand's minimum, and its right operand is then parsed
+     * with the operator's right binding power as the minimum. A right binding power above the left one makes an operator
+     * left-associative; ** has a lower one, which makes it right-associative and lets its right operand start with
+     * a sign. Operators and parentheses whose operand is still being parsed are kept on an explicit stack rather than
+     * the Java stack, so arbitrarily deep nesting can be parsed.
+     * The result is the same tree as the grammar's negation, computation, term, unary, exponentiation and atom rules give.
      * 
-     * @return An Expression object representing the parsed term, which may be a single unary expression or a binary operation involving multiple unary expressions.
+     * @return The index of the root of the expression in the tree.
      */
-    public Expression parseTerm() {
-        Expression result = parseUnary();
-
+    public int parseExpr() {
+        Deque<PendingOperator> pending = new ArrayDeque<>();
         while (true) {
-            TokenType next_token_type = peek();
-            if (next_token_type == TokenType.MUL || next_token_type == TokenType.DIV || next_token_type == TokenType.MOD) {
-                String op = next_token_type == TokenType.MUL ? "*" : next_token_type == TokenType.DIV ? "/" : "%";
-                consume(next_token_type);
-                Expression right = parseUnary();
-                result = new BinaryOp(op, result, right);
-            } else {
-                break;
+            // Parses the prefix operators and parentheses that open an operand, then its value.
+            int minBindingPower = pending.isEmpty() ? 0 : pending.peek().minBindingPower;
+            TokenType nextTokenType = peek();
+            if (nextTokenType == TokenType.LPAREN) {
+                consume(TokenType.LPAREN);
+                pending.push(new PendingOperator(null, -1, 0));
+                continue;
             }
-        }
-
-        return result;
-    }
-
-
-    /**
-     * Parses a computation expression from the source code.
-     * This method handles the parsing of expressions that involve addition and subtraction operations.
-     * It starts by parsing a term using the parseTerm method. Then, it enters a loop, checking for the presence of
-     * PLUS or MINUS tokens. If either is found, it consumes the token, parses another term, and constructs a BinaryOp
-     * object representing the operation between the two terms. This process repeats until no more PLUS or MINUS tokens
-     * are found, ensuring all addition and subtraction operations within the expression are parsed.
-     * 
-     * @return An Expression object representing the parsed computation expression, potentially consisting of multiple
-     *         BinaryOp objects nested to represent the order of operations.
-     */
-    public Expression parseComputation() {
-        Expression result = parseTerm();
-
-        while (true) {
-            TokenType next_token_type = peek();
-            if (next_token_type == TokenType.PLUS || next_token_type == TokenType.MINUS) {
-                String op = next_token_type == TokenType.PLUS ? "+" : "-";
-                consume(next_token_type);
-                Expression right = parseTerm();
-                result = new BinaryOp(op, result, right);
-            } else {
-                break;
+            int prefixBindingPower = PREFIX_BINDING_POWERS[nextTokenType.ordinal()];
+            if (prefixBindingPower >= 0 && minBindingPower <= prefixBindingPower) {
+                consume(nextTokenType);
+                pending.push(new PendingOperator(PREFIX_OPERATORS[nextTokenType.ordinal()], -1, prefixBindingPower));
+                continue;
+            }
+            int result = parseValue();
+
+            // Extends the operand with infix operators, closing the pending operators it completes.
+            while (true) {
+                minBindingPower = pending.isEmpty() ? 0 : pending.peek().minBindingPower;
+                nextTokenType = peek();
+                int leftBindingPower = INFIX_LEFT_BINDING_POWERS[nextTokenType.ordinal()];
+                if (leftBindingPower >= minBindingPower) {
+                    consume(nextTokenType);
+                    pending.push(new PendingOperator(INFIX_OPERATORS[nextTokenType.ordinal()], result, INFIX_RIGHT_BINDING_POWERS[nextTokenType.ordinal()]));
+                    break;
+                }
+                if (pending.isEmpty()) {
+                    return result;
+                }
+                PendingOperator operator = pending.pop();
+                if (operator.op == null) {
+                    consume(TokenType.RPAREN);
+                } else if (operator.left < 0) {
+                    result = tree.unaryOp(operator.op, result);
+                } else {
+                    result = tree.binaryOp(operator.op, operator.left, result);
+                }
             }
-        }
-
-        return result;
-    }
-
-    /**
-     * Parses a negation expression from the source code.
-     * This method handles the parsing of expressions that involve the Boolean negation operator.
-     * If the current token is a NOT operator, it consumes the token and recursively parses the negated expression,
-     * creating a UnaryOp object representing the negation. If the NOT operator is not present, it delegates to parseComputation
-     * to handle other types of expressions.
-     * 
-     * @return An Expression object representing either a negated expression or the result of parseComputation.
-     */
-    public Expression parseNegation() {
-        // Parses a Boolean negation.
-        if (peek() == TokenType.NOT) {
-            //System.out.println("ParsNegation");
-            consume(TokenType.NOT);
-            return new UnaryOp("not", parseNegation());
-        } else {
-            //System.out.println("ParsComputation");
-            return parseComputation();
         }
     }
-    
-
-    /**
-     * Parses a full expression from the source code.
-     * This method serves as an entry point for parsing expressions. It currently delegates to the parseNegation method,
-     * which handles parsing expressions with potential negation operators. This setup allows for easy extension to support
-     * additional expression types in the future.
-     * 
-     * @return An Expression object representing the parsed expression.
-     */
-    public Expression parseExpr() {
-        // Parses a full expression.
-        //System.out.println("ParsNegation");
-        return parseNegation();
-    }
 
 
     /**
      * Parses an expression statement from the source code.
      * This method is used for parsing statements that consist solely of an expression followed by a newline.
-     * It begins by parsing the expression using the parseExpr method. The parsed expression is then used to create an ExprStatement object.
-     * After creating the ExprStatement object, it consumes a NEWLINE token to ensure that the statement is properly terminated.
+     * It begins by parsing the expression using the parseExpr method. The parsed expression is then used to add an ExprStatement node.
+     * After adding the ExprStatement node, it consumes a NEWLINE token to ensure that the statement is properly terminated.
      * 
-     * @return An ExprStatement object representing the parsed expression statement.
+     * @return The index of the ExprStatement node in the tree.
      */
-    public ExprStatement parseExprStatement() {
+    public int parseExprStatement() {
         // Parses a standalone expression.
-        ExprStatement expr = new ExprStatement(parseExpr());
+        int expr = tree.exprStatement(parseExpr());
         consume(TokenType.NEWLINE);
-        //System.out.println(expr.expression);
         return expr;
     }
 
@@ -353,22 +396,22 @@ public class Parser {
      * After parsing the LHS, it parses the right-hand side (RHS) expression that represents the value to be assigned.
      * Finally, it consumes a newline token to signify the end of the assignment statement.
      * 
-     * @return An Assignment object representing the parsed assignment statement, including the target variable(s) and the value expression.
+     * @return The index of the Assignment node in the tree, including the target variable(s) and the value expression.
      */
-    public Assignment parseAssignment() {
+    public int parseAssignment() {
         // Parses an assignment.
         Boolean first = true;
-        List<Variable> targets = new ArrayList<>();
+        int targets = tree.startList();
         while (first || peek(1) == TokenType.ASSIGN) {
             first = false;
-            Token nameToken = consume(TokenType.NAME);
+            Symbol name = (Symbol) consume(TokenType.NAME);
             consume(TokenType.ASSIGN);
-            targets.add(new Variable(nameToken.getValue()));
+            tree.addToList(tree.variable(name));
         }
 
-        Expression value = parseExpr();
+        int value = parseExpr();
         consume(TokenType.NEWLINE);
-        return new Assignment(targets, value);
+        return tree.assignment(targets, value);
     }
 
 
@@ -377,36 +420,36 @@ public class Parser {
      * This method is responsible for parsing the body of statements that are enclosed within an indentation block.
      * It starts by consuming the initial INDENT token, indicating the start of a new block.
      * Then, it enters a loop, parsing statements until a DEDENT token is encountered, signifying the end of the block.
-     * Each parsed statement is added to a list of statements. After consuming the DEDENT token, it constructs and returns a Body object containing all parsed statements.
+     * Each parsed statement is added to a list of statements. After consuming the DEDENT token, it adds a Body node containing all parsed statements.
      * 
-     * @return A Body object containing all statements parsed within the indentation block.
+     * @return The index of the Body node in the tree.
      */
-    public Body parseBody() {
+    public int parseBody() {
         // Parses the body of a compound statement.
         consume(TokenType.INDENT);
-        List<Statement> bodyStatements = new ArrayList<>();
+        int bodyStatements = tree.startList();
         while (peek() != TokenType.DEDENT) {
-            bodyStatements.add(parseStatement());
+            tree.addToList(parseStatement());
         }
         consume(TokenType.DEDENT);
-        return new Body(bodyStatements);
+        return tree.body(bodyStatements);
     }
 
      /**
      * Parses a conditional statement from the source code.
      * This method starts by consuming the 'if' token, indicating the start of a conditional statement.
      * It then parses the condition expression, consumes the colon token followed by a newline token, and finally parses the body of the conditional.
-     * The method constructs and returns a Conditional object representing the parsed conditional statement.
+     * The method adds a Conditional node representing the parsed conditional statement.
      * 
-     * @return A Conditional object representing the parsed conditional statement.
+     * @return The index of the Conditional node in the tree.
      */
-    public Conditional parseConditional() {
+    public int parseConditional() {
         consume(TokenType.IF);
-        Expression condition = parseExpr();
+        int condition = parseExpr();
         consume(TokenType.COLON);
         consume(TokenType.NEWLINE);
-        Body body = parseBody();
-        return new Conditional(condition, body);
+        int body = parseBody();
+        return tree.conditional(condition, body);
     }
     
     
@@ -416,16 +459,12 @@ public class Parser {
      * It supports parsing assignment statements, conditional statements (if), and expression statements.
      * The appropriate parsing method is called based on the type of statement detected.
      * 
-     * @return The parsed statement as an instance of a subclass of Statement.
+     * @return The index of the statement node in the tree.
      */
-    public Statement parseStatement() {
-        //System.out.println("in ParseStatement");
-        
+    public int parseStatement() {
         if (peek(1) == TokenType.ASSIGN) {
-            //System.out.println("The first element in the peek is: " + peek(1));
             return parseAssignment();
         } else if (peek() == TokenType.IF) {
-            //System.out.println("Parsing Conditional");
             return parseConditional();
         } else {
             return parseExprStatement();
@@ -434,22 +473,45 @@ public class Parser {
 
 
     /**
-     * Parses the entire source code into a program.
+     * Parses the entire source code into a program in the compact array form.
      * This method iterates through the source code, parsing each statement until an end of file (EOF) token is encountered.
-     * It collects all parsed statements into a list, which is then used to construct a Program instance.
-     * The method ensures that the EOF token is explicitly consumed before returning the Program instance.
+     * The method ensures that the EOF token is explicitly consumed before returning the tree, whose root is the Program node.
      * 
-     * @return A Program instance containing all parsed statements.
+     * @return The FlatAST of the program.
      */
-    public Program parse() {
-        List<Statement> program = new ArrayList<>();
+    public FlatAST parseFlat() {
+        this.tree = new FlatAST();
+        int program = tree.startList();
         while (peek() != TokenType.EOF) {
-            //System.out.println("In parse loop body");
-            //System.out.println(peek());
-            program.add(parseStatement());
+            tree.addToList(parseStatement());
         }
         consume(TokenType.EOF);
-        return new Program(program);
+        tree.program(program);
+        return tree;
+    }
+
+    /**
+     * Parses the entire source code into a program.
+     * The program is parsed into the compact array form, which is then turned into AST objects.
+     * 
+     * @return A Program instance containing all parsed statements.
+     */
+    public Program parse() {
+        return (Program) parseFlat().toTree();
+    }
+
+    /**
+     * Parses the next top-level statement, so a program can be processed a statement at a time as its tokens arrive.
+     * Each statement is parsed into a cleared tree, so the memory used does not grow with the program.
+     *
+     * @return The next statement, or null at the end of the program.
+     */
+    public Statement nextStatement() {
+        if (peek() == TokenType.EOF) {
+            return null;
+        }
+        tree.clear();
+        return (Statement) tree.toTree(parseStatement());
     }
 
 }
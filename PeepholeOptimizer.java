@@ -0,0 +1,270 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+import ByteUtils.Bytecode;
+import ByteUtils.BytecodeType;
+
+/**
+ * A peephole optimizer that rewrites short instruction sequences of compiled bytecode.
+ *
+ * The optimizer is driven by a table of rules. Each rule names a sequence of BytecodeTypes, an optional condition
+ * on the matched instructions, and the instructions to replace them with. Rules are applied repeatedly until none
+ * matches. A sequence is never rewritten if a jump lands inside it, and POP_JUMP_IF_FALSE offsets are patched
+ * whenever code before their target shrinks. Rules must not match POP_JUMP_IF_FALSE itself.
+ */
+class PeepholeOptimizer {
+
+    /**
+     * A single rewrite rule of the peephole optimizer.
+     */
+    static class Rule {
+        private final String name; // A short description of the rule
+        private final BytecodeType[] pattern; // The instruction types the rule matches, in order
+        private final BiPredicate<List<Bytecode>, Integer> condition; // Tests the whole code and the match position
+        private final Function<List<Bytecode>, List<Bytecode>> rewrite; // Maps the matched instructions to their replacement
+
+        /**
+         * Constructs a rule.
+         *
+         * @param name A short description of the rule.
+         * @param pattern The instruction types the rule matches, in order.
+         * @param condition Further test on the code and the index the match starts at.
+         * @param rewrite Maps the matched instructions to the instructions that replace them.
+         */
+        Rule(String name, BytecodeType[] pattern, BiPredicate<List<Bytecode>, Integer> condition,
+                Function<List<Bytecode>, List<Bytecode>> rewrite) {
+            this.name = name;
+            this.pattern = pattern;
+            this.condition = condition;
+            this.rewrite = rewrite;
+        }
+
+        /**
+         * Returns whether the rule matches the code at the given index.
+         */
+        boolean matches(List<Bytecode> code, int at) {
+            if (at + pattern.length > code.size()) {
+                return false;
+            }
+            for (int i = 0; i < pattern.length; i++) {
+                if (code.get(at + i).getType() != pattern[i]) {
+                    return false;
+                }
+            }
+            return condition.test(code, at);
+        }
+
+        @Override
+        public String toString() {
+            return "Rule(" + name + ")";
+        }
+    }
+
+    /**
+     * The rules applied by default.
+     */
+    static final List<Rule> DEFAULT_RULES = List.of(
+        // An expression statement over a constant has no effect, unless its value is the last one popped.
+        new Rule("PUSH x; POP",
+            new BytecodeType[] { BytecodeType.PUSH, BytecodeType.POP },
+            (code, at) -> hasLaterPop(code, at + 1),
+            window -> List.of()),
+        // Storing the same value twice into a variable in one assignment chain only needs the last store.
+        new Rule("COPY; STORE_FAST a; ... STORE_FAST a",
+            new BytecodeType[] { BytecodeType.COPY, BytecodeType.STORE_FAST },
+            (code, at) -> isStoredLaterInChain(code, at + 2, code.get(at + 1).getValue()),
+            window -> List.of()),
+        // Unary plus leaves its operand untouched.
+        new Rule("UNARYOP +",
+            new BytecodeType[] { BytecodeType.UNARYOP },
+            (code, at) -> "+".equals(code.get(at).getValue()),
+            window -> List.of())
+    );
+
+    /**
+     * Rules that fuse common instruction sequences into superinstructions, saving dispatches and stack traffic.
+     */
+    static final List<Rule> SUPERINSTRUCTION_RULES = List.of(
+        new Rule("LOAD_FAST a; PUSH c; BINARYOP op",
+            new BytecodeType[] { BytecodeType.LOAD_FAST, BytecodeType.PUSH, BytecodeType.BINARYOP },
+            (code, at) -> true,
+            window -> List.of(new Bytecode(BytecodeType.LOAD_CONST_BINOP,
+                List.of(window.get(0).getValue(), window.get(1).getValue(), window.get(2).getValue())))),
+        new Rule("LOAD_FAST a; LOAD_FAST b; BINARYOP op",
+            new BytecodeType[] { BytecodeType.LOAD_FAST, BytecodeType.LOAD_FAST, BytecodeType.BINARYOP },
+            (code, at) -> true,
+            window -> List.of(new Bytecode(BytecodeType.LOAD_LOAD_BINOP,
+                List.of(window.get(0).getValue(), window.get(1).getValue(), window.get(2).getValue())))),
+        new Rule("BINARYOP op; STORE_FAST a",
+            new BytecodeType[] { BytecodeType.BINARYOP, BytecodeType.STORE_FAST },
+            (code, at) -> true,
+            window -> List.of(new Bytecode(BytecodeType.BINOP_STORE_FAST,
+                List.of(window.get(0).getValue(), window.get(1).getValue()))))
+    );
+
+    private final List<Rule> rules;
+    private int removedCount;
+
+    /**
+     * Constructs a PeepholeOptimizer that applies the default rules.
+     */
+    public PeepholeOptimizer() {
+        this(DEFAULT_RULES);
+    }
+
+    /**
+     * Constructs a PeepholeOptimizer that applies the given rules, tried in order at each instruction.
+     *
+     * @param rules The rules to apply.
+     */
+    public PeepholeOptimizer(List<Rule> rules) {
+        this.rules = new ArrayList<>(rules);
+        this.removedCount = 0;
+    }
+
+    /**
+     * Adds a rule, tried after the existing ones.
+     *
+     * @param rule The rule to add.
+     */
+    public void addRule(Rule rule) {
+        this.rules.add(rule);
+    }
+
+    /**
+     * Returns the total number of instructions removed by this optimizer so far.
+     *
+     * @return The number of instructions removed.
+     */
+    public int getRemovedCount() {
+        return this.removedCount;
+    }
+
+    /**
+     * Optimizes a sequence of bytecodes. The given list is not modified.
+     *
+     * @param bytecodes The bytecodes to optimize.
+     * @return The optimized bytecodes.
+     */
+    public List<Bytecode> optimize(List<Bytecode> bytecodes) {
+        List<Bytecode> code = bytecodes;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            boolean[] jumpTargets = jumpTargets(code);
+            List<Bytecode> output = new ArrayList<>(code.size());
+            int[] newIndex = new int[code.size() + 1]; // Where each old instruction (or the end) lands in the output
+            int i = 0;
+            while (i < code.size()) {
+                Rule rule = matchingRule(code, i, jumpTargets);
+                if (rule == null) {
+                    newIndex[i] = output.size();
+                    output.add(code.get(i));
+                    i++;
+                    continue;
+                }
+                List<Bytecode> replacement = rule.rewrite.apply(code.subList(i, i + rule.pattern.length));
+                for (int j = i; j < i + rule.pattern.length; j++) {
+                    newIndex[j] = output.size();
+                }
+                output.addAll(replacement);
+                i += rule.pattern.length;
+                changed = true;
+            }
+            newIndex[code.size()] = output.size();
+            this.removedCount += code.size() - output.size();
+            code = patchJumps(code, output, newIndex);
+        }
+        return code;
+    }
+
+    /**
+     * Returns the first rule that matches at the given index without swallowing a jump target.
+     */
+    private Rule matchingRule(List<Bytecode> code, int at, boolean[] jumpTargets) {
+        for (Rule rule : this.rules) {
+            if (rule.matches(code, at) && !hasJumpTargetInside(jumpTargets, at, rule.pattern.length)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasJumpTargetInside(boolean[] jumpTargets, int at, int length) {
+        for (int i = at + 1; i < at + length; i++) {
+            if (jumpTargets[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks every instruction index (including the end of the code) that a jump lands on.
+     */
+    private static boolean[] jumpTargets(List<Bytecode> code) {
+        boolean[] targets = new boolean[code.size() + 1];
+        for (int i = 0; i < code.size(); i++) {
+            if (code.get(i).getType() == BytecodeType.POP_JUMP_IF_FALSE) {
+                targets[i + (Integer) code.get(i).getValue()] = true;
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Recomputes the offset of each jump in the output from where its old target landed.
+     */
+    private static List<Bytecode> patchJumps(List<Bytecode> oldCode, List<Bytecode> output, int[] newIndex) {
+        for (int i = 0; i < oldCode.size(); i++) {
+            Bytecode bc = oldCode.get(i);
+            if (bc.getType() == BytecodeType.POP_JUMP_IF_FALSE) {
+                int from = newIndex[i];
+                int to = newIndex[i + (Integer) bc.getValue()];
+                output.set(from, new Bytecode(BytecodeType.POP_JUMP_IF_FALSE, to - from));
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns whether another POP is certain to run after the POP at the given index, so that the value it pops
+     * can never be the program's result. A POP qualifies if no jump between the two can skip it.
+     */
+    private static boolean hasLaterPop(List<Bytecode> code, int pop) {
+        int furthestTarget = 0;
+        for (int i = pop + 1; i < code.size(); i++) {
+            BytecodeType type = code.get(i).getType();
+            if (type == BytecodeType.POP && furthestTarget <= i) {
+                return true;
+            } else if (type == BytecodeType.POP_JUMP_IF_FALSE) {
+                furthestTarget = Math.max(furthestTarget, i + (Integer) code.get(i).getValue());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the rest of an assignment chain, a run of COPY; STORE_FAST pairs ended by a STORE_FAST,
+     * stores into the given slot again.
+     */
+    private static boolean isStoredLaterInChain(List<Bytecode> code, int at, Object slot) {
+        int i = at;
+        while (i + 1 < code.size() && code.get(i).getType() == BytecodeType.COPY
+                && code.get(i + 1).getType() == BytecodeType.STORE_FAST) {
+            if (code.get(i + 1).getValue().equals(slot)) {
+                return true;
+            }
+            i += 2;
+        }
+        return i < code.size() && code.get(i).getType() == BytecodeType.STORE_FAST && code.get(i).getValue().equals(slot);
+    }
+
+    @Override
+    public String toString() {
+        return "PeepholeOptimizer(" + Arrays.toString(this.rules.toArray()) + ")";
+    }
+}
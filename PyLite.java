@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ByteUtils.Bytecode;
+import ByteUtils.CodeObject;
+
+/**
+ * The entry point for embedding PyLite: a program is prepared once, then evaluated any number of times with different
+ * values bound to its variables.
+ *
+ * Preparing runs the whole pipeline, Lexer, Parser, Compiler, PeepholeOptimizer and assembly, and resolves the
+ * variables the caller will bind to their frame slots. Evaluating only binds those slots and runs the code: every
+ * thread keeps its own Interpreter for the program, whose frame and stack are reset and reused by each evaluation.
+ */
+public final class PyLite {
+    private PyLite() {}
+
+    /**
+     * Compiles a program whose inputs will be bound by position.
+     *
+     * @param source The source code of the program.
+     * @param inputs The names of the variables evaluate(Object...) binds, in the order their values are given.
+     * @return The prepared program.
+     * @throws RuntimeException If the program fails to lex, parse or compile.
+     */
+    public static PreparedProgram prepare(String source, String... inputs) {
+        Compiler compiler = new Compiler(new Parser(new Lexer(source).tokenizeToStream()).parseFlat());
+        List<Bytecode> bytecode = new ArrayList<>();
+        compiler.compile().forEachRemaining(bytecode::add);
+        PeepholeOptimizer peephole = new PeepholeOptimizer();
+        PeepholeOptimizer.SUPERINSTRUCTION_RULES.forEach(peephole::addRule);
+        return new PreparedProgram(CodeObject.assemble(peephole.optimize(bytecode), compiler.getVariableNames()), inputs);
+    }
+
+    /**
+     * A compiled program, which can be evaluated concurrently from any number of threads.
+     *
+     * The CodeObject is shared by the interpreters of every thread, which only read it: each quickens its own copy of
+     * the instructions.
+     */
+    public static final class PreparedProgram {
+        private final CodeObject code;
+        private final List<String> inputs;
+        private final int[] inputSlots; // The slot of each input, or -1 for an input the program never uses
+        private final Map<String, Integer> slots; // The slot of each variable of the program, by name
+        private final ThreadLocal<Interpreter> interpreters; // The interpreter, and so the frame, of each thread
+        private final Map<String, ColumnEvaluator> columnEvaluators; // The plan for each combination of column types
+
+        PreparedProgram(CodeObject code, String... inputs) {
+            this.code = code;
+            this.inputs = Collections.unmodifiableList(Arrays.asList(inputs.clone()));
+            Map<String, Integer> slots = new HashMap<>();
+            Object[] variableNames = code.getVariableNames();
+            for (int slot = 0; slot < variableNames.length; slot++) {
+                slots.put(variableNames[slot].toString(), slot);
+            }
+            this.slots = Collections.unmodifiableMap(slots);
+            this.inputSlots = new int[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                this.inputSlots[i] = slotOf(inputs[i]);
+            }
+            this.interpreters = ThreadLocal.withInitial(() -> new Interpreter(this.code));
+            this.columnEvaluators = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Returns the frame slot of a variable.
+         *
+         * @param name The name of the variable.
+         * @return The slot, or -1 if the program has no such variable.
+         */
+        public int slotOf(String name) {
+            return this.slots.getOrDefault(name, -1);
+        }
+
+        /**
+         * Returns the names of the inputs the program was prepared with.
+         *
+         * @return The inputs, in the order evaluate(Object...) takes their values.
+         */
+        public List<String> getInputs() {
+            return this.inputs;
+        }
+
+        /**
+         * Runs the program with a value bound to each input.
+         *
+         * @param values The value of each input, in the order the inputs were given to prepare: integers, booleans or floats.
+         * @return The value of the last expression statement run, or null if there was none.
+         * @throws RuntimeException If the number of values is wrong, a value can't be bound, or the program fails.
+         */
+        public Object evaluate(Object... values) {
+            if (values.length != this.inputSlots.length) {
+                throw new RuntimeException(String.format("Expected %d values for %s, got %d.", this.inputSlots.length, this.inputs, values.length));
+            }
+            Interpreter interpreter = this.interpreters.get();
+            interpreter.reset();
+            for (int i = 0; i < values.length; i++) {
+                if (this.inputSlots[i] >= 0) {
+                    interpreter.bind(this.inputSlots[i], values[i]);
+                }
+            }
+            interpreter.run();
+            return interpreter.getLastValuePopped();
+        }
+
+        /**
+         * Runs the program with values bound to variables by name.
+         * Names the program does not use are ignored. This looks up every name, so evaluate(Object...) is faster.
+         *
+         * @param bindings The value of each variable to bind: integers, booleans or floats.
+         * @return The value of the last expression statement run, or null if there was none.
+         * @throws RuntimeException If a value can't be bound or the program fails.
+         */
+        public Object evaluate(Map<String, ?> bindings) {
+            Interpreter interpreter = this.interpreters.get();
+            interpreter.reset();
+            for (Map.Entry<String, ?> binding : bindings.entrySet()) {
+                Integer slot = this.slots.get(binding.getKey());
+                if (slot != null) {
+                    interpreter.bind(slot, binding.getValue());
+                }
+            }
+            interpreter.run();
+            return interpreter.getLastValuePopped();
+        }
+
+        /**
+         * Runs the program for every row of a batch of inputs given as columns, much faster than calling evaluate for
+         * each row. Straight-line programs are run a block of rows at a time on primitive arrays, with the same
+         * results evaluate gives; see ColumnEvaluator.
+         *
+         * @param columns The values of each input, in the order the inputs were given to prepare: an int[], long[],
+         *                double[] or boolean[] each, all of the same length.
+         * @return The value of the last expression statement run for each row: a long[] for integers, a double[] for
+         *         floats or a boolean[] for booleans.
+         * @throws RuntimeException If the columns are wrong, the program fails for a row, or the values of the rows do
+         *                          not fit in one such column, such as an integer too large for a long.
+         */
+        public Object evaluateColumns(Object... columns) {
+            return columnEvaluator(columns).evaluate(columns, false);
+        }
+
+        /**
+         * Runs the program for every row of a batch of inputs given as columns, as evaluateColumns does, splitting the
+         * rows into parts evaluated on every core of the common ForkJoinPool. Each worker thread has its own frame and
+         * registers, and writes the values of its rows straight into their place in the output column. The result and
+         * any error are those evaluateColumns gives.
+         *
+         * @param columns The values of each input, in the order the inputs were given to prepare: an int[], long[],
+         *                double[] or boolean[] each, all of the same length.
+         * @return The value of the last expression statement run for each row: a long[] for integers, a double[] for
+         *         floats or a boolean[] for booleans.
+         * @throws RuntimeException If the columns are wrong, the program fails for a row, or the values of the rows do
+         *                          not fit in one such column, such as an integer too large for a long.
+         */
+        public Object evaluateColumnsInParallel(Object... columns) {
+            return columnEvaluator(columns).evaluate(columns, true);
+        }
+
+        /**
+         * Runs the program for every row of inputs held in column files, writing the value of each row to a new column
+         * file, as evaluateColumnsInParallel does for arrays. The files are memory-mapped and streamed a block of rows
+         * at a time through every core, so neither the inputs nor the output are ever loaded onto the heap, and columns
+         * far larger than memory are evaluated at the speed the page cache and disk deliver them.
+         *
+         * @param columns The column file of each input, by name, all with the same number of rows.
+         * @param output The file to write. The rows are written to a temporary file beside it, forced to disk, and
+         *               moved over it atomically, so it is replaced only by a complete column; if evaluation fails, it
+         *               is left as it was and the temporary file is deleted.
+         * @return The output column file: longs for integers, doubles for floats or booleans.
+         * @throws IOException If a file can't be read or written.
+         * @throws RuntimeException If the columns are wrong or the output is one of them, the program fails for a row,
+         *                          or the values of the rows do not fit in one such column.
+         */
+        public ColumnFile evaluateFiles(Map<String, ColumnFile> columns, Path output) throws IOException {
+            ColumnFile[] files = new ColumnFile[this.inputSlots.length];
+            for (Map.Entry<String, ColumnFile> column : columns.entrySet()) {
+                int i = this.inputs.indexOf(column.getKey());
+                if (i < 0) {
+                    throw new RuntimeException(String.format("%s is not one of the inputs %s.", column.getKey(), this.inputs));
+                } else if (Files.exists(output) && Files.isSameFile(column.getValue().getPath(), output)) {
+                    throw new RuntimeException(String.format("Can't write the output over the column of %s, %s.", column.getKey(), output));
+                }
+                files[i] = column.getValue();
+            }
+            Object[] mappings = new Object[files.length];
+            for (int i = 0; i < files.length; i++) {
+                if (files[i] == null) {
+                    throw new RuntimeException(String.format("No column for the input %s.", this.inputs.get(i)));
+                }
+                mappings[i] = files[i].map();
+            }
+            ColumnEvaluator evaluator = columnEvaluator(mappings);
+            byte type = evaluator.resultType(mappings);
+            ColumnFile.Type resultType = type == Interpreter.FLOAT ? ColumnFile.Type.DOUBLE
+                    : type == Interpreter.BOOL ? ColumnFile.Type.BOOLEAN : ColumnFile.Type.LONG;
+            // The rows are written to a sibling file, which replaces the output only once all of them are on disk.
+            Path absolute = output.toAbsolutePath();
+            Path temporary = absolute.resolveSibling(absolute.getFileName() + "." + ProcessHandle.current().pid() + "."
+                    + Thread.currentThread().getId() + ".tmp");
+            try {
+                ColumnFile.Mapping result = new ColumnFile(temporary, resultType).create(ColumnEvaluator.length(mappings[0]));
+                evaluator.evaluate(mappings, result, true);
+                result.force();
+                Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            return new ColumnFile(output, resultType);
+        }
+
+        /**
+         * Returns the plan for columns of the types given, making it the first time they are seen.
+         */
+        private ColumnEvaluator columnEvaluator(Object[] columns) {
+            if (columns.length != this.inputSlots.length) {
+                throw new RuntimeException(String.format("Expected %d columns for %s, got %d.", this.inputSlots.length, this.inputs, columns.length));
+            }
+            return this.columnEvaluators.computeIfAbsent(ColumnEvaluator.signature(columns), s -> new ColumnEvaluator(this.code, this.inputSlots, s, this.interpreters));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs work over the rows of a dataset on every core, with the common ForkJoinPool.
+ *
+ * The rows are split in halves until a part is no larger than the grain, and each part runs on whichever worker
+ * takes it: a worker forks one half and works on the other, so idle workers steal the largest parts left. A part
+ * must only touch its own rows of the output and the state of the worker running it, such as its own frame, so parts
+ * need no locking, and the output is complete once every part has joined.
+ *
+ * The error of the lowest part that fails is rethrown, which is the error a sequential run would have stopped at,
+ * since each part runs its rows in order. Parts above a failed one are skipped once the failure is seen.
+ */
+final class RowPartitions extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The work for a range of rows.
+     */
+    interface Range {
+        /**
+         * Runs the work for the rows from (inclusive) to (exclusive), in order.
+         */
+        void run(long from, long to);
+    }
+
+    /**
+     * The first failure seen, with the first row of the part that failed.
+     */
+    private static final class Failure {
+        final long from;
+        final RuntimeException error;
+
+        Failure(long from, RuntimeException error) {
+            this.from = from;
+            this.error = error;
+        }
+    }
+
+    private final long from;
+    private final long to;
+    private final int grain;
+    private final Range range;
+    private final AtomicReference<Failure> failure; // Shared by every part of a run
+
+    private RowPartitions(long from, long to, int grain, Range range, AtomicReference<Failure> failure) {
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+        this.range = range;
+        this.failure = failure;
+    }
+
+    /**
+     * Runs work over a range of rows in parallel, or on the calling thread if the range is no larger than the grain.
+     *
+     * @param from The first row.
+     * @param to The row after the last.
+     * @param grain The largest number of rows a part has, large enough that a part costs far more than forking it.
+     * @param range The work for a part.
+     * @throws RuntimeException The error of the lowest part that failed, if any.
+     */
+    static void run(long from, long to, int grain, Range range) {
+        if (to - from <= grain) {
+            range.run(from, to);
+            return;
+        }
+        AtomicReference<Failure> failure = new AtomicReference<>();
+        ForkJoinPool.commonPool().invoke(new RowPartitions(from, to, grain, range, failure));
+        if (failure.get() != null) {
+            throw failure.get().error;
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if (this.to - this.from > this.grain) {
+            long middle = (this.from + this.to) >>> 1;
+            invokeAll(new RowPartitions(this.from, middle, this.grain, this.range, this.failure),
+                    new RowPartitions(middle, this.to, this.grain, this.range, this.failure));
+            return;
+        }
+        Failure failed = this.failure.get();
+        if (failed != null && failed.from < this.from) {
+            return; // A lower part failed, so its error is the one reported.
+        }
+        try {
+            this.range.run(this.from, this.to);
+        } catch (RuntimeException e) {
+            this.failure.accumulateAndGet(new Failure(this.from, e), (seen, mine) -> seen == null || mine.from < seen.from ? mine : seen);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ast.Symbol;
+
+/**
+ * A sequence of tokens stored as parallel primitive arrays instead of Token objects.
+ *
+ * Token i has a type, the offset and length of its text in the source, and the index of its value in a pool of
+ * interned values, or NO_VALUE for tokens without one. A NAME's value is its Symbol and an INT's or FLOAT's value
+ * is its number. Each distinct value is stored once, however many tokens refer to it. Symbols are pooled through a
+ * small open-addressing table of their ids, so pooling a name never hashes its characters, and the table is sized by
+ * the names in the stream rather than by every symbol interned so far.
+ */
+class TokenStream {
+    public static final int NO_VALUE = -1; // The value index of a token without a value
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private byte[] types; // The TokenType ordinal of each token
+    private long[] starts; // The source offset of each token, a long since a file or Reader may pass 2 GiB
+    private int[] lengths; // The source length of each token
+    private int[] valueIndexes; // The index of each token's value in values, or NO_VALUE
+    private int size; // The number of tokens
+
+    private Object[] values; // The pool of interned values
+    private int valueCount; // The number of values in the pool
+    private int[] symbolTable; // Open-addressing table of the pooled symbols, by id, holding value index + 1, or 0 for a free entry
+    private int symbolCount; // The number of pooled symbols
+    private final Map<Object, Integer> constantIndexes; // The value index of each interned number
+
+    /**
+     * Constructs an empty TokenStream.
+     */
+    public TokenStream() {
+        this.types = new byte[64];
+        this.starts = new long[64];
+        this.lengths = new int[64];
+        this.valueIndexes = new int[64];
+        this.values = new Object[16];
+        this.symbolTable = new int[16];
+        this.constantIndexes = new HashMap<>();
+    }
+
+    /**
+     * Builds a TokenStream from Token objects, for callers that have tokens without their source.
+     * The tokens get no source positions: their offset is -1 and their length 0.
+     *
+     * @param tokens The tokens, normally ending with EOF.
+     * @return The equivalent TokenStream.
+     */
+    public static TokenStream of(List<Token> tokens) {
+        TokenStream stream = new TokenStream();
+        for (Token token : tokens) {
+            Object value = token.getValue();
+            stream.add(token.getType(), -1, 0, value == null ? NO_VALUE : stream.internValue(value));
+        }
+        return stream;
+    }
+
+    /**
+     * Appends a token.
+     *
+     * @param type The type of the token.
+     * @param start The source offset of the token.
+     * @param length The source length of the token.
+     * @param valueIndex The index of the token's value, as returned by internName or internValue, or NO_VALUE.
+     */
+    public void add(TokenType type, long start, int length, int valueIndex) {
+        if (this.size == this.types.length) {
+            int capacity = this.size * 2;
+            this.types = Arrays.copyOf(this.types, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.lengths = Arrays.copyOf(this.lengths, capacity);
+            this.valueIndexes = Arrays.copyOf(this.valueIndexes, capacity);
+        }
+        this.types[this.size] = (byte) type.ordinal();
+        this.starts[this.size] = start;
+        this.lengths[this.size] = length;
+        this.valueIndexes[this.size] = valueIndex;
+        this.size++;
+    }
+
+    /**
+     * Returns the value index of a symbol, adding it to the pool the first time it is seen.
+     *
+     * @param symbol The symbol of a NAME.
+     * @return The value index of the symbol.
+     */
+    public int internSymbol(Symbol symbol) {
+        int mask = this.symbolTable.length - 1;
+        for (int entry = Symbol.hashId(symbol.id()) & mask; ; entry = (entry + 1) & mask) {
+            int index = this.symbolTable[entry] - 1;
+            if (index < 0) {
+                index = addValue(symbol);
+                this.symbolTable[entry] = index + 1;
+                if (++this.symbolCount * 2 > this.symbolTable.length) {
+                    growSymbolTable();
+                }
+                return index;
+            }
+            if (this.values[index] == symbol) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Doubles the table of pooled symbols, reinserting every one.
+     */
+    private void growSymbolTable() {
+        int[] grown = new int[this.symbolTable.length * 2];
+        int mask = grown.length - 1;
+        for (int index : this.symbolTable) {
+            if (index != 0) {
+                int entry = Symbol.hashId(((Symbol) this.values[index - 1]).id()) & mask;
+                while (grown[entry] != 0) {
+                    entry = (entry + 1) & mask;
+                }
+                grown[entry] = index;
+            }
+        }
+        this.symbolTable = grown;
+    }
+
+    /**
+     * Returns the value index of a number or symbol, adding it to the pool the first time it is seen.
+     * A String is interned as the symbol of an identifier.
+     *
+     * @param value The value to intern.
+     * @return The value index of the value.
+     */
+    public int internValue(Object value) {
+        if (value instanceof String) {
+            return internSymbol(Symbol.intern((String) value));
+        } else if (value instanceof Symbol) {
+            return internSymbol((Symbol) value);
+        }
+        Integer index = this.constantIndexes.get(value);
+        if (index == null) {
+            index = addValue(value);
+            this.constantIndexes.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Appends a value to the pool.
+     */
+    private int addValue(Object value) {
+        if (this.valueCount == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.valueCount * 2);
+        }
+        this.values[this.valueCount] = value;
+        return this.valueCount++;
+    }
+
+    /**
+     * Returns the number of tokens.
+     *
+     * @return The number of tokens.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the type of a token.
+     *
+     * @param index The index of the token.
+     * @return The type of the token.
+     */
+    public TokenType type(int index) {
+        return TOKEN_TYPES[this.types[index]];
+    }
+
+    /**
+     * Returns the source offset of a token.
+     *
+     * @param index The index of the token.
+     * @return The offset of the token's text in the source, or -1 if it is not known.
+     */
+    public long start(int index) {
+        return this.starts[index];
+    }
+
+    /**
+     * Returns the source length of a token.
+     *
+     * @param index The index of the token.
+     * @return The length of the token's text in the source.
+     */
+    public int length(int index) {
+        return this.lengths[index];
+    }
+
+    /**
+     * Returns the index of a token's value in the value pool.
+     *
+     * @param index The index of the token.
+     * @return The value index of the token, or NO_VALUE.
+     */
+    public int valueIndex(int index) {
+        return this.valueIndexes[index];
+    }
+
+    /**
+     * Returns the value of a token.
+     *
+     * @param index The index of the token.
+     * @return The value of the token, or null if it has none.
+     */
+    public Object value(int index) {
+        int valueIndex = this.valueIndexes[index];
+        return valueIndex == NO_VALUE ? null : this.values[valueIndex];
+    }
+
+    /**
+     * Returns the number of distinct values in the value pool.
+     *
+     * @return The number of interned values.
+     */
+    public int valueCount() {
+        return this.valueCount;
+    }
+
+    /**
+     * Returns a token as a Token object, for printing and debugging.
+     *
+     * @param index The index of the token.
+     * @return The token.
+     */
+    public Token token(int index) {
+        Object value = value(index);
+        return value == null ? new Token(type(index)) : new Token(type(index), value);
+    }
+
+    /**
+     * Returns a string representation of the tokens, in the same form as a list of Token objects.
+     *
+     * @return A string representation of the tokens.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < this.size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(token(i));
+        }
+        return builder.append("]").toString();
+    }
+}
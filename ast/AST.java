@@ -138,15 +138,15 @@ public class AST {
     }
 
     /*
-     * Represents a variable.
+     * Represents a variable, named by its interned Symbol.
      */
     public static class Variable extends Expression {
-        public Object name;
-        public Variable(Object object) {
-            this.name = object;
+        public Symbol name;
+        public Variable(Symbol name) {
+            this.name = name;
         }
 
-        public Object getName() {
+        public Symbol getName() {
             return this.name;
         }
     }
@@ -0,0 +1,521 @@
+package ast;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ByteUtils.Operator;
+import ast.AST.*;
+
+/**
+ * A syntax tree stored in primitive arrays, as a compact alternative to the object graph of the AST classes.
+ *
+ * Node n has a kind, an operator (for unary and binary operations) and two int fields whose meaning depends on the
+ * kind: the children of an operation, statement or conditional, the index of a constant's value in a pool of
+ * interned values, or the id of a variable's Symbol. The statements of a program or body and the targets of an assignment are stored
+ * as lists in a shared int array. Nodes are appended once their children are complete, so every child comes before
+ * its parent and the nodes of an expression are in post-order, which passes over the tree can follow with a plain loop.
+ */
+public class FlatAST {
+    /**
+     * The kinds of node, matching the classes of AST.
+     */
+    public enum Kind {
+        PROGRAM, // second: statement list
+        BODY, // second: statement list
+        ASSIGNMENT, // first: value, second: target list
+        EXPR_STATEMENT, // first: expression
+        CONDITIONAL, // first: condition, second: body
+        UNARY_OP, // operator, first: operand
+        BINARY_OP, // operator, first: left, second: right
+        VARIABLE, // first: symbol id
+        CONSTANT // first: value index
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private byte[] kinds; // The Kind ordinal of each node
+    private byte[] operators; // The Operator ordinal of each unary and binary operation
+    private int[] firsts; // The first field of each node
+    private int[] seconds; // The second field of each node
+    private int size; // The number of nodes
+
+    private int[] lists; // Statement and target lists, each stored as its length followed by its nodes
+    private int listsSize; // The number of ints used in lists
+    private int[] listBuilder; // The nodes of the lists being built, innermost last
+    private int listBuilderSize; // The number of ints used in listBuilder
+
+    private Object[] values; // The pool of constant values
+    private int valueCount; // The number of values in the pool
+    private Map<Object, Integer> valueIndexes; // The index of each value in the pool
+
+    /**
+     * Constructs an empty FlatAST.
+     */
+    public FlatAST() {
+        this.kinds = new byte[64];
+        this.operators = new byte[64];
+        this.firsts = new int[64];
+        this.seconds = new int[64];
+        this.lists = new int[16];
+        this.listBuilder = new int[16];
+        this.values = new Object[16];
+        this.valueIndexes = new HashMap<>();
+    }
+
+    /**
+     * Builds the compact form of a tree of AST objects, with its nodes in the order the Parser appends them: the
+     * targets of an assignment before its value, and a condition before the statements of its body. The tree is walked
+     * with an explicit stack rather than by recursion, so it handles any depth of nesting.
+     *
+     * @param root The root of the tree, normally a Program.
+     * @return The tree in compact form.
+     */
+    public static FlatAST of(TreeNode root) {
+        FlatAST tree = new FlatAST();
+        ArrayDeque<Pending> pending = new ArrayDeque<>();
+        pending.push(new Pending(tree, root));
+        int built = -1; // The node just built, to be given to the node on top of the stack
+        while (true) {
+            Pending top = pending.peek();
+            if (built >= 0) {
+                top.childBuilt(tree, built);
+                built = -1;
+            }
+            if (top.next < top.children.size()) {
+                pending.push(new Pending(tree, top.children.get(top.next)));
+                continue;
+            }
+            pending.pop();
+            built = top.build(tree);
+            if (pending.isEmpty()) {
+                return tree;
+            }
+        }
+    }
+
+    /**
+     * A node of an object tree being converted by of, whose children are built one after another.
+     */
+    private static final class Pending {
+        private final TreeNode node;
+        private final List<TreeNode> children; // In the order their nodes are appended
+        private final int listLength; // How many of the first children go into the node's list
+        private final int listMark; // The mark of the node's list, if it has one
+        private final int[] built; // The index of each child built so far
+        private int next; // The number of children built so far
+
+        Pending(FlatAST tree, TreeNode node) {
+            this.node = node;
+            this.children = new ArrayList<>();
+            if (node instanceof Program) {
+                this.children.addAll(((Program) node).getStatements());
+            } else if (node instanceof Body) {
+                this.children.addAll(((Body) node).getStatements());
+            } else if (node instanceof Assignment) {
+                this.children.addAll(((Assignment) node).getTargets());
+                this.children.add(((Assignment) node).getValue());
+            } else if (node instanceof ExprStatement) {
+                this.children.add(((ExprStatement) node).getExpr());
+            } else if (node instanceof Conditional) {
+                this.children.add(((Conditional) node).getCondition());
+                this.children.add(((Conditional) node).getBody());
+            } else if (node instanceof UnaryOp) {
+                this.children.add(((UnaryOp) node).getValue());
+            } else if (node instanceof BinaryOp) {
+                this.children.add(((BinaryOp) node).getLeft());
+                this.children.add(((BinaryOp) node).getRight());
+            } else if (!(node instanceof Variable || node instanceof Constant)) {
+                throw new RuntimeException("Can't convert a " + node.getClass().getSimpleName() + " to a FlatAST");
+            }
+            boolean hasList = node instanceof Program || node instanceof Body || node instanceof Assignment;
+            this.listLength = node instanceof Assignment ? this.children.size() - 1 : hasList ? this.children.size() : 0;
+            this.listMark = hasList ? tree.startList() : -1;
+            this.built = new int[this.children.size()];
+        }
+
+        void childBuilt(FlatAST tree, int child) {
+            if (this.next < this.listLength) {
+                tree.addToList(child);
+            }
+            this.built[this.next++] = child;
+        }
+
+        int build(FlatAST tree) {
+            if (this.node instanceof Program) {
+                return tree.program(this.listMark);
+            } else if (this.node instanceof Body) {
+                return tree.body(this.listMark);
+            } else if (this.node instanceof Assignment) {
+                return tree.assignment(this.listMark, this.built[this.listLength]);
+            } else if (this.node instanceof ExprStatement) {
+                return tree.exprStatement(this.built[0]);
+            } else if (this.node instanceof Conditional) {
+                return tree.conditional(this.built[0], this.built[1]);
+            } else if (this.node instanceof UnaryOp) {
+                return tree.unaryOp(Operator.unaryFromSymbol(((UnaryOp) this.node).getOp()), this.built[0]);
+            } else if (this.node instanceof BinaryOp) {
+                return tree.binaryOp(Operator.binaryFromSymbol(((BinaryOp) this.node).getOp()), this.built[0], this.built[1]);
+            } else if (this.node instanceof Variable) {
+                return tree.variable(((Variable) this.node).getName());
+            }
+            return tree.constant(((Constant) this.node).getValue());
+        }
+    }
+
+    /**
+     * Returns how deeply the subtree of a node is nested: 1 for a variable or constant, and one more than its deepest
+     * child for any other node. This is a single loop, so it handles any depth of nesting.
+     *
+     * @param root The root of the subtree.
+     * @return The depth of the subtree.
+     */
+    public int depth(int root) {
+        int[] depths = new int[root + 1];
+        for (int n = 0; n <= root; n++) {
+            int deepest = 0;
+            switch (kind(n)) {
+                case PROGRAM:
+                case BODY:
+                case ASSIGNMENT:
+                    for (int i = 0; i < listLength(n); i++) {
+                        deepest = Math.max(deepest, depths[listElement(n, i)]);
+                    }
+                    if (kind(n) == Kind.ASSIGNMENT) {
+                        deepest = Math.max(deepest, depths[first(n)]);
+                    }
+                    break;
+                case CONDITIONAL:
+                case BINARY_OP:
+                    deepest = Math.max(depths[first(n)], depths[second(n)]);
+                    break;
+                case EXPR_STATEMENT:
+                case UNARY_OP:
+                    deepest = depths[first(n)];
+                    break;
+                default:
+                    break;
+            }
+            depths[n] = deepest + 1;
+        }
+        return depths[root];
+    }
+
+    /**
+     * Removes every node and value, keeping the arrays for reuse.
+     */
+    public void clear() {
+        this.size = 0;
+        this.listsSize = 0;
+        this.listBuilderSize = 0;
+        Arrays.fill(this.values, 0, this.valueCount, null);
+        this.valueCount = 0;
+        this.valueIndexes.clear();
+    }
+
+    /**
+     * Returns a copy of the tree, which can be changed without changing this one.
+     *
+     * @return The copy.
+     */
+    public FlatAST copy() {
+        FlatAST copy = new FlatAST();
+        copy.kinds = Arrays.copyOf(this.kinds, this.size);
+        copy.operators = Arrays.copyOf(this.operators, this.size);
+        copy.firsts = Arrays.copyOf(this.firsts, this.size);
+        copy.seconds = Arrays.copyOf(this.seconds, this.size);
+        copy.size = this.size;
+        copy.lists = Arrays.copyOf(this.lists, this.listsSize);
+        copy.listsSize = this.listsSize;
+        copy.values = Arrays.copyOf(this.values, this.valueCount);
+        copy.valueCount = this.valueCount;
+        copy.valueIndexes = new HashMap<>(this.valueIndexes);
+        return copy;
+    }
+
+    /**
+     * Appends a node.
+     *
+     * @return The index of the node.
+     */
+    private int add(Kind kind, Operator operator, int first, int second) {
+        if (this.size == this.kinds.length) {
+            int capacity = Math.max(64, this.size * 2);
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.operators = Arrays.copyOf(this.operators, capacity);
+            this.firsts = Arrays.copyOf(this.firsts, capacity);
+            this.seconds = Arrays.copyOf(this.seconds, capacity);
+        }
+        this.kinds[this.size] = (byte) kind.ordinal();
+        this.operators[this.size] = operator == null ? 0 : (byte) operator.ordinal();
+        this.firsts[this.size] = first;
+        this.seconds[this.size] = second;
+        return this.size++;
+    }
+
+    /**
+     * Returns the index of a value in the pool, adding it the first time it is seen.
+     */
+    private int intern(Object value) {
+        Integer index = this.valueIndexes.get(value);
+        if (index == null) {
+            if (this.valueCount == this.values.length) {
+                this.values = Arrays.copyOf(this.values, Math.max(16, this.valueCount * 2));
+            }
+            index = this.valueCount;
+            this.values[this.valueCount++] = value;
+            this.valueIndexes.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Starts a statement or target list. Nodes added with addToList until the list is used by program, body or
+     * assignment belong to it; lists may be started inside one another.
+     *
+     * @return The mark to pass to the node that takes the list.
+     */
+    public int startList() {
+        return this.listBuilderSize;
+    }
+
+    /**
+     * Adds a node to the innermost list being built.
+     *
+     * @param node The node to add.
+     */
+    public void addToList(int node) {
+        if (this.listBuilderSize == this.listBuilder.length) {
+            this.listBuilder = Arrays.copyOf(this.listBuilder, this.listBuilderSize * 2);
+        }
+        this.listBuilder[this.listBuilderSize++] = node;
+    }
+
+    /**
+     * Moves the list started at a mark into the list storage.
+     *
+     * @return The offset of the list in the list storage.
+     */
+    private int finishList(int mark) {
+        int length = this.listBuilderSize - mark;
+        if (this.listsSize + length + 1 > this.lists.length) {
+            this.lists = Arrays.copyOf(this.lists, Math.max(this.lists.length * 2, this.listsSize + length + 1));
+        }
+        int offset = this.listsSize;
+        this.lists[offset] = length;
+        System.arraycopy(this.listBuilder, mark, this.lists, offset + 1, length);
+        this.listsSize += length + 1;
+        this.listBuilderSize = mark;
+        return offset;
+    }
+
+    // Builders for each kind of node, taking the indexes of its children and returning the index of the new node.
+
+    public int program(int statementListMark) {
+        return add(Kind.PROGRAM, null, 0, finishList(statementListMark));
+    }
+
+    public int body(int statementListMark) {
+        return add(Kind.BODY, null, 0, finishList(statementListMark));
+    }
+
+    public int assignment(int targetListMark, int value) {
+        return add(Kind.ASSIGNMENT, null, value, finishList(targetListMark));
+    }
+
+    public int exprStatement(int expression) {
+        return add(Kind.EXPR_STATEMENT, null, expression, 0);
+    }
+
+    public int conditional(int condition, int body) {
+        return add(Kind.CONDITIONAL, null, condition, body);
+    }
+
+    public int unaryOp(Operator operator, int operand) {
+        return add(Kind.UNARY_OP, operator, operand, 0);
+    }
+
+    public int binaryOp(Operator operator, int left, int right) {
+        return add(Kind.BINARY_OP, operator, left, right);
+    }
+
+    public int variable(Symbol name) {
+        return add(Kind.VARIABLE, null, name.id(), 0);
+    }
+
+    public int constant(Object value) {
+        return add(Kind.CONSTANT, null, intern(value), 0);
+    }
+
+    /**
+     * Turns a node into a constant, for passes that simplify the tree in place.
+     *
+     * @param node The node to change.
+     * @param value The value of the constant.
+     */
+    public void replaceWithConstant(int node, Object value) {
+        this.kinds[node] = (byte) Kind.CONSTANT.ordinal();
+        this.firsts[node] = intern(value);
+    }
+
+    /**
+     * Turns a node into a copy of one of its descendants, for passes that simplify the tree in place.
+     * The descendant itself is left in place, no longer referred to.
+     *
+     * @param node The node to change.
+     * @param descendant The node to copy, which must come before node.
+     */
+    public void replaceWith(int node, int descendant) {
+        this.kinds[node] = this.kinds[descendant];
+        this.operators[node] = this.operators[descendant];
+        this.firsts[node] = this.firsts[descendant];
+        this.seconds[node] = this.seconds[descendant];
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return The number of nodes.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the last node added, which is the root of the tree once it is complete.
+     *
+     * @return The index of the root.
+     */
+    public int root() {
+        return this.size - 1;
+    }
+
+    public Kind kind(int node) {
+        return KINDS[this.kinds[node]];
+    }
+
+    public Operator operator(int node) {
+        return Operator.fromOrdinal(this.operators[node]);
+    }
+
+    /**
+     * Returns the first field of a node: the operand of a unary operation, the left operand of a binary operation,
+     * the value of an assignment, the expression of an expression statement or the condition of a conditional.
+     */
+    public int first(int node) {
+        return this.firsts[node];
+    }
+
+    /**
+     * Returns the second field of a node: the right operand of a binary operation or the body of a conditional.
+     */
+    public int second(int node) {
+        return this.seconds[node];
+    }
+
+    /**
+     * Returns the value of a constant or the Symbol of a variable.
+     */
+    public Object value(int node) {
+        return kind(node) == Kind.VARIABLE ? Symbol.of(this.firsts[node]) : this.values[this.firsts[node]];
+    }
+
+    /**
+     * Returns the symbol id of a variable.
+     */
+    public int symbol(int node) {
+        return this.firsts[node];
+    }
+
+    /**
+     * Returns the length of the list of a node: the statements of a program or body, or the targets of an assignment.
+     */
+    public int listLength(int node) {
+        return this.lists[this.seconds[node]];
+    }
+
+    /**
+     * Returns an element of the list of a node: a statement of a program or body, or a target of an assignment.
+     */
+    public int listElement(int node, int index) {
+        return this.lists[this.seconds[node] + 1 + index];
+    }
+
+    /**
+     * Builds the object form of the tree.
+     *
+     * @return The root of the tree as AST objects.
+     */
+    public TreeNode toTree() {
+        return toTree(root());
+    }
+
+    /**
+     * Builds the object form of a subtree. Since children come before their parents, this is a single loop over every
+     * node up to the root of the subtree, so it handles any depth of nesting.
+     *
+     * @param root The root of the subtree.
+     * @return The subtree as AST objects.
+     */
+    public TreeNode toTree(int root) {
+        TreeNode[] built = new TreeNode[root + 1];
+        for (int n = 0; n <= root; n++) {
+            switch (kind(n)) {
+                case PROGRAM:
+                    built[n] = new Program(statements(built, n));
+                    break;
+                case BODY:
+                    built[n] = new Body(statements(built, n));
+                    break;
+                case ASSIGNMENT: {
+                    List<Variable> targets = new ArrayList<>(listLength(n));
+                    for (int i = 0; i < listLength(n); i++) {
+                        targets.add((Variable) built[listElement(n, i)]);
+                    }
+                    built[n] = new Assignment(targets, (Expression) built[first(n)]);
+                    break;
+                }
+                case EXPR_STATEMENT:
+                    built[n] = new ExprStatement((Expression) built[first(n)]);
+                    break;
+                case CONDITIONAL:
+                    built[n] = new Conditional((Expression) built[first(n)], (Body) built[second(n)]);
+                    break;
+                case UNARY_OP:
+                    built[n] = new UnaryOp(operator(n).getSymbol(), (Expression) built[first(n)]);
+                    break;
+                case BINARY_OP:
+                    built[n] = new BinaryOp(operator(n).getSymbol(), (Expression) built[first(n)], (Expression) built[second(n)]);
+                    break;
+                case VARIABLE:
+                    built[n] = new Variable(Symbol.of(symbol(n)));
+                    break;
+                case CONSTANT:
+                    built[n] = new Constant(value(n));
+                    break;
+            }
+        }
+        return built[root];
+    }
+
+    private List<Statement> statements(TreeNode[] built, int node) {
+        List<Statement> statements = new ArrayList<>(listLength(node));
+        for (int i = 0; i < listLength(node); i++) {
+            statements.add((Statement) built[listElement(node, i)]);
+        }
+        return statements;
+    }
+
+    /**
+     * Returns a string representation of the tree's size.
+     *
+     * @return A string representation of the tree.
+     */
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "(" + this.size + " nodes, " + this.valueCount + " values)";
+    }
+}
@@ -0,0 +1,208 @@
+package ast;
+
+import java.util.Arrays;
+
+/**
+ * An identifier, interned in one table shared by the whole pipeline.
+ *
+ * Each distinct identifier is a single Symbol with a small int id, handed out in order of first use, so the lexer
+ * allocates a name only the first time it is seen, and tokens, syntax trees and compilers refer to the same object.
+ * Symbols are compared by identity and hash to their id, so tables keyed by them never hash or compare characters,
+ * and a table indexed by id can replace a map where the ids are known to be few. A Symbol prints as its name.
+ *
+ * The table only grows, and symbols are never reclaimed, because flat trees and token streams hold bare ids that
+ * are looked up with of long after the identifiers were read. Its memory is bounded by the number of distinct
+ * identifiers the process has ever lexed: each takes its Symbol and name, one entry of the symbols array and two of
+ * the slots array, about 100 bytes for a short name. That is small for programs written by people, but a process
+ * that lexes unbounded streams of generated or untrusted identifiers keeps every one of them. Nothing else is sized
+ * by the table: compilers and token streams map the symbols they use through tables of their own. Looking up a symbol seen before
+ * takes no lock; only adding a symbol does, so the table can be shared by lexers on several threads.
+ */
+public final class Symbol {
+    private static volatile Symbol[] symbols = new Symbol[64]; // Every symbol, indexed by id
+    private static int count; // The number of symbols
+    private static volatile int[] slots = new int[128]; // Open-addressing table of symbols, holding id + 1, or 0 for a free slot
+
+    private final int id;
+    private final String name;
+
+    private Symbol(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * Returns the symbol of an identifier read from a range of characters, creating it the first time it is seen.
+     *
+     * @param chars The characters holding the identifier.
+     * @param start The offset of the identifier in chars.
+     * @param length The length of the identifier.
+     * @return The symbol of the identifier.
+     */
+    public static Symbol intern(char[] chars, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + chars[i]; // The same hash as String.hashCode, so rehashing can use the name's
+        }
+        // Without the lock, a symbol being added may not be visible yet, so missing it only means taking the lock.
+        int[] slots = Symbol.slots;
+        Symbol[] symbols = Symbol.symbols;
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0 || entry > symbols.length || symbols[entry - 1] == null) {
+                return add(chars, start, length, hash);
+            }
+            String name = symbols[entry - 1].name;
+            if (name.length() == length && name.hashCode() == hash && matches(name, chars, start)) {
+                return symbols[entry - 1];
+            }
+        }
+    }
+
+    /**
+     * Returns the symbol of an identifier under the lock, adding it if it is not in the table.
+     */
+    private static synchronized Symbol add(char[] chars, int start, int length, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                Symbol symbol = append(new String(chars, start, length));
+                slots[slot] = symbol.id + 1;
+                if (count * 2 > slots.length) {
+                    growSlots();
+                }
+                return symbol;
+            }
+            String name = symbols[entry - 1].name;
+            if (name.length() == length && name.hashCode() == hash && matches(name, chars, start)) {
+                return symbols[entry - 1];
+            }
+        }
+    }
+
+    /**
+     * Returns the symbol of an identifier, creating it the first time it is seen.
+     *
+     * @param name The identifier.
+     * @return The symbol of the identifier.
+     */
+    public static Symbol intern(String name) {
+        return intern(name.toCharArray(), 0, name.length());
+    }
+
+    /**
+     * Returns the symbol with a given id.
+     *
+     * @param id The id of a symbol.
+     * @return The symbol.
+     */
+    public static Symbol of(int id) {
+        Symbol[] symbols = Symbol.symbols;
+        if (id >= 0 && id < symbols.length && symbols[id] != null) {
+            return symbols[id];
+        }
+        synchronized (Symbol.class) {
+            if (id < 0 || id >= count) {
+                throw new RuntimeException("No symbol with id " + id);
+            }
+            return Symbol.symbols[id];
+        }
+    }
+
+    /**
+     * Returns the number of symbols, which is one more than the largest id.
+     *
+     * @return The number of symbols.
+     */
+    public static synchronized int count() {
+        return count;
+    }
+
+    private static Symbol append(String name) {
+        if (count == symbols.length) {
+            symbols = Arrays.copyOf(symbols, count * 2);
+        }
+        Symbol symbol = new Symbol(count, name);
+        symbols[count++] = symbol;
+        return symbol;
+    }
+
+    /**
+     * Doubles the open-addressing table, reinserting every symbol.
+     */
+    private static void growSlots() {
+        int[] grown = new int[slots.length * 2];
+        int mask = grown.length - 1;
+        for (int entry : slots) {
+            if (entry != 0) {
+                int slot = spread(symbols[entry - 1].name.hashCode()) & mask;
+                while (grown[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                grown[slot] = entry;
+            }
+        }
+        slots = grown;
+    }
+
+    /**
+     * Mixes the high bits of a hash into the low bits used to pick a slot.
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Checks whether a range of characters spells a name of the same length.
+     */
+    private static boolean matches(String name, char[] chars, int start) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the id of the symbol, the index it can be looked up by in tables indexed by symbol.
+     *
+     * @return The id.
+     */
+    public int id() {
+        return this.id;
+    }
+
+    /**
+     * Returns a hash of a symbol id for the open-addressing tables that map the few symbols a pass uses to its own
+     * indexes. Ids are handed out in order, so they are scattered over the table rather than used as they are.
+     *
+     * @param id The id of a symbol.
+     * @return The hash, to be masked to the size of the table.
+     */
+    public static int hashId(int id) {
+        int hash = id * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the identifier the symbol stands for.
+     *
+     * @return The identifier.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.id;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
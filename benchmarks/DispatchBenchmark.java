@@ -0,0 +1,33 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import ByteUtils.Bytecode;
+
+/**
+ * Measures how many instructions per second the interpreter dispatches, on 2000 lines of integer arithmetic run as
+ * one program. Uses only the API the baseline already had, so it compares the reflective dispatch with the switch:
+ *
+ *     benchmarks/compare.sh 3e591b9 DispatchBenchmark
+ *
+ * Later trees fold the constant expressions, so they run far fewer instructions for the same program.
+ */
+public class DispatchBenchmark {
+    public static void main(String[] args) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            source.append("(2+3) - (2-4) - 6 * 7 % 5\n");
+        }
+        List<Token> tokens = new ArrayList<>();
+        for (Token token : new Lexer(source.toString())) {
+            tokens.add(token);
+        }
+        BytecodeGenerator generator = new Compiler(new Parser(tokens).parse()).compile();
+        List<Bytecode> bytecode = new ArrayList<>();
+        while (generator.hasNext()) {
+            bytecode.add(generator.next());
+        }
+        double nanos = Measure.nanosPerRun(() -> new Interpreter(bytecode).interpret(), 100);
+        System.out.printf("%d instructions, %.1f us/run, %.1f M instructions/s%n", bytecode.size(), nanos / 1e3,
+                bytecode.size() / nanos * 1e3);
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import ByteUtils.Bytecode;
+import ByteUtils.CodeObject;
+
+/**
+ * Measures the interpreter on integer arithmetic that stays small, which runs on longs, and on arithmetic over
+ * integers larger than a long, which runs on BigInteger. Uses only the API the tree had before unbounded integers,
+ * so it shows that small integers did not get slower when they became unbounded:
+ *
+ *     benchmarks/compare.sh dbefcb3 IntegerBenchmark
+ *
+ * Trees with 32-bit integers can't lex the large literals, so they only run the first part.
+ */
+public class IntegerBenchmark {
+    public static void main(String[] args) {
+        StringBuilder small = new StringBuilder("a = 3\nb = 4\n");
+        StringBuilder large = new StringBuilder("a = 12345678901234567890\nb = 98765432109876543210\n");
+        for (int i = 0; i < 500; i++) {
+            small.append("t = a * 3 + b\nu = t - a * b\nv = u * 2 - t\na = v % 1000 + b\n");
+            large.append("t = a * 3 + b\nu = t - a * b\nv = u * 2 - t\na = v % 100000000000000000000000 + b\n");
+        }
+        measure("small integers", small.toString());
+        try {
+            measure("large integers", large.toString());
+        } catch (RuntimeException e) {
+            System.out.println("large integers: not supported (" + e + ")");
+        }
+    }
+
+    private static void measure(String what, String source) {
+        List<Token> tokens = new ArrayList<>();
+        for (Token token : new Lexer(source)) {
+            tokens.add(token);
+        }
+        Compiler compiler = new Compiler(new Parser(tokens).parse());
+        BytecodeGenerator generator = compiler.compile();
+        List<Bytecode> bytecode = new ArrayList<>();
+        while (generator.hasNext()) {
+            bytecode.add(generator.next());
+        }
+        CodeObject code = CodeObject.assemble(bytecode, compiler.getVariableNames());
+        double nanos = Measure.nanosPerRun(() -> new Interpreter(code).interpret(), 1000);
+        System.out.printf("%s: %d instructions, %.1f us/run%n", what, bytecode.size(), nanos / 1e3);
+    }
+}
@@ -0,0 +1,70 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Timing and allocation counting for the benchmarks.
+ *
+ * The benchmarks use only this and the public API of the tree, without a harness library, so that benchmarks/compare.sh
+ * can compile one against the source of any revision. Each measurement runs the work until the JIT has compiled it,
+ * then takes the best of several timed rounds, which is the figure least disturbed by the rest of the machine.
+ */
+final class Measure {
+    private static final int ROUNDS = 5; // The number of timed rounds a measurement takes the best of
+
+    private Measure() {}
+
+    /**
+     * Returns the time one run of some work takes, with anything it prints discarded.
+     *
+     * @param work The work.
+     * @param runs The number of runs in a round, enough for a round to take a good fraction of a second.
+     * @return The best time of a run over the rounds, in nanoseconds.
+     */
+    static double nanosPerRun(Runnable work, int runs) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int i = 0; i < runs; i++) {
+                work.run(); // Warm-up
+            }
+            double best = Double.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    work.run();
+                }
+                best = Math.min(best, (System.nanoTime() - start) / (double) runs);
+            }
+            return best;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * Returns the bytes one run of some work allocates on the calling thread, once the JIT has compiled it, with
+     * anything it prints discarded.
+     *
+     * @param work The work.
+     * @param runs The number of runs to warm up with and to average over.
+     * @return The average bytes allocated by a run.
+     */
+    static double bytesPerRun(Runnable work, int runs) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int i = 0; i < runs; i++) {
+                work.run(); // Warm-up
+            }
+            long start = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < runs; i++) {
+                work.run();
+            }
+            return (threads.getCurrentThreadAllocatedBytes() - start) / (double) runs;
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
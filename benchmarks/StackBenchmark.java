@@ -0,0 +1,38 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import ByteUtils.Bytecode;
+import ByteUtils.CodeObject;
+
+/**
+ * Measures how many bytes the interpreter allocates per instruction it runs, on 2000 lines of integer arithmetic with
+ * results outside the range Java keeps boxed integers cached for. Uses only the API the tree had before the tagged
+ * operand stack, so it compares the stack of boxed objects with the tagged primitive one:
+ *
+ *     benchmarks/compare.sh 43cb211 StackBenchmark
+ *
+ * The count includes what each run allocates once, such as the interpreter and the printed scope, spread over the
+ * instructions. Later trees fold the constant expressions, so they run far fewer instructions for the same program.
+ */
+public class StackBenchmark {
+    public static void main(String[] args) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            source.append("1000 * 3 + 2000 - 4000 % 7\n");
+        }
+        List<Token> tokens = new ArrayList<>();
+        for (Token token : new Lexer(source.toString())) {
+            tokens.add(token);
+        }
+        BytecodeGenerator generator = new Compiler(new Parser(tokens).parse()).compile();
+        List<Bytecode> bytecode = new ArrayList<>();
+        while (generator.hasNext()) {
+            bytecode.add(generator.next());
+        }
+        CodeObject code = CodeObject.assemble(bytecode);
+        double bytes = Measure.bytesPerRun(() -> new Interpreter(code).interpret(), 200);
+        double nanos = Measure.nanosPerRun(() -> new Interpreter(code).interpret(), 200);
+        System.out.printf("%d instructions, %.2f bytes/instruction, %.1f us/run%n", bytecode.size(), bytes / bytecode.size(),
+                nanos / 1e3);
+    }
+}
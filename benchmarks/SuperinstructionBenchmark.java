@@ -0,0 +1,47 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import ByteUtils.Bytecode;
+import ByteUtils.CodeObject;
+
+/**
+ * Measures the interpreter on arithmetic over variables with and without fused superinstructions, which replace
+ * LOAD_FAST; PUSH; BINARYOP, LOAD_FAST; LOAD_FAST; BINARYOP and BINARYOP; STORE_FAST with one instruction each.
+ * Both versions come from the same tree, so this runs without compare.sh:
+ *
+ *     javac -d out *.java benchmarks/*.java && java -cp out SuperinstructionBenchmark
+ */
+public class SuperinstructionBenchmark {
+    public static void main(String[] args) {
+        StringBuilder source = new StringBuilder("a = 3\nb = 4\n");
+        for (int i = 0; i < 500; i++) {
+            source.append("t = a * 3 + b\n");
+            source.append("u = t - a * b\n");
+            source.append("v = u * 2 - t\n");
+            source.append("a = v % 1000 + b\n");
+        }
+        for (boolean fused : new boolean[] {false, true}) {
+            CodeObject code = compile(source.toString(), fused);
+            Interpreter interpreter = new Interpreter(code);
+            double nanos = Measure.nanosPerRun(() -> {
+                interpreter.reset();
+                interpreter.run();
+            }, 2000);
+            System.out.printf("%s: %d instructions, %.1f us/run%n", fused ? "fused" : "unfused", code.disassemble().size(), nanos / 1e3);
+        }
+    }
+
+    /**
+     * Compiles a program as Main does, with or without superinstructions.
+     */
+    private static CodeObject compile(String source, boolean superinstructions) {
+        Compiler compiler = new Compiler(new Parser(new Lexer(source).tokenizeToStream()).parseFlat());
+        List<Bytecode> bytecode = new ArrayList<>();
+        compiler.compile().forEachRemaining(bytecode::add);
+        PeepholeOptimizer peephole = new PeepholeOptimizer();
+        if (superinstructions) {
+            PeepholeOptimizer.SUPERINSTRUCTION_RULES.forEach(peephole::addRule);
+        }
+        return CodeObject.assemble(peephole.optimize(bytecode), compiler.getVariableNames());
+    }
+}
@@ -0,0 +1,22 @@
+#!/bin/sh
+# Runs a benchmark against the tree just before a commit and at the commit, to measure what the commit changed.
+# The benchmark is taken from the working tree and compiled against the source of each revision in turn.
+#
+# Usage: benchmarks/compare.sh <commit> <benchmark class> [arguments...]
+set -e
+commit=$1
+benchmark=$2
+shift 2
+root=$(git rev-parse --show-toplevel)
+work=$(mktemp -d)
+trap 'rm -rf "$work"' EXIT
+for revision in "$commit~1" "$commit"; do
+    git -C "$root" log -1 --format='== %h %s' "$revision"
+    rm -rf "$work/tree" "$work/classes"
+    mkdir -p "$work/tree"
+    git -C "$root" archive "$revision" | tar -x -C "$work/tree"
+    rm -rf "$work/tree/checks" "$work/tree/benchmarks"
+    javac -nowarn -encoding UTF-8 -d "$work/classes" $(find "$work/tree" -name '*.java') \
+        "$root/benchmarks/Measure.java" "$root/benchmarks/$benchmark.java" 2>&1 | grep -v '^Note:' || true
+    java -cp "$work/classes" "$benchmark" "$@"
+done
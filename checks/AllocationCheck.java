@@ -0,0 +1,43 @@
+import java.lang.management.ManagementFactory;
+
+import ByteUtils.CodeObject;
+
+/**
+ * Checks that the interpreter runs integer, float and mixed arithmetic without allocating: once an interpreter has run
+ * a program, running it again after reset() must allocate nothing, with and without superinstructions. A program
+ * over integers larger than a long must allocate, which shows that the count works.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out AllocationCheck
+ */
+public class AllocationCheck {
+    private static final String[] UNBOXED = {
+        "a = 3\nb = 4\nt = a * 3 + b\nu = t - a * b\nv = u // 2 - t\na = v % 1000 + b\n-a\n",
+        "a = 3.5\nb = 4.25\nt = a * 3.0 + b\nu = t - a / b\nv = -u * 2.0 - t\na = v % 1000.0 + b\na // 2.0\n",
+        "a = 3\nb = 4.25\nt = a * 3 + b\nu = t - a / 2\nv = u * 2 - t\nc = not (a - 3)\nif c:\n    a = v + a\na\n",
+    };
+    private static final String BOXED = "a = 12345678901234567890\nb = a * a + 1\nb\n";
+
+    public static void main(String[] args) {
+        for (boolean superinstructions : new boolean[] {false, true}) {
+            for (String source : UNBOXED) {
+                long bytes = bytesPerRun(Programs.compile(source, superinstructions));
+                Programs.check(bytes == 0, "Running\n" + source + "allocated " + bytes + " bytes");
+            }
+            Programs.check(bytesPerRun(Programs.compile(BOXED, superinstructions)) > 0, "No allocation counted for\n" + BOXED);
+        }
+        System.out.println("AllocationCheck: ok");
+    }
+
+    /**
+     * Returns the bytes that running some code allocates on the calling thread, after a first run.
+     */
+    private static long bytesPerRun(CodeObject code) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Interpreter interpreter = new Interpreter(code);
+        interpreter.run();
+        long start = threads.getCurrentThreadAllocatedBytes();
+        interpreter.reset();
+        interpreter.run();
+        return threads.getCurrentThreadAllocatedBytes() - start;
+    }
+}
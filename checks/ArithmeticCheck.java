@@ -0,0 +1,123 @@
+import java.math.BigInteger;
+import java.util.Random;
+
+import ByteUtils.Operator;
+
+/**
+ * Checks Arithmetic against results computed by CPython, for the cases where Java's own arithmetic differs from it,
+ * and checks the long fast path against the BigInteger path on random operands.
+ *
+ * Run with: javac -d out *.java checks/ArithmeticCheck.java && java -cp out ArithmeticCheck
+ */
+public class ArithmeticCheck {
+    private static final long[] EDGES = {0, 1, -1, 2, -2, 3, 7, Integer.MAX_VALUE, Integer.MIN_VALUE, 1L << 32, 3037000499L,
+            3037000500L, -3037000500L, 1L << 53, (1L << 53) + 1, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1};
+    private static final Operator[] OPERATORS = {Operator.ADD, Operator.SUB, Operator.MUL, Operator.FLOORDIV, Operator.MOD,
+            Operator.POW, Operator.DIV};
+
+    public static void main(String[] args) {
+        BigInteger tenTo40 = BigInteger.TEN.pow(40);
+        BigInteger tenTo30 = BigInteger.TEN.pow(30);
+        BigInteger twoTo53 = BigInteger.ONE.shiftLeft(53);
+
+        // True division of integers rounds the exact quotient once, ties to even, keeping the sign of a zero.
+        checkDivision(twoTo53.add(BigInteger.ONE).multiply(tenTo40).add(BigInteger.ONE), tenTo40, 9007199254740994.0);
+        checkDivision(twoTo53.add(BigInteger.ONE).multiply(tenTo40), tenTo40, 9007199254740992.0);
+        checkDivision(BigInteger.ZERO, tenTo30.negate(), -0.0);
+        checkDivision(BigInteger.ZERO, BigInteger.valueOf(-5), -0.0);
+        checkDivision(BigInteger.ONE, BigInteger.valueOf(3), 1.0 / 3.0);
+        checkDivision(BigInteger.TEN.pow(400), BigInteger.TEN.pow(399).negate(), -10.0);
+        checkDivision(BigInteger.ONE, BigInteger.ONE.shiftLeft(1075), 0.0); // Half the smallest subnormal, ties to even
+        checkDivision(BigInteger.valueOf(5), BigInteger.ONE.shiftLeft(1076), Double.MIN_VALUE); // 1.25 of it
+        checkDivision(BigInteger.valueOf(3), BigInteger.ONE.shiftLeft(1075), 2 * Double.MIN_VALUE); // 1.5 of it, ties to even
+        checkDivision(BigInteger.valueOf(5), BigInteger.ONE.shiftLeft(1050), 5 * 0x1p-1050);
+        checkDivision(BigInteger.ONE.shiftLeft(1024).subtract(BigInteger.ONE.shiftLeft(971)), BigInteger.ONE, Double.MAX_VALUE);
+        checkDivisionFails(BigInteger.ONE.shiftLeft(1024).subtract(BigInteger.ONE.shiftLeft(970)), BigInteger.ONE); // Ties up to 2^1024
+        checkDivisionFails(BigInteger.ONE.shiftLeft(1024), BigInteger.ONE);
+        checkDivisionFails(BigInteger.ONE, BigInteger.ZERO);
+
+        // Floor division and modulo round towards negative infinity.
+        check(Arithmetic.binary(Operator.FLOORDIV, -7L, 2L), -4L, "-7 // 2");
+        check(Arithmetic.binary(Operator.MOD, -7L, 2L), 1L, "-7 % 2");
+        check(Arithmetic.binary(Operator.MOD, 7.0, -2.0), -1.0, "7.0 % -2.0");
+        check(Arithmetic.binary(Operator.FLOORDIV, -0.0, 1.0), -0.0, "-0.0 // 1.0");
+
+        // Integers promote past a long and come back once they fit.
+        check(Arithmetic.binary(Operator.ADD, Long.MAX_VALUE, 1L), BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE), "MAX + 1");
+        check(Arithmetic.binary(Operator.SUB, BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE), 1L), Long.MAX_VALUE, "MAX + 1 - 1");
+        check(Arithmetic.binary(Operator.POW, 2L, 64L), BigInteger.ONE.shiftLeft(64), "2 ** 64");
+        check(Arithmetic.binary(Operator.POW, 2L, -1L), 0.5, "2 ** -1");
+
+        checkLongAgainstBig(new Random(11));
+        System.out.println("ArithmeticCheck: ok");
+    }
+
+    /**
+     * Checks that the long fast path gives the result the BigInteger path gives for the same operands, and that it only
+     * gives up where the BigInteger path has no long result or fails.
+     */
+    private static void checkLongAgainstBig(Random random) {
+        for (int i = 0; i < 200000; i++) {
+            Operator op = OPERATORS[random.nextInt(OPERATORS.length)];
+            long a = randomLong(random);
+            long b = op == Operator.POW ? random.nextInt(70) - 3 : randomLong(random);
+            String what = a + " " + op + " " + b;
+            Object big;
+            try {
+                big = Arithmetic.binaryBig(op, BigInteger.valueOf(a), BigInteger.valueOf(b));
+            } catch (ArithmeticException e) {
+                big = e;
+            }
+            try {
+                Object fast = op == Operator.DIV ? (Object) Arithmetic.divideLong(a, b) : (Object) Arithmetic.binaryLong(op, a, b);
+                check(fast, big, what);
+            } catch (ArithmeticException e) {
+                if (!(big instanceof ArithmeticException || big instanceof BigInteger || big instanceof Double)) {
+                    throw new RuntimeException(what + " left the long path, but has the long result " + big + ".");
+                }
+            }
+            if (i % 7 == 0) {
+                Object negated = Arithmetic.normalize(BigInteger.valueOf(a).negate());
+                try {
+                    check(Arithmetic.unaryLong(Operator.NEG, a), negated, "-" + a);
+                } catch (ArithmeticException e) {
+                    check(negated instanceof BigInteger, true, "-" + a + " left the long path");
+                }
+            }
+        }
+    }
+
+    private static long randomLong(Random random) {
+        switch (random.nextInt(4)) {
+            case 0: return EDGES[random.nextInt(EDGES.length)];
+            case 1: return random.nextInt(2001) - 1000;
+            case 2: return random.nextInt();
+            default: return random.nextLong() >> random.nextInt(64);
+        }
+    }
+
+    private static void checkDivision(BigInteger a, BigInteger b, double expected) {
+        check(Arithmetic.binary(Operator.DIV, Arithmetic.normalize(a), Arithmetic.normalize(b)), expected, a + " / " + b);
+    }
+
+    private static void checkDivisionFails(BigInteger a, BigInteger b) {
+        try {
+            Object result = Arithmetic.binary(Operator.DIV, Arithmetic.normalize(a), Arithmetic.normalize(b));
+            throw new RuntimeException(a + " / " + b + " gave " + result + " instead of failing.");
+        } catch (ArithmeticException e) {
+            // Python raises OverflowError or ZeroDivisionError.
+        }
+    }
+
+    /**
+     * Fails unless a result equals the expected value, telling floats apart by their bits so that the sign of zero counts.
+     */
+    private static void check(Object actual, Object expected, String what) {
+        boolean same = actual instanceof Double && expected instanceof Double
+                ? Double.doubleToRawLongBits((Double) actual) == Double.doubleToRawLongBits((Double) expected)
+                : expected.equals(actual);
+        if (!same) {
+            throw new RuntimeException(what + " gave " + actual + ", expected " + expected + ".");
+        }
+    }
+}
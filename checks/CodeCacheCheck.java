@@ -0,0 +1,72 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ByteUtils.Bytecode;
+import ByteUtils.CodeObject;
+
+/**
+ * Checks that CodeCache gives back the code it stored, and that a truncated or corrupt cache file is a miss rather
+ * than an error, whatever its length fields claim.
+ *
+ * Run with: javac -d out *.java checks/CodeCacheCheck.java && java -cp out CodeCacheCheck
+ */
+public class CodeCacheCheck {
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("codecache");
+        Path source = directory.resolve("program.py");
+        Files.writeString(source, "a = 2 ** 70\nb = 1.5\nif a:\n    c = a * b - True\nc // 2\n");
+        CodeObject compiled = compile(Files.readString(source));
+
+        CodeCache cache = new CodeCache(source, true);
+        check(cache.load() == null, "A cache that was never stored is a miss.");
+        cache.store(compiled);
+        CodeObject loaded = cache.load();
+        check(loaded != null && Arrays.equals(loaded.getCode(), compiled.getCode())
+                && Arrays.equals(loaded.getConstants(), compiled.getConstants())
+                && Arrays.equals(loaded.getNames(), compiled.getNames())
+                && Arrays.equals(loaded.getVariableNames(), compiled.getVariableNames()), "The loaded code differs from the stored code.");
+        check(new CodeCache(source, false).load() == null, "Code compiled with other options is a miss.");
+
+        byte[] bytes = Files.readAllBytes(cache.getCacheFile());
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(cache.getCacheFile(), Arrays.copyOf(bytes, length));
+            check(cache.load() == null, "A cache truncated to " + length + " bytes is not a miss.");
+        }
+        // Every int field past the header, including each length, is overwritten with values that would not fit.
+        int header = 4 * 4 + 32;
+        for (int offset = header; offset + 4 <= bytes.length; offset++) {
+            for (int value : new int[] {-1, Integer.MIN_VALUE, Integer.MAX_VALUE, bytes.length}) {
+                byte[] corrupt = bytes.clone();
+                corrupt[offset] = (byte) (value >>> 24);
+                corrupt[offset + 1] = (byte) (value >>> 16);
+                corrupt[offset + 2] = (byte) (value >>> 8);
+                corrupt[offset + 3] = (byte) value;
+                Files.write(cache.getCacheFile(), corrupt);
+                cache.load(); // May hit or miss, but must not throw.
+            }
+        }
+        Files.delete(cache.getCacheFile());
+        Files.delete(cache.getCacheFile().getParent());
+        Files.delete(source);
+        Files.delete(directory);
+        System.out.println("CodeCacheCheck: ok");
+    }
+
+    private static CodeObject compile(String source) {
+        Compiler compiler = new Compiler(new Parser(new Lexer(source).tokenizeToStream()).parseFlat());
+        List<Bytecode> bytecode = new ArrayList<>();
+        compiler.compile().forEachRemaining(bytecode::add);
+        PeepholeOptimizer peephole = new PeepholeOptimizer();
+        PeepholeOptimizer.SUPERINSTRUCTION_RULES.forEach(peephole::addRule);
+        return CodeObject.assemble(peephole.optimize(bytecode), compiler.getVariableNames());
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new RuntimeException(message);
+        }
+    }
+}
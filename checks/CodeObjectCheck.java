@@ -0,0 +1,59 @@
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import ByteUtils.Bytecode;
+import ByteUtils.CodeObject;
+
+/**
+ * Checks that packing bytecodes into a CodeObject loses nothing, on random programs: disassembling a CodeObject and
+ * assembling the result again gives the same words, constant pool and name table, the constant pool holds no value
+ * twice, and the reassembled code runs to the same outcome. The copy of the code an interpreter has quickened is
+ * checked the same way after a run, which must leave the CodeObject itself as it was assembled.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out CodeObjectCheck
+ */
+public class CodeObjectCheck {
+    public static void main(String[] args) throws ReflectiveOperationException {
+        Random random = new Random(2);
+        Field words = Interpreter.class.getDeclaredField("code");
+        words.setAccessible(true);
+        for (int i = 0; i < 2000; i++) {
+            String source = Programs.random(random);
+            CodeObject code = Programs.compile(source, random.nextBoolean());
+            int[] assembled = code.getCode().clone();
+            String expected = checkRoundTrip(code, source);
+            // An interpreter quickens its own copy of the code as it runs, which must pack and run the same way.
+            Interpreter interpreter = new Interpreter(code);
+            try {
+                interpreter.run();
+            } catch (RuntimeException e) {
+                // What the run quickened before failing is checked all the same.
+            }
+            Programs.check(Arrays.equals(assembled, code.getCode()), "Running the code of\n" + source + "wrote to its CodeObject");
+            CodeObject quickened = new CodeObject((int[]) words.get(interpreter), code.getConstants(), code.getNames(), code.getVariableNames());
+            Programs.checkSame(expected, checkRoundTrip(quickened, source), source, "Quickened and unquickened code");
+        }
+        System.out.println("CodeObjectCheck: ok");
+    }
+
+    /**
+     * Checks that a CodeObject survives a disassembly and reassembly, and returns the outcome of running it.
+     */
+    private static String checkRoundTrip(CodeObject code, String source) {
+        List<Bytecode> bytecodes = code.disassemble();
+        CodeObject reassembled = CodeObject.assemble(bytecodes, Arrays.asList(code.getVariableNames()));
+        Programs.check(Arrays.equals(code.getCode(), reassembled.getCode()), "Words differ after reassembly of\n" + source);
+        Programs.check(Arrays.equals(code.getConstants(), reassembled.getConstants()), "Constants differ after reassembly of\n" + source);
+        Programs.check(Arrays.equals(code.getNames(), reassembled.getNames()), "Names differ after reassembly of\n" + source);
+        Programs.check(bytecodes.equals(reassembled.disassemble()), "Bytecodes differ after reassembly of\n" + source);
+        Set<Object> constants = new HashSet<>(Arrays.asList(code.getConstants()));
+        Programs.check(constants.size() == code.getConstants().length, "Repeated constant in the pool of\n" + source);
+        String expected = Programs.interpret(code);
+        Programs.checkSame(expected, Programs.interpret(reassembled), source, "Packed and reassembled code");
+        return expected;
+    }
+}
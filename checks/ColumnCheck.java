@@ -0,0 +1,341 @@
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Checks evaluating columns against evaluating a row at a time, on random programs over columns of random types: the
+ * column evaluation must give each row the value evaluate gives it, or fail where a row fails or the rows give values
+ * of different types. Most programs are straight-line, and so planned, while some have a conditional and are run a
+ * row at a time. Some columns hold integers wide enough to overflow a long, which the planned operations must notice,
+ * and the number of rows is often not a whole number of blocks.
+ *
+ * Checks that evaluating columns in parallel gives what evaluating them in sequence gives, or fails with the same
+ * error, including when several rows far apart fail: the error must be that of the first.
+ *
+ * Checks that evaluating the same columns written to column files writes the values evaluating the arrays gives, or
+ * fails where that fails, leaving the output file of the evaluation before it as it was and no temporary file behind.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out ColumnCheck
+ */
+public class ColumnCheck {
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "//", "%", "+", "-", "*"};
+    private static final String[] CONSTANTS = {"0", "1", "2", "5", "0.5", "2.5", "True", "False"};
+    private static final String[] EXPONENTS = {"0", "1", "2", "3", "2.0"};
+    private static final String[] DIVISORS = {"3", "-2", "2.5", "-0.5", "7", "(x * x + 1)", "(z * z + 1)"};
+    private static final long[] WIDE = {3000000000L, -3037000499L, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE, Integer.MIN_VALUE};
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(23);
+        Path directory = Files.createTempDirectory("ColumnCheck");
+        for (int i = 0; i < 300; i++) {
+            String source = program(random);
+            PyLite.PreparedProgram program = PyLite.prepare(source, Programs.INPUTS);
+            int rows = random.nextInt(10) == 0 ? 40000 + random.nextInt(30000) : 1 + random.nextInt(3000);
+            boolean wide = random.nextInt(4) == 0;
+            Object[] columns = new Object[Programs.INPUTS.length];
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = column(random, rows, wide);
+            }
+            Object output = checkColumns(program, source, columns, rows);
+            checkFiles(random, program, source, columns, output, directory);
+        }
+        for (int i = 0; i < 10; i++) {
+            checkFirstFailure(random, "x * y + 1\n");
+            checkFirstFailure(random, "if b:\n    x = x + 1\nx * y + 1\n");
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+        System.out.println("ColumnCheck: ok");
+    }
+
+    /**
+     * Generates a program of a few assignments and a final expression over the inputs, whose divisions never divide by
+     * zero. One in six starts with a conditional, which no plan covers.
+     */
+    private static String program(Random random) {
+        StringBuilder source = new StringBuilder();
+        List<String> variables = new ArrayList<>(List.of(Programs.INPUTS));
+        if (random.nextInt(6) == 0) {
+            source.append("if b:\n    x = x + 1\n");
+        }
+        for (int i = random.nextInt(3); i > 0; i--) {
+            String target = "t" + variables.size();
+            source.append(target).append(" = ").append(expression(random, variables, 3)).append('\n');
+            variables.add(target);
+        }
+        return source.append(expression(random, variables, 3)).append('\n').toString();
+    }
+
+    private static String expression(Random random, List<String> variables, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            return random.nextInt(4) == 0 ? CONSTANTS[random.nextInt(CONSTANTS.length)] : variables.get(random.nextInt(variables.size()));
+        }
+        switch (random.nextInt(10)) {
+            case 0: return "-(" + expression(random, variables, depth - 1) + ")";
+            case 1: return "(not " + expression(random, variables, depth - 1) + ")";
+            case 2: return "(" + expression(random, variables, depth - 1) + " ** " + EXPONENTS[random.nextInt(EXPONENTS.length)] + ")";
+            default:
+                String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+                boolean division = operator.equals("/") || operator.equals("//") || operator.equals("%");
+                String right = division ? DIVISORS[random.nextInt(DIVISORS.length)] : expression(random, variables, depth - 1);
+                return "(" + expression(random, variables, depth - 1) + " " + operator + " " + right + ")";
+        }
+    }
+
+    /**
+     * Generates an int[], long[], double[] or boolean[] column. A wide column sometimes holds integers whose products
+     * or sums overflow a long, or floats whose powers overflow a double.
+     */
+    private static Object column(Random random, int rows, boolean wide) {
+        switch (random.nextInt(4)) {
+            case 0: {
+                int[] column = new int[rows];
+                for (int row = 0; row < rows; row++) {
+                    column[row] = wide && random.nextInt(100) == 0 ? Integer.MAX_VALUE - random.nextInt(2) : random.nextInt(2001) - 1000;
+                }
+                return column;
+            }
+            case 1: {
+                long[] column = new long[rows];
+                for (int row = 0; row < rows; row++) {
+                    column[row] = wide && random.nextInt(100) == 0 ? WIDE[random.nextInt(WIDE.length)] : random.nextInt(2001) - 1000;
+                }
+                return column;
+            }
+            case 2: {
+                double[] column = new double[rows];
+                for (int row = 0; row < rows; row++) {
+                    column[row] = wide && random.nextInt(100) == 0 ? 1e300 : random.nextInt(50) == 0 ? -0.0 : (random.nextInt(81) - 40) * 0.25;
+                }
+                return column;
+            }
+            default: {
+                boolean[] column = new boolean[rows];
+                for (int row = 0; row < rows; row++) {
+                    column[row] = random.nextBoolean();
+                }
+                return column;
+            }
+        }
+    }
+
+    /**
+     * Checks evaluating columns in sequence and in parallel against evaluating a row at a time.
+     *
+     * @return The values of the rows, or null if evaluating the columns failed.
+     */
+    private static Object checkColumns(PyLite.PreparedProgram program, String source, Object[] columns, int rows) {
+        Object[] expected = evaluateRows(program, columns, rows);
+        Object output;
+        try {
+            output = program.evaluateColumns(columns);
+        } catch (RuntimeException e) {
+            if (expected != null) {
+                throw new RuntimeException("Evaluating columns failed with " + e + ", though every row gives a "
+                        + expected[0].getClass().getSimpleName() + ", for\n" + source);
+            }
+            checkParallelFails(program, source, columns, e);
+            return null;
+        }
+        Programs.check(expected != null, "Evaluating columns gave a " + output.getClass().getSimpleName()
+                + ", though a row fails or the rows give values of different types, for\n" + source);
+        Programs.check(Array.getLength(output) == rows, "Evaluating " + rows + " rows gave " + Array.getLength(output) + " values for\n" + source);
+        for (int row = 0; row < rows; row++) {
+            Object actual = Array.get(output, row);
+            Programs.check(expected[row].equals(actual), "Row " + row + ", " + describe(columns, row) + ", evaluated to " + actual + ", not "
+                    + expected[row] + ", for\n" + source);
+        }
+        Programs.check(Objects.deepEquals(output, program.evaluateColumnsInParallel(columns)), "Evaluating " + rows
+                + " rows in parallel and in sequence disagree on\n" + source);
+        return output;
+    }
+
+    /**
+     * Writes the columns to column files, evaluates the program over them, and checks that the output file holds the
+     * values evaluating the arrays gave, or that evaluating the files fails where evaluating the arrays failed.
+     */
+    private static void checkFiles(Random random, PyLite.PreparedProgram program, String source, Object[] columns, Object output, Path directory)
+            throws IOException {
+        Map<String, ColumnFile> files = new HashMap<>();
+        for (int c = 0; c < columns.length; c++) {
+            files.put(Programs.INPUTS[c], write(random, directory.resolve(Programs.INPUTS[c]), columns[c]));
+        }
+        Path outputPath = directory.resolve("output");
+        byte[] before = Files.exists(outputPath) ? Files.readAllBytes(outputPath) : null;
+        ColumnFile result;
+        try {
+            result = program.evaluateFiles(files, outputPath);
+        } catch (RuntimeException e) {
+            if (output != null) {
+                throw new RuntimeException("Evaluating column files failed with " + e + ", though evaluating arrays gave a "
+                        + output.getClass().getSimpleName() + ", for\n" + source);
+            }
+            Programs.check(Arrays.equals(before, Files.exists(outputPath) ? Files.readAllBytes(outputPath) : null),
+                    "Evaluating column files failed with " + e + " and changed the output file, for\n" + source);
+            int left = 0;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    left++;
+                }
+            }
+            Programs.check(left == columns.length + (before == null ? 0 : 1), "Evaluating column files failed with " + e
+                    + " and left a temporary file, for\n" + source);
+            return;
+        }
+        Programs.check(output != null, "Evaluating column files gave " + result + ", though evaluating arrays failed, for\n" + source);
+        Programs.check(Objects.deepEquals(output, read(result)), "Evaluating column files and arrays disagree on\n" + source);
+    }
+
+    /**
+     * Writes a column to a column file of its type, with True written as any byte but 0.
+     */
+    private static ColumnFile write(Random random, Path path, Object column) throws IOException {
+        ColumnFile.Type type = column instanceof int[] ? ColumnFile.Type.INT : column instanceof long[] ? ColumnFile.Type.LONG
+                : column instanceof double[] ? ColumnFile.Type.DOUBLE : ColumnFile.Type.BOOLEAN;
+        int rows = Array.getLength(column);
+        ByteBuffer buffer = ByteBuffer.allocate(rows * type.getWidth()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int row = 0; row < rows; row++) {
+            switch (type) {
+                case INT: buffer.putInt(((int[]) column)[row]); break;
+                case LONG: buffer.putLong(((long[]) column)[row]); break;
+                case DOUBLE: buffer.putDouble(((double[]) column)[row]); break;
+                default: buffer.put(((boolean[]) column)[row] ? (byte) (1 + random.nextInt(255)) : 0);
+            }
+        }
+        Files.write(path, buffer.array());
+        return new ColumnFile(path, type);
+    }
+
+    /**
+     * Reads an output column file into a long[], double[] or boolean[].
+     */
+    private static Object read(ColumnFile file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.getPath())).order(ByteOrder.LITTLE_ENDIAN);
+        int rows = (int) file.getRows();
+        switch (file.getType()) {
+            case LONG: {
+                long[] column = new long[rows];
+                buffer.asLongBuffer().get(column);
+                return column;
+            }
+            case DOUBLE: {
+                double[] column = new double[rows];
+                buffer.asDoubleBuffer().get(column);
+                return column;
+            }
+            case BOOLEAN: {
+                boolean[] column = new boolean[rows];
+                for (int row = 0; row < rows; row++) {
+                    column[row] = buffer.get(row) != 0;
+                }
+                return column;
+            }
+            default:
+                throw new RuntimeException(file + " is not an output column file.");
+        }
+    }
+
+    /**
+     * Checks that evaluating columns in parallel fails with the error evaluating them in sequence failed with.
+     */
+    private static void checkParallelFails(PyLite.PreparedProgram program, String source, Object[] columns, RuntimeException sequential) {
+        RuntimeException parallel = null;
+        try {
+            program.evaluateColumnsInParallel(columns);
+        } catch (RuntimeException e) {
+            parallel = e;
+        }
+        Programs.check(parallel != null && Objects.equals(parallel.getMessage(), sequential.getMessage()), "Evaluating columns in parallel "
+                + (parallel == null ? "succeeded" : "failed with " + parallel) + ", though in sequence it failed with " + sequential + ", for\n" + source);
+    }
+
+    /**
+     * Checks that when several rows fail, the error is that of the first, in parallel as in sequence: integers that
+     * overflow a long are put in a few rows far apart, each of which gives a value that does not fit in a long[].
+     */
+    private static void checkFirstFailure(Random random, String source) {
+        PyLite.PreparedProgram program = PyLite.prepare(source, Programs.INPUTS);
+        int rows = 200000;
+        long[] x = new long[rows];
+        long[] y = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            x[row] = random.nextInt(2001) - 1000;
+            y[row] = random.nextInt(2001) - 1000;
+        }
+        int first = rows;
+        for (int i = 1 + random.nextInt(4); i > 0; i--) {
+            int row = random.nextInt(rows);
+            x[row] = 1L << 40;
+            y[row] = 1L << 40;
+            first = Math.min(first, row);
+        }
+        Object[] columns = {x, y, new double[rows], new boolean[rows]};
+        RuntimeException sequential = null;
+        try {
+            program.evaluateColumns(columns);
+        } catch (RuntimeException e) {
+            sequential = e;
+        }
+        Programs.check(sequential != null && sequential.getMessage().startsWith("Row " + first + " "), "Evaluating columns whose first overflow is in row "
+                + first + " failed with " + sequential + " for\n" + source);
+        checkParallelFails(program, source, columns, sequential);
+    }
+
+    /**
+     * Evaluates the program a row at a time.
+     *
+     * @return The value of each row, or null if a row fails, or the rows give values of different types or values that
+     *         no column holds.
+     */
+    private static Object[] evaluateRows(PyLite.PreparedProgram program, Object[] columns, int rows) {
+        Object[] values = new Object[rows];
+        for (int row = 0; row < rows; row++) {
+            try {
+                values[row] = program.evaluate(row(columns, row));
+            } catch (RuntimeException e) {
+                return null;
+            }
+            Class<?> type = values[row].getClass();
+            if (type != values[0].getClass() || !(type == Long.class || type == Double.class || type == Boolean.class)) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the values of the inputs in a row, as evaluate takes them.
+     */
+    private static Object[] row(Object[] columns, int row) {
+        Object[] values = new Object[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            Object value = Array.get(columns[c], row);
+            values[c] = value instanceof Integer ? (Object) ((Integer) value).longValue() : value;
+        }
+        return values;
+    }
+
+    private static String describe(Object[] columns, int row) {
+        Object[] values = row(columns, row);
+        StringBuilder description = new StringBuilder();
+        for (int c = 0; c < columns.length; c++) {
+            description.append(c == 0 ? "" : ", ").append(Programs.INPUTS[c]).append(" = ").append(Programs.literal(values[c]));
+        }
+        return description.toString();
+    }
+}
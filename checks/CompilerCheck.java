@@ -0,0 +1,62 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ByteUtils.Bytecode;
+import ByteUtils.BytecodeType;
+import ByteUtils.CodeObject;
+
+/**
+ * Checks the jumps the single-pass compiler back-patches, on random programs of conditionals nested up to eight deep
+ * whose bodies change the variables later conditions test: the code compiled from the syntax tree and from the flat
+ * tree must run to the outcome of Programs.reference, and every jump must go forward to an instruction of the code or
+ * to its end.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out CompilerCheck
+ */
+public class CompilerCheck {
+    private static final String[] CONDITIONS = {"x % 2", "x % 3 - 1", "b", "not b", "z", "x - 2", "0.0", "-0.0", "1", "n % 4"};
+    private static final String[] UPDATES = {"x = x + 1", "x = x * 2 - 3", "b = not b", "z = z - 0.5", "n = n + 1", "x + n"};
+
+    public static void main(String[] args) {
+        Random random = new Random(13);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder source = new StringBuilder();
+            source.append("x = ").append(random.nextInt(7) - 3).append('\n');
+            source.append("b = ").append(random.nextBoolean() ? "True" : "False").append('\n');
+            source.append("z = ").append(random.nextInt(3) * 0.5).append('\n');
+            source.append("n = 0\n");
+            statements(random, source, "", 2 + random.nextInt(4), 1 + random.nextInt(8));
+            source.append("x * 100 + n * 10 + z + b\n");
+            checkCompiled(source.toString());
+        }
+        System.out.println("CompilerCheck: ok");
+    }
+
+    private static void statements(Random random, StringBuilder source, String indent, int count, int depth) {
+        for (int i = 0; i < count; i++) {
+            if (depth > 0 && random.nextInt(3) != 0) {
+                source.append(indent).append("if ").append(CONDITIONS[random.nextInt(CONDITIONS.length)]).append(":\n");
+                statements(random, source, indent + "    ", 1 + random.nextInt(3), depth - 1);
+            } else {
+                source.append(indent).append(UPDATES[random.nextInt(UPDATES.length)]).append('\n');
+            }
+        }
+    }
+
+    private static void checkCompiled(String source) {
+        Compiler compiler = new Compiler(new Parser(new Lexer(source).tokenizeToStream()).parse());
+        List<Bytecode> bytecode = new ArrayList<>();
+        compiler.compile().forEachRemaining(bytecode::add);
+        for (int i = 0; i < bytecode.size(); i++) {
+            if (bytecode.get(i).getType() == BytecodeType.POP_JUMP_IF_FALSE) {
+                int offset = (Integer) bytecode.get(i).getValue();
+                Programs.check(offset > 0 && i + offset <= bytecode.size(), "Jump " + offset + " from " + i + " leaves the code of\n" + source);
+            }
+        }
+        String expected = Programs.reference(new Parser(new Lexer(source).tokenizeToStream()).parse());
+        CodeObject code = CodeObject.assemble(bytecode, compiler.getVariableNames());
+        Programs.checkSame(expected, Programs.interpret(code), source, "Reference and code compiled from the tree");
+        Programs.checkSame(expected, Programs.interpret(Programs.compile(source, true)), source, "Reference and code compiled from the flat tree");
+    }
+}
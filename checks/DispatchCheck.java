@@ -0,0 +1,62 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Random;
+
+import ByteUtils.BytecodeType;
+import ByteUtils.CodeObject;
+
+/**
+ * Checks that the switch dispatch of Interpreter.run gives the outcome reflective dispatch, as the interpreter did it
+ * before, gives on random programs.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out DispatchCheck
+ */
+public class DispatchCheck {
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            String source = Programs.random(random);
+            boolean superinstructions = random.nextBoolean();
+            String expected = runReflectively(Programs.compile(source, superinstructions));
+            Programs.checkSame(expected, Programs.interpret(Programs.compile(source, superinstructions)), source, "Reflective and switch dispatch");
+        }
+        System.out.println("DispatchCheck: ok");
+    }
+
+    /**
+     * Runs code the way the interpreter did before switch dispatch: for every instruction, the name of its handler is
+     * built from the opcode, and the handler is looked up and invoked by reflection.
+     */
+    private static String runReflectively(CodeObject code) throws ReflectiveOperationException {
+        Interpreter interpreter = new Interpreter(code);
+        Field ptr = Interpreter.class.getDeclaredField("ptr");
+        ptr.setAccessible(true);
+        int[] words = code.getCode();
+        try {
+            while (ptr.getInt(interpreter) < words.length) {
+                int word = words[ptr.getInt(interpreter)];
+                Method handler = Interpreter.class.getDeclaredMethod("interpret" + handlerName(CodeObject.opcode(word)), int.class);
+                handler.setAccessible(true);
+                handler.invoke(interpreter, CodeObject.operand(word));
+            }
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                return Programs.failure((RuntimeException) e.getCause());
+            }
+            throw e;
+        }
+        return Programs.outcome(interpreter.getLastValuePopped(), interpreter.getScope());
+    }
+
+    /**
+     * Returns the handler name of an opcode: BINARYOP_ADD_INT is handled by interpretBinaryopAddInt.
+     */
+    private static String handlerName(BytecodeType type) {
+        StringBuilder name = new StringBuilder();
+        for (String word : type.name().split("_")) {
+            name.append(word.charAt(0)).append(word.substring(1).toLowerCase());
+        }
+        return name.toString();
+    }
+}
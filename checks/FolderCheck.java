@@ -0,0 +1,64 @@
+import java.util.Random;
+
+import ast.FlatAST;
+
+/**
+ * Checks that constant folding and the algebraic identities never change what a program does: a program must run to
+ * the same outcome in Programs.reference as parsed, with its syntax tree folded, and with its flat tree folded. Runs on
+ * random programs, and on programs at the edges of the identities, where the type of an operand decides whether an
+ * identity holds.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out FolderCheck
+ */
+public class FolderCheck {
+    private static final String[] EDGES = {
+        "(2+3) - (2-4) - 6\n",
+        "a = 2\nb = -1\n(a ** b) // 1\n",
+        "a = 2\n(a ** 2) // 1\n",
+        "x = 2.5\nx * 1\n",
+        "x = 2.5\nx // 1\n",
+        "x = -0.0\nx + 0\n",
+        "x = -0.0\nx - 0\n",
+        "x = -0.0\n0 + x\n",
+        "x = True\nx + 0\n",
+        "x = True\nx * 1\n",
+        "x = False\n1 * x\n",
+        "x = 99999999999999999999\nx * 1\n",
+        "x = 7\nx // 1\n",
+        "x = 2.5\nnot not x\n",
+        "x = 2.5\nif not not x:\n    y = x\n",
+        "x = 0.0\nif not not x:\n    y = x\ny\n",
+        "x = 3\n+x\n",
+        "1 // 0\n",
+        "1 % 0.0\n",
+        "x = 5\nx * 0\n",
+        "x = 2.5\nx * 0\n",
+        "2 ** 100000000000\n",
+        "2 ** -1\n",
+        "0 ** -1\n",
+        "9223372036854775807 + 1\n",
+        "-(-9223372036854775807 - 1)\n",
+        "99999999999999999999 // 99999999999999999999\n",
+    };
+
+    public static void main(String[] args) {
+        for (String source : EDGES) {
+            checkFolding(source);
+        }
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            checkFolding(Programs.random(random));
+        }
+        Programs.check(Programs.compile(EDGES[0], false).getCode().length == 2, "The README sample does not fold to one PUSH and POP");
+        System.out.println("FolderCheck: ok");
+    }
+
+    private static void checkFolding(String source) {
+        String expected = Programs.reference(new Parser(new Lexer(source).tokenizeToStream()).parse());
+        String folded = Programs.reference(new ConstantFolder().fold(new Parser(new Lexer(source).tokenizeToStream()).parse()));
+        Programs.checkSame(expected, folded, source, "Unfolded and folded trees");
+        FlatAST flat = new ConstantFolder().fold(new Parser(new Lexer(source).tokenizeToStream()).parseFlat());
+        Programs.checkSame(expected, Programs.reference(flat.toTree()), source, "Unfolded and folded flat trees");
+        Programs.checkSame(expected, Programs.interpret(Programs.compile(source, false)), source, "Unfolded tree and compiled code");
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import ByteUtils.CodeObject;
+
+/**
+ * Checks the incremental compiler on random chains of edits to random programs: after every edit, the code it keeps
+ * must run to the outcome of compiling the edited source from scratch, or fail where that fails. Edits insert,
+ * replace and delete whole lines, including conditionals and their indented bodies, and change single characters, so
+ * they split and join top-level statements. An edit that leaves the program failing is undone by the edit that puts
+ * the old text back, so each chain of edits goes on from a program that runs. The incremental compiler must name
+ * exactly the variables of the edited source, taking back the slots of those an edit removed.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out IncrementalCheck
+ */
+public class IncrementalCheck {
+    private static final String[] LINES = {"x = x + 1\n", "if b:\n", "if x % 2:\n", "    y = y * 2\n", "    b = not b\n", "        z = z - 1\n",
+            "    if z:\n", "not b\n", "x - y\n", "\n", "    \n", "t = x\n", "t + 1\n"};
+    private static final String[] CHARACTERS = {"", "", "1", " ", "x", "t", "+", "-", "\n", "(", ")", "    ", ":"};
+    // The outcome of a source that fails to compile. Each top-level statement is lexed on its own, so a syntax error at
+    // the end of one is reported at its end rather than at the next token, and only the failure is compared.
+    private static final String COMPILE_ERROR = "error compiling";
+
+    public static void main(String[] args) {
+        Random random = new Random(20);
+        int edits = 0;
+        int valid = 0;
+        for (int i = 0; i < 300; i++) {
+            String start = Programs.random(random);
+            while (fromScratch(start).startsWith("error")) {
+                start = Programs.random(random);
+            }
+            StringBuilder source = new StringBuilder(start);
+            IncrementalCompiler compiler = new IncrementalCompiler(source.toString());
+            for (int j = 0; j < 30; j++) {
+                int[] lines = lineStarts(source);
+                int line = random.nextInt(lines.length);
+                int offset;
+                int removed;
+                String inserted;
+                switch (random.nextInt(4)) {
+                    case 0:
+                        offset = lines[line];
+                        removed = 0;
+                        inserted = LINES[random.nextInt(LINES.length)];
+                        break;
+                    case 1:
+                    case 2:
+                        offset = lines[line];
+                        removed = (line + 1 < lines.length ? lines[line + 1] : source.length()) - offset;
+                        inserted = random.nextBoolean() ? "" : LINES[random.nextInt(LINES.length)];
+                        break;
+                    default:
+                        offset = random.nextInt(source.length() + 1);
+                        removed = Math.min(random.nextInt(4), source.length() - offset);
+                        inserted = CHARACTERS[random.nextInt(CHARACTERS.length)];
+                        break;
+                }
+                String removedText = source.substring(offset, offset + removed);
+                boolean runs = edit(compiler, source, offset, removed, inserted);
+                edits++;
+                valid += runs ? 1 : 0;
+                if (!runs) {
+                    edit(compiler, source, offset, inserted.length(), removedText);
+                }
+            }
+        }
+        Programs.check(valid * 4 > edits, "Only " + valid + " of " + edits + " edits left a program that runs");
+        System.out.println("IncrementalCheck: ok");
+    }
+
+    /**
+     * Makes an edit to the source and to the incremental compiler, and checks that they agree.
+     *
+     * @return Whether the edited program runs without error.
+     */
+    private static boolean edit(IncrementalCompiler compiler, StringBuilder source, int offset, int removed, String inserted) {
+        source.replace(offset, offset + removed, inserted);
+        compiler.edit(offset, removed, inserted);
+        String text = source.toString();
+        Programs.checkSame(text, compiler.getSource(), text, "The edited source and the incremental compiler's");
+        String expected = fromScratch(text);
+        Programs.checkSame(expected, incremental(compiler), text, "Compiling from scratch and incrementally");
+        if (!expected.equals(COMPILE_ERROR)) {
+            Programs.checkSame(variables(Programs.compile(text, false).getVariableNames()), variables(compiler.getVariableNames().toArray()), text,
+                    "The variables compiled from scratch and incrementally");
+        }
+        return !expected.startsWith("error");
+    }
+
+    private static String variables(Object[] names) {
+        Object[] sorted = Arrays.stream(names).map(Object::toString).sorted().toArray();
+        return Arrays.toString(sorted);
+    }
+
+    private static int[] lineStarts(CharSequence source) {
+        int count = 1;
+        for (int i = 0; i < source.length() - 1; i++) {
+            count += source.charAt(i) == '\n' ? 1 : 0;
+        }
+        int[] starts = new int[count];
+        for (int i = 0, line = 1; i < source.length() - 1; i++) {
+            if (source.charAt(i) == '\n') {
+                starts[line++] = i + 1;
+            }
+        }
+        return starts;
+    }
+
+    private static String fromScratch(String source) {
+        CodeObject code;
+        try {
+            code = Programs.compile(source, false);
+        } catch (RuntimeException e) {
+            return COMPILE_ERROR;
+        }
+        return Programs.interpret(code);
+    }
+
+    private static String incremental(IncrementalCompiler compiler) {
+        CodeObject code;
+        try {
+            code = CodeObject.assemble(compiler.getBytecode(), compiler.getVariableNames());
+        } catch (RuntimeException e) {
+            return COMPILE_ERROR;
+        }
+        return Programs.interpret(code);
+    }
+}
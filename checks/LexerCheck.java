@@ -0,0 +1,169 @@
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Checks that the table-driven scanner gives every token the type and value its characters spell, with only spaces
+ * and newlines between tokens, and that the TokenStream holds the tokens tokenize() creates as objects. Checks that
+ * lexing a source through the sliding buffer, from a Reader or a memory-mapped file, gives the tokens lexing it whole
+ * from a String does, and that token offsets stay right past 2 GiB.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out LexerCheck
+ */
+public class LexerCheck {
+    private static final Map<TokenType, String> SPELLINGS = Map.ofEntries(Map.entry(TokenType.PLUS, "+"), Map.entry(TokenType.MINUS, "-"),
+            Map.entry(TokenType.LPAREN, "("), Map.entry(TokenType.RPAREN, ")"), Map.entry(TokenType.MUL, "*"), Map.entry(TokenType.DIV, "/"),
+            Map.entry(TokenType.FLOORDIV, "//"), Map.entry(TokenType.MOD, "%"), Map.entry(TokenType.EXP, "**"), Map.entry(TokenType.ASSIGN, "="),
+            Map.entry(TokenType.IF, "if"), Map.entry(TokenType.COLON, ":"), Map.entry(TokenType.TRUE, "True"), Map.entry(TokenType.FALSE, "False"),
+            Map.entry(TokenType.NOT, "not"));
+
+    public static void main(String[] args) throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            source.append("total_").append(i % 97).append(" = (price * 3 + 2.5e3) // 7 - 123456789012345678901234567890\n")
+                    .append("if not flag_").append(i % 13).append(":\n    x = -y ** 2 % 4 / 1.5\n");
+        }
+        String text = source.toString();
+        TokenStream expected = new Lexer(text).tokenizeToStream();
+        checkSpelling(text, expected);
+        checkObjects(text, expected);
+        Random random = new Random(14);
+        for (int i = 0; i < 2000; i++) {
+            String program = Programs.random(random);
+            TokenStream tokens = new Lexer(program).tokenizeToStream();
+            checkSpelling(program, tokens);
+            checkObjects(program, tokens);
+        }
+
+        // A reader that returns a few characters at a time moves the buffer many times within tokens.
+        compare(expected, new Lexer(new TrickleReader(new StringReader(text))).tokenizeToStream(), "a Reader");
+        Path file = Files.createTempFile("lexer", ".py");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        compare(expected, Lexer.ofFile(file).tokenizeToStream(), "a mapped file");
+        Files.delete(file);
+
+        // "a", then spaces past 2 GiB, then "+ 1": the offset of + no longer fits in an int.
+        long spaces = (1L << 31) + 100;
+        TokenStream far = new Lexer(new SpacesReader("a", spaces, "+ 1\n")).tokenizeToStream();
+        check(far.type(1) == TokenType.PLUS && far.start(1) == 1 + spaces, "+ is at " + far.start(1) + ", not " + (1 + spaces) + ".");
+        check(far.start(2) == 3 + spaces && Objects.equals(far.value(2), 1L), "1 is at " + far.start(2) + ".");
+        System.out.println("LexerCheck: ok");
+    }
+
+    /**
+     * Checks every token against the characters it was lexed from.
+     */
+    private static void checkSpelling(String text, TokenStream tokens) {
+        int end = 0; // Where the last token with characters of its own ended
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenType type = tokens.type(i);
+            int start = (int) tokens.start(i);
+            String spelling = text.substring(start, start + tokens.length(i));
+            String what = "Token " + i + ", " + type + " " + tokens.value(i) + " from \"" + spelling + "\",";
+            if (SPELLINGS.containsKey(type)) {
+                check(SPELLINGS.get(type).equals(spelling), what + " is misspelled.");
+            } else if (type == TokenType.NAME) {
+                check(spelling.matches("[A-Za-z_][A-Za-z0-9_]*") && !SPELLINGS.containsValue(spelling)
+                        && tokens.value(i).toString().equals(spelling), what + " is not that name.");
+            } else if (type == TokenType.INT) {
+                check(Arithmetic.normalize(new BigInteger(spelling)).equals(tokens.value(i)), what + " is not that integer.");
+            } else if (type == TokenType.FLOAT) {
+                check(tokens.value(i).equals(Double.parseDouble(spelling)), what + " is not that float.");
+            } else {
+                check(spelling.isBlank(), what + " holds more than layout.");
+                continue;
+            }
+            check(start >= end && text.substring(end, start).isBlank(), what + " follows unlexed characters.");
+            end = start + spelling.length();
+        }
+        check(text.substring(end).isBlank(), "Characters after the last token were not lexed.");
+    }
+
+    /**
+     * Checks that the TokenStream holds the tokens tokenize() creates as objects.
+     */
+    private static void checkObjects(String text, TokenStream tokens) {
+        List<Token> objects = new Lexer(text).tokenize();
+        check(objects.size() == tokens.size(), "tokenize() gives " + objects.size() + " tokens, not " + tokens.size() + ".");
+        for (int i = 0; i < objects.size(); i++) {
+            check(objects.get(i).getType() == tokens.type(i) && Objects.equals(objects.get(i).getValue(), tokens.value(i)),
+                    "Token " + i + " is " + objects.get(i) + " as an object but " + tokens.token(i) + " in the stream.");
+        }
+    }
+
+    private static void compare(TokenStream expected, TokenStream actual, String what) {
+        check(expected.size() == actual.size(), "Lexing from " + what + " gives " + actual.size() + " tokens, not " + expected.size() + ".");
+        for (int i = 0; i < expected.size(); i++) {
+            check(expected.type(i) == actual.type(i) && expected.start(i) == actual.start(i) && expected.length(i) == actual.length(i)
+                    && Objects.equals(expected.value(i), actual.value(i)), "Token " + i + " differs when lexed from " + what + ".");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new RuntimeException(message);
+        }
+    }
+
+    /**
+     * Returns at most seven characters per read.
+     */
+    private static final class TrickleReader extends Reader {
+        private final Reader in;
+
+        TrickleReader(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws java.io.IOException {
+            return this.in.read(buffer, offset, Math.min(length, 7));
+        }
+
+        @Override
+        public void close() throws java.io.IOException {
+            this.in.close();
+        }
+    }
+
+    /**
+     * Reads a prefix, a number of spaces and a suffix, without holding the spaces.
+     */
+    private static final class SpacesReader extends Reader {
+        private final String prefix;
+        private final String suffix;
+        private final long total;
+        private long position;
+
+        SpacesReader(String prefix, long spaces, String suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.total = prefix.length() + spaces + suffix.length();
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (this.position == this.total) {
+                return -1;
+            }
+            int count = (int) Math.min(length, this.total - this.position);
+            for (int i = 0; i < count; i++, this.position++) {
+                long fromEnd = this.total - this.position;
+                buffer[offset + i] = this.position < this.prefix.length() ? this.prefix.charAt((int) this.position)
+                        : fromEnd <= this.suffix.length() ? this.suffix.charAt(this.suffix.length() - (int) fromEnd) : ' ';
+            }
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import ast.AST.Assignment;
+import ast.AST.BinaryOp;
+import ast.AST.Body;
+import ast.AST.Conditional;
+import ast.AST.Constant;
+import ast.AST.ExprStatement;
+import ast.AST.Expression;
+import ast.AST.Program;
+import ast.AST.Statement;
+import ast.AST.TreeNode;
+import ast.AST.UnaryOp;
+import ast.AST.Variable;
+import ast.FlatAST;
+import ast.Symbol;
+import ByteUtils.Bytecode;
+
+/**
+ * Checks the parser on random programs: pulling tokens from the Lexer through the lookahead ring, one statement at a
+ * time or all at once, must give the tree that parsing a TokenStream or a list of Token objects gives.
+ *
+ * Checks the precedence and associativity of the table-driven expression parser against Python's: random expression
+ * trees are written out with only the parentheses Python's grammar needs, and must parse back into the same tree.
+ * Expressions nested a hundred thousand deep must parse without running out of Java stack, and the JVM backend and the
+ * AST interpreter must run them once folded or reject them as nested too deeply; a deeply nested tree must print
+ * without running out of stack either.
+ *
+ * Checks that the flat tree and the syntax tree it converts to agree: a copy of a flat tree converts to the same
+ * tree, the compiler gives the same bytecode for both, and the constant folder folds both into the same tree.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out ParserCheck
+ */
+public class ParserCheck {
+    public static void main(String[] args) throws InterruptedException {
+        Random random = new Random(16);
+        for (int i = 0; i < 2000; i++) {
+            String source = Programs.random(random);
+            checkTokenSources(source);
+            checkFlat(source);
+        }
+        for (int i = 0; i < 20000; i++) {
+            Expression expression = randomExpression(random, 1 + random.nextInt(6));
+            String source = write(expression) + "\n";
+            Programs.checkSame("[" + show(expression) + "]", show(new Parser(new Lexer(source)).parse()), source, "Written and parsed expressions");
+        }
+        int deep = 100000;
+        checkDeep("(".repeat(deep) + "1" + ")".repeat(deep), 3, true);
+        checkDeep("-".repeat(deep) + "1", deep + 3, true);
+        checkDeep("not ".repeat(deep) + "x", deep + 3, true);
+        checkDeep("2" + " ** 2".repeat(deep), 2 * deep + 3, false);
+        checkDeep("(1 + ".repeat(deep) + "1" + ")".repeat(deep), 2 * deep + 3, true);
+        // Nothing folds away, so these are nested as deep as the tiers allow, and one more.
+        checkTiers("x = 3\n" + "-".repeat(997) + "x\n", true);
+        checkTiers("x = 3\n" + "-".repeat(998) + "x\n", false);
+        checkPrintDeep(2000);
+        System.out.println("ParserCheck: ok");
+    }
+
+    private static void checkFlat(String source) {
+        FlatAST flat = new Parser(new Lexer(source).tokenizeToStream()).parseFlat();
+        TreeNode tree = flat.toTree();
+        Programs.checkSame(show(tree), show(flat.copy().toTree()), source, "A flat tree and its copy");
+        Programs.check(Objects.equals(bytecode(new Compiler(flat)), bytecode(new Compiler(tree))), "Compiling the flat tree and the syntax tree of\n"
+                + source + "gives different bytecode");
+        Programs.checkSame(show(new ConstantFolder().fold(tree)), show(new ConstantFolder().fold(flat.copy()).toTree()), source,
+                "Folding the syntax tree and the flat tree");
+    }
+
+    private static List<Bytecode> bytecode(Compiler compiler) {
+        List<Bytecode> bytecode = new ArrayList<>();
+        compiler.compile().forEachRemaining(bytecode::add);
+        return bytecode;
+    }
+
+    private static final String[] BINARY_OPERATORS = {"+", "-", "*", "/", "//", "%", "**"};
+
+    private static Expression randomExpression(Random random, int depth) {
+        if (depth == 0 || random.nextInt(5) == 0) {
+            switch (random.nextInt(4)) {
+                case 0: return new Constant((long) random.nextInt(100));
+                case 1: return new Constant(random.nextInt(8) * 0.5);
+                case 2: return new Constant(random.nextBoolean());
+                default: return new Variable(Symbol.intern(random.nextBoolean() ? "a" : "b"));
+            }
+        }
+        switch (random.nextInt(10)) {
+            case 0: return new UnaryOp("not", randomExpression(random, depth - 1));
+            case 1: return new UnaryOp(random.nextBoolean() ? "-" : "+", randomExpression(random, depth - 1));
+            default:
+                return new BinaryOp(BINARY_OPERATORS[random.nextInt(BINARY_OPERATORS.length)], randomExpression(random, depth - 1),
+                        randomExpression(random, depth - 1));
+        }
+    }
+
+    /**
+     * Returns how tightly an expression binds in Python's grammar: not, then + and -, then *, /, // and %, then unary
+     * + and -, then **, then values.
+     */
+    private static int level(Expression expression) {
+        if (expression instanceof UnaryOp) {
+            return ((UnaryOp) expression).getOp().equals("not") ? 1 : 4;
+        } else if (expression instanceof BinaryOp) {
+            switch (((BinaryOp) expression).getOp()) {
+                case "+":
+                case "-":
+                    return 2;
+                case "**":
+                    return 5;
+                default:
+                    return 3;
+            }
+        }
+        return 6;
+    }
+
+    /**
+     * Writes an expression with only the parentheses Python's grammar needs to parse it back into the same tree.
+     * The left operand of ** must be a value or in parentheses, while its right operand may be any unary expression.
+     * The other binary operators associate to the left, and the operand of unary + and - must bind at least as tightly.
+     */
+    private static String write(Expression expression) {
+        if (expression instanceof UnaryOp) {
+            UnaryOp unary = (UnaryOp) expression;
+            boolean not = unary.getOp().equals("not");
+            return (not ? "not " : unary.getOp()) + operand(unary.getValue(), not ? 1 : 4);
+        } else if (expression instanceof BinaryOp) {
+            BinaryOp binary = (BinaryOp) expression;
+            int level = level(binary);
+            boolean power = binary.getOp().equals("**");
+            return operand(binary.getLeft(), power ? 6 : level) + " " + binary.getOp() + " " + operand(binary.getRight(), power ? 4 : level + 1);
+        } else if (expression instanceof Variable) {
+            return ((Variable) expression).getName().getName();
+        }
+        Object value = ((Constant) expression).getValue();
+        return value instanceof Boolean ? ((Boolean) value ? "True" : "False") : value.toString();
+    }
+
+    /**
+     * Writes an operand, in parentheses unless it binds at least as tightly as the least its position allows.
+     */
+    private static String operand(Expression expression, int least) {
+        return level(expression) >= least ? write(expression) : "(" + write(expression) + ")";
+    }
+
+    /**
+     * Parses one deeply nested expression statement and checks how many nodes its tree has, then checks how the JVM
+     * backend and the AST interpreter handle it.
+     *
+     * @param runs Whether folding leaves the tree shallow enough for the tiers to run.
+     */
+    private static void checkDeep(String expression, int nodes, boolean runs) {
+        FlatAST tree = new Parser(new Lexer(expression + "\n").tokenizeToStream()).parseFlat();
+        Programs.check(tree.size() == nodes, "Parsing " + expression.substring(0, 20) + "... gave " + tree.size() + " nodes, not " + nodes);
+        checkTiers(expression + "\n", runs);
+    }
+
+    /**
+     * Checks that the JVM backend and the AST interpreter either run a program to the outcome of the interpreter, or
+     * reject it as nested too deeply, rather than running out of Java stack.
+     *
+     * @param runs Whether the program is shallow enough to run once folded.
+     */
+    private static void checkTiers(String source, boolean runs) {
+        String shown = source.length() > 40 ? source.substring(0, 40) + "..." : source;
+        String expected = runs ? Programs.interpret(Programs.compile(source, false)) : "error java.lang.RuntimeException: Program is nested";
+        for (boolean jvm : new boolean[] {true, false}) {
+            String outcome;
+            try {
+                TreeNode tree = new Parser(new Lexer(source).tokenizeToStream()).parse();
+                if (jvm) {
+                    JvmBackend.CompiledProgram program = JvmBackend.compile(tree);
+                    Object[] frame = new Object[program.getVariableNames().size()];
+                    outcome = Programs.outcome(program.run(frame), program.getScope(frame));
+                } else {
+                    AstInterpreter astInterpreter = new AstInterpreter(tree);
+                    outcome = Programs.outcome(astInterpreter.execute(), astInterpreter.getScope());
+                }
+            } catch (RuntimeException e) {
+                outcome = Programs.failure(e);
+            }
+            String tier = jvm ? "JVM backend" : "AST interpreter";
+            Programs.check(runs ? outcome.equals(expected) : outcome.startsWith(expected), "The " + tier + " gave " + outcome + " for\n"
+                    + shown + "\nnot " + expected);
+        }
+    }
+
+    /**
+     * Prints the tree of an expression nested to a depth, as Main does, on a thread with a small stack and with the
+     * output thrown away. Printing does not recurse, so it must not run out of stack.
+     */
+    private static void checkPrintDeep(int depth) throws InterruptedException {
+        Parser parser = new Parser(new Lexer("-".repeat(depth) + "x\n").tokenizeToStream());
+        FlatAST tree = parser.parseFlat();
+        Throwable[] failure = {null};
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Thread printer = new Thread(null, () -> parser.printAST(tree), "printer", 128 * 1024);
+            printer.setUncaughtExceptionHandler((thread, e) -> failure[0] = e);
+            printer.start();
+            printer.join();
+        } finally {
+            System.setOut(out);
+        }
+        Programs.check(failure[0] == null, "Printing a tree nested " + depth + " deep failed with " + failure[0]);
+    }
+
+    private static void checkTokenSources(String source) {
+        String expected = show(new Parser(new Lexer(source).tokenize()).parse());
+        Programs.checkSame(expected, show(new Parser(new Lexer(source).tokenizeToStream()).parse()), source, "Parsing a list and a stream of tokens");
+        Programs.checkSame(expected, show(new Parser(new Lexer(source)).parse()), source, "Parsing a list of tokens and pulling them from the lexer");
+        Parser parser = new Parser(new Lexer(source));
+        List<Statement> statements = new ArrayList<>();
+        for (Statement statement = parser.nextStatement(); statement != null; statement = parser.nextStatement()) {
+            statements.add(statement);
+        }
+        Programs.checkSame(expected, show(new Program(statements)), source, "Parsing a program whole and a statement at a time");
+    }
+
+    /**
+     * Writes a syntax tree out with every expression in parentheses and every constant with its type, so that two
+     * trees are the same exactly when they are written the same.
+     */
+    private static String show(TreeNode node) {
+        if (node instanceof Program) {
+            return show(((Program) node).getStatements());
+        } else if (node instanceof Assignment) {
+            Assignment assignment = (Assignment) node;
+            return assignment.getTargets().stream().map(target -> show(target) + " = ").collect(Collectors.joining())
+                    + show(assignment.getValue());
+        } else if (node instanceof ExprStatement) {
+            return show(((ExprStatement) node).getExpr());
+        } else if (node instanceof Conditional) {
+            Conditional conditional = (Conditional) node;
+            return "if " + show(conditional.getCondition()) + ": " + show(((Body) conditional.getBody()).getStatements());
+        } else if (node instanceof BinaryOp) {
+            BinaryOp binary = (BinaryOp) node;
+            return "(" + show(binary.getLeft()) + " " + binary.getOp() + " " + show(binary.getRight()) + ")";
+        } else if (node instanceof UnaryOp) {
+            UnaryOp unary = (UnaryOp) node;
+            return "(" + unary.getOp() + " " + show(unary.getValue()) + ")";
+        } else if (node instanceof Variable) {
+            return ((Variable) node).getName().getName();
+        }
+        Object value = ((Constant) node).getValue();
+        return value.getClass().getSimpleName() + " " + value;
+    }
+
+    private static String show(List<Statement> statements) {
+        return statements.stream().map(ParserCheck::show).collect(Collectors.joining("; ", "[", "]"));
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ByteUtils.Bytecode;
+import ByteUtils.CodeObject;
+
+/**
+ * Checks that the peephole optimizer never changes what a program does, on random programs and on programs whose
+ * jumps land next to rewritten code: the compiled code must run to the same outcome unoptimized, with each rule on its
+ * own, and with all of them, and the optimizer must count exactly the instructions it removed. Every rule must fire
+ * on some program, so that none goes unchecked.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out PeepholeCheck
+ */
+public class PeepholeCheck {
+    private static final String[] EDGES = {
+        "x = 1\nif x:\n    5\n    x\n",
+        "x = 0\nif x:\n    5\n7\n",
+        "x = 1\nif x:\n    y = z = y = x + 1\n    +x\ny\n",
+        "x = 1\nif x:\n    if x - 1:\n        3\n    4\n2\n",
+        "x = 2\ny = 3\nz = x * y\nz = z = x + y\nz - 1\n",
+    };
+
+    public static void main(String[] args) {
+        List<PeepholeOptimizer.Rule> rules = new ArrayList<>(PeepholeOptimizer.DEFAULT_RULES);
+        rules.addAll(PeepholeOptimizer.SUPERINSTRUCTION_RULES);
+        int[] fired = new int[rules.size()];
+        for (String source : EDGES) {
+            checkPeephole(source, rules, fired);
+        }
+        Random random = new Random(6);
+        for (int i = 0; i < 2000; i++) {
+            checkPeephole(Programs.random(random), rules, fired);
+        }
+        for (int r = 0; r < rules.size(); r++) {
+            Programs.check(fired[r] > 0, rules.get(r) + " never fired");
+        }
+        System.out.println("PeepholeCheck: ok");
+    }
+
+    /**
+     * Checks a program unoptimized, with each rule alone, with the default rules and with every rule, counting in
+     * fired how often each rule removed or fused an instruction.
+     */
+    private static void checkPeephole(String source, List<PeepholeOptimizer.Rule> rules, int[] fired) {
+        Compiler compiler = new Compiler(new Parser(new Lexer(source).tokenizeToStream()).parseFlat());
+        List<Bytecode> bytecode = new ArrayList<>();
+        compiler.compile().forEachRemaining(bytecode::add);
+        String expected = Programs.interpret(CodeObject.assemble(bytecode, compiler.getVariableNames()));
+        for (int r = 0; r < rules.size(); r++) {
+            PeepholeOptimizer peephole = new PeepholeOptimizer(List.of(rules.get(r)));
+            checkOptimized(expected, peephole, bytecode, compiler, source);
+            fired[r] += peephole.getRemovedCount();
+        }
+        checkOptimized(expected, new PeepholeOptimizer(), bytecode, compiler, source);
+        checkOptimized(expected, new PeepholeOptimizer(rules), bytecode, compiler, source);
+    }
+
+    private static void checkOptimized(String expected, PeepholeOptimizer peephole, List<Bytecode> bytecode, Compiler compiler, String source) {
+        List<Bytecode> optimized = peephole.optimize(bytecode);
+        Programs.check(peephole.getRemovedCount() == bytecode.size() - optimized.size(),
+                peephole + " removed " + (bytecode.size() - optimized.size()) + " instructions but counted " + peephole.getRemovedCount() + " on\n" + source);
+        Programs.checkSame(expected, Programs.interpret(CodeObject.assemble(optimized, compiler.getVariableNames())), source,
+                "Unoptimized code and " + peephole);
+    }
+}
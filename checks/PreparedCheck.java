@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks prepared programs on random programs: one prepared program is evaluated many times with its inputs bound to
+ * values of every type, by position and by name, and every evaluation must give the result of Programs.reference on
+ * the program with those inputs assigned. The inputs are given in a random order, along with one the program never
+ * uses. Then several threads evaluate the same prepared program at once, each through its own frame, and must get the
+ * same results again.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out PreparedCheck
+ */
+public class PreparedCheck {
+    private static final int THREADS = 4;
+
+    public static void main(String[] args) throws InterruptedException {
+        Random random = new Random(22);
+        for (int i = 0; i < 300; i++) {
+            String body = Programs.body(random);
+            List<String> inputs = new ArrayList<>(Arrays.asList(Programs.INPUTS));
+            inputs.add("unused");
+            Collections.shuffle(inputs, random);
+            PyLite.PreparedProgram program = PyLite.prepare(body, inputs.toArray(new String[0]));
+            Programs.check(program.slotOf("unused") == -1 && program.getInputs().equals(inputs), "Prepared the inputs " + program.getInputs()
+                    + " of\n" + body);
+
+            List<Object[]> runs = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            for (int run = 0; run < 20; run++) {
+                Object[] values = new Object[inputs.size()];
+                Map<String, Object> bindings = new HashMap<>();
+                StringBuilder source = new StringBuilder();
+                for (int input = 0; input < values.length; input++) {
+                    values[input] = Programs.VALUES[random.nextInt(Programs.VALUES.length)];
+                    bindings.put(inputs.get(input), values[input]);
+                    source.append(inputs.get(input)).append(" = ").append(Programs.literal(values[input])).append('\n');
+                }
+                source.append(body);
+                String result = Programs.referenceResult(new Parser(new Lexer(source.toString()).tokenizeToStream()).parse());
+                Programs.checkSame(result, evaluate(program, values), source.toString(), "Reference and evaluating by position");
+                Programs.checkSame(result, evaluate(program, bindings), source.toString(), "Reference and evaluating by name");
+                runs.add(values);
+                expected.add(result);
+            }
+            checkThreads(program, body, runs, expected);
+        }
+        try {
+            PyLite.prepare("x + 1\n", "x").evaluate(1L, 2L);
+            throw new RuntimeException("Evaluating a program of one input with two values did not fail");
+        } catch (RuntimeException e) {
+            Programs.check(e.getMessage().startsWith("Expected 1 values"), "Evaluating with two values for one input failed with " + e);
+        }
+        System.out.println("PreparedCheck: ok");
+    }
+
+    /**
+     * Evaluates the runs of a prepared program on several threads at once, each in its own order, many times over.
+     */
+    private static void checkThreads(PyLite.PreparedProgram program, String body, List<Object[]> runs, List<String> expected)
+            throws InterruptedException {
+        String[] failures = new String[THREADS];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            Thread runner = new Thread(() -> {
+                for (int repeat = 0; repeat < 10 && failures[thread] == null; repeat++) {
+                    for (int i = 0; i < runs.size(); i++) {
+                        int run = (i * (2 * thread + 1) + repeat) % runs.size();
+                        String result = evaluate(program, runs.get(run));
+                        if (!result.equals(expected.get(run))) {
+                            failures[thread] = "Thread " + thread + " evaluated " + Arrays.toString(runs.get(run)) + " to " + result + ", not "
+                                    + expected.get(run) + ", in\n" + body;
+                            break;
+                        }
+                    }
+                }
+            });
+            threads.add(runner);
+            runner.start();
+        }
+        for (Thread runner : threads) {
+            runner.join();
+        }
+        for (String failure : failures) {
+            Programs.check(failure == null, failure);
+        }
+    }
+
+    private static String evaluate(PyLite.PreparedProgram program, Object[] values) {
+        try {
+            return Programs.outcome(program.evaluate(values), Map.of());
+        } catch (RuntimeException e) {
+            return Programs.failure(e);
+        }
+    }
+
+    private static String evaluate(PyLite.PreparedProgram program, Map<String, Object> bindings) {
+        try {
+            return Programs.outcome(program.evaluate(bindings), Map.of());
+        } catch (RuntimeException e) {
+            return Programs.failure(e);
+        }
+    }
+}
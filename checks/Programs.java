@@ -0,0 +1,260 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import ByteUtils.Bytecode;
+import ByteUtils.CodeObject;
+import ByteUtils.Operator;
+import ast.AST.Assignment;
+import ast.AST.BinaryOp;
+import ast.AST.Body;
+import ast.AST.Conditional;
+import ast.AST.Constant;
+import ast.AST.ExprStatement;
+import ast.AST.Expression;
+import ast.AST.Program;
+import ast.AST.Statement;
+import ast.AST.TreeNode;
+import ast.AST.UnaryOp;
+import ast.AST.Variable;
+
+/**
+ * Random programs and the outcomes of running them, shared by the checks.
+ *
+ * An outcome is a string holding the value of the last expression statement and every variable assigned, each with
+ * its type, or "error" with the class and message of the exception if the program failed. Floats are written with
+ * Double.toString, which tells -0.0 from 0.0 and gives every double a distinct string, so two runs agree exactly when
+ * their outcomes are equal strings.
+ */
+final class Programs {
+    static final String[] INPUTS = {"x", "y", "z", "b"};
+    static final Object[] VALUES = {0L, 3L, -7L, 4611686018427387904L, new BigInteger("99999999999999999999"), 2.5, -0.0, -1.75, true,
+            false}; // Values of every type the inputs may be bound to
+
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "//", "%", "+", "-", "*"};
+    private static final String[] EXPONENTS = {"0", "1", "2", "3", "5", "-1", "-2", "0.5", "2.0", "x", "y"};
+    private static final String[] DIVISORS = {"3", "-2", "2.5", "-0.5", "True", "99999999999999999999", "(y + 16)"};
+
+    private Programs() {}
+
+    /**
+     * Generates a program that assigns each input a random value, then runs a few random statements over them:
+     * assignments, some chained, conditionals, some nested, and expression statements, the last of which gives the
+     * result. Powers only take small exponents, so that no program runs for long.
+     */
+    static String random(Random random) {
+        StringBuilder source = new StringBuilder();
+        source.append("x = ").append(random.nextInt(9) - 4).append('\n');
+        source.append("y = ").append(random.nextInt(3) == 0 ? "4611686018427387904" : String.valueOf(random.nextInt(31) - 15)).append('\n');
+        source.append("z = ").append(random.nextBoolean() ? "2.5" : random.nextBoolean() ? "0.0" : "-1.75").append('\n');
+        source.append("b = ").append(random.nextBoolean() ? "True" : "False").append('\n');
+        return source.append(body(random)).toString();
+    }
+
+    /**
+     * Generates the statements of a random program that reads the inputs without assigning them.
+     */
+    static String body(Random random) {
+        StringBuilder source = new StringBuilder();
+        List<String> variables = new ArrayList<>(List.of(INPUTS));
+        statements(random, source, variables, "", 2 + random.nextInt(4), 2);
+        source.append(expression(random, variables, 3)).append('\n');
+        return source.toString();
+    }
+
+    private static void statements(Random random, StringBuilder source, List<String> variables, String indent, int count, int depth) {
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(8);
+            if (kind == 0 && depth > 0) {
+                source.append(indent).append("if ").append(expression(random, variables, 1)).append(":\n");
+                // Variables assigned in a body may be unassigned after it, so only the body reads them.
+                statements(random, source, new ArrayList<>(variables), indent + "    ", 1 + random.nextInt(2), depth - 1);
+            } else if (kind == 1) {
+                source.append(indent).append(expression(random, variables, 2)).append('\n');
+            } else {
+                String target = "t" + variables.size();
+                String second = "t" + (variables.size() + 1);
+                source.append(indent).append(target).append(" = ");
+                if (kind == 2) {
+                    source.append(second).append(" = ");
+                }
+                source.append(expression(random, variables, 3)).append('\n');
+                variables.add(target);
+                if (kind == 2) {
+                    variables.add(second);
+                }
+            }
+        }
+    }
+
+    private static String expression(Random random, List<String> variables, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            switch (random.nextInt(10)) {
+                case 0: return String.valueOf(random.nextInt(5));
+                case 1: return random.nextBoolean() ? "1" : "0";
+                case 2: return random.nextBoolean() ? "2.5" : "0.0";
+                case 3: return random.nextInt(6) != 0 ? "True" : "99999999999999999999";
+                default: return variables.get(random.nextInt(variables.size()));
+            }
+        }
+        switch (random.nextInt(13)) {
+            case 0: return "-(" + expression(random, variables, depth - 1) + ")";
+            case 1: return "(not " + expression(random, variables, depth - 1) + ")";
+            case 2: return "(" + expression(random, variables, depth - 1) + " ** " + EXPONENTS[random.nextInt(EXPONENTS.length)] + ")";
+            case 3: return "+(" + expression(random, variables, depth - 1) + ")";
+            default:
+                String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+                String left = expression(random, variables, depth - 1);
+                // Divisions mostly take a nonzero divisor, so that few programs stop at a division by zero.
+                boolean division = operator.equals("/") || operator.equals("//") || operator.equals("%");
+                String right = division && random.nextInt(4) != 0 ? DIVISORS[random.nextInt(DIVISORS.length)]
+                        : expression(random, variables, depth - 1);
+                return "(" + left + " " + operator + " " + right + ")";
+        }
+    }
+
+    /**
+     * Compiles a program as Main does, with or without superinstructions.
+     */
+    static CodeObject compile(String source, boolean superinstructions) {
+        Compiler compiler = new Compiler(new Parser(new Lexer(source).tokenizeToStream()).parseFlat());
+        List<Bytecode> bytecode = new ArrayList<>();
+        compiler.compile().forEachRemaining(bytecode::add);
+        PeepholeOptimizer peephole = new PeepholeOptimizer();
+        if (superinstructions) {
+            PeepholeOptimizer.SUPERINSTRUCTION_RULES.forEach(peephole::addRule);
+        }
+        return CodeObject.assemble(peephole.optimize(bytecode), compiler.getVariableNames());
+    }
+
+    /**
+     * Returns the outcome of a run: its result and the variables it assigned.
+     */
+    static String outcome(Object result, Map<?, ?> scope) {
+        Map<String, String> sorted = new TreeMap<>();
+        for (Map.Entry<?, ?> variable : scope.entrySet()) {
+            sorted.put(variable.getKey().toString(), describe(variable.getValue()));
+        }
+        return "result " + describe(result) + ", scope " + sorted;
+    }
+
+    /**
+     * Returns the outcome of a run that failed, which tells apart errors of different classes or messages, so that a
+     * path failing with, say, a ClassCastException where the reference divides by zero does not pass.
+     */
+    static String failure(RuntimeException e) {
+        return "error " + e.getClass().getName() + ": " + e.getMessage();
+    }
+
+    private static String describe(Object value) {
+        return value == null ? "None" : value.getClass().getSimpleName() + " " + value;
+    }
+
+    /**
+     * Runs code with the switch-dispatched interpreter.
+     */
+    static String interpret(CodeObject code) {
+        try {
+            Interpreter interpreter = new Interpreter(code);
+            interpreter.run();
+            return outcome(interpreter.getLastValuePopped(), interpreter.getScope());
+        } catch (RuntimeException e) {
+            return failure(e);
+        }
+    }
+
+    /**
+     * Runs a syntax tree the simplest way there is, as the reference the optimized paths are checked against: every
+     * node is walked as it was parsed, every value is boxed, variables live in a HashMap, and arithmetic goes through
+     * the boxed Arithmetic.binary and Arithmetic.unary.
+     */
+    static String reference(TreeNode program) {
+        return reference(program, true);
+    }
+
+    /**
+     * Runs a syntax tree as reference does, leaving the variables out of the outcome, for the paths that only give the
+     * value of the last expression statement.
+     */
+    static String referenceResult(TreeNode program) {
+        return reference(program, false);
+    }
+
+    private static String reference(TreeNode program, boolean withScope) {
+        Map<String, Object> scope = new HashMap<>();
+        Object[] result = {null};
+        try {
+            run(((Program) program).getStatements(), scope, result);
+        } catch (RuntimeException e) {
+            return failure(e);
+        }
+        return outcome(result[0], withScope ? scope : Map.of());
+    }
+
+    private static void run(List<Statement> statements, Map<String, Object> scope, Object[] result) {
+        for (Statement statement : statements) {
+            if (statement instanceof Assignment) {
+                Assignment assignment = (Assignment) statement;
+                Object value = evaluate(assignment.getValue(), scope);
+                for (Variable target : assignment.getTargets()) {
+                    scope.put(target.getName().getName(), value);
+                }
+            } else if (statement instanceof ExprStatement) {
+                result[0] = evaluate((Expression) ((ExprStatement) statement).getExpr(), scope);
+            } else {
+                Conditional conditional = (Conditional) statement;
+                if (Arithmetic.isTruthy(evaluate((Expression) conditional.getCondition(), scope))) {
+                    run(((Body) conditional.getBody()).getStatements(), scope, result);
+                }
+            }
+        }
+    }
+
+    private static Object evaluate(Expression expression, Map<String, Object> scope) {
+        if (expression instanceof Constant) {
+            return ((Constant) expression).getValue();
+        } else if (expression instanceof Variable) {
+            String name = ((Variable) expression).getName().getName();
+            if (!scope.containsKey(name)) {
+                throw new RuntimeException("Name '" + name + "' is not defined.");
+            }
+            return scope.get(name);
+        } else if (expression instanceof UnaryOp) {
+            UnaryOp unary = (UnaryOp) expression;
+            return Arithmetic.unary(Operator.unaryFromSymbol(unary.getOp()), evaluate(unary.getValue(), scope));
+        }
+        BinaryOp binary = (BinaryOp) expression;
+        Object left = evaluate(binary.getLeft(), scope);
+        return Arithmetic.binary(Operator.binaryFromSymbol(binary.getOp()), left, evaluate(binary.getRight(), scope));
+    }
+
+    /**
+     * Writes a value as the literal that evaluates to it.
+     */
+    static String literal(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "True" : "False";
+        }
+        return value.toString();
+    }
+
+    /**
+     * Fails unless a condition holds.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new RuntimeException(message);
+        }
+    }
+
+    /**
+     * Fails unless two outcomes of the same program agree.
+     */
+    static void checkSame(String expected, String actual, String source, String what) {
+        check(expected.equals(actual), what + " disagree on\n" + source + "expected: " + expected + "\nactual:   " + actual);
+    }
+}
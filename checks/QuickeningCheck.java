@@ -0,0 +1,61 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import ByteUtils.CodeObject;
+
+/**
+ * Checks that quickened instructions stay correct when the types they were quickened for change, on random programs:
+ * one interpreter runs the same code many times, with its inputs bound to values of a different type on each run, so
+ * that typed instructions quickened by one run meet other operands in the next. Every run must have the outcome of
+ * Programs.reference on the program with those inputs assigned.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out QuickeningCheck
+ */
+public class QuickeningCheck {
+    public static void main(String[] args) {
+        Random random = new Random(10);
+        for (int i = 0; i < 500; i++) {
+            String body = Programs.body(random);
+            CodeObject code = Programs.compile(body, random.nextBoolean());
+            Interpreter interpreter = new Interpreter(code);
+            for (int run = 0; run < 20; run++) {
+                StringBuilder source = new StringBuilder();
+                Map<Object, Object> inputs = new HashMap<>();
+                for (String input : Programs.INPUTS) {
+                    Object value = Programs.VALUES[random.nextInt(Programs.VALUES.length)];
+                    inputs.put(input, value);
+                    source.append(input).append(" = ").append(Programs.literal(value)).append('\n');
+                }
+                source.append(body);
+                String expected = Programs.reference(new Parser(new Lexer(source.toString()).tokenizeToStream()).parse());
+                Programs.checkSame(expected, run(interpreter, code, inputs), source.toString(), "Reference and quickened code, run " + (run + 1) + ",");
+            }
+        }
+        System.out.println("QuickeningCheck: ok");
+    }
+
+    /**
+     * Runs code again with inputs bound to its variable slots. An input the code never uses has no slot, but is still
+     * part of the outcome, as it is of a program that assigns it.
+     */
+    private static String run(Interpreter interpreter, CodeObject code, Map<Object, Object> inputs) {
+        interpreter.reset();
+        Object[] variableNames = code.getVariableNames();
+        for (int slot = 0; slot < variableNames.length; slot++) {
+            if (inputs.containsKey(variableNames[slot].toString())) {
+                interpreter.bind(slot, inputs.get(variableNames[slot].toString()));
+            }
+        }
+        try {
+            interpreter.run();
+        } catch (RuntimeException e) {
+            return Programs.failure(e);
+        }
+        Map<Object, Object> scope = new HashMap<>(inputs);
+        for (Map.Entry<Object, Object> variable : interpreter.getScope().entrySet()) {
+            scope.put(variable.getKey().toString(), variable.getValue());
+        }
+        return Programs.outcome(interpreter.getLastValuePopped(), scope);
+    }
+}
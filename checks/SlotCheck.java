@@ -0,0 +1,49 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import ByteUtils.Bytecode;
+import ByteUtils.BytecodeType;
+import ByteUtils.CodeObject;
+
+/**
+ * Checks that variables resolved to frame slots behave as variables looked up by name in the scope, as the
+ * interpreter did before, on random programs: the LOAD_FAST and STORE_FAST of the compiled code are rewritten into
+ * LOAD and SAVE of the slot's name, and both versions must run to the same outcome.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out SlotCheck
+ */
+public class SlotCheck {
+    public static void main(String[] args) {
+        Random random = new Random(4);
+        for (int i = 0; i < 2000; i++) {
+            String source = Programs.random(random);
+            CodeObject code = Programs.compile(source, false);
+            Object[] variableNames = code.getVariableNames();
+            Programs.check(new HashSet<>(Arrays.asList(variableNames)).size() == variableNames.length, "Two slots share a name in\n" + source);
+            String expected = Programs.interpret(byName(code));
+            Programs.checkSame(expected, Programs.interpret(code), source, "Name and slot lookups");
+            Programs.checkSame(expected, Programs.interpret(Programs.compile(source, true)), source, "Name and fused slot lookups");
+        }
+        System.out.println("SlotCheck: ok");
+    }
+
+    /**
+     * Returns code that reads and writes every variable by name instead of by slot.
+     */
+    private static CodeObject byName(CodeObject code) {
+        List<Bytecode> bytecodes = new ArrayList<>();
+        for (Bytecode bytecode : code.disassemble()) {
+            if (bytecode.getType() == BytecodeType.LOAD_FAST) {
+                bytecodes.add(new Bytecode(BytecodeType.LOAD, code.getVariableNames()[(Integer) bytecode.getValue()]));
+            } else if (bytecode.getType() == BytecodeType.STORE_FAST) {
+                bytecodes.add(new Bytecode(BytecodeType.SAVE, code.getVariableNames()[(Integer) bytecode.getValue()]));
+            } else {
+                bytecodes.add(bytecode);
+            }
+        }
+        return CodeObject.assemble(bytecodes);
+    }
+}
@@ -0,0 +1,62 @@
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Checks the tagged primitive operand stack against a plain stack of boxed objects, and the interpreter, which keeps
+ * values unboxed, against Programs.reference, which boxes every value, on random programs.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out StackCheck
+ */
+public class StackCheck {
+    private static final Object[] VALUES = {0L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, true, false, 0.0, -0.0, 2.5, Double.NaN,
+            Double.NEGATIVE_INFINITY, BigInteger.TWO.pow(70), null};
+
+    public static void main(String[] args) {
+        Random random = new Random(3);
+        for (int capacity = 0; capacity < 4; capacity++) {
+            checkStack(new Interpreter.Stack(capacity), random);
+        }
+        checkStack(new Interpreter.Stack(), random);
+        for (int i = 0; i < 2000; i++) {
+            String source = Programs.random(random);
+            String expected = Programs.reference(new Parser(new Lexer(source).tokenizeToStream()).parse());
+            Programs.checkSame(expected, Programs.interpret(Programs.compile(source, random.nextBoolean())), source, "Boxed and unboxed evaluation");
+        }
+        System.out.println("StackCheck: ok");
+    }
+
+    /**
+     * Runs random pushes, copies and pops on a Stack and on a Deque of boxed objects, and checks that they hold the
+     * same values throughout. Each value is pushed through push(Object) and through the primitive push for its type.
+     */
+    private static void checkStack(Interpreter.Stack stack, Random random) {
+        Deque<Object> boxed = new ArrayDeque<>();
+        for (int i = 0; i < 10000; i++) {
+            int action = random.nextInt(5);
+            if (action < 2 || boxed.isEmpty()) {
+                Object value = VALUES[random.nextInt(VALUES.length)];
+                if (action == 0 || value == null || value instanceof BigInteger) {
+                    stack.push(value);
+                } else if (value instanceof Long) {
+                    stack.pushInt((Long) value);
+                } else if (value instanceof Boolean) {
+                    stack.pushBool((Boolean) value);
+                } else {
+                    stack.pushFloat((Double) value);
+                }
+                boxed.push(value == null ? Programs.class : value); // A Deque holds no nulls
+            } else if (action == 2) {
+                stack.copy();
+                boxed.push(boxed.peek());
+            } else {
+                Object expected = boxed.pop();
+                Object actual = stack.pop();
+                Programs.check(expected == Programs.class ? actual == null : expected.equals(actual),
+                        "Popped " + actual + " where " + expected + " was pushed");
+            }
+            Programs.check(stack.size() == boxed.size(), "Stack holds " + stack.size() + " values, not " + boxed.size());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+import java.util.Random;
+
+import ByteUtils.CodeObject;
+
+/**
+ * Checks that fused superinstructions run to the outcome of the instructions they replace, on random programs, both on
+ * a first run and on a second run of the same interpreter, after the first has quickened the code. Fusing must never
+ * add instructions.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out SuperinstructionCheck
+ */
+public class SuperinstructionCheck {
+    public static void main(String[] args) {
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            String source = Programs.random(random);
+            CodeObject unfused = Programs.compile(source, false);
+            CodeObject fused = Programs.compile(source, true);
+            Programs.check(fused.disassemble().size() <= unfused.disassemble().size(), "Fusing added instructions to\n" + source);
+            Interpreter unfusedInterpreter = new Interpreter(unfused);
+            Interpreter fusedInterpreter = new Interpreter(fused);
+            for (int run = 0; run < 2; run++) {
+                unfusedInterpreter.reset();
+                fusedInterpreter.reset();
+                Programs.checkSame(run(unfusedInterpreter), run(fusedInterpreter), source, "Unfused and fused code, run " + (run + 1) + ",");
+            }
+        }
+        System.out.println("SuperinstructionCheck: ok");
+    }
+
+    private static String run(Interpreter interpreter) {
+        try {
+            interpreter.run();
+            return Programs.outcome(interpreter.getLastValuePopped(), interpreter.getScope());
+        } catch (RuntimeException e) {
+            return Programs.failure(e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import ByteUtils.Bytecode;
+import ByteUtils.CodeObject;
+import ast.Symbol;
+
+/**
+ * Checks the symbol table: threads interning the same new names in different orders, some from strings and some from
+ * ranges of larger character arrays, must all get one symbol per name, and the ids handed out must be dense, each
+ * looking up the symbol it belongs to. Enough names are interned to grow the table several times while the threads
+ * race.
+ *
+ * Checks that the lexer, which tells keywords from names by symbol id, lexes a word as a keyword exactly when it
+ * spells one.
+ *
+ * Checks that compilers and token streams, which map symbols to their own indexes, give every name of a program one
+ * slot and one pooled value in order of first use, with tables sized by the program's names rather than by the tens
+ * of thousands of symbols interned before it.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out SymbolCheck
+ */
+public class SymbolCheck {
+    private static final String[] WORDS = {"if", "iff", "i", "f", "fi", "If", "True", "true", "Tru", "Trues", "False", "_False",
+            "Fals", "not", "no", "note", "nota", "Not", "x", "_", "x1"};
+
+    public static void main(String[] args) throws InterruptedException, ReflectiveOperationException {
+        Random random = new Random(19);
+        for (int round = 0; round < 4; round++) {
+            checkInterning(random, "r" + round + "_", 20000, 4);
+        }
+        checkKeywords();
+        checkPerProgramTables(random, 300);
+        System.out.println("SymbolCheck: ok");
+    }
+
+    private static void checkInterning(Random random, String prefix, int count, int threads) throws InterruptedException {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + Integer.toString(random.nextInt(Integer.MAX_VALUE), 36) + "_" + i);
+        }
+        int before = Symbol.count();
+        Symbol[][] symbols = new Symbol[threads][count];
+        RuntimeException[] failures = new RuntimeException[threads];
+        List<Thread> running = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order, new Random(random.nextLong()));
+            Thread runner = new Thread(() -> {
+                try {
+                    for (int i : order) {
+                        String name = names.get(i);
+                        if ((i + thread) % 2 == 0) {
+                            symbols[thread][i] = Symbol.intern(name);
+                        } else {
+                            char[] chars = ("  (" + name + ")\n").toCharArray();
+                            symbols[thread][i] = Symbol.intern(chars, 3, name.length());
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failures[thread] = e;
+                }
+            });
+            running.add(runner);
+            runner.start();
+        }
+        for (Thread runner : running) {
+            runner.join();
+        }
+        for (RuntimeException failure : failures) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        Programs.check(Symbol.count() == before + count, "Interning " + count + " new names made " + (Symbol.count() - before) + " symbols");
+        boolean[] seen = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            Symbol symbol = symbols[0][i];
+            for (int t = 1; t < threads; t++) {
+                Programs.check(symbols[t][i] == symbol, "Threads got different symbols for " + names.get(i));
+            }
+            Programs.check(symbol.getName().equals(names.get(i)) && Symbol.intern(names.get(i)) == symbol, "The symbol of " + names.get(i)
+                    + " is " + symbol);
+            int id = symbol.id();
+            Programs.check(id >= before && id < before + count && !seen[id - before], "The symbol of " + names.get(i) + " has the id " + id);
+            seen[id - before] = true;
+            Programs.check(Symbol.of(id) == symbol, "Id " + id + " looks up " + Symbol.of(id) + ", not " + symbol);
+        }
+    }
+
+    private static void checkPerProgramTables(Random random, int count) throws ReflectiveOperationException {
+        StringBuilder source = new StringBuilder("v0 = 1\n");
+        List<String> names = new ArrayList<>(List.of("v0"));
+        for (int i = 1; i < count; i++) {
+            String earlier = names.get(random.nextInt(names.size()));
+            source.append("v").append(i).append(" = ").append(earlier).append(" - ").append(earlier).append(" + v").append(i - 1).append(" + 1\n");
+            names.add("v" + i);
+        }
+        source.append("v").append(count - 1).append('\n');
+
+        TokenStream tokens = new Lexer(source.toString()).tokenizeToStream();
+        Field symbolTable = TokenStream.class.getDeclaredField("symbolTable");
+        symbolTable.setAccessible(true);
+        int tokenTableLength = ((int[]) symbolTable.get(tokens)).length;
+        Programs.check(tokens.valueCount() <= 2 * count && tokenTableLength <= 4 * tokens.valueCount(), "A token stream of "
+                + tokens.valueCount() + " values has a symbol table of " + tokenTableLength + " entries");
+
+        Compiler compiler = new Compiler(new Parser(tokens).parseFlat());
+        List<Bytecode> bytecode = new ArrayList<>();
+        compiler.compile().forEachRemaining(bytecode::add);
+        Programs.check(compiler.getVariableNames().toString().equals(names.toString()), "The compiler gave the slots " + compiler.getVariableNames());
+        Field slotTable = Compiler.class.getDeclaredField("slotTable");
+        slotTable.setAccessible(true);
+        int compilerTableLength = ((int[]) slotTable.get(compiler)).length;
+        Programs.check(compilerTableLength <= 4 * count, "A compiler of " + count + " variables has a slot table of " + compilerTableLength
+                + " entries, with " + Symbol.count() + " symbols interned");
+        String outcome = Programs.interpret(CodeObject.assemble(bytecode, compiler.getVariableNames()));
+        Programs.check(outcome.startsWith("result Long " + count + ","), "A program of " + count + " variables ran to " + outcome);
+    }
+
+    private static void checkKeywords() {
+        String[] keywords = {"if", "True", "False", "not"};
+        TokenType[] types = {TokenType.IF, TokenType.TRUE, TokenType.FALSE, TokenType.NOT};
+        List<Token> tokens = new Lexer(String.join(" ", WORDS) + "\n").tokenize();
+        for (int i = 0; i < WORDS.length; i++) {
+            TokenType expected = TokenType.NAME;
+            for (int k = 0; k < keywords.length; k++) {
+                if (WORDS[i].equals(keywords[k])) {
+                    expected = types[k];
+                }
+            }
+            Token token = tokens.get(i);
+            Programs.check(token.getType() == expected, "\"" + WORDS[i] + "\" was lexed as " + token);
+            if (expected == TokenType.NAME) {
+                Programs.check(token.getValue() == Symbol.intern(WORDS[i]), "\"" + WORDS[i] + "\" was lexed as the name " + token.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.Random;
+
+import ast.AST.TreeNode;
+
+/**
+ * Checks that every execution tier runs a program to the outcome of Programs.reference, on random programs: the
+ * bytecode interpreter, the JVM backend and the self-specializing AST interpreter. A compiled JVM program is run twice,
+ * because a run that overflows a long makes the next run go straight to the boxed version, and so is an AST
+ * interpreter, because its first run specializes the nodes that its second run executes.
+ *
+ * Run with: javac -d out *.java checks/*.java && java -cp out TiersCheck
+ */
+public class TiersCheck {
+    public static void main(String[] args) {
+        Random random = new Random(8);
+        for (int i = 0; i < 2000; i++) {
+            String source = Programs.random(random);
+            TreeNode tree = new Parser(new Lexer(source).tokenizeToStream()).parse();
+            String expected = Programs.reference(tree);
+            Programs.checkSame(expected, Programs.interpret(Programs.compile(source, true)), source, "Reference and interpreter");
+            JvmBackend.CompiledProgram program = JvmBackend.compile(tree);
+            for (int run = 0; run < 2; run++) {
+                Programs.checkSame(expected, runJvm(program), source, "Reference and JVM backend, run " + (run + 1) + ",");
+            }
+            AstInterpreter astInterpreter = new AstInterpreter(tree);
+            for (int run = 0; run < 2; run++) {
+                Programs.checkSame(expected, runAst(astInterpreter), source, "Reference and AST interpreter, run " + (run + 1) + ",");
+            }
+        }
+        System.out.println("TiersCheck: ok");
+    }
+
+    private static String runJvm(JvmBackend.CompiledProgram program) {
+        try {
+            Object[] frame = new Object[program.getVariableNames().size()];
+            Object result = program.run(frame);
+            return Programs.outcome(result, program.getScope(frame));
+        } catch (RuntimeException e) {
+            return Programs.failure(e);
+        }
+    }
+
+    private static String runAst(AstInterpreter astInterpreter) {
+        try {
+            Object result = astInterpreter.execute();
+            return Programs.outcome(result, astInterpreter.getScope());
+        } catch (RuntimeException e) {
+            return Programs.failure(e);
+        }
+    }
+}